@@ -0,0 +1,319 @@
+package de.bossascrew.pathfinder.astar;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Vergleicht die AStar Suche mit dem indizierten Heap mit der vorherigen Umsetzung über eine {@link PriorityQueue},
+ * bei der jede Kantenrelaxierung contains und remove in O(n) aufgerufen hat, sowie die Suchverfahren untereinander.
+ * Die Laufzeitvergleiche dauern mehrere Sekunden und laufen daher nur im Profil benchmark mit, siehe {@link RoutingBenchmark}.
+ */
+public class AStarBenchmarkTest extends TestCase {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int RUNS = 5;
+
+    public void testScaling() {
+        for (int size : SIZES) {
+            RoadMapGraph graph = SyntheticRoadMaps.grid(size, 8, size);
+            int source = 0;
+            int goal = graph.size() - 1;
+
+            //Aufwärmen und Ergebnis vergleichen
+            int[] path = new AStar().aStarSearch(graph, source, 0, goal, null);
+            double legacyCost = legacySearch(graph, source, goal);
+            assertNotNull(path);
+            assertEquals(legacyCost, graph.getPathCost(path), 1e-6);
+
+            long heap = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                new AStar().aStarSearch(graph, source, 0, goal, null);
+            }
+            heap = (System.nanoTime() - heap) / RUNS;
+
+            long legacy = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                legacySearch(graph, source, goal);
+            }
+            legacy = (System.nanoTime() - legacy) / RUNS;
+
+            System.out.println(String.format("%,d Nodes: IndexedMinHeap %.3fms, PriorityQueue %.3fms",
+                    graph.size(), heap / 1e6, legacy / 1e6));
+        }
+    }
+
+    /**
+     * Vergleicht die Einstiegssuche über das Gitter mit einem linearen Durchlauf über alle Nodes.
+     */
+    public void testSpatialIndex() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(100_000, 4_000, 25, 5);
+        long build = System.nanoTime();
+        SpatialIndex index = graph.getSpatialIndex();
+        build = System.nanoTime() - build;
+
+        Random random = new Random(6);
+        double[][] positions = new double[1_000][];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new double[]{random.nextDouble() * 4_000, random.nextDouble() * 10, random.nextDouble() * 4_000};
+        }
+        for (int warmup = 0; warmup < 2; warmup++) {
+            for (double[] p : positions) {
+                assertEquals(linearNearest(graph, p[0], p[1], p[2]), index.getNearest(p[0], p[1], p[2], null));
+                assertNotNull(index.getNearestEdgePoint(p[0], p[1], p[2], null));
+            }
+        }
+
+        long nearest = System.nanoTime();
+        for (double[] p : positions) {
+            index.getNearest(p[0], p[1], p[2], null);
+        }
+        nearest = (System.nanoTime() - nearest) / positions.length;
+        long edge = System.nanoTime();
+        for (double[] p : positions) {
+            assertNotNull(index.getNearestEdgePoint(p[0], p[1], p[2], null));
+        }
+        edge = (System.nanoTime() - edge) / positions.length;
+        long linear = System.nanoTime();
+        for (double[] p : positions) {
+            linearNearest(graph, p[0], p[1], p[2]);
+        }
+        linear = (System.nanoTime() - linear) / positions.length;
+
+        System.out.println(String.format("Gitter über %,d Nodes: %,d Zellen in %.1fms, Node %.1fµs, Kante %.1fµs, linear %.1fµs",
+                graph.size(), index.getCellCount(), build / 1e6, nearest / 1e3, edge / 1e3, linear / 1e3));
+    }
+
+    private static int linearNearest(RoadMapGraph graph, double x, double y, double z) {
+        int nearest = -1;
+        double nearestDist = Double.MAX_VALUE;
+        for (int i = 0; i < graph.size(); i++) {
+            double dist = graph.distance(i, x, y, z);
+            if (dist < nearestDist) {
+                nearest = i;
+                nearestDist = dist;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Vergleicht bidirektionale und einfache Suche auf langen Wegen über die ganze Karte.
+     */
+    public void testBidirectional() {
+        RoadMapGraph[] graphs = {
+                SyntheticRoadMaps.grid(100_000, 8, 1),
+                SyntheticRoadMaps.randomGeometric(50_000, 2_000, 20, 2),
+                SyntheticRoadMaps.corridor(20_000, 4, 3)
+        };
+        for (RoadMapGraph graph : graphs) {
+            int source = graph.getNearest(0, 0, 0, null);
+            int goal = graph.getNearest(100_000, 0, 100_000, null);
+            AStar aStar = new AStar();
+            BidirectionalAStar bidirectional = new BidirectionalAStar();
+
+            int[] expected = aStar.search(graph, new int[]{source}, new double[]{0}, goal, null);
+            int[] path = bidirectional.search(graph, new int[]{source}, new double[]{0}, goal, null);
+            if (expected == null) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(source, path[0]);
+            assertEquals(goal, path[path.length - 1]);
+            assertEquals(graph.getPathCost(expected), graph.getPathCost(path), 1e-6);
+
+            long single = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                aStar.search(graph, new int[]{source}, new double[]{0}, goal, null);
+            }
+            single = (System.nanoTime() - single) / RUNS;
+
+            long both = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                bidirectional.search(graph, new int[]{source}, new double[]{0}, goal, null);
+            }
+            both = (System.nanoTime() - both) / RUNS;
+
+            System.out.println(String.format("%,d Nodes: AStar %.3fms / %,d abgeschlossen, bidirektional %.3fms / %,d abgeschlossen",
+                    graph.size(), single / 1e6, aStar.getSettledCount(), both / 1e6, bidirectional.getSettledCount()));
+        }
+    }
+
+    /**
+     * Vergleicht die Luftlinie mit der ALT Heuristik auf einer verwinkelten Karte.
+     */
+    public void testLandmarks() {
+        RoadMapGraph graph = SyntheticRoadMaps.corridor(50_000, 4, 8);
+        long precompute = System.nanoTime();
+        Landmarks landmarks = Landmarks.compute(graph, Landmarks.DEFAULT_COUNT);
+        precompute = System.nanoTime() - precompute;
+
+        //Aufwärmen
+        Random warmup = new Random(10);
+        for (int i = 0; i < 50; i++) {
+            new AStar(landmarks).aStarSearch(graph, warmup.nextInt(graph.size()), 0, warmup.nextInt(graph.size()), null);
+        }
+
+        Random random = new Random(9);
+        int settledEuclidean = 0;
+        int settledLandmarks = 0;
+        long euclidean = 0;
+        long alt = 0;
+        for (int i = 0; i < 50; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            AStar plain = new AStar();
+            AStar withLandmarks = new AStar(landmarks);
+
+            long start = System.nanoTime();
+            int[] expected = plain.aStarSearch(graph, source, 0, goal, null);
+            euclidean += System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] path = withLandmarks.aStarSearch(graph, source, 0, goal, null);
+            alt += System.nanoTime() - start;
+
+            if (expected == null) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(graph.getPathCost(expected), graph.getPathCost(path), 1e-6);
+            settledEuclidean += plain.getSettledCount();
+            settledLandmarks += withLandmarks.getSettledCount();
+        }
+        System.out.println(String.format("%,d Nodes, %d Landmarken (%.1f MB, %.0fms Vorberechnung): Luftlinie %.3fms / %,d abgeschlossen, ALT %.3fms / %,d abgeschlossen",
+                graph.size(), landmarks.getCount(), landmarks.getMemoryBytes() / 1024. / 1024., precompute / 1e6,
+                euclidean / 50e6, settledEuclidean / 50, alt / 50e6, settledLandmarks / 50));
+    }
+
+    /**
+     * Vorberechnung und Anfragen einer Contraction Hierarchy auf einem zusammengelegten Netz mit 50.000 Nodes.
+     */
+    public void testContractionHierarchy() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(50_000, 8, 11);
+        long precompute = System.nanoTime();
+        ContractionHierarchy hierarchy = ContractionHierarchy.compute(graph);
+        precompute = System.nanoTime() - precompute;
+
+        Random random = new Random(12);
+        int[][] queries = new int[100][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new int[]{random.nextInt(graph.size()), random.nextInt(graph.size())};
+        }
+        long aStarTime = 0;
+        long hierarchyTime = 0;
+        int settledAStar = 0;
+        int settledHierarchy = 0;
+        for (int[] query : queries) {
+            AStar aStar = new AStar();
+            ContractionHierarchySearch search = new ContractionHierarchySearch(hierarchy);
+
+            long start = System.nanoTime();
+            int[] expected = aStar.aStarSearch(graph, query[0], 0, query[1], null);
+            aStarTime += System.nanoTime() - start;
+            start = System.nanoTime();
+            int[] path = search.search(graph, new int[]{query[0]}, new double[]{0}, query[1], null);
+            hierarchyTime += System.nanoTime() - start;
+
+            if (expected == null) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(graph.getPathCost(expected), graph.getPathCost(path), 1e-6);
+            settledAStar += aStar.getSettledCount();
+            settledHierarchy += search.getSettledCount();
+        }
+        System.out.println(String.format("%,d Nodes, %,d Abkürzungen (%.0fms Vorberechnung): AStar %.3fms / %,d abgeschlossen, CH %.3fms / %,d abgeschlossen",
+                graph.size(), hierarchy.getShortcutCount(), precompute / 1e6,
+                aStarTime / 1e6 / queries.length, settledAStar / queries.length,
+                hierarchyTime / 1e6 / queries.length, settledHierarchy / queries.length));
+    }
+
+    /**
+     * Vergleicht den Speicherbedarf der Kanten einer Straßenkarte mit 10.000 Nodes als {@link Adjacency} mit der
+     * vorherigen Umsetzung über eine ArrayList von Integern pro Findable und eine Liste von Paaren pro Kante.
+     */
+    public void testAdjacencyMemory() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(10_000, 8, 7);
+        //Datenbank-IDs liegen außerhalb des Integer-Caches, jeder Nachbar wird daher als eigenes Objekt geboxt
+        int offset = 100_000;
+
+        long before = usedMemory();
+        Map<Integer, List<Integer>> legacyNeighbors = new HashMap<>();
+        List<Object[]> legacyPairs = new ArrayList<>();
+        for (int node = 0; node < graph.size(); node++) {
+            legacyNeighbors.put(node + offset, new ArrayList<>());
+        }
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                int target = graph.edgeTarget(edge);
+                legacyNeighbors.get(node + offset).add(target + offset);
+                if (node < target) {
+                    legacyPairs.add(new Object[]{legacyNeighbors.get(node + offset), legacyNeighbors.get(target + offset)});
+                }
+            }
+        }
+        long legacy = usedMemory() - before;
+
+        before = usedMemory();
+        Adjacency adjacency = new Adjacency();
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                adjacency.connect(node + offset, graph.edgeTarget(edge) + offset);
+            }
+        }
+        long primitive = usedMemory() - before;
+
+        assertEquals(legacyPairs.size(), adjacency.getEdgeCount());
+        assertEquals(legacyNeighbors.size(), graph.size());
+        System.out.println(String.format("Kanten von %,d Nodes: Adjacency %.2f MB (geschätzt %.2f MB), ArrayList<Integer> und Paare %.2f MB",
+                graph.size(), primitive / 1024. / 1024., adjacency.getMemoryBytes() / 1024. / 1024., legacy / 1024. / 1024.));
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Die Suche, wie sie vor dem indizierten Heap umgesetzt war.
+     *
+     * @return Die Kosten des kürzesten Weges oder -1.
+     */
+    private static double legacySearch(RoadMapGraph graph, int source, int goal) {
+        double[] g = new double[graph.size()];
+        double[] f = new double[graph.size()];
+        BitSet explored = new BitSet(graph.size());
+        PriorityQueue<Integer> queue = new PriorityQueue<>(20, Comparator.comparingDouble(i -> f[i]));
+
+        f[source] = graph.distance(source, goal);
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            explored.set(current);
+            if (current == goal) {
+                return g[goal];
+            }
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                double temp_g_scores = g[current] + graph.edgeWeight(edge);
+                double temp_f_scores = temp_g_scores + graph.distance(child, goal);
+                if (explored.get(child) && temp_f_scores >= f[child]) {
+                    continue;
+                }
+                if (!queue.contains(child) || temp_f_scores < f[child]) {
+                    queue.remove(child);
+                    g[child] = temp_g_scores;
+                    f[child] = temp_f_scores;
+                    queue.add(child);
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,180 @@
+package de.bossascrew.pathfinder.astar;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH-Benchmarks der Pfadsuche auf künstlichen Straßenkarten aus {@link SyntheticRoadMaps}, ohne dass ein Server
+ * benötigt wird. Gemessen werden das Kompilieren des Graphen aus den Kanten der Straßenkarte, wie es
+ * RoadMap#compileGraph macht, die AStar Suche, die Suche von einer beliebigen Position aus, wie sie für jede Anfrage
+ * eines Spielers läuft, und das Zurückverfolgen des Pfades.
+ * Ausführen mit {@code mvn -P benchmark verify}, die Ergebnisse landen in target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    /**
+     * So viele zufällige Paare aus Start und Ziel werden pro Straßenkarte reihum gesucht.
+     */
+    private static final int PAIRS = 64;
+
+    public enum Shape {
+        GRID {
+            @Override
+            RoadMapGraph create(int nodes) {
+                return SyntheticRoadMaps.grid(nodes, 8, nodes);
+            }
+        },
+        RANDOM_GEOMETRIC {
+            @Override
+            RoadMapGraph create(int nodes) {
+                //Dieselbe Dichte wie bei 100.000 Nodes auf 4.000 x 4.000 Blöcken, im Schnitt etwa 12 Nachbarn
+                return SyntheticRoadMaps.randomGeometric(nodes, Math.sqrt(nodes / 0.00625), 25, nodes);
+            }
+        },
+        CORRIDOR {
+            @Override
+            RoadMapGraph create(int nodes) {
+                return SyntheticRoadMaps.corridor(nodes, 6, nodes);
+            }
+        };
+
+        abstract RoadMapGraph create(int nodes);
+    }
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "CORRIDOR"})
+    private Shape shape;
+
+    @Param({"100", "1000", "10000", "100000"})
+    private int nodes;
+
+    private RoadMapGraph graph;
+    /**
+     * Die Eingaben für das Kompilieren, so wie sie in einer Straßenkarte vorliegen.
+     */
+    private Adjacency adjacency;
+    private int[] sources;
+    private int[] goals;
+    /**
+     * Positionen neben der Mitte einer Kante des jeweiligen Startnodes, so wie ein Spieler meist zwischen zwei Nodes steht.
+     */
+    private double[][] positions;
+    private int pair = 0;
+    private SearchContext context;
+    private int reconstructTarget;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        graph = shape.create(nodes);
+        adjacency = new Adjacency();
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                adjacency.connect(graph.getDatabaseId(node), graph.getDatabaseId(graph.edgeTarget(edge)));
+            }
+        }
+
+        //Nur erreichbare Paare, sonst misst die Suche das Absuchen einer ganzen Komponente
+        ConnectedComponents components = ConnectedComponents.compute(graph);
+        Random random = new Random(nodes);
+        sources = new int[PAIRS];
+        goals = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            int source;
+            int goal;
+            do {
+                source = random.nextInt(graph.size());
+                goal = random.nextInt(graph.size());
+            } while (!components.isConnected(graph.getDatabaseId(source), graph.getDatabaseId(goal)));
+            sources[i] = source;
+            goals[i] = goal;
+        }
+
+        positions = new double[PAIRS][];
+        for (int i = 0; i < PAIRS; i++) {
+            int source = sources[i];
+            int other = graph.edgeStart(source) < graph.edgeEnd(source) ? graph.edgeTarget(graph.edgeStart(source)) : source;
+            positions[i] = new double[]{
+                    (graph.getX(source) + graph.getX(other)) / 2 + 1.5,
+                    (graph.getY(source) + graph.getY(other)) / 2 + 1,
+                    (graph.getZ(source) + graph.getZ(other)) / 2 - 1.5};
+        }
+        //Das Gitter wird beim ersten Zugriff gebaut und soll nicht mitgemessen werden
+        graph.getSpatialIndex();
+
+        //Der längste der Pfade wird für das Zurückverfolgen in einen eigenen Suchzustand übertragen
+        int[] longest = new int[0];
+        for (int i = 0; i < PAIRS; i++) {
+            int[] path = new AStar().aStarSearch(graph, sources[i], 0, goals[i], null);
+            if (path != null && path.length > longest.length) {
+                longest = path;
+            }
+        }
+        context = new SearchContext();
+        context.prepare(graph.size());
+        for (int i = 0; i < longest.length; i++) {
+            context.relax(longest[i], i, i == 0 ? -1 : longest[i - 1], i);
+        }
+        reconstructTarget = longest[longest.length - 1];
+    }
+
+    @Benchmark
+    public RoadMapGraph compile() {
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(0);
+        for (int node = 0; node < graph.size(); node++) {
+            int id = graph.getDatabaseId(node);
+            builder.addNode(id, graph.getX(node), graph.getY(node), graph.getZ(node), RoadMapGraph.NO_GROUP);
+            for (int edge : adjacency.getNeighborArray(id)) {
+                builder.addEdge(id, edge);
+            }
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public SpatialIndex spatialIndex() {
+        return SpatialIndex.build(graph);
+    }
+
+    @Benchmark
+    public int[] search() {
+        int i = pair;
+        pair = (pair + 1) % PAIRS;
+        return new AStar().aStarSearch(graph, sources[i], 0, goals[i], null);
+    }
+
+    /**
+     * Der Weg einer Anfrage ohne zwischengespeicherte Ergebnisse: Einstieg über den räumlichen Index, eine Suche von
+     * allen Startnodes des Einstiegs aus und die Umrechnung in Datenbank-IDs, wie sie AStarUtils#toFindables macht.
+     */
+    @Benchmark
+    public int[] searchFromPosition() {
+        int i = pair;
+        pair = (pair + 1) % PAIRS;
+        double[] position = positions[i];
+        SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position[0], position[1], position[2], null);
+        if (entry == null) {
+            return null;
+        }
+        int[] path = new AStar().aStarSearch(graph, entry.getSources(), entry.getSourceCosts(), goals[i], null);
+        if (path == null) {
+            return null;
+        }
+        int[] ids = new int[path.length];
+        for (int node = 0; node < path.length; node++) {
+            ids[node] = graph.getDatabaseId(path[node]);
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public int[] reconstructPath() {
+        return context.buildPath(reconstructTarget);
+    }
+}
@@ -1,5 +1,6 @@
 package de.bossascrew.pathfinder;
 
+import de.bossascrew.pathfinder.astar.EdgeCostModel;
 import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
@@ -10,14 +11,16 @@ import de.bossascrew.pathfinder.handler.PathPlayerHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
 import de.bossascrew.pathfinder.handler.VisualizerHandler;
 import de.bossascrew.pathfinder.util.AStarUtils;
+import de.bossascrew.pathfinder.util.NearestQuery;
+import de.bossascrew.pathfinder.util.PathRequest;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
-import java.util.Date;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.Consumer;
 
 public class PathFinderAPI {
 
@@ -55,7 +58,43 @@ public class PathFinderAPI {
 
     public void showPath(Player player, Findable findable) {
         PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
-        AStarUtils.startPath(pPlayer, new PlayerFindable(player, findable.getRoadMap()), findable, true);
+        AStarUtils.startPathAsync(pPlayer, new PlayerFindable(player, findable.getRoadMap()), findable, true, false, null);
+    }
+
+    /**
+     * Startet die Navigation vieler Spieler zum selben Ziel, z.B. zu Beginn eines Events. Die Pfade werden gemeinsam
+     * über einen Baum kürzester Wege berechnet und über mehrere Ticks verteilt angezeigt.
+     *
+     * @return false, wenn gerade zu viele Pfade berechnet werden und die Anfrage abgelehnt wurde.
+     */
+    public boolean showPaths(Collection<Player> players, Findable findable) {
+        List<PathRequest> requests = new ArrayList<>(players.size());
+        for (Player player : players) {
+            PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
+            requests.add(new PathRequest(pPlayer, new PlayerFindable(player, findable.getRoadMap()), findable, true));
+        }
+        return AStarUtils.startPathsAsync(requests, null);
+    }
+
+    /**
+     * Startet die Navigation zum nächstgelegenen Findable der Straßenkarte, das zur Anfrage passt, z.B. zum nächsten
+     * Händler oder zum nächsten noch nicht gefundenen Ort. Verglichen wird die Weglänge, nicht die Luftlinie.
+     *
+     * @param callback Wird im Hauptthread mit dem gefundenen Ziel aufgerufen, oder mit null, wenn kein passendes Ziel
+     *                 erreichbar ist.
+     * @return false, wenn gerade zu viele Pfade berechnet werden und die Anfrage abgelehnt wurde.
+     */
+    public boolean showNearestPath(Player player, RoadMap roadMap, NearestQuery query, @Nullable Consumer<Findable> callback) {
+        PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
+        return AStarUtils.startNearestPathAsync(pPlayer, new PlayerFindable(player, roadMap), query, callback);
+    }
+
+    /**
+     * Setzt das Kostenmodell einer Straßenkarte, z.B. um Höhenunterschiede oder bestimmte Gruppen zu verteuern.
+     * Die Kosten werden einmal pro Kante berechnet und gespeichert.
+     */
+    public void setEdgeCostModel(RoadMap roadMap, EdgeCostModel edgeCostModel) {
+        roadMap.setEdgeCostModel(edgeCostModel);
     }
 
     public void cancelAllPaths(Player player) {
@@ -3,6 +3,7 @@ package de.bossascrew.pathfinder;
 import com.google.common.collect.Lists;
 import de.bossascrew.acf.*;
 import de.bossascrew.core.BukkitMain;
+import de.bossascrew.pathfinder.astar.RoutingMode;
 import de.bossascrew.pathfinder.commands.*;
 import de.bossascrew.pathfinder.commands.dependencies.*;
 import de.bossascrew.pathfinder.data.DatabaseModel;
@@ -11,15 +12,20 @@ import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
 import de.bossascrew.pathfinder.data.findable.Node;
+import de.bossascrew.pathfinder.data.findable.PlayerFindable;
 import de.bossascrew.pathfinder.data.findable.QuestFindable;
 import de.bossascrew.pathfinder.data.findable.TraderFindable;
 import de.bossascrew.pathfinder.data.visualisation.EditModeVisualizer;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
+import de.bossascrew.pathfinder.handler.PathSearchHandler;
+import de.bossascrew.pathfinder.handler.PortalHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
 import de.bossascrew.pathfinder.handler.VisualizerHandler;
 import de.bossascrew.pathfinder.listener.PlayerListener;
+import de.bossascrew.pathfinder.util.AStarUtils;
 import de.bossascrew.pathfinder.util.CommandUtils;
+import de.bossascrew.pathfinder.util.PlayerDistances;
 import de.bossascrew.pathfinder.util.hooks.BSkyblockHook;
 import de.bossascrew.pathfinder.util.hooks.ChestShopHook;
 import de.bossascrew.pathfinder.util.hooks.QuestsHook;
@@ -34,10 +40,10 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import javax.annotation.Nullable;
 import java.awt.*;
-import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.stream.Collectors;
 
 public class PathPlugin extends JavaPlugin {
@@ -52,6 +58,7 @@ public class PathPlugin extends JavaPlugin {
 	public static final String PERM_COMMAND_FIND_QUESTS = "bcrew.command.find.quest";
 	public static final String PERM_COMMAND_FIND_TRADERS = "bcrew.command.find.trader";
 	public static final String PERM_COMMAND_FIND_CHESTSHOPS = "bcrew.command.find.chestshops";
+	public static final String PERM_COMMAND_FIND_NEAREST = "bcrew.command.find.nearest";
 
 	public static final String COMPLETE_ROADMAPS = "@roadmaps";
 	public static final String COMPLETE_ACTIVE_ROADMAPS = "@activeroadmaps";
@@ -68,6 +75,7 @@ public class PathPlugin extends JavaPlugin {
 	public static final String COMPLETE_FINDABLE_LOCATIONS = "@findable_locations";
 	public static final String COMPLETE_TRADERS = "@nodes_traders";
 	public static final String COMPLETE_QUESTERS = "@nodes_questers";
+	public static final String COMPLETE_ROUTING_MODES = "@routing_modes";
 
 	public static final int COLOR_LIGHT_INT = 0x7F7FFF;
 	public static final int COLOR_DARK_INT = 0x5555FF;
@@ -89,6 +97,10 @@ public class PathPlugin extends JavaPlugin {
 	private PathPlayerHandler playerHandler;
 	@Getter
 	private VisualizerHandler visualizerHandler;
+	@Getter
+	private PathSearchHandler pathSearchHandler;
+	@Getter
+	private PortalHandler portalHandler;
 
 	@Getter
 	private boolean chestShop = false;
@@ -122,7 +134,9 @@ public class PathPlugin extends JavaPlugin {
 		new DatabaseModel(this);
 		this.visualizerHandler = new VisualizerHandler();
 		this.roadMapHandler = new RoadMapHandler();
+		this.portalHandler = new PortalHandler();
 		this.playerHandler = new PathPlayerHandler();
+		this.pathSearchHandler = new PathSearchHandler();
 
 		registerContexts();
 
@@ -159,6 +173,7 @@ public class PathPlugin extends JavaPlugin {
 	@Override
 	public void onDisable() {
 		RoadMapHandler.getInstance().cancelAllEditModes();
+		PathSearchHandler.getInstance().shutdown();
 	}
 
 	private void registerCompletions() {
@@ -184,6 +199,9 @@ public class PathPlugin extends JavaPlugin {
 				.getInstance().getEditModeVisualizerStream()
 				.map(EditModeVisualizer::getName)
 				.collect(Collectors.toSet()));
+		bm.registerAsyncCompletion(COMPLETE_ROUTING_MODES, context -> Arrays.stream(RoutingMode.values())
+				.map(mode -> mode.name().toLowerCase())
+				.collect(Collectors.toSet()));
 		bm.registerAsyncCompletion(COMPLETE_FINDABLE_GROUPS_BY_SELECTION, context -> resolveFromRoadMap(context, roadMap ->
 				roadMap.getGroups().values().stream()
 						.map(FindableGroup::getName)
@@ -229,18 +247,22 @@ public class PathPlugin extends JavaPlugin {
 			if (rm == null) {
 				return null;
 			}
-			Collection<String> ret = rm.getGroups().values().stream()
+			//Gruppen werden nach ihrem nächstgelegenen Mitglied einsortiert
+			PlayerDistances distances = getDistances(context.getPlayer(), pp, rm);
+			Map<String, Double> ret = new HashMap<>();
+			rm.getGroups().values().stream()
 					.filter(FindableGroup::isFindable)
 					.filter(g -> pp.hasFound(g.getDatabaseId(), true))
-					.map(FindableGroup::getName)
-					.collect(Collectors.toList());
-			ret.addAll(rm.getFindables().stream()
+					.forEach(g -> ret.put(g.getName(), distances == null ? 0 : g.getFindables().stream()
+							.mapToDouble(distances::getDistance).min().orElse(Double.POSITIVE_INFINITY)));
+			rm.getFindables().stream()
 					.filter(f -> f.getGroup() == null)
 					.filter(f -> pp.hasFound(f.getDatabaseId(), false))
 					.filter(f -> f instanceof Node)
-					.map(Findable::getName)
-					.collect(Collectors.toList()));
-			return ret;
+					.forEach(f -> ret.put(f.getName(), distances == null ? 0 : distances.getDistance(f)));
+			return ret.keySet().stream()
+					.sorted(Comparator.comparingDouble(ret::get))
+					.collect(Collectors.toList());
 		});
 		bm.registerAsyncCompletion(COMPLETE_FINDABLES, context -> resolveFromRoadMap(context, roadMap ->
 				roadMap.getFindables().stream()
@@ -252,7 +274,7 @@ public class PathPlugin extends JavaPlugin {
 				return null;
 			}
 			return prev.getEdges().stream()
-					.map(edge -> rm.getFindable(edge).getName())
+					.mapToObj(edge -> rm.getFindable(edge).getName())
 					.collect(Collectors.toSet());
 		}));
 		bm.registerAsyncCompletion(COMPLETE_FINDABLES_FINDABLE, context -> resolveFromRoadMap(context, rm -> rm.getFindables().stream()
@@ -276,11 +298,13 @@ public class PathPlugin extends JavaPlugin {
 				return null;
 			}
 			PathPlayer player = PathPlayerHandler.getInstance().getPlayer(context.getPlayer());
+			PlayerDistances distances = getDistances(context.getPlayer(), player, rm);
 			return rm.getFindables().stream()
 					.filter(findable -> findable instanceof TraderFindable)
 					.filter(player::hasFound)
+					.sorted(distances == null ? Comparator.comparing(Findable::getName) : distances.comparator())
 					.map(Findable::getName)
-					.collect(Collectors.toSet());
+					.collect(Collectors.toList());
 		});
 		bm.registerAsyncCompletion(COMPLETE_QUESTERS, context -> {
 			RoadMap rm = null;
@@ -300,6 +324,19 @@ public class PathPlugin extends JavaPlugin {
 		});
 	}
 
+	/**
+	 * Berechnet die Weglängen für Vorschläge, die nach Entfernung sortiert werden. Die Vorschläge werden asynchron
+	 * berechnet, die Weglängen werden danach kurz für den ausgeführten Befehl weiterverwendet.
+	 *
+	 * @return Die Weglängen oder null, wenn der Spieler nicht in der Welt der Straßenkarte ist.
+	 */
+	private @Nullable PlayerDistances getDistances(Player player, @Nullable PathPlayer pathPlayer, RoadMap roadMap) {
+		if (pathPlayer == null || !player.getWorld().equals(roadMap.getWorld())) {
+			return null;
+		}
+		return AStarUtils.getDistances(pathPlayer, new PlayerFindable(player, roadMap));
+	}
+
 	private interface Converter<A, B> {
 		B convert(A a);
 	}
@@ -1,89 +1,169 @@
 package de.bossascrew.pathfinder.astar;
 
+import javax.annotation.Nullable;
 import java.util.*;
 
-public class AStar {
+/**
+ * AStar Suche über einem kompilierten {@link RoadMapGraph}.
+ * Der Zustand der Suche liegt in Arrays, die pro Thread wiederverwendet werden. Dadurch ist die Suche threadsafe
+ * und erzeugt keine Objekte pro Node.
+ */
+public class AStar implements PathSearch {
 
-    public List<AStarNode> printPath(AStarNode target, boolean findGrouped) {
-        List<AStarNode> path = new ArrayList<>();
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
 
-        for (AStarNode node = target; node != null; node = node.parent) {
-            if(node.groupId != null && target.groupId != null && node.groupId.equals(target.groupId)) {
-                path = new ArrayList<>();
-            }
-            path.add(node);
-        }
+    private final Heuristic heuristic;
+    private final double weight;
+    private int settledCount = 0;
 
-        Collections.reverse(path);
-        return path;
+    public AStar() {
+        this(Heuristic.EUCLIDEAN);
     }
 
-    public void aStarSearch(AStarNode source, AStarNode goal) {
-        Set<AStarNode> explored = new HashSet<AStarNode>();
-
-        PriorityQueue<AStarNode> queue = new PriorityQueue<AStarNode>(20, new Comparator<AStarNode>() {
-            @Override
-            public int compare(AStarNode i, AStarNode j) {
-                if (i.f_scores > j.f_scores) {
-                    return 1;
-                } else if (i.f_scores < j.f_scores) {
-                    return -1;
-                } else {
-                    return 0;
-                }
-            }
-        });
+    /**
+     * @param heuristic Die Abschätzung der Restkosten zum Ziel.
+     */
+    public AStar(Heuristic heuristic) {
+        this(heuristic, 1);
+    }
 
-        // cost from start
-        source.g_scores = 0;
+    /**
+     * Gewichteter AStar: Die Abschätzung wird mit weight multipliziert, dadurch läuft die Suche zielstrebiger und
+     * schließt deutlich weniger Nodes ab. Der gefundene Weg ist dafür höchstens weight-mal so teuer wie der kürzeste.
+     *
+     * @param weight Der Faktor für die Abschätzung, 1 für den kürzesten Weg.
+     */
+    public AStar(Heuristic heuristic, double weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Das Gewicht muss mindestens 1 sein.");
+        }
+        this.heuristic = heuristic;
+        this.weight = weight;
+    }
 
-        queue.add(source);
+    /**
+     * Sucht den kürzesten Weg von einem Startnode zum Ziel.
+     *
+     * @param graph      Der kompilierte Graph der Straßenkarte.
+     * @param source     Der Index des Startnodes.
+     * @param sourceCost Die Kosten, um den Startnode zu erreichen, z.B. die Entfernung des Spielers zum Startnode.
+     * @param goal       Der Index des Zielnodes.
+     * @param mask       Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @return Die Indizes der Nodes vom Start bis zum Ziel oder null, wenn das Ziel nicht erreicht werden kann.
+     */
+    public @Nullable
+    int[] aStarSearch(RoadMapGraph graph, int source, double sourceCost, int goal, @Nullable BitSet mask) {
+        return aStarSearch(graph, new int[]{source}, new double[]{sourceCost}, goal, mask);
+    }
 
-        boolean found = false;
+    @Override
+    public @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        return aStarSearch(graph, sources, sourceCosts, goal, mask);
+    }
 
-        while ((!queue.isEmpty()) && (!found)) {
+    @Override
+    public int getSettledCount() {
+        return settledCount;
+    }
 
-            // the node in having the lowest f_score value
-            AStarNode current = queue.poll();
+    /**
+     * Sucht den kürzesten Weg von einem der Startnodes zum Ziel.
+     *
+     * @param sources     Die Indizes der möglichen Startnodes.
+     * @param sourceCosts Die Kosten, um den jeweiligen Startnode zu erreichen.
+     * @see #aStarSearch(RoadMapGraph, int, double, int, BitSet)
+     */
+    public @Nullable
+    int[] aStarSearch(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        if (goal < 0 || (mask != null && !mask.get(goal))) {
+            return null;
+        }
+        settledCount = 0;
+        SearchContext context = CONTEXT.get();
+        context.prepare(graph.size());
+        double[] g = context.g_scores;
+        IndexedMinHeap queue = context.queue;
+
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            context.relax(source, sourceCosts[i], -1, sourceCosts[i] + weight * heuristic.estimate(graph, source, goal));
+        }
 
-            explored.add(current);
+        while (!queue.isEmpty()) {
 
-            // goal found
-            if (current.findable != null && current.findable.equals(goal.findable)) {
-                found = true;
+            // the node in having the lowest f_score value
+            int current = queue.poll();
+            SearchContext.checkCancelled(++settledCount);
+            if (current == goal) {
+                return context.buildPath(goal);
             }
+            context.close(current);
 
             // check every child of current node
-            for (AStarEdge e : current.adjacencies) {
-                AStarNode child = e.target;
-                double cost = e.cost;
-                double temp_g_scores = current.g_scores + cost;
-                double temp_f_scores = temp_g_scores + child.h_scores;
-
-                /*
-                 * if child node has been evaluated and the newer f_score is higher, skip
-                 */
-
-                if ((explored.contains(child)) && (temp_f_scores >= child.f_scores)) {
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
                     continue;
                 }
+                // Bereits besuchte Nodes werden nur aktualisiert, wenn der neue Weg kürzer ist
+                double temp_g_scores = g[current] + graph.edgeWeight(edge);
+                context.relax(child, temp_g_scores, current, temp_g_scores + weight * heuristic.estimate(graph, child, goal));
+            }
+        }
+        return null;
+    }
 
-                /*
-                 * else if child node is not in queue or newer f_score is lower
-                 */
-
-                else if ((!queue.contains(child)) || (temp_f_scores < child.f_scores)) {
-
-                    child.parent = current;
-                    child.g_scores = temp_g_scores;
-                    child.f_scores = temp_f_scores;
-
-                    queue.remove(child);
+    /**
+     * Sucht den kürzesten Weg von einem der Startnodes zum günstigsten Node einer Zielmenge, inklusive der Kosten,
+     * die ab dem Ziel noch anfallen. Die Suche endet, sobald kein offener Node mehr günstiger sein kann als das
+     * beste abgeschlossene Ziel. Bei gleichwertigen Zielen ist das das erste abgeschlossene.
+     *
+     * @param goals Die Zielnodes. Ihre Restkosten werden über die Bounding Box abgeschätzt.
+     * @see #aStarSearch(RoadMapGraph, int[], double[], int, BitSet)
+     */
+    public @Nullable
+    int[] aStarSearch(RoadMapGraph graph, int[] sources, double[] sourceCosts, GoalSet goals, @Nullable BitSet mask) {
+        settledCount = 0;
+        if (goals.isEmpty()) {
+            return null;
+        }
+        SearchContext context = CONTEXT.get();
+        context.prepare(graph.size());
+        double[] g = context.g_scores;
+        IndexedMinHeap queue = context.queue;
+
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            context.relax(source, sourceCosts[i], -1, sourceCosts[i] + weight * goals.estimate(graph, source));
+        }
 
-                    queue.add(child);
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        while (!queue.isEmpty() && queue.peekKey() < bestCost) {
+            int current = queue.poll();
+            SearchContext.checkCancelled(++settledCount);
+            if (goals.contains(current) && g[current] + goals.getRemainingCost(current) < bestCost) {
+                best = current;
+                bestCost = g[current] + goals.getRemainingCost(current);
+            }
+            context.close(current);
 
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
                 }
+                double temp_g_scores = g[current] + graph.edgeWeight(edge);
+                context.relax(child, temp_g_scores, current, temp_g_scores + weight * goals.estimate(graph, child));
             }
         }
+        return best == -1 ? null : context.buildPath(best);
     }
 }
@@ -0,0 +1,110 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Die ungerichteten Kanten einer Straßenkarte als {@link IntSet} der Nachbar-IDs pro Node. Jede Kante wird bei beiden
+ * Nodes eingetragen, ohne Boxing der Nachbarn und mit Hinzufügen und Entfernen in O(1).
+ * Verändert wird nur im Mainthread. Lesende Zugriffe aus anderen Threads müssen über die synchronisierten Methoden
+ * laufen, die Kopien zurückgeben, die Ansichten aus {@link #getNeighbors(int)} sind nur für den Mainthread gedacht.
+ */
+public class Adjacency {
+
+    private final Map<Integer, IntSet> neighbors = new HashMap<>();
+    private int edgeCount = 0;
+
+    /**
+     * @return false, wenn die Nodes bereits verbunden waren.
+     */
+    public synchronized boolean connect(int a, int b) {
+        if (a == b || !neighbors.computeIfAbsent(a, id -> new IntSet()).add(b)) {
+            return false;
+        }
+        neighbors.computeIfAbsent(b, id -> new IntSet()).add(a);
+        edgeCount++;
+        return true;
+    }
+
+    /**
+     * @return false, wenn die Nodes nicht verbunden waren.
+     */
+    public synchronized boolean disconnect(int a, int b) {
+        IntSet setA = neighbors.get(a);
+        if (setA == null || !setA.remove(b)) {
+            return false;
+        }
+        IntSet setB = neighbors.get(b);
+        setB.remove(a);
+        //Nodes ohne Kanten belegen keinen Speicher
+        if (setA.isEmpty()) {
+            neighbors.remove(a);
+        }
+        if (setB.isEmpty()) {
+            neighbors.remove(b);
+        }
+        edgeCount--;
+        return true;
+    }
+
+    /**
+     * @return Die IDs der Nachbarn als Ansicht, die sich mit den Kanten ändert. Nur im Mainthread verwenden.
+     */
+    public IntSet getNeighbors(int node) {
+        return neighbors.getOrDefault(node, IntSet.EMPTY);
+    }
+
+    /**
+     * Threadsafe.
+     *
+     * @return Eine Kopie der IDs der Nachbarn.
+     */
+    public synchronized int[] getNeighborArray(int node) {
+        return getNeighbors(node).toArray();
+    }
+
+    public synchronized boolean isConnected(int a, int b) {
+        return getNeighbors(a).contains(b);
+    }
+
+    /**
+     * Threadsafe.
+     *
+     * @return Alle Kanten einmal als Paare hintereinander, {a0, b0, a1, b1, ...} mit a kleiner b.
+     */
+    public synchronized int[] getEdgeList() {
+        int[] edges = new int[edgeCount * 2];
+        int i = 0;
+        for (Map.Entry<Integer, IntSet> entry : neighbors.entrySet()) {
+            int a = entry.getKey();
+            for (int b : entry.getValue().toArray()) {
+                if (a < b) {
+                    edges[i++] = a;
+                    edges[i++] = b;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * @return Die Anzahl der ungerichteten Kanten.
+     */
+    public synchronized int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return Der geschätzte Speicherbedarf in Bytes inklusive der Einträge der HashMap und ihrer Schlüssel.
+     */
+    public synchronized long getMemoryBytes() {
+        //Die Tabelle der HashMap ist die nächste Zweierpotenz über size / 0.75, mit komprimierten Referenzen
+        int tableLength = Integer.highestOneBit(Math.max(1, neighbors.size() * 4 / 3)) * 2;
+        long bytes = 48 + 16 + (long) tableLength * 4;
+        for (IntSet set : neighbors.values()) {
+            //HashMap-Eintrag und Integer-Schlüssel
+            bytes += 32 + 16 + set.getMemoryBytes();
+        }
+        return bytes;
+    }
+}
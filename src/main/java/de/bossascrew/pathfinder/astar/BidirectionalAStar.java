@@ -0,0 +1,151 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Bidirektionaler AStar, der gleichzeitig von den Startnodes vorwärts und vom Ziel rückwärts sucht.
+ * Beide Richtungen verwenden die gemittelte Abschätzung p(v) = (h(v, ziel) - h(v, start)) / 2, wodurch sie auf
+ * denselben reduzierten Kantenkosten arbeiten. Die Suche endet, sobald die kleinsten Schlüssel beider Warteschlangen
+ * zusammen mindestens die Kosten des besten bisher gefundenen Weges erreichen.
+ * Setzt voraus, dass Kanten in beide Richtungen existieren und gleich viel kosten.
+ */
+public class BidirectionalAStar implements PathSearch {
+
+    private static final ThreadLocal<SearchContext[]> CONTEXT = ThreadLocal.withInitial(() -> new SearchContext[]{
+            new SearchContext(), new SearchContext()
+    });
+
+    private final Heuristic heuristic;
+    private int settledCount = 0;
+
+    public BidirectionalAStar() {
+        this(Heuristic.EUCLIDEAN);
+    }
+
+    /**
+     * @param heuristic Die Abschätzung der Kosten zwischen zwei Nodes. Muss symmetrisch sein.
+     */
+    public BidirectionalAStar(Heuristic heuristic) {
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        settledCount = 0;
+        if (goal < 0 || (mask != null && !mask.get(goal))) {
+            return null;
+        }
+        SearchContext[] contexts = CONTEXT.get();
+        SearchContext forward = contexts[0];
+        SearchContext backward = contexts[1];
+        forward.prepare(graph.size());
+        backward.prepare(graph.size());
+
+        Potential potential = new Potential(graph, heuristic, sources, sourceCosts, goal);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            forward.relax(source, sourceCosts[i], -1, sourceCosts[i] + potential.get(source));
+        }
+        backward.relax(goal, 0, -1, -potential.get(goal));
+        if (forward.isSeen(goal) && forward.g_scores[goal] < best) {
+            best = forward.g_scores[goal];
+            meeting = goal;
+        }
+
+        while (!forward.queue.isEmpty() && !backward.queue.isEmpty()) {
+            if (forward.queue.peekKey() + backward.queue.peekKey() >= best) {
+                break;
+            }
+            // Die Richtung mit der kleineren Warteschlange wird zuerst erweitert
+            boolean expandForward = forward.queue.size() <= backward.queue.size();
+            SearchContext own = expandForward ? forward : backward;
+            SearchContext other = expandForward ? backward : forward;
+            double sign = expandForward ? 1 : -1;
+
+            int current = own.queue.poll();
+            own.close(current);
+            SearchContext.checkCancelled(++settledCount);
+
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
+                }
+                double g = own.g_scores[current] + graph.edgeWeight(edge);
+                if (!own.relax(child, g, current, g + sign * potential.get(child))) {
+                    continue;
+                }
+                if (other.isSeen(child) && g + other.g_scores[child] < best) {
+                    best = g + other.g_scores[child];
+                    meeting = child;
+                }
+            }
+        }
+        if (meeting == -1) {
+            return null;
+        }
+
+        int[] head = forward.buildPath(meeting);
+        int tailLength = 0;
+        for (int node = backward.parents[meeting]; node != -1; node = backward.parents[node]) {
+            tailLength++;
+        }
+        int[] path = new int[head.length + tailLength];
+        System.arraycopy(head, 0, path, 0, head.length);
+        int i = head.length;
+        for (int node = backward.parents[meeting]; node != -1; node = backward.parents[node]) {
+            path[i++] = node;
+        }
+        return path;
+    }
+
+    @Override
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Gemittelte Abschätzung für die Vorwärtsrichtung. Die Rückwärtsrichtung verwendet den negierten Wert.
+     * Bei mehreren Startnodes wird die kleinste Abschätzung über alle Starts inklusive ihrer Startkosten verwendet.
+     */
+    private static class Potential {
+
+        private final RoadMapGraph graph;
+        private final Heuristic heuristic;
+        private final int[] sources;
+        private final double[] sourceCosts;
+        private final int goal;
+
+        Potential(RoadMapGraph graph, Heuristic heuristic, int[] sources, double[] sourceCosts, int goal) {
+            this.graph = graph;
+            this.heuristic = heuristic;
+            this.sources = sources;
+            this.sourceCosts = sourceCosts;
+            this.goal = goal;
+        }
+
+        double get(int node) {
+            double toGoal = heuristic.estimate(graph, node, goal);
+            double fromSource = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < sources.length; i++) {
+                if (sources[i] < 0) {
+                    continue;
+                }
+                fromSource = Math.min(fromSource, sourceCosts[i] + heuristic.estimate(graph, node, sources[i]));
+            }
+            if (fromSource == Double.POSITIVE_INFINITY) {
+                fromSource = 0;
+            }
+            return (toGoal - fromSource) / 2;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Hierarchische Vorberechnung nach Art von HPA*, bei der jede FindableGroup einen Cluster bildet. Alle Nodes ohne
+ * Gruppe bilden gemeinsam einen weiteren Cluster. Randnodes sind Nodes mit einer Kante in einen anderen Cluster,
+ * für jeden Cluster werden die Kosten zwischen seinen Randnodes innerhalb des Clusters vorberechnet.
+ * Eine Suche läuft dann grob über die Randnodes und wird nur in den Clustern auf dieser Route verfeinert,
+ * siehe {@link ClusterHierarchySearch}.
+ * Die Kostentabellen hängen nur an den Nodes und Kanten ihres Clusters. Beim Neuberechnen werden die Tabellen
+ * unveränderter Cluster aus der vorherigen Hierarchie übernommen, eine Bearbeitung kostet also nur die Dijkstra Suchen
+ * der betroffenen Gruppe.
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion,
+ * aus der sie berechnet wurde. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class ClusterHierarchy {
+
+    private final long graphVersion;
+    private final Map<Integer, Cluster> clusters;
+    private final int rebuiltClusterCount;
+    private final BitSet borders;
+    /**
+     * Die Randnodes jedes Clusters als Indizes im Graphen.
+     */
+    private final Map<Integer, int[]> clusterBorders;
+    /**
+     * Die vorberechneten Kosten zwischen den Randnodes eines Clusters als Kanten über die Indizes des Graphen.
+     * Nodes, die keine Randnodes sind, haben keine Kanten.
+     */
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    private ClusterHierarchy(long graphVersion, Map<Integer, Cluster> clusters, int rebuiltClusterCount, BitSet borders,
+                             Map<Integer, int[]> clusterBorders, int[] offsets, int[] targets, double[] weights) {
+        this.graphVersion = graphVersion;
+        this.clusters = clusters;
+        this.rebuiltClusterCount = rebuiltClusterCount;
+        this.borders = borders;
+        this.clusterBorders = clusterBorders;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Berechnet alle Cluster neu. Kostet eine auf den Cluster beschränkte Dijkstra Suche pro Randnode,
+     * sollte also asynchron laufen.
+     */
+    public static ClusterHierarchy compute(RoadMapGraph graph) {
+        return compute(graph, null);
+    }
+
+    /**
+     * @param previous Eine Hierarchie einer älteren Graphversion. Cluster, deren Nodes, Kanten und Randnodes
+     *                 unverändert sind, übernehmen ihre Kostentabelle von dort.
+     */
+    public static ClusterHierarchy compute(RoadMapGraph graph, @Nullable ClusterHierarchy previous) {
+        int n = graph.size();
+        Map<Integer, List<Integer>> members = new HashMap<>();
+        BitSet borders = new BitSet(n);
+        for (int node = 0; node < n; node++) {
+            members.computeIfAbsent(graph.getGroupId(node), group -> new ArrayList<>()).add(node);
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                if (graph.getGroupId(graph.edgeTarget(edge)) != graph.getGroupId(node)) {
+                    borders.set(node);
+                    borders.set(graph.edgeTarget(edge));
+                }
+            }
+        }
+
+        Map<Integer, Cluster> clusters = new HashMap<>();
+        Map<Integer, int[]> clusterBorders = new HashMap<>();
+        int rebuilt = 0;
+        SearchContext context = new SearchContext();
+        for (Map.Entry<Integer, List<Integer>> entry : members.entrySet()) {
+            List<Integer> nodes = entry.getValue();
+            nodes.sort(Comparator.comparingInt(graph::getDatabaseId));
+            int[] clusterBorderNodes = nodes.stream().filter(borders::get).mapToInt(Integer::intValue).toArray();
+            Cluster cluster = Cluster.describe(graph, entry.getKey(), nodes, clusterBorderNodes);
+            Cluster old = previous == null ? null : previous.clusters.get(entry.getKey());
+            if (old != null && old.hasSameStructure(cluster)) {
+                cluster = old;
+            } else {
+                cluster.computeTable(graph, context, clusterBorderNodes);
+                rebuilt++;
+            }
+            clusters.put(entry.getKey(), cluster);
+            clusterBorders.put(entry.getKey(), clusterBorderNodes);
+        }
+
+        //Die Tabellen sind nach Datenbank-IDs gespeichert und werden hier auf die Indizes dieser Graphversion übertragen
+        int[] offsets = new int[n + 1];
+        for (Map.Entry<Integer, int[]> entry : clusterBorders.entrySet()) {
+            Cluster cluster = clusters.get(entry.getKey());
+            int k = entry.getValue().length;
+            for (int from = 0; from < k; from++) {
+                for (int to = 0; to < k; to++) {
+                    if (from != to && cluster.table[from * k + to] < Double.POSITIVE_INFINITY) {
+                        offsets[entry.getValue()[from] + 1]++;
+                    }
+                }
+            }
+        }
+        for (int node = 0; node < n; node++) {
+            offsets[node + 1] += offsets[node];
+        }
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[offsets[n]];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (Map.Entry<Integer, int[]> entry : clusterBorders.entrySet()) {
+            Cluster cluster = clusters.get(entry.getKey());
+            int[] clusterBorderNodes = entry.getValue();
+            int k = clusterBorderNodes.length;
+            for (int from = 0; from < k; from++) {
+                for (int to = 0; to < k; to++) {
+                    double weight = cluster.table[from * k + to];
+                    if (from != to && weight < Double.POSITIVE_INFINITY) {
+                        int edge = next[clusterBorderNodes[from]]++;
+                        targets[edge] = clusterBorderNodes[to];
+                        weights[edge] = weight;
+                    }
+                }
+            }
+        }
+        return new ClusterHierarchy(graph.getVersion(), clusters, rebuilt, borders, clusterBorders, offsets, targets, weights);
+    }
+
+    /**
+     * Dijkstra bzw. AStar, der nur Kanten innerhalb des Clusters des jeweiligen Nodes folgt. Die Startnodes müssen
+     * bereits in der Warteschlange des Kontexts liegen.
+     *
+     * @param target  Das Ziel, bei dem die Suche endet, oder -1, um die Cluster der Startnodes vollständig abzusuchen.
+     * @param settled Die Anzahl der bisher abgeschlossenen Nodes für die Prüfung auf Abbruch.
+     * @return Die Anzahl der abgeschlossenen Nodes inklusive der bisherigen.
+     */
+    static int searchWithinClusters(RoadMapGraph graph, SearchContext context, int target, @Nullable BitSet mask, int settled) {
+        while (!context.queue.isEmpty()) {
+            int current = context.queue.poll();
+            context.close(current);
+            SearchContext.checkCancelled(++settled);
+            if (current == target) {
+                break;
+            }
+            int group = graph.getGroupId(current);
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (graph.getGroupId(child) != group || (mask != null && !mask.get(child))) {
+                    continue;
+                }
+                double g = context.g_scores[current] + graph.edgeWeight(edge);
+                context.relax(child, g, current, target < 0 ? g : g + Heuristic.EUCLIDEAN.estimate(graph, child, target));
+            }
+        }
+        return settled;
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    public boolean isBorder(int node) {
+        return borders.get(node);
+    }
+
+    /**
+     * @return Die Randnodes des Clusters als Indizes im Graphen.
+     */
+    public int[] getBorders(int groupId) {
+        int[] result = clusterBorders.get(groupId);
+        return result == null ? new int[0] : result;
+    }
+
+    public int getClusterCount() {
+        return clusters.size();
+    }
+
+    public int getBorderCount() {
+        return borders.cardinality();
+    }
+
+    /**
+     * @return Die Anzahl der Cluster, deren Kostentabelle für diese Hierarchie neu berechnet werden musste.
+     */
+    public int getRebuiltClusterCount() {
+        return rebuiltClusterCount;
+    }
+
+    public int edgeStart(int node) {
+        return offsets[node];
+    }
+
+    public int edgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double edgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Ein Cluster mit allem, wovon seine Kostentabelle abhängt. Alles ist nach Datenbank-IDs gespeichert, damit der
+     * Cluster in späteren Graphversionen wiedererkannt werden kann.
+     */
+    private static class Cluster {
+
+        private final int groupId;
+        private final int[] memberIds;
+        private final int[] borderIds;
+        /**
+         * Die Kanten innerhalb des Clusters, nach Start und Ziel sortiert. Die Kanten von memberIds[i] liegen von
+         * edgeOffsets[i] bis edgeOffsets[i + 1].
+         */
+        private final int[] edgeOffsets;
+        private final int[] edgeTargetIds;
+        private final double[] edgeWeights;
+        /**
+         * Die Kosten von borderIds[i] zu borderIds[j] an der Stelle i * borderIds.length + j.
+         */
+        private double[] table;
+
+        private Cluster(int groupId, int[] memberIds, int[] borderIds, int[] edgeOffsets, int[] edgeTargetIds, double[] edgeWeights) {
+            this.groupId = groupId;
+            this.memberIds = memberIds;
+            this.borderIds = borderIds;
+            this.edgeOffsets = edgeOffsets;
+            this.edgeTargetIds = edgeTargetIds;
+            this.edgeWeights = edgeWeights;
+        }
+
+        /**
+         * @param nodes   Die Nodes des Clusters nach Datenbank-ID sortiert.
+         * @param borders Die Randnodes des Clusters in derselben Reihenfolge.
+         */
+        static Cluster describe(RoadMapGraph graph, int groupId, List<Integer> nodes, int[] borders) {
+            int[] memberIds = new int[nodes.size()];
+            int[] edgeOffsets = new int[nodes.size() + 1];
+            List<Integer> edges = new ArrayList<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                int node = nodes.get(i);
+                memberIds[i] = graph.getDatabaseId(node);
+                int first = edges.size();
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    if (graph.getGroupId(graph.edgeTarget(edge)) == groupId) {
+                        edges.add(edge);
+                    }
+                }
+                edges.subList(first, edges.size()).sort(Comparator.comparingInt(edge -> graph.getDatabaseId(graph.edgeTarget(edge))));
+                edgeOffsets[i + 1] = edges.size();
+            }
+            int[] edgeTargetIds = new int[edges.size()];
+            double[] edgeWeights = new double[edges.size()];
+            for (int i = 0; i < edges.size(); i++) {
+                edgeTargetIds[i] = graph.getDatabaseId(graph.edgeTarget(edges.get(i)));
+                edgeWeights[i] = graph.edgeWeight(edges.get(i));
+            }
+            int[] borderIds = new int[borders.length];
+            for (int i = 0; i < borders.length; i++) {
+                borderIds[i] = graph.getDatabaseId(borders[i]);
+            }
+            return new Cluster(groupId, memberIds, borderIds, edgeOffsets, edgeTargetIds, edgeWeights);
+        }
+
+        boolean hasSameStructure(Cluster other) {
+            return groupId == other.groupId
+                    && Arrays.equals(memberIds, other.memberIds)
+                    && Arrays.equals(borderIds, other.borderIds)
+                    && Arrays.equals(edgeOffsets, other.edgeOffsets)
+                    && Arrays.equals(edgeTargetIds, other.edgeTargetIds)
+                    && Arrays.equals(edgeWeights, other.edgeWeights);
+        }
+
+        void computeTable(RoadMapGraph graph, SearchContext context, int[] borders) {
+            int k = borders.length;
+            table = new double[k * k];
+            for (int from = 0; from < k; from++) {
+                context.prepare(graph.size());
+                context.relax(borders[from], 0, -1, 0);
+                searchWithinClusters(graph, context, -1, null, 0);
+                for (int to = 0; to < k; to++) {
+                    table[from * k + to] = context.isSeen(borders[to]) ? context.g_scores[borders[to]] : Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+    }
+}
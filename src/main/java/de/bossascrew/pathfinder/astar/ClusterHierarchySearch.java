@@ -0,0 +1,162 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Hierarchische Suche über eine {@link ClusterHierarchy}. Zuerst werden die Cluster der Startnodes und des Ziels
+ * abgesucht, um sie an ihre Randnodes anzubinden. Danach läuft ein AStar nur über die Randnodes, der innerhalb eines
+ * Clusters die vorberechneten Kosten und zwischen Clustern die Kanten des Graphen verwendet. Erst für die gefundene
+ * grobe Route wird in den durchquerten Clustern der genaue Weg gesucht.
+ * Die Kostentabellen kennen keine Maske. Wird ein Abschnitt durch die Maske teurer oder unmöglich, wird stattdessen
+ * ein einfacher AStar ausgeführt.
+ */
+public class ClusterHierarchySearch implements PathSearch {
+
+    private static final ThreadLocal<SearchContext[]> CONTEXT = ThreadLocal.withInitial(() -> new SearchContext[]{
+            new SearchContext(), new SearchContext(), new SearchContext(), new SearchContext()
+    });
+
+    private final ClusterHierarchy hierarchy;
+    private int settledCount = 0;
+
+    public ClusterHierarchySearch(ClusterHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        settledCount = 0;
+        if (goal < 0 || (mask != null && !mask.get(goal))) {
+            return null;
+        }
+        SearchContext[] contexts = CONTEXT.get();
+        SearchContext start = contexts[0];
+        SearchContext end = contexts[1];
+        SearchContext coarse = contexts[2];
+        SearchContext refine = contexts[3];
+        int n = graph.size();
+
+        //Die Cluster der Startnodes und des Ziels vollständig absuchen, um die Kosten zu ihren Randnodes zu kennen
+        start.prepare(n);
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            start.relax(source, sourceCosts[i], -1, sourceCosts[i]);
+        }
+        settledCount = ClusterHierarchy.searchWithinClusters(graph, start, -1, mask, settledCount);
+        end.prepare(n);
+        end.relax(goal, 0, -1, 0);
+        settledCount = ClusterHierarchy.searchWithinClusters(graph, end, -1, mask, settledCount);
+
+        //Grobe Suche über die Randnodes, der zusätzliche Node n steht für das Ziel
+        int virtualGoal = n;
+        coarse.prepare(n + 1);
+        if (start.isSeen(goal)) {
+            coarse.relax(virtualGoal, start.g_scores[goal], -1, start.g_scores[goal]);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] < 0) {
+                continue;
+            }
+            for (int border : hierarchy.getBorders(graph.getGroupId(sources[i]))) {
+                if (start.isSeen(border)) {
+                    double g = start.g_scores[border];
+                    coarse.relax(border, g, -1, g + Heuristic.EUCLIDEAN.estimate(graph, border, goal));
+                }
+            }
+        }
+        while (!coarse.queue.isEmpty()) {
+            int current = coarse.queue.poll();
+            coarse.close(current);
+            SearchContext.checkCancelled(++settledCount);
+            if (current == virtualGoal) {
+                break;
+            }
+            double currentG = coarse.g_scores[current];
+            if (end.isSeen(current)) {
+                double g = currentG + end.g_scores[current];
+                coarse.relax(virtualGoal, g, current, g);
+            }
+            for (int edge = hierarchy.edgeStart(current); edge < hierarchy.edgeEnd(current); edge++) {
+                int child = hierarchy.edgeTarget(edge);
+                if (mask == null || mask.get(child)) {
+                    double g = currentG + hierarchy.edgeWeight(edge);
+                    coarse.relax(child, g, current, g + Heuristic.EUCLIDEAN.estimate(graph, child, goal));
+                }
+            }
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (graph.getGroupId(child) != graph.getGroupId(current) && (mask == null || mask.get(child))) {
+                    double g = currentG + graph.edgeWeight(edge);
+                    coarse.relax(child, g, current, g + Heuristic.EUCLIDEAN.estimate(graph, child, goal));
+                }
+            }
+        }
+        if (!coarse.isSeen(virtualGoal)) {
+            return null;
+        }
+
+        int[] route = coarse.buildPath(virtualGoal);
+        if (route.length == 1) {
+            return start.buildPath(goal);
+        }
+        List<int[]> segments = new ArrayList<>();
+        segments.add(start.buildPath(route[0]));
+        for (int i = 1; i < route.length - 1; i++) {
+            int from = route[i - 1];
+            int to = route[i];
+            if (graph.getGroupId(from) != graph.getGroupId(to)) {
+                segments.add(new int[]{to});
+                continue;
+            }
+            //Verfeinern innerhalb des Clusters, die Maske kann den Weg gegenüber der Tabelle verlängern
+            refine.prepare(n);
+            refine.relax(from, 0, -1, 0);
+            settledCount = ClusterHierarchy.searchWithinClusters(graph, refine, to, mask, settledCount);
+            if (!refine.isSeen(to) || refine.g_scores[to] > coarse.g_scores[to] - coarse.g_scores[from] + 1e-9) {
+                AStar fallback = new AStar();
+                int[] result = fallback.search(graph, sources, sourceCosts, goal, mask);
+                settledCount += fallback.getSettledCount();
+                return result;
+            }
+            int[] segment = refine.buildPath(to);
+            int[] tail = new int[segment.length - 1];
+            System.arraycopy(segment, 1, tail, 0, tail.length);
+            segments.add(tail);
+        }
+        int last = route[route.length - 2];
+        int tailLength = 0;
+        for (int node = end.parents[last]; node != -1; node = end.parents[node]) {
+            tailLength++;
+        }
+        int[] tail = new int[tailLength];
+        int position = 0;
+        for (int node = end.parents[last]; node != -1; node = end.parents[node]) {
+            tail[position++] = node;
+        }
+        segments.add(tail);
+
+        int length = 0;
+        for (int[] segment : segments) {
+            length += segment.length;
+        }
+        int[] path = new int[length];
+        position = 0;
+        for (int[] segment : segments) {
+            System.arraycopy(segment, 0, path, position, segment.length);
+            position += segment.length;
+        }
+        return path;
+    }
+
+    @Override
+    public int getSettledCount() {
+        return settledCount;
+    }
+}
@@ -0,0 +1,204 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.*;
+
+/**
+ * Zusammenhangskomponenten einer Straßenkarte als Union-Find über die Datenbank-IDs der Nodes. Damit kann vor einer
+ * Suche in O(1) erkannt werden, dass das Ziel von keinem Start aus erreichbar ist, statt erst den ganzen erreichbaren
+ * Teil des Graphen abzusuchen. Neue Kanten werden direkt vereinigt, getrennte Kanten erfordern ein Neuberechnen.
+ * Nodes, die noch nicht bekannt sind, bilden eine eigene Komponente. Threadsafe.
+ * Intern hat jeder Node einen fortlaufenden Index, nach {@link #compute} ist das der Index im Graphen. Die Zuordnung
+ * der IDs liegt in einer offenen Hashtabelle mit linearem Sondieren wie bei {@link IntSet}, Eltern und Größen in
+ * int Arrays ohne Boxing.
+ */
+public class ConnectedComponents {
+
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Die Datenbank-IDs und ihr Index an derselben Stelle, FREE für leere Plätze.
+     */
+    private int[] ids;
+    private int[] indices;
+    private int[] parents;
+    private int[] sizes;
+    private int nodeCount = 0;
+    private int componentCount = 0;
+
+    public ConnectedComponents() {
+        this(INITIAL_CAPACITY);
+    }
+
+    private ConnectedComponents(int expectedNodes) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedNodes * 2) {
+            capacity *= 2;
+        }
+        ids = new int[capacity];
+        indices = new int[capacity];
+        Arrays.fill(ids, FREE);
+        parents = new int[Math.max(expectedNodes, INITIAL_CAPACITY)];
+        sizes = new int[parents.length];
+    }
+
+    /**
+     * Kanten werden ungerichtet betrachtet.
+     */
+    public static ConnectedComponents compute(RoadMapGraph graph) {
+        ConnectedComponents components = new ConnectedComponents(graph.size());
+        for (int node = 0; node < graph.size(); node++) {
+            components.index(graph.getDatabaseId(node));
+        }
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                components.unionIndices(node, graph.edgeTarget(edge));
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Trägt einen Node ohne Kanten als eigene Komponente ein.
+     */
+    public synchronized void add(int databaseId) {
+        index(databaseId);
+    }
+
+    /**
+     * Vereinigt die Komponenten zweier Nodes, z.B. nachdem sie verbunden wurden.
+     */
+    public synchronized void union(int a, int b) {
+        unionIndices(index(a), index(b));
+    }
+
+    public synchronized boolean isConnected(int a, int b) {
+        if (a == b) {
+            return true;
+        }
+        int indexA = indexOf(a);
+        int indexB = indexOf(b);
+        if (indexA < 0 || indexB < 0) {
+            return false;
+        }
+        return find(indexA) == find(indexB);
+    }
+
+    /**
+     * @return Die Anzahl der Nodes in der Komponente des Nodes.
+     */
+    public synchronized int getComponentSize(int databaseId) {
+        int index = indexOf(databaseId);
+        return index < 0 ? 1 : sizes[find(index)];
+    }
+
+    public synchronized int getComponentCount() {
+        return componentCount;
+    }
+
+    /**
+     * @return Die Größen aller Komponenten absteigend sortiert.
+     */
+    public synchronized List<Integer> getComponentSizes() {
+        List<Integer> result = new ArrayList<>(componentCount);
+        for (int i = 0; i < nodeCount; i++) {
+            if (parents[i] == i) {
+                result.add(sizes[i]);
+            }
+        }
+        result.sort(Comparator.reverseOrder());
+        return result;
+    }
+
+    private void unionIndices(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (sizes[rootA] < sizes[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parents[rootB] = rootA;
+        sizes[rootA] += sizes[rootB];
+        componentCount--;
+    }
+
+    private int find(int index) {
+        int node = index;
+        while (parents[node] != node) {
+            //Pfadhalbierung: jeder zweite Node zeigt danach direkt auf seinen Großelternknoten
+            parents[node] = parents[parents[node]];
+            node = parents[node];
+        }
+        return node;
+    }
+
+    /**
+     * @return Den Index der ID oder -1, wenn sie nicht bekannt ist.
+     */
+    private int indexOf(int databaseId) {
+        int slot = slot(databaseId);
+        return ids[slot] == databaseId ? indices[slot] : -1;
+    }
+
+    /**
+     * @return Den Index der ID, unbekannte IDs werden als eigene Komponente eingetragen.
+     */
+    private int index(int databaseId) {
+        if (databaseId == FREE) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE kann nicht gespeichert werden.");
+        }
+        int slot = slot(databaseId);
+        if (ids[slot] == databaseId) {
+            return indices[slot];
+        }
+        //Höchstens halb voll, damit die Sondierungsketten kurz bleiben
+        if ((nodeCount + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+            slot = slot(databaseId);
+        }
+        if (nodeCount == parents.length) {
+            parents = Arrays.copyOf(parents, parents.length * 2);
+            sizes = Arrays.copyOf(sizes, sizes.length * 2);
+        }
+        int index = nodeCount++;
+        ids[slot] = databaseId;
+        indices[slot] = index;
+        parents[index] = index;
+        sizes[index] = 1;
+        componentCount++;
+        return index;
+    }
+
+    private int slot(int databaseId) {
+        int mask = ids.length - 1;
+        int slot = hash(databaseId) & mask;
+        while (ids[slot] != FREE && ids[slot] != databaseId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = ids;
+        int[] oldIndices = indices;
+        ids = new int[capacity];
+        indices = new int[capacity];
+        Arrays.fill(ids, FREE);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != FREE) {
+                int slot = slot(oldIds[i]);
+                ids[slot] = oldIds[i];
+                indices[slot] = oldIndices[i];
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
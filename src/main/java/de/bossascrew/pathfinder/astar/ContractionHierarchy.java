@@ -0,0 +1,355 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Arrays;
+
+/**
+ * Vorberechnete Contraction Hierarchy eines {@link RoadMapGraph}. Die Nodes werden nach Wichtigkeit geordnet und
+ * nacheinander entfernt. Fällt dabei ein kürzester Weg über den entfernten Node weg, wird er durch eine Abkürzung
+ * ersetzt. Gespeichert werden nur Kanten zu wichtigeren Nodes, eine Suche läuft deshalb von beiden Enden nur
+ * "aufwärts" und erreicht nur einen Bruchteil des Graphen.
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion,
+ * aus der sie berechnet wurde. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class ContractionHierarchy {
+
+    /**
+     * Die Anzahl der Nodes, nach der eine Zeugensuche abgebrochen wird. Ohne Zeugen wird eine Abkürzung eingefügt,
+     * eine zu kleine Grenze erzeugt also nur unnötige Abkürzungen, aber keine falschen Wege.
+     * Für die Priorität reicht eine grobe Schätzung, deshalb wird dort früher abgebrochen.
+     */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int SIMULATION_SETTLE_LIMIT = 15;
+
+    private final long graphVersion;
+    private final int[] ranks;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    /**
+     * Der übersprungene Node einer Abkürzung oder -1 für eine Kante des ursprünglichen Graphen.
+     */
+    private final int[] middles;
+
+    private ContractionHierarchy(long graphVersion, int[] ranks, int[] offsets, int[] targets, double[] weights, int[] middles) {
+        this.graphVersion = graphVersion;
+        this.ranks = ranks;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.middles = middles;
+    }
+
+    /**
+     * Ordnet die Nodes nach Kantendifferenz (eingefügte Abkürzungen - entfernte Kanten), der Anzahl bereits
+     * kontrahierter Nachbarn und ihrer Ebene in der Hierarchie und kontrahiert sie in dieser Reihenfolge.
+     * Die Priorität wird nur beim Entnehmen neu berechnet und der Node ggf. zurückgelegt (Lazy Update).
+     * Aufwendig, sollte asynchron laufen.
+     */
+    public static ContractionHierarchy compute(RoadMapGraph graph) {
+        return new Contractor(graph).contract();
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    public int getRank(int node) {
+        return ranks[node];
+    }
+
+    /**
+     * @return Die Anzahl der gespeicherten Aufwärtskanten inklusive Abkürzungen.
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public int getShortcutCount() {
+        int count = 0;
+        for (int middle : middles) {
+            if (middle != -1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int edgeStart(int node) {
+        return offsets[node];
+    }
+
+    public int edgeEnd(int node) {
+        return offsets[node + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double edgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Ersetzt alle Abkürzungen eines Pfades durch die Nodes, die sie überspringen.
+     *
+     * @param path Die Nodes eines Pfades, bei dem zwei aufeinanderfolgende Nodes über eine Aufwärtskante verbunden sind.
+     * @return Den Pfad über die Kanten des ursprünglichen Graphen.
+     */
+    public int[] unpack(int[] path) {
+        if (path.length == 0) {
+            return path;
+        }
+        int[] result = new int[path.length * 2];
+        int size = 0;
+        result[size++] = path[0];
+
+        //Abkürzungen werden über einen Stapel statt rekursiv aufgelöst, lange Ketten könnten sonst den Stack sprengen
+        int[] stack = new int[16];
+        for (int i = 1; i < path.length; i++) {
+            int stackSize = 0;
+            stack[stackSize++] = path[i];
+            int current = path[i - 1];
+            while (stackSize > 0) {
+                int next = stack[stackSize - 1];
+                int middle = middles[findEdge(current, next)];
+                if (middle == -1) {
+                    if (size == result.length) {
+                        result = Arrays.copyOf(result, size * 2);
+                    }
+                    result[size++] = next;
+                    current = next;
+                    stackSize--;
+                } else {
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = middle;
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private int findEdge(int a, int b) {
+        int lower = ranks[a] < ranks[b] ? a : b;
+        int higher = lower == a ? b : a;
+        for (int edge = offsets[lower]; edge < offsets[lower + 1]; edge++) {
+            if (targets[edge] == higher) {
+                return edge;
+            }
+        }
+        throw new IllegalArgumentException("Keine Kante zwischen " + a + " und " + b);
+    }
+
+    /**
+     * Veränderlicher Zustand während der Kontraktion. Jeder Node hat eine Liste seiner noch nicht kontrahierten Nachbarn,
+     * pro Nachbar gibt es höchstens einen Eintrag mit den geringsten Kosten.
+     */
+    private static class Contractor {
+
+        private final RoadMapGraph graph;
+        private final int n;
+        private final int[][] neighbours;
+        private final double[][] neighbourWeights;
+        private final int[][] neighbourMiddles;
+        private final int[] degrees;
+        private final int[] contractedNeighbours;
+        private final int[] levels;
+        private final SearchContext witness = new SearchContext();
+
+        private final int[] ranks;
+        private int[][] upTargets;
+        private double[][] upWeights;
+        private int[][] upMiddles;
+
+        Contractor(RoadMapGraph graph) {
+            this.graph = graph;
+            this.n = graph.size();
+            this.neighbours = new int[n][];
+            this.neighbourWeights = new double[n][];
+            this.neighbourMiddles = new int[n][];
+            this.degrees = new int[n];
+            this.contractedNeighbours = new int[n];
+            this.levels = new int[n];
+            this.ranks = new int[n];
+            this.upTargets = new int[n][];
+            this.upWeights = new double[n][];
+            this.upMiddles = new int[n][];
+
+            for (int node = 0; node < n; node++) {
+                int capacity = Math.max(4, graph.edgeEnd(node) - graph.edgeStart(node));
+                neighbours[node] = new int[capacity];
+                neighbourWeights[node] = new double[capacity];
+                neighbourMiddles[node] = new int[capacity];
+            }
+            for (int node = 0; node < n; node++) {
+                for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                    setEdge(node, graph.edgeTarget(edge), graph.edgeWeight(edge), -1);
+                }
+            }
+        }
+
+        ContractionHierarchy contract() {
+            IndexedMinHeap queue = new IndexedMinHeap();
+            queue.reset(n);
+            for (int node = 0; node < n; node++) {
+                queue.insertOrDecrease(node, priority(node));
+            }
+
+            int rank = 0;
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                //Lazy Update: Hat sich die Priorität verschlechtert, kommt der Node zurück in die Warteschlange
+                double priority = priority(node);
+                if (!queue.isEmpty() && priority > queue.peekKey()) {
+                    queue.insertOrDecrease(node, priority);
+                    continue;
+                }
+
+                int degree = degrees[node];
+                upTargets[node] = Arrays.copyOf(neighbours[node], degree);
+                upWeights[node] = Arrays.copyOf(neighbourWeights[node], degree);
+                upMiddles[node] = Arrays.copyOf(neighbourMiddles[node], degree);
+
+                contractNode(node, true);
+                ranks[node] = rank++;
+
+                for (int i = 0; i < degree; i++) {
+                    int neighbour = upTargets[node][i];
+                    removeEdge(neighbour, node);
+                    contractedNeighbours[neighbour]++;
+                    levels[neighbour] = Math.max(levels[neighbour], levels[node] + 1);
+                }
+            }
+            return build();
+        }
+
+        private double priority(int node) {
+            int edgeDifference = contractNode(node, false) - degrees[node];
+            return 4 * edgeDifference + 2 * contractedNeighbours[node] + levels[node];
+        }
+
+        /**
+         * Sucht für jedes Paar von Nachbarn einen Zeugenweg, der nicht über den Node führt.
+         *
+         * @param apply true, wenn fehlende Wege als Abkürzungen eingefügt werden sollen.
+         * @return Die Anzahl der benötigten Abkürzungen.
+         */
+        private int contractNode(int node, boolean apply) {
+            int degree = degrees[node];
+            int[] nodeNeighbours = Arrays.copyOf(neighbours[node], degree);
+            double[] nodeWeights = Arrays.copyOf(neighbourWeights[node], degree);
+            double maxWeight = 0;
+            for (int i = 0; i < degree; i++) {
+                maxWeight = Math.max(maxWeight, nodeWeights[i]);
+            }
+
+            int shortcuts = 0;
+            for (int i = 0; i < degree; i++) {
+                int source = nodeNeighbours[i];
+                witnessSearch(source, node, nodeWeights[i] + maxWeight, nodeNeighbours, i + 1,
+                        apply ? WITNESS_SETTLE_LIMIT : SIMULATION_SETTLE_LIMIT);
+                for (int j = i + 1; j < degree; j++) {
+                    int target = nodeNeighbours[j];
+                    double viaNode = nodeWeights[i] + nodeWeights[j];
+                    if (witness.isSeen(target) && witness.g_scores[target] <= viaNode) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (apply) {
+                        setEdge(source, target, viaNode, node);
+                        setEdge(target, source, viaNode, node);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Begrenzte Dijkstra Suche über die noch nicht kontrahierten Nodes ohne den ausgeschlossenen Node.
+         * Endet, sobald alle gesuchten Nachbarn ab targetsFrom abgeschlossen sind.
+         */
+        private void witnessSearch(int source, int excluded, double maxCost, int[] targets, int targetsFrom, int settleLimit) {
+            witness.prepare(n);
+            witness.relax(source, 0, -1, 0);
+            int remaining = targets.length - targetsFrom;
+            int settled = 0;
+            while (remaining > 0 && !witness.queue.isEmpty() && settled++ < settleLimit) {
+                if (witness.queue.peekKey() > maxCost) {
+                    break;
+                }
+                int current = witness.queue.poll();
+                witness.close(current);
+                for (int i = targetsFrom; i < targets.length; i++) {
+                    if (targets[i] == current) {
+                        remaining--;
+                        break;
+                    }
+                }
+                for (int i = 0; i < degrees[current]; i++) {
+                    int child = neighbours[current][i];
+                    if (child == excluded || witness.isClosed(child)) {
+                        continue;
+                    }
+                    double g = witness.g_scores[current] + neighbourWeights[current][i];
+                    witness.relax(child, g, current, g);
+                }
+            }
+        }
+
+        private void setEdge(int from, int to, double weight, int middle) {
+            int degree = degrees[from];
+            for (int i = 0; i < degree; i++) {
+                if (neighbours[from][i] == to) {
+                    if (weight < neighbourWeights[from][i]) {
+                        neighbourWeights[from][i] = weight;
+                        neighbourMiddles[from][i] = middle;
+                    }
+                    return;
+                }
+            }
+            if (degree == neighbours[from].length) {
+                neighbours[from] = Arrays.copyOf(neighbours[from], degree * 2);
+                neighbourWeights[from] = Arrays.copyOf(neighbourWeights[from], degree * 2);
+                neighbourMiddles[from] = Arrays.copyOf(neighbourMiddles[from], degree * 2);
+            }
+            neighbours[from][degree] = to;
+            neighbourWeights[from][degree] = weight;
+            neighbourMiddles[from][degree] = middle;
+            degrees[from]++;
+        }
+
+        private void removeEdge(int from, int to) {
+            int last = degrees[from] - 1;
+            for (int i = 0; i <= last; i++) {
+                if (neighbours[from][i] == to) {
+                    neighbours[from][i] = neighbours[from][last];
+                    neighbourWeights[from][i] = neighbourWeights[from][last];
+                    neighbourMiddles[from][i] = neighbourMiddles[from][last];
+                    degrees[from]--;
+                    return;
+                }
+            }
+        }
+
+        private ContractionHierarchy build() {
+            int[] offsets = new int[n + 1];
+            for (int node = 0; node < n; node++) {
+                offsets[node + 1] = offsets[node] + upTargets[node].length;
+            }
+            int[] targets = new int[offsets[n]];
+            double[] weights = new double[offsets[n]];
+            int[] middles = new int[offsets[n]];
+            for (int node = 0; node < n; node++) {
+                System.arraycopy(upTargets[node], 0, targets, offsets[node], upTargets[node].length);
+                System.arraycopy(upWeights[node], 0, weights, offsets[node], upWeights[node].length);
+                System.arraycopy(upMiddles[node], 0, middles, offsets[node], upMiddles[node].length);
+            }
+            upTargets = null;
+            upWeights = null;
+            upMiddles = null;
+            return new ContractionHierarchy(graph.getVersion(), ranks, offsets, targets, weights, middles);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Bidirektionale Aufwärtssuche in einer {@link ContractionHierarchy}. Von den Startnodes und vom Ziel aus werden nur
+ * Kanten zu wichtigeren Nodes verfolgt, der kürzeste Weg führt über den wichtigsten Node, an dem sich beide Suchen treffen.
+ * Abkürzungen überspringen Nodes, deshalb kann eine Maske nicht während der Suche beachtet werden. Führt der gefundene
+ * Weg über einen ausgeschlossenen Node, wird stattdessen ein einfacher AStar ausgeführt.
+ */
+public class ContractionHierarchySearch implements PathSearch {
+
+    private static final ThreadLocal<SearchContext[]> CONTEXT = ThreadLocal.withInitial(() -> new SearchContext[]{
+            new SearchContext(), new SearchContext()
+    });
+
+    private final ContractionHierarchy hierarchy;
+    private int settledCount = 0;
+
+    public ContractionHierarchySearch(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        settledCount = 0;
+        if (goal < 0 || (mask != null && !mask.get(goal))) {
+            return null;
+        }
+        SearchContext[] contexts = CONTEXT.get();
+        SearchContext forward = contexts[0];
+        SearchContext backward = contexts[1];
+        forward.prepare(graph.size());
+        backward.prepare(graph.size());
+
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            forward.relax(source, sourceCosts[i], -1, sourceCosts[i]);
+        }
+        backward.relax(goal, 0, -1, 0);
+
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        boolean forwardDone = forward.queue.isEmpty();
+        boolean backwardDone = false;
+        boolean alternate = true;
+        while (!forwardDone || !backwardDone) {
+            //Eine Richtung ist fertig, sobald ihr kleinster Schlüssel den besten Weg nicht mehr unterbieten kann
+            if (!forwardDone && (forward.queue.isEmpty() || forward.queue.peekKey() >= best)) {
+                forwardDone = true;
+            }
+            if (!backwardDone && (backward.queue.isEmpty() || backward.queue.peekKey() >= best)) {
+                backwardDone = true;
+            }
+            if (forwardDone && backwardDone) {
+                break;
+            }
+            boolean expandForward = backwardDone || (!forwardDone && alternate);
+            alternate = !alternate;
+            SearchContext own = expandForward ? forward : backward;
+            SearchContext other = expandForward ? backward : forward;
+
+            int current = own.queue.poll();
+            own.close(current);
+            SearchContext.checkCancelled(++settledCount);
+            if (other.isSeen(current) && own.g_scores[current] + other.g_scores[current] < best) {
+                best = own.g_scores[current] + other.g_scores[current];
+                meeting = current;
+            }
+            for (int edge = hierarchy.edgeStart(current); edge < hierarchy.edgeEnd(current); edge++) {
+                int child = hierarchy.edgeTarget(edge);
+                double g = own.g_scores[current] + hierarchy.edgeWeight(edge);
+                own.relax(child, g, current, g);
+            }
+        }
+        if (meeting == -1) {
+            return null;
+        }
+
+        int[] head = forward.buildPath(meeting);
+        int tailLength = 0;
+        for (int node = backward.parents[meeting]; node != -1; node = backward.parents[node]) {
+            tailLength++;
+        }
+        int[] path = new int[head.length + tailLength];
+        System.arraycopy(head, 0, path, 0, head.length);
+        int i = head.length;
+        for (int node = backward.parents[meeting]; node != -1; node = backward.parents[node]) {
+            path[i++] = node;
+        }
+        path = hierarchy.unpack(path);
+
+        if (mask != null) {
+            for (int node : path) {
+                if (!mask.get(node)) {
+                    AStar fallback = new AStar();
+                    int[] result = fallback.search(graph, sources, sourceCosts, goal, mask);
+                    settledCount += fallback.getSettledCount();
+                    return result;
+                }
+            }
+        }
+        return path;
+    }
+
+    @Override
+    public int getSettledCount() {
+        return settledCount;
+    }
+}
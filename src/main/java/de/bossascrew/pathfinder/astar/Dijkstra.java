@@ -0,0 +1,78 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Dijkstra Suchen ohne festes Ziel, z.B. für Vorberechnungen oder die Suche nach dem nächstgelegenen Findable einer Art.
+ */
+public class Dijkstra {
+
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
+    /**
+     * @return Die Kosten vom Startnode zu jedem Node des Graphen, {@link Double#POSITIVE_INFINITY} für unerreichbare Nodes.
+     */
+    public static double[] distances(RoadMapGraph graph, int source) {
+        double[] distances = new double[graph.size()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        IndexedMinHeap queue = new IndexedMinHeap();
+        queue.reset(graph.size());
+
+        distances[source] = 0;
+        queue.insertOrDecrease(source, 0);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                double distance = distances[current] + graph.edgeWeight(edge);
+                if (distance < distances[child]) {
+                    distances[child] = distance;
+                    queue.insertOrDecrease(child, distance);
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Sucht von mehreren Startnodes aus das Ziel mit den geringsten Kosten. Die Suche endet, sobald das erste Ziel
+     * abgeschlossen ist, und betritt damit nur die Nodes, die näher liegen als das gefundene Ziel.
+     *
+     * @param targets Die möglichen Ziele als Indizes im Graphen.
+     * @return Die Indizes der Nodes vom Startnode bis zum nächstgelegenen Ziel oder null, wenn kein Ziel erreichbar ist.
+     * @throws SearchCancelledException Wenn der Thread der Suche unterbrochen wurde.
+     */
+    public static @Nullable
+    int[] nearest(RoadMapGraph graph, int[] sources, double[] sourceCosts, BitSet targets, @Nullable BitSet mask) {
+        if (targets.isEmpty()) {
+            return null;
+        }
+        SearchContext context = CONTEXT.get();
+        context.prepare(graph.size());
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] >= 0 && (mask == null || mask.get(sources[i]))) {
+                context.relax(sources[i], sourceCosts[i], -1, sourceCosts[i]);
+            }
+        }
+        int settled = 0;
+        while (!context.queue.isEmpty()) {
+            int current = context.queue.poll();
+            context.close(current);
+            SearchContext.checkCancelled(++settled);
+            if (targets.get(current)) {
+                return context.buildPath(current);
+            }
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
+                }
+                double g = context.g_scores[current] + graph.edgeWeight(edge);
+                context.relax(child, g, current, g);
+            }
+        }
+        return null;
+    }
+}
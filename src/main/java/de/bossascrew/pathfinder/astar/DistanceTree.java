@@ -0,0 +1,98 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Baum kürzester Wege von einer Position aus, z.B. um alle Einträge eines Menüs nach ihrer Weglänge vom Spieler zu
+ * sortieren. Jeder Node kennt seine Kosten vom Start und seinen Vorgänger, ein Pfad zu einem beliebigen Ziel kostet
+ * daher nur O(Pfadlänge). Gilt nur für die Graphversion und Maske, mit der er berechnet wurde.
+ * Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class DistanceTree {
+
+    private final long graphVersion;
+    private final double[] distances;
+    private final int[] parents;
+
+    private DistanceTree(long graphVersion, double[] distances, int[] parents) {
+        this.graphVersion = graphVersion;
+        this.distances = distances;
+        this.parents = parents;
+    }
+
+    /**
+     * Dijkstra Suche von mehreren Startnodes aus über alle erlaubten Nodes.
+     *
+     * @param sourceCosts Die Kosten von der Position bis zum jeweiligen Startnode.
+     * @param mask        Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @throws SearchCancelledException Wenn der Thread der Suche unterbrochen wurde.
+     */
+    public static DistanceTree compute(RoadMapGraph graph, int[] sources, double[] sourceCosts, @Nullable BitSet mask) {
+        int n = graph.size();
+        double[] distances = new double[n];
+        int[] parents = new int[n];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+
+        IndexedMinHeap queue = new IndexedMinHeap();
+        queue.reset(n);
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source)) || sourceCosts[i] >= distances[source]) {
+                continue;
+            }
+            distances[source] = sourceCosts[i];
+            queue.insertOrDecrease(source, sourceCosts[i]);
+        }
+        int settled = 0;
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            SearchContext.checkCancelled(++settled);
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
+                }
+                double distance = distances[current] + graph.edgeWeight(edge);
+                if (distance < distances[child]) {
+                    distances[child] = distance;
+                    parents[child] = current;
+                    queue.insertOrDecrease(child, distance);
+                }
+            }
+        }
+        return new DistanceTree(graph.getVersion(), distances, parents);
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /**
+     * @return Die Kosten vom Start zum Node, {@link Double#POSITIVE_INFINITY} wenn er nicht erreichbar ist.
+     */
+    public double getDistance(int node) {
+        return distances[node];
+    }
+
+    /**
+     * @return Die Nodes vom Startnode bis zum Ziel oder null, wenn das Ziel nicht erreichbar ist.
+     */
+    public @Nullable
+    int[] pathTo(int target) {
+        if (distances[target] == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+        int length = 0;
+        for (int node = target; node != -1; node = parents[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = target; node != -1; node = parents[node]) {
+            path[--length] = node;
+        }
+        return path;
+    }
+}
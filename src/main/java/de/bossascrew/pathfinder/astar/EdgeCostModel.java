@@ -0,0 +1,29 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Bestimmt die Kosten einer Kante. Die Kosten werden beim Kompilieren des {@link RoadMapGraph} einmal pro Kante
+ * berechnet und gespeichert, eine Suche liest sie nur noch aus.
+ */
+public interface EdgeCostModel {
+
+    /**
+     * Die Kosten entsprechen der Länge der Kante.
+     */
+    EdgeCostModel EUCLIDEAN = (length, ax, ay, az, aGroupId, bx, by, bz, bGroupId) -> length;
+
+    /**
+     * @param length   Die euklidische Länge der Kante.
+     * @param aGroupId Die Gruppe des Startnodes oder {@link RoadMapGraph#NO_GROUP}.
+     * @param bGroupId Die Gruppe des Zielnodes oder {@link RoadMapGraph#NO_GROUP}.
+     * @return Die Kosten, um die Kante von a nach b zu begehen.
+     */
+    double getCost(double length, double ax, double ay, double az, int aGroupId, double bx, double by, double bz, int bGroupId);
+
+    /**
+     * Die Luftlinie wird mit diesem Faktor multipliziert, um die Restkosten abzuschätzen. Damit der AStar den kürzesten
+     * Weg findet, darf der Faktor nicht größer sein als das kleinste Verhältnis von Kosten zu Länge einer Kante.
+     */
+    default double getHeuristicFactor() {
+        return 1;
+    }
+}
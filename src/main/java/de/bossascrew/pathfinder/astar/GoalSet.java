@@ -0,0 +1,143 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Alle Nodes einer Gruppe als gemeinsames Ziel einer Suche, z.B. die Eingänge eines Marktes, oder die Nodes eines
+ * bestehenden Pfades, auf den ein Spieler zurückkehren soll.
+ * Die Restkosten werden über die Entfernung zur Bounding Box aller Mitglieder abgeschätzt, die nie größer ist als
+ * die Entfernung zum nächstgelegenen Mitglied. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class GoalSet {
+
+    private final int groupId;
+    private final BitSet goals;
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double maxX;
+    private final double maxY;
+    private final double maxZ;
+    /**
+     * Die Ziele aufsteigend sortiert mit den Kosten, die ab dem jeweiligen Ziel noch anfallen. null, wenn alle Ziele
+     * gleichwertig sind.
+     */
+    private final @Nullable int[] costNodes;
+    private final @Nullable double[] remainingCosts;
+
+    private GoalSet(int groupId, BitSet goals, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this(groupId, goals, minX, minY, minZ, maxX, maxY, maxZ, null, null);
+    }
+
+    private GoalSet(int groupId, BitSet goals, double minX, double minY, double minZ, double maxX, double maxY, double maxZ,
+                    @Nullable int[] costNodes, @Nullable double[] remainingCosts) {
+        this.groupId = groupId;
+        this.goals = goals;
+        this.costNodes = costNodes;
+        this.remainingCosts = remainingCosts;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+
+    /**
+     * @return Die Mitglieder der Gruppe mit ihrer Bounding Box. Leer, wenn kein Node der Gruppe angehört.
+     */
+    static GoalSet ofGroup(RoadMapGraph graph, int groupId) {
+        BitSet goals = new BitSet(graph.size());
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < graph.size(); i++) {
+            if (graph.getGroupId(i) != groupId) {
+                continue;
+            }
+            goals.set(i);
+            minX = Math.min(minX, graph.getX(i));
+            minY = Math.min(minY, graph.getY(i));
+            minZ = Math.min(minZ, graph.getZ(i));
+            maxX = Math.max(maxX, graph.getX(i));
+            maxY = Math.max(maxY, graph.getY(i));
+            maxZ = Math.max(maxZ, graph.getZ(i));
+        }
+        return new GoalSet(groupId, goals, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Die Nodes eines Pfades als Ziele, z.B. um einen Spieler, der die Route verlassen hat, auf sie zurückzuführen.
+     * Gewählt wird das Ziel mit den geringsten Gesamtkosten inklusive der Kosten, die ab dort noch anfallen, sodass
+     * der Spieler nicht auf ein bereits zurückgelegtes Stück geführt wird.
+     *
+     * @param nodes          Die Indizes der Nodes, -1 für Nodes, die nicht mehr im Graphen sind.
+     * @param remainingCosts Die Kosten vom jeweiligen Node bis zum Ende des Pfades. Unendlich, wenn der Node nicht
+     *                       mehr verwendet werden kann.
+     */
+    public static GoalSet ofPath(RoadMapGraph graph, int[] nodes, double[] remainingCosts) {
+        BitSet goals = new BitSet(graph.size());
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodes.length; i++) {
+            int node = nodes[i];
+            if (node < 0 || remainingCosts[i] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            goals.set(node);
+            minX = Math.min(minX, graph.getX(node));
+            minY = Math.min(minY, graph.getY(node));
+            minZ = Math.min(minZ, graph.getZ(node));
+            maxX = Math.max(maxX, graph.getX(node));
+            maxY = Math.max(maxY, graph.getY(node));
+            maxZ = Math.max(maxZ, graph.getZ(node));
+        }
+        int[] costNodes = goals.stream().toArray();
+        double[] costs = new double[costNodes.length];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < nodes.length; i++) {
+            int position = nodes[i] < 0 ? -1 : Arrays.binarySearch(costNodes, nodes[i]);
+            if (position >= 0) {
+                costs[position] = Math.min(costs[position], remainingCosts[i]);
+            }
+        }
+        return new GoalSet(RoadMapGraph.NO_GROUP, goals, minX, minY, minZ, maxX, maxY, maxZ, costNodes, costs);
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public boolean contains(int node) {
+        return goals.get(node);
+    }
+
+    public boolean isEmpty() {
+        return goals.isEmpty();
+    }
+
+    public int size() {
+        return goals.cardinality();
+    }
+
+    /**
+     * @return Die Kosten, die ab dem Ziel noch anfallen, 0 für gleichwertige Ziele.
+     */
+    public double getRemainingCost(int goal) {
+        if (costNodes == null) {
+            return 0;
+        }
+        return remainingCosts[Arrays.binarySearch(costNodes, goal)];
+    }
+
+    /**
+     * @return Eine zulässige Abschätzung der Kosten vom Node bis zum nächstgelegenen Mitglied.
+     */
+    public double estimate(RoadMapGraph graph, int node) {
+        double dx = Math.max(0, Math.max(minX - graph.getX(node), graph.getX(node) - maxX));
+        double dy = Math.max(0, Math.max(minY - graph.getY(node), graph.getY(node) - maxY));
+        double dz = Math.max(0, Math.max(minZ - graph.getZ(node), graph.getZ(node) - maxZ));
+        return graph.getHeuristicFactor() * Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
@@ -0,0 +1,41 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Multipliziert die Kosten aller Kanten, die in einer Gruppe beginnen oder enden, z.B. um Umwege durch einen Markt
+ * unattraktiver zu machen. Liegen beide Nodes in Gruppen, wird der größere Faktor verwendet.
+ */
+public class GroupMultiplierCostModel implements EdgeCostModel {
+
+    private final EdgeCostModel base;
+    private final Map<Integer, Double> multipliers;
+    private final double minimumMultiplier;
+
+    public GroupMultiplierCostModel(EdgeCostModel base, Map<Integer, Double> multipliers) {
+        this.base = base;
+        this.multipliers = new HashMap<>(multipliers);
+        double min = 1;
+        for (double multiplier : multipliers.values()) {
+            if (multiplier <= 0) {
+                throw new IllegalArgumentException("Gruppenfaktoren müssen größer als 0 sein.");
+            }
+            min = Math.min(min, multiplier);
+        }
+        this.minimumMultiplier = min;
+    }
+
+    @Override
+    public double getCost(double length, double ax, double ay, double az, int aGroupId, double bx, double by, double bz, int bGroupId) {
+        double cost = base.getCost(length, ax, ay, az, aGroupId, bx, by, bz, bGroupId);
+        double a = multipliers.getOrDefault(aGroupId, 1.);
+        double b = multipliers.getOrDefault(bGroupId, 1.);
+        return cost * Math.max(a, b);
+    }
+
+    @Override
+    public double getHeuristicFactor() {
+        return base.getHeuristicFactor() * minimumMultiplier;
+    }
+}
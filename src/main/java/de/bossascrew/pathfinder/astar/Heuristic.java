@@ -0,0 +1,15 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Schätzt die Kosten zwischen zwei Nodes eines Graphen ab. Die Schätzung darf die tatsächlichen Kosten nie
+ * überschreiten, sonst findet die Suche nicht mehr den kürzesten Weg.
+ */
+public interface Heuristic {
+
+    /**
+     * Luftlinie multipliziert mit dem Heuristikfaktor des Kostenmodells.
+     */
+    Heuristic EUCLIDEAN = (graph, from, to) -> graph.getHeuristicFactor() * graph.distance(from, to);
+
+    double estimate(RoadMapGraph graph, int from, int to);
+}
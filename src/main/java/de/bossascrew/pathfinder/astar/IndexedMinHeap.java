@@ -0,0 +1,140 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Arrays;
+
+/**
+ * Binärer Min-Heap über Node-Indizes mit double Schlüsseln.
+ * Jeder Node kann höchstens einmal enthalten sein, sein Schlüssel lässt sich in O(log n) verringern.
+ * Die Positionen werden über eine Generation gestempelt, ein {@link #reset(int)} kostet daher O(1).
+ * Nicht threadsafe.
+ */
+public class IndexedMinHeap {
+
+    private int[] heap = new int[0];
+    private double[] keys = new double[0];
+    private int[] positions = new int[0];
+    private int[] stamps = new int[0];
+    private int generation = 0;
+    private int size = 0;
+
+    /**
+     * Leert den Heap und stellt sicher, dass Node-Indizes bis capacity - 1 aufgenommen werden können.
+     */
+    public void reset(int capacity) {
+        if (positions.length < capacity) {
+            heap = new int[capacity];
+            keys = new double[capacity];
+            positions = new int[capacity];
+            stamps = new int[capacity];
+            generation = 0;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        size = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int node) {
+        return stamps[node] == generation && positions[node] >= 0;
+    }
+
+    public double getKey(int node) {
+        return keys[node];
+    }
+
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Fügt einen Node ein oder verringert seinen Schlüssel, falls er bereits enthalten ist.
+     *
+     * @return true, wenn der Node eingefügt oder sein Schlüssel verringert wurde.
+     */
+    public boolean insertOrDecrease(int node, double key) {
+        if (contains(node)) {
+            if (key >= keys[node]) {
+                return false;
+            }
+            keys[node] = key;
+            siftUp(positions[node]);
+            return true;
+        }
+        stamps[node] = generation;
+        keys[node] = key;
+        heap[size] = node;
+        positions[node] = size;
+        siftUp(size++);
+        return true;
+    }
+
+    /**
+     * Entfernt den Node mit dem kleinsten Schlüssel.
+     *
+     * @return Den Index des entfernten Nodes.
+     */
+    public int poll() {
+        int min = heap[0];
+        positions[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    private void siftUp(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[pos] = parent;
+            positions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int node = heap[pos];
+        double key = keys[node];
+        int half = size >>> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && keys[heap[rightPos]] < keys[child]) {
+                childPos = rightPos;
+                child = heap[childPos];
+            }
+            if (key <= keys[child]) {
+                break;
+            }
+            heap[pos] = child;
+            positions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = node;
+        positions[node] = pos;
+    }
+}
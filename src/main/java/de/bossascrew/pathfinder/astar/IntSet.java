@@ -0,0 +1,150 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Menge von ints ohne Boxing als offene Hashtabelle mit linearem Sondieren. Hinzufügen, Entfernen und Nachschlagen
+ * laufen in O(1), beim Entfernen werden die folgenden Einträge zurückgeschoben, damit keine Grabsteine entstehen.
+ * Verändert wird nur über {@link Adjacency}, nach außen ist die Menge nur lesbar. Nicht threadsafe.
+ */
+public class IntSet {
+
+    /**
+     * Eine leere Menge für Nodes ohne Kanten. Sie wird nie verändert.
+     */
+    public static final IntSet EMPTY = new IntSet();
+
+    private static final int FREE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] table;
+    private int size = 0;
+
+    IntSet() {
+        table = new int[INITIAL_CAPACITY];
+        Arrays.fill(table, FREE);
+    }
+
+    /**
+     * @return false, wenn der Wert bereits enthalten war.
+     */
+    boolean add(int value) {
+        if (value == FREE) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE kann nicht gespeichert werden.");
+        }
+        int slot = slot(value);
+        if (table[slot] == value) {
+            return false;
+        }
+        //Höchstens halb voll, damit die Sondierungsketten kurz bleiben
+        if ((size + 1) * 2 > table.length) {
+            resize(table.length * 2);
+            slot = slot(value);
+        }
+        table[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return false, wenn der Wert nicht enthalten war.
+     */
+    boolean remove(int value) {
+        if (value == FREE) {
+            return false;
+        }
+        int slot = slot(value);
+        if (table[slot] != value) {
+            return false;
+        }
+        int mask = table.length - 1;
+        int free = slot;
+        for (int next = (free + 1) & mask; table[next] != FREE; next = (next + 1) & mask) {
+            //Ein Eintrag darf nur in die Lücke rücken, wenn sie zwischen seinem Wunschplatz und ihm liegt
+            int home = hash(table[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                table[free] = table[next];
+                free = next;
+            }
+        }
+        table[free] = FREE;
+        size--;
+        return true;
+    }
+
+    public boolean contains(int value) {
+        return value != FREE && table[slot(value)] == value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Eine Kopie der Werte in keiner bestimmten Reihenfolge. Kann ohne Rücksicht auf spätere Änderungen
+     * durchlaufen werden.
+     */
+    public int[] toArray() {
+        int[] values = new int[size];
+        int i = 0;
+        for (int value : table) {
+            if (value != FREE) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(toArray());
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int value : table) {
+            if (value != FREE) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * @return Der geschätzte Speicherbedarf in Bytes inklusive Objektkopf und Tabelle.
+     */
+    long getMemoryBytes() {
+        return 24 + 16 + (long) table.length * Integer.BYTES;
+    }
+
+    /**
+     * @return Den Platz des Wertes oder den freien Platz, an dem er eingefügt werden würde.
+     */
+    private int slot(int value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != FREE && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        Arrays.fill(table, FREE);
+        for (int value : old) {
+            if (value != FREE) {
+                table[slot(value)] = value;
+            }
+        }
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,112 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Arrays;
+
+/**
+ * ALT Heuristik (A*, Landmarken, Dreiecksungleichung). Für einige weit auseinanderliegende Landmarken werden die Kosten
+ * zu allen Nodes vorberechnet. Für jede Landmarke L gilt d(v, t) >= |d(L, t) - d(L, v)|, das Maximum über alle
+ * Landmarken ist bei verwinkelten Karten eine deutlich bessere Abschätzung als die Luftlinie.
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion,
+ * aus der sie berechnet wurde.
+ */
+public class Landmarks implements Heuristic {
+
+    public static final int DEFAULT_COUNT = 16;
+    private static final float FLOAT_ERROR = 0x1p-22f;
+
+    private final long graphVersion;
+    private final int[] landmarks;
+    /**
+     * Nach Nodes sortiert: Die Kosten von Landmarke i zu Node v liegen an der Stelle v * count + i,
+     * damit die Werte eines Nodes bei einer Abschätzung zusammenhängend gelesen werden.
+     */
+    private final float[] distances;
+
+    private Landmarks(long graphVersion, int[] landmarks, float[] distances) {
+        this.graphVersion = graphVersion;
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Wählt die Landmarken per Farthest-Point-Auswahl: Jede neue Landmarke ist der Node, der von den bisherigen
+     * Landmarken am weitesten entfernt ist. Kostet eine Dijkstra Suche pro Landmarke, sollte also asynchron laufen.
+     *
+     * @param count Die gewünschte Anzahl an Landmarken.
+     */
+    public static Landmarks compute(RoadMapGraph graph, int count) {
+        int n = graph.size();
+        count = Math.min(count, n);
+        int[] landmarks = new int[count];
+        float[] distances = new float[count * n];
+        double[] nearestLandmark = new double[n];
+        Arrays.fill(nearestLandmark, Double.POSITIVE_INFINITY);
+
+        //Die erste Landmarke ist der Node, der am weitesten vom ersten Node entfernt ist
+        int next = count == 0 ? -1 : farthest(Dijkstra.distances(graph, 0));
+        for (int i = 0; i < count; i++) {
+            double[] fromLandmark = Dijkstra.distances(graph, next);
+            landmarks[i] = next;
+            for (int node = 0; node < n; node++) {
+                distances[node * count + i] = (float) fromLandmark[node];
+                nearestLandmark[node] = Math.min(nearestLandmark[node], fromLandmark[node]);
+            }
+            next = farthest(nearestLandmark);
+        }
+        return new Landmarks(graph.getVersion(), landmarks, distances);
+    }
+
+    /**
+     * Unerreichbare Nodes werden bevorzugt, damit jede Zusammenhangskomponente eine Landmarke bekommt.
+     */
+    private static int farthest(double[] distances) {
+        int farthest = 0;
+        for (int node = 1; node < distances.length; node++) {
+            if (distances[node] > distances[farthest]) {
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * @return Die Version des Graphen, für den die Landmarken berechnet wurden.
+     */
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    public int getCount() {
+        return landmarks.length;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return Der ungefähre Speicherbedarf der Distanztabellen in Bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) distances.length * Float.BYTES;
+    }
+
+    @Override
+    public double estimate(RoadMapGraph graph, int from, int to) {
+        int count = landmarks.length;
+        int fromOffset = from * count;
+        int toOffset = to * count;
+        float best = 0;
+        for (int i = 0; i < count; i++) {
+            float a = distances[fromOffset + i];
+            float b = distances[toOffset + i];
+            //Rundungsfehler der floats abziehen, damit die Abschätzung zulässig bleibt.
+            //Unerreichbare Nodes ergeben NaN oder Infinity und werden übersprungen
+            float bound = Math.abs(a - b) - (a + b) * FLOAT_ERROR;
+            if (bound > best && bound != Float.POSITIVE_INFINITY) {
+                best = bound;
+            }
+        }
+        return Math.max(Heuristic.EUCLIDEAN.estimate(graph, from, to), best);
+    }
+}
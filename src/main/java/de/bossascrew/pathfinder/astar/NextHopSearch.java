@@ -0,0 +1,63 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Liest den kürzesten Weg aus einer {@link NextHopTable} ab, ohne zu suchen. Von mehreren Startnodes wird der Weg mit
+ * den geringsten Kosten inklusive des Einstiegs gewählt.
+ * Die Tabelle kennt keine Maske. Führt der abgelesene Weg über einen ausgeschlossenen Node, wird stattdessen ein
+ * einfacher AStar ausgeführt.
+ */
+public class NextHopSearch implements PathSearch {
+
+    private final NextHopTable table;
+    private int settledCount = 0;
+
+    public NextHopSearch(NextHopTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask) {
+        settledCount = 0;
+        if (goal < 0 || (mask != null && !mask.get(goal))) {
+            return null;
+        }
+        int[] best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (source < 0 || (mask != null && !mask.get(source))) {
+                continue;
+            }
+            int[] path = table.path(source, goal);
+            double cost = path == null ? Double.POSITIVE_INFINITY : sourceCosts[i] + graph.getPathCost(path);
+            if (cost < bestCost) {
+                best = path;
+                bestCost = cost;
+            }
+        }
+        //Ohne Maske unerreichbar heißt auch mit Maske unerreichbar
+        if (best == null) {
+            return null;
+        }
+        if (mask != null) {
+            for (int node : best) {
+                if (!mask.get(node)) {
+                    AStar fallback = new AStar();
+                    int[] result = fallback.search(graph, sources, sourceCosts, goal, mask);
+                    settledCount += fallback.getSettledCount();
+                    return result;
+                }
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int getSettledCount() {
+        return settledCount;
+    }
+}
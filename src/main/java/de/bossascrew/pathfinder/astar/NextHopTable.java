@@ -0,0 +1,151 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Vorberechnete Routingtabelle mit dem nächsten Node auf dem kürzesten Weg von jedem Node zu jedem Ziel. Ein Weg
+ * kostet damit nur noch O(Pfadlänge) ohne Suche, siehe {@link NextHopSearch}. Die Tabelle braucht zwei Byte pro
+ * Paar von Nodes, bei 2.000 Nodes also 8 MB, und wird nur bis {@link #MAX_NODES} Nodes berechnet.
+ * Jede Zeile ist eine Dijkstra Suche vom jeweiligen Ziel aus, die Zeilen werden parallel im ForkJoinPool berechnet.
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion,
+ * aus der sie berechnet wurde. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class NextHopTable {
+
+    /**
+     * Bis zu dieser Größe wird die Tabelle berechnet, sie belegt dann höchstens 32 MB.
+     */
+    public static final int MAX_NODES = 4096;
+    /**
+     * So viele Zeilen berechnet ein Task, bevor er nicht weiter aufgeteilt wird.
+     */
+    private static final int ROWS_PER_TASK = 16;
+
+    private final long graphVersion;
+    private final int size;
+    /**
+     * Der nächste Node vom Node i zum Ziel t an der Stelle t * size + i, -1 am Ziel selbst und für unerreichbare Ziele.
+     * null, wenn der Graph zu groß für eine Tabelle ist.
+     */
+    private final @Nullable short[] hops;
+
+    private NextHopTable(long graphVersion, int size, @Nullable short[] hops) {
+        this.graphVersion = graphVersion;
+        this.size = size;
+        this.hops = hops;
+    }
+
+    /**
+     * Berechnet die Tabelle mit einer Dijkstra Suche pro Node. Sollte asynchron laufen.
+     *
+     * @return Die Tabelle, oder eine leere Tabelle, wenn der Graph mehr als {@link #MAX_NODES} Nodes hat.
+     */
+    public static NextHopTable compute(RoadMapGraph graph) {
+        return compute(graph, ForkJoinPool.commonPool());
+    }
+
+    public static NextHopTable compute(RoadMapGraph graph, ForkJoinPool pool) {
+        int n = graph.size();
+        if (n > MAX_NODES) {
+            return new NextHopTable(graph.getVersion(), n, null);
+        }
+        short[] hops = new short[n * n];
+        pool.invoke(new RowTask(graph, hops, 0, n));
+        return new NextHopTable(graph.getVersion(), n, hops);
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /**
+     * @return false, wenn der Graph zu groß war und keine Tabelle berechnet wurde.
+     */
+    public boolean hasTable() {
+        return hops != null;
+    }
+
+    public long getMemoryBytes() {
+        return hops == null ? 0 : (long) hops.length * Short.BYTES;
+    }
+
+    /**
+     * @return Die Nodes vom Start bis zum Ziel entlang der Tabelle oder null, wenn das Ziel nicht erreichbar ist.
+     * @throws IllegalStateException Wenn keine Tabelle berechnet wurde.
+     */
+    public @Nullable
+    int[] path(int source, int target) {
+        if (hops == null) {
+            throw new IllegalStateException("Keine Routingtabelle für Graphen mit mehr als " + MAX_NODES + " Nodes.");
+        }
+        int row = target * size;
+        if (source != target && hops[row + source] == -1) {
+            return null;
+        }
+        int length = 1;
+        for (int node = source; node != target; node = hops[row + node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int i = 0;
+        for (int node = source; node != target; node = hops[row + node]) {
+            path[i++] = node;
+        }
+        path[i] = target;
+        return path;
+    }
+
+    /**
+     * Berechnet die Zeilen von from bis to, teilt größere Bereiche auf.
+     */
+    private static class RowTask extends RecursiveAction {
+
+        private final RoadMapGraph graph;
+        private final short[] hops;
+        private final int from;
+        private final int to;
+
+        RowTask(RoadMapGraph graph, short[] hops, int from, int to) {
+            this.graph = graph;
+            this.hops = hops;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RowTask(graph, hops, from, middle), new RowTask(graph, hops, middle, to));
+                return;
+            }
+            int n = graph.size();
+            double[] distances = new double[n];
+            IndexedMinHeap queue = new IndexedMinHeap();
+            for (int target = from; target < to; target++) {
+                int row = target * n;
+                Arrays.fill(distances, Double.POSITIVE_INFINITY);
+                Arrays.fill(hops, row, row + n, (short) -1);
+                queue.reset(n);
+                distances[target] = 0;
+                queue.insertOrDecrease(target, 0);
+                while (!queue.isEmpty()) {
+                    int current = queue.poll();
+                    for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                        int child = graph.edgeTarget(edge);
+                        double distance = distances[current] + graph.edgeWeight(edge);
+                        if (distance < distances[child]) {
+                            distances[child] = distance;
+                            //Der Vorgänger im Baum vom Ziel aus ist der nächste Node auf dem Weg zum Ziel
+                            hops[row + child] = (short) current;
+                            queue.insertOrDecrease(child, distance);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Repariert einen bestehenden Pfad, nachdem der Graph bearbeitet wurde, z.B. weil ein Node verschoben oder gelöscht
+ * oder eine Kante getrennt wurde. Statt vom Start neu zu suchen, wird nur zwischen den nächsten unveränderten Nodes
+ * vor und hinter einer Änderung neu geplant. Die Kosten hängen damit von der Größe der Änderung ab und nicht von
+ * der Länge des Pfades oder der Größe des Graphen.
+ */
+public class PathRepair {
+
+    private PathRepair() {
+    }
+
+    /**
+     * @param path    Die Indizes des bisherigen Pfades im aktuellen Graphen vom Start bis zum Ziel, -1 für gelöschte Nodes.
+     * @param changed Die Indizes der Nodes, deren Position oder Kanten sich geändert haben.
+     * @param mask    Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @param search  Das Suchverfahren für die neu zu planenden Abschnitte. Es wird nacheinander mehrfach verwendet.
+     * @return Den reparierten Pfad, dasselbe Array, wenn nichts repariert werden musste, oder null, wenn Start oder Ziel
+     * nicht mehr existieren oder das Ziel nicht mehr erreichbar ist.
+     * @throws SearchCancelledException Wenn der Thread der Reparatur unterbrochen wurde.
+     */
+    public static @Nullable
+    int[] repair(RoadMapGraph graph, int[] path, BitSet changed, @Nullable BitSet mask, PathSearch search) {
+        int last = path.length - 1;
+        if (path.length == 0 || !isUsable(path[0], mask) || !isUsable(path[last], mask)) {
+            return null;
+        }
+        PathBuilder builder = new PathBuilder(path.length);
+        builder.add(path[0]);
+        boolean modified = false;
+        int position = 0;
+        while (position < last) {
+            int next = position + 1;
+            if (isAnchor(path, next, changed, mask) && graph.edgeWeight(path[position], path[next]) < Double.POSITIVE_INFINITY) {
+                builder.add(path[next]);
+                position = next;
+                continue;
+            }
+            //Vom letzten intakten Node bis zum nächsten unveränderten Node neu planen, notfalls bis zum Ziel
+            modified = true;
+            int anchor = next;
+            while (!isAnchor(path, anchor, changed, mask)) {
+                anchor++;
+            }
+            int[] segment = search.search(graph, new int[]{path[position]}, new double[]{0}, path[anchor], mask);
+            if (segment == null && anchor != last) {
+                anchor = last;
+                segment = search.search(graph, new int[]{path[position]}, new double[]{0}, path[anchor], mask);
+            }
+            if (segment == null) {
+                return null;
+            }
+            for (int i = 1; i < segment.length; i++) {
+                builder.add(segment[i]);
+            }
+            position = anchor;
+        }
+        modified |= builder.shortcut(graph, changed, mask);
+        return modified ? builder.toArray() : path;
+    }
+
+    private static boolean isUsable(int node, @Nullable BitSet mask) {
+        return node >= 0 && (mask == null || mask.get(node));
+    }
+
+    /**
+     * @return true, wenn der Node an dieser Stelle unverändert übernommen werden kann. Das Ziel bleibt immer erhalten.
+     */
+    private static boolean isAnchor(int[] path, int position, BitSet changed, @Nullable BitSet mask) {
+        return position == path.length - 1 || isUsable(path[position], mask) && !changed.get(path[position]);
+    }
+
+    /**
+     * Baut den reparierten Pfad auf und entfernt dabei Schleifen, die beim Zusammensetzen der Abschnitte entstehen können.
+     */
+    private static class PathBuilder {
+
+        private int[] nodes;
+        private int size = 0;
+        private final Map<Integer, Integer> positions = new HashMap<>();
+
+        PathBuilder(int capacity) {
+            this.nodes = new int[Math.max(2, capacity)];
+        }
+
+        void add(int node) {
+            Integer previous = positions.get(node);
+            if (previous != null) {
+                truncate(previous + 1);
+                return;
+            }
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            positions.put(node, size);
+            nodes[size++] = node;
+        }
+
+        private void truncate(int length) {
+            for (int i = length; i < size; i++) {
+                positions.remove(nodes[i]);
+            }
+            size = length;
+        }
+
+        /**
+         * Übernimmt Kanten geänderter Nodes als Abkürzung, wenn beide Enden auf dem Pfad liegen und der Umweg
+         * dazwischen teurer ist, z.B. nach dem Verbinden zweier Nodes des Pfades.
+         *
+         * @return true, wenn mindestens eine Abkürzung übernommen wurde.
+         */
+        boolean shortcut(RoadMapGraph graph, BitSet changed, @Nullable BitSet mask) {
+            boolean modified = false;
+            boolean found = true;
+            while (found) {
+                found = false;
+                double[] costs = new double[size];
+                for (int i = 1; i < size; i++) {
+                    costs[i] = costs[i - 1] + graph.edgeWeight(nodes[i - 1], nodes[i]);
+                }
+                for (int from = 0; from < size && !found; from++) {
+                    if (!changed.get(nodes[from])) {
+                        continue;
+                    }
+                    for (int edge = graph.edgeStart(nodes[from]); edge < graph.edgeEnd(nodes[from]); edge++) {
+                        Integer to = positions.get(graph.edgeTarget(edge));
+                        if (to == null || !isUsable(nodes[to], mask)) {
+                            continue;
+                        }
+                        if (to > from + 1 && graph.edgeWeight(edge) < costs[to] - costs[from] - 1e-9) {
+                            splice(from, to);
+                            found = true;
+                            break;
+                        }
+                        double reverse = graph.edgeWeight(nodes[to], nodes[from]);
+                        if (to < from - 1 && reverse < costs[from] - costs[to] - 1e-9) {
+                            splice(to, from);
+                            found = true;
+                            break;
+                        }
+                    }
+                }
+                modified |= found;
+            }
+            return modified;
+        }
+
+        /**
+         * Entfernt alle Nodes zwischen den beiden Positionen.
+         */
+        private void splice(int from, int to) {
+            int removed = to - from - 1;
+            for (int i = from + 1; i < to; i++) {
+                positions.remove(nodes[i]);
+            }
+            System.arraycopy(nodes, to, nodes, from + 1, size - to);
+            size -= removed;
+            for (int i = from + 1; i < size; i++) {
+                positions.put(nodes[i], i);
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(nodes, size);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Zwischenspeicher für fertige Suchergebnisse, z.B. wenn eine Gruppe von Spielern gemeinsam dasselbe Ziel sucht.
+ * Gleiche Anfragen, die gleichzeitig laufen, werden zusammengelegt und warten auf dieselbe Berechnung.
+ * Die Anzahl der Ergebnisse ist begrenzt, verdrängt wird per LRU. Ergebnisse älterer Graphversionen werden verworfen.
+ * Threadsafe.
+ */
+public class PathResultCache {
+
+    private static final int[] NO_PATH = new int[0];
+
+    private final int maxEntries;
+    private final LinkedHashMap<SearchKey, int[]> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<SearchKey, CompletableFuture<int[]>> inFlight = new HashMap<>();
+    private final Map<Integer, Long> latestVersions = new HashMap<>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long coalesced = 0;
+
+    /**
+     * @param maxEntries Die Anzahl an Ergebnissen, die höchstens gespeichert werden.
+     */
+    public PathResultCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Liefert das gespeicherte Ergebnis, wartet auf eine laufende gleiche Anfrage oder führt die Suche selbst aus.
+     * Das zurückgegebene Array wird geteilt und darf nicht verändert werden.
+     *
+     * @param source Der Startnode der Suche.
+     * @param mask   Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @param search Die Suche, die bei einem Fehlschlag ausgeführt wird.
+     * @return Die Indizes der Nodes vom Start bis zum Ziel oder null, wenn das Ziel nicht erreicht werden kann.
+     */
+    public @Nullable
+    int[] get(int roadMapId, RoadMapGraph graph, int source, int target, @Nullable BitSet mask, Supplier<int[]> search) {
+        return get(new SearchKey(roadMapId, graph.getVersion(), source, target, mask), graph, search);
+    }
+
+    /**
+     * Wie {@link #get(int, RoadMapGraph, int, int, BitSet, Supplier)}, aber mit allen Nodes einer Gruppe als Ziel.
+     */
+    public @Nullable
+    int[] get(int roadMapId, RoadMapGraph graph, int source, GoalSet goals, @Nullable BitSet mask, Supplier<int[]> search) {
+        return get(new SearchKey(roadMapId, graph.getVersion(), source, -1, goals.getGroupId(), mask), graph, search);
+    }
+
+    /**
+     * Wie {@link #get(int, RoadMapGraph, int, int, BitSet, Supplier)}, aber von einem Einstieg mit mehreren
+     * Startnodes, z.B. den beiden Enden der Kante, auf der ein Spieler steht. Gespeichert wird pro Startnode, Spieler
+     * auf derselben Kante teilen sich die Suchen also unabhängig von ihrer genauen Position. Erst danach werden die
+     * Kosten des Einstiegs addiert.
+     *
+     * @param sourceCosts Die Kosten vom Einstieg bis zum jeweiligen Startnode.
+     * @param search      Die Suche von einem einzelnen Startnode aus.
+     * @return Der günstigste Weg inklusive Einstieg.
+     */
+    public @Nullable
+    int[] get(int roadMapId, RoadMapGraph graph, int[] sources, double[] sourceCosts, int target, @Nullable BitSet mask,
+              IntFunction<int[]> search) {
+        double[] bounds = new double[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            bounds[i] = sourceCosts[i] + Heuristic.EUCLIDEAN.estimate(graph, sources[i], target);
+        }
+        return get(graph, sources, sourceCosts, bounds,
+                source -> new SearchKey(roadMapId, graph.getVersion(), source, target, mask), search);
+    }
+
+    /**
+     * Wie {@link #get(int, RoadMapGraph, int[], double[], int, BitSet, IntFunction)}, aber mit allen Nodes einer
+     * Gruppe als Ziel.
+     */
+    public @Nullable
+    int[] get(int roadMapId, RoadMapGraph graph, int[] sources, double[] sourceCosts, GoalSet goals, @Nullable BitSet mask,
+              IntFunction<int[]> search) {
+        double[] bounds = new double[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            bounds[i] = sourceCosts[i] + goals.estimate(graph, sources[i]);
+        }
+        return get(graph, sources, sourceCosts, bounds,
+                source -> new SearchKey(roadMapId, graph.getVersion(), source, -1, goals.getGroupId(), mask), search);
+    }
+
+    /**
+     * @param bounds Untere Schranke der Kosten über den jeweiligen Startnode inklusive Einstieg.
+     */
+    private @Nullable
+    int[] get(RoadMapGraph graph, int[] sources, double[] sourceCosts, double[] bounds, IntFunction<SearchKey> keys,
+              IntFunction<int[]> search) {
+        Integer[] order = new Integer[sources.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> bounds[i]));
+
+        int[] best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int i : order) {
+            //Weitere Startnodes können den bisher besten Weg nicht mehr unterbieten
+            if (bounds[i] >= bestCost) {
+                break;
+            }
+            int source = sources[i];
+            int[] path = get(keys.apply(source), graph, () -> search.apply(source));
+            double cost = path == null ? Double.POSITIVE_INFINITY : sourceCosts[i] + graph.getPathCost(path);
+            if (cost < bestCost) {
+                best = path;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private @Nullable
+    int[] get(SearchKey key, RoadMapGraph graph, Supplier<int[]> search) {
+        int roadMapId = key.roadMapId;
+        CompletableFuture<int[]> future;
+        synchronized (this) {
+            invalidateOlderVersions(roadMapId, graph.getVersion());
+            int[] result = results.get(key);
+            if (result != null) {
+                hits++;
+                return result == NO_PATH ? null : result;
+            }
+            future = inFlight.get(key);
+            if (future != null) {
+                coalesced++;
+            } else {
+                misses++;
+                inFlight.put(key, new CompletableFuture<>());
+            }
+        }
+        if (future != null) {
+            int[] result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                //Der Wartende selbst wurde abgebrochen, z.B. durch eine neuere Anfrage seines Spielers
+                Thread.currentThread().interrupt();
+                throw new SearchCancelledException();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SearchCancelledException || cause instanceof SearchBudgetExceededException) {
+                    //Nur die Anfrage, auf die gewartet wurde, ist abgebrochen worden oder hatte ein kleineres Budget.
+                    //Diese sucht selbst neu.
+                    return get(key, graph, search);
+                }
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+            }
+            return result == NO_PATH ? null : result;
+        }
+
+        int[] result;
+        try {
+            result = search.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<int[]> failed;
+            synchronized (this) {
+                failed = inFlight.remove(key);
+            }
+            failed.completeExceptionally(e);
+            throw e;
+        }
+        if (result == null) {
+            result = NO_PATH;
+        }
+        CompletableFuture<int[]> done;
+        synchronized (this) {
+            done = inFlight.remove(key);
+            if (graph.getVersion() >= latestVersions.get(roadMapId)) {
+                results.put(key, result);
+                evict();
+            }
+        }
+        done.complete(result);
+        return result == NO_PATH ? null : result;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return Die Anzahl der Anfragen, die direkt aus dem Speicher beantwortet wurden.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Die Anzahl der Anfragen, für die eine Suche ausgeführt wurde.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Die Anzahl der Anfragen, die auf eine gleichzeitig laufende gleiche Suche gewartet haben.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    private void invalidateOlderVersions(int roadMapId, long version) {
+        Long latest = latestVersions.get(roadMapId);
+        if (latest != null && latest >= version) {
+            return;
+        }
+        latestVersions.put(roadMapId, version);
+        results.keySet().removeIf(key -> key.roadMapId == roadMapId && key.graphVersion < version);
+    }
+
+    private void evict() {
+        Iterator<int[]> iterator = results.values().iterator();
+        while (results.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
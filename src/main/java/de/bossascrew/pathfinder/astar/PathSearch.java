@@ -0,0 +1,28 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Ein Suchverfahren, das den kürzesten Weg in einem {@link RoadMapGraph} findet.
+ * Instanzen werden pro Suche erzeugt und sind nicht threadsafe, die zugrundeliegenden Daten dürfen geteilt werden.
+ */
+public interface PathSearch {
+
+    /**
+     * @param graph       Der kompilierte Graph der Straßenkarte.
+     * @param sources     Die Indizes der möglichen Startnodes.
+     * @param sourceCosts Die Kosten, um den jeweiligen Startnode zu erreichen, z.B. die Entfernung des Spielers zum Startnode.
+     * @param goal        Der Index des Zielnodes.
+     * @param mask        Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @return Die Indizes der Nodes vom Start bis zum Ziel oder null, wenn das Ziel nicht erreicht werden kann.
+     * @throws SearchCancelledException Wenn der Thread der Suche unterbrochen wurde.
+     */
+    @Nullable
+    int[] search(RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable BitSet mask);
+
+    /**
+     * @return Die Anzahl der Nodes, die bei der letzten Suche abgeschlossen wurden.
+     */
+    int getSettledCount();
+}
@@ -0,0 +1,127 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gitter über die Abschnitte eines Pfades, um schnell zu prüfen, ob eine Position in der Nähe des Pfades liegt,
+ * z.B. bei jeder Bewegung eines navigierenden Spielers. Jeder Abschnitt wird in die Zellen eingetragen, durch die er
+ * verläuft, eine Abfrage prüft nur die Abschnitte der Zellen im Umkreis. Threadsafe, da nach dem Bauen nichts mehr
+ * verändert wird.
+ */
+public class PolylineIndex {
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final double cellSize;
+    private final Map<Long, int[]> cells;
+
+    /**
+     * @param xs       Die Punkte des Pfades der Reihe nach, Abschnitt i verläuft von Punkt i zu Punkt i + 1.
+     * @param cellSize Die Kantenlänge einer Zelle, am besten in der Größenordnung der üblichen Abfrageentfernung.
+     */
+    public PolylineIndex(double[] xs, double[] ys, double[] zs, double cellSize) {
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.cellSize = cellSize;
+
+        Map<Long, List<Integer>> segments = new HashMap<>();
+        for (int segment = 0; segment < xs.length - 1; segment++) {
+            double dx = xs[segment + 1] - xs[segment];
+            double dy = ys[segment + 1] - ys[segment];
+            double dz = zs[segment + 1] - zs[segment];
+            //Proben im Abstand von höchstens einer Zelle, jede getroffene Zelle bekommt den Abschnitt einmal
+            int steps = Math.max(1, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy + dz * dz) / cellSize));
+            long previous = Long.MIN_VALUE;
+            for (int step = 0; step <= steps; step++) {
+                double t = (double) step / steps;
+                long key = key(cell(xs[segment] + t * dx), cell(ys[segment] + t * dy), cell(zs[segment] + t * dz));
+                if (key == previous) {
+                    continue;
+                }
+                List<Integer> list = segments.computeIfAbsent(key, k -> new ArrayList<>());
+                if (list.isEmpty() || list.get(list.size() - 1) != segment) {
+                    list.add(segment);
+                }
+                previous = key;
+            }
+        }
+        this.cells = new HashMap<>(segments.size() * 2);
+        for (Map.Entry<Long, List<Integer>> entry : segments.entrySet()) {
+            cells.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    public int getSegmentCount() {
+        return Math.max(0, xs.length - 1);
+    }
+
+    /**
+     * @return Den Abschnitt, der der Position am nächsten liegt, oder -1, wenn kein Abschnitt näher als maxDistance ist.
+     */
+    public int getNearestSegment(double x, double y, double z, double maxDistance) {
+        //Ein Abschnitt kann zwischen zwei Proben eine Zelle streifen, daher wird eine Zelle mehr abgefragt
+        double range = maxDistance + cellSize;
+        int minX = cell(x - range), maxX = cell(x + range);
+        int minY = cell(y - range), maxY = cell(y + range);
+        int minZ = cell(z - range), maxZ = cell(z + range);
+        int best = -1;
+        double bestDistance = maxDistance;
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    int[] segments = cells.get(key(cx, cy, cz));
+                    if (segments == null) {
+                        continue;
+                    }
+                    for (int segment : segments) {
+                        double distance = getDistance(segment, x, y, z);
+                        if (distance < bestDistance) {
+                            best = segment;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Die Entfernung der Position zum Abschnitt.
+     */
+    public double getDistance(int segment, double x, double y, double z) {
+        double t = getProjection(segment, x, y, z);
+        double px = xs[segment] + t * (xs[segment + 1] - xs[segment]) - x;
+        double py = ys[segment] + t * (ys[segment + 1] - ys[segment]) - y;
+        double pz = zs[segment] + t * (zs[segment + 1] - zs[segment]) - z;
+        return Math.sqrt(px * px + py * py + pz * pz);
+    }
+
+    /**
+     * @return Der Anteil zwischen 0 und 1, an dem der Lotfußpunkt der Position auf dem Abschnitt liegt.
+     */
+    public double getProjection(int segment, double x, double y, double z) {
+        double dx = xs[segment + 1] - xs[segment];
+        double dy = ys[segment + 1] - ys[segment];
+        double dz = zs[segment + 1] - zs[segment];
+        double lengthSquared = dx * dx + dy * dy + dz * dz;
+        if (lengthSquared == 0) {
+            return 0;
+        }
+        double t = ((x - xs[segment]) * dx + (y - ys[segment]) * dy + (z - zs[segment]) * dz) / lengthSquared;
+        return Math.max(0, Math.min(1, t));
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+}
@@ -0,0 +1,216 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Graph über die Portale aller Straßenkarten. Innerhalb einer Straßenkarte sind die Portale über die Kosten ihrer
+ * {@link PortalTable} verbunden, zwischen Straßenkarten über die Portal-Links selbst. Ein Weg über mehrere Straßenkarten
+ * oder Welten kostet damit nur eine Suche über die wenigen Portale und die Suchen für den ersten und letzten Abschnitt.
+ * Ein Node wird über die Straßenkarte und die Datenbank-ID des Findables angesprochen. Threadsafe, da nach dem Bauen
+ * nichts mehr verändert wird.
+ */
+public class PortalOverlay {
+
+    private final int[] roadMapIds;
+    private final int[] portalIds;
+    private final Map<Long, Integer> index;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    /**
+     * Die Tabellen, aus denen die Kosten innerhalb der Straßenkarten stammen. Key = RoadMapID
+     */
+    private final Map<Integer, PortalTable> tables;
+
+    private PortalOverlay(int[] roadMapIds, int[] portalIds, Map<Long, Integer> index, int[] offsets, int[] targets, double[] weights,
+                          Map<Integer, PortalTable> tables) {
+        this.tables = tables;
+        this.roadMapIds = roadMapIds;
+        this.portalIds = portalIds;
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return roadMapIds.length;
+    }
+
+    /**
+     * @return Den Node des Portals oder -1, wenn das Findable kein Portal ist.
+     */
+    public int indexOf(int roadMapId, int portalId) {
+        return index.getOrDefault(key(roadMapId, portalId), -1);
+    }
+
+    public int getRoadMapId(int node) {
+        return roadMapIds[node];
+    }
+
+    public int getPortalId(int node) {
+        return portalIds[node];
+    }
+
+    /**
+     * Start und Ziel einer Suche müssen über diese Tabellen angebunden werden, damit ihre Kosten zu denen des Overlays passen.
+     *
+     * @return Die Tabelle, aus der die Kosten zwischen den Portalen der Straßenkarte stammen, oder null, wenn sie keine Portale hat.
+     */
+    public @Nullable
+    PortalTable getTable(int roadMapId) {
+        return tables.get(roadMapId);
+    }
+
+    /**
+     * Dijkstra Suche über die Portale.
+     *
+     * @param sources     Die Portale, die vom Start aus erreichbar sind.
+     * @param sourceCosts Die Kosten vom Start bis zum jeweiligen Portal.
+     * @param goals       Die Portale, von denen aus das Ziel erreichbar ist.
+     * @param goalCosts   Die Kosten vom jeweiligen Portal bis zum Ziel.
+     * @return Die Portale vom ersten bis zum letzten der Reihe nach oder null, wenn kein Weg existiert.
+     * Zwei aufeinanderfolgende Portale derselben Straßenkarte werden dort zu Fuß verbunden, sonst über den Portal-Link.
+     */
+    public @Nullable
+    int[] search(int[] sources, double[] sourceCosts, int[] goals, double[] goalCosts) {
+        int n = size();
+        double[] remaining = new double[n];
+        Arrays.fill(remaining, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < goals.length; i++) {
+            remaining[goals[i]] = Math.min(remaining[goals[i]], goalCosts[i]);
+        }
+        //Der zusätzliche Node n steht für das Ziel
+        double[] costs = new double[n + 1];
+        int[] parents = new int[n + 1];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(parents, -1);
+        IndexedMinHeap queue = new IndexedMinHeap();
+        queue.reset(n + 1);
+        for (int i = 0; i < sources.length; i++) {
+            if (sourceCosts[i] < costs[sources[i]]) {
+                costs[sources[i]] = sourceCosts[i];
+                queue.insertOrDecrease(sources[i], sourceCosts[i]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            if (current == n) {
+                break;
+            }
+            if (costs[current] + remaining[current] < costs[n]) {
+                costs[n] = costs[current] + remaining[current];
+                parents[n] = current;
+                queue.insertOrDecrease(n, costs[n]);
+            }
+            for (int edge = offsets[current]; edge < offsets[current + 1]; edge++) {
+                double cost = costs[current] + weights[edge];
+                if (cost < costs[targets[edge]]) {
+                    costs[targets[edge]] = cost;
+                    parents[targets[edge]] = current;
+                    queue.insertOrDecrease(targets[edge], cost);
+                }
+            }
+        }
+        if (parents[n] == -1) {
+            return null;
+        }
+        int length = 0;
+        for (int node = parents[n]; node != -1; node = parents[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = parents[n]; node != -1; node = parents[node]) {
+            path[--length] = node;
+        }
+        return path;
+    }
+
+    private static long key(int roadMapId, int portalId) {
+        return ((long) roadMapId << 32) | (portalId & 0xFFFFFFFFL);
+    }
+
+    public static class Builder {
+
+        private final List<Integer> roadMapIds = new ArrayList<>();
+        private final List<Integer> portalIds = new ArrayList<>();
+        private final Map<Long, Integer> index = new HashMap<>();
+        private final List<int[]> edges = new ArrayList<>();
+        private final List<Double> edgeWeights = new ArrayList<>();
+        private final Map<Integer, PortalTable> tables = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Nimmt die Portale einer Straßenkarte mit den Kosten zwischen ihnen auf.
+         */
+        public Builder addRoadMap(int roadMapId, PortalTable table) {
+            tables.put(roadMapId, table);
+            int[] nodes = new int[table.getPortalCount()];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = node(roadMapId, table.getPortalId(i));
+            }
+            for (int i = 0; i < nodes.length; i++) {
+                for (int j = 0; j < nodes.length; j++) {
+                    if (i != j && table.getCost(i, j) < Double.POSITIVE_INFINITY) {
+                        addEdge(nodes[i], nodes[j], table.getCost(i, j));
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Verbindet zwei Portale in beide Richtungen, z.B. über ein Netherportal in eine andere Welt.
+         *
+         * @param cost Die Kosten für das Durchqueren des Portals.
+         */
+        public Builder addLink(int roadMapA, int portalA, int roadMapB, int portalB, double cost) {
+            int a = node(roadMapA, portalA);
+            int b = node(roadMapB, portalB);
+            addEdge(a, b, cost);
+            addEdge(b, a, cost);
+            return this;
+        }
+
+        private int node(int roadMapId, int portalId) {
+            return index.computeIfAbsent(key(roadMapId, portalId), k -> {
+                roadMapIds.add(roadMapId);
+                portalIds.add(portalId);
+                return roadMapIds.size() - 1;
+            });
+        }
+
+        private void addEdge(int from, int to, double weight) {
+            edges.add(new int[]{from, to});
+            edgeWeights.add(weight);
+        }
+
+        public PortalOverlay build() {
+            int n = roadMapIds.size();
+            int[] offsets = new int[n + 1];
+            for (int[] edge : edges) {
+                offsets[edge[0] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] targets = new int[edges.size()];
+            double[] weights = new double[edges.size()];
+            int[] next = Arrays.copyOf(offsets, n);
+            for (int i = 0; i < edges.size(); i++) {
+                int position = next[edges.get(i)[0]]++;
+                targets[position] = edges.get(i)[1];
+                weights[position] = edgeWeights.get(i);
+            }
+            return new PortalOverlay(roadMapIds.stream().mapToInt(Integer::intValue).toArray(),
+                    portalIds.stream().mapToInt(Integer::intValue).toArray(), index, offsets, targets, weights, tables);
+        }
+    }
+}
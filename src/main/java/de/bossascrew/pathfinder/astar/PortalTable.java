@@ -0,0 +1,121 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Vorberechnete Kosten zwischen allen Portalen einer Straßenkarte, damit ein Weg über mehrere Straßenkarten nur eine
+ * kleine Suche über die Portale braucht, siehe {@link PortalOverlay}. Kostet eine Dijkstra Suche pro Portal.
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion und die
+ * Portale, aus denen sie berechnet wurde. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class PortalTable {
+
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
+    private final long graphVersion;
+    private final int[] portalIds;
+    /**
+     * Die Indizes der Portale im Graphen, -1 für Portale, deren Findable nicht mehr existiert.
+     */
+    private final int[] portals;
+    /**
+     * Die Kosten von Portal i zu Portal j an der Stelle i * portalIds.length + j.
+     */
+    private final double[] costs;
+
+    private PortalTable(long graphVersion, int[] portalIds, int[] portals, double[] costs) {
+        this.graphVersion = graphVersion;
+        this.portalIds = portalIds;
+        this.portals = portals;
+        this.costs = costs;
+    }
+
+    /**
+     * @param portalIds Die Datenbank-IDs der Findables, an denen ein Portal beginnt oder endet.
+     */
+    public static PortalTable compute(RoadMapGraph graph, int[] portalIds) {
+        int k = portalIds.length;
+        int[] portals = new int[k];
+        for (int i = 0; i < k; i++) {
+            portals[i] = graph.indexOf(portalIds[i]);
+        }
+        PortalTable table = new PortalTable(graph.getVersion(), portalIds.clone(), portals, new double[k * k]);
+        for (int i = 0; i < k; i++) {
+            double[] fromPortal = portals[i] < 0 ? null : table.costsFrom(graph, new int[]{portals[i]}, new double[]{0}, null);
+            for (int j = 0; j < k; j++) {
+                table.costs[i * k + j] = fromPortal == null ? Double.POSITIVE_INFINITY : fromPortal[j];
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Dijkstra Suche von mehreren Startnodes, die endet, sobald alle Portale erreicht sind.
+     *
+     * @return Die Kosten zu jedem Portal in der Reihenfolge von {@link #getPortalId}, unendlich für unerreichbare Portale.
+     * @throws SearchCancelledException Wenn der Thread der Suche unterbrochen wurde.
+     */
+    public double[] costsFrom(RoadMapGraph graph, int[] sources, double[] sourceCosts, @Nullable BitSet mask) {
+        double[] result = new double[portals.length];
+        Arrays.fill(result, Double.POSITIVE_INFINITY);
+        BitSet remaining = new BitSet(graph.size());
+        for (int portal : portals) {
+            if (portal >= 0 && (mask == null || mask.get(portal))) {
+                remaining.set(portal);
+            }
+        }
+        SearchContext context = CONTEXT.get();
+        context.prepare(graph.size());
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] >= 0 && (mask == null || mask.get(sources[i]))) {
+                context.relax(sources[i], sourceCosts[i], -1, sourceCosts[i]);
+            }
+        }
+        int settled = 0;
+        while (!context.queue.isEmpty() && !remaining.isEmpty()) {
+            int current = context.queue.poll();
+            context.close(current);
+            SearchContext.checkCancelled(++settled);
+            remaining.clear(current);
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
+                }
+                double g = context.g_scores[current] + graph.edgeWeight(edge);
+                context.relax(child, g, current, g);
+            }
+        }
+        for (int i = 0; i < portals.length; i++) {
+            if (portals[i] >= 0 && context.isClosed(portals[i])) {
+                result[i] = context.g_scores[portals[i]];
+            }
+        }
+        return result;
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    /**
+     * @return true, wenn die Tabelle für diese Graphversion und genau diese Portale berechnet wurde.
+     */
+    public boolean isValid(RoadMapGraph graph, int[] portalIds) {
+        return graphVersion == graph.getVersion() && Arrays.equals(this.portalIds, portalIds);
+    }
+
+    public int getPortalCount() {
+        return portalIds.length;
+    }
+
+    public int getPortalId(int portal) {
+        return portalIds[portal];
+    }
+
+    public double getCost(int from, int to) {
+        return costs[from * portalIds.length + to];
+    }
+}
@@ -0,0 +1,346 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Unveränderlicher, kompilierter Schnappschuss einer Straßenkarte im CSR-Format (compressed sparse row).
+ * Nodes werden über einen fortlaufenden Index angesprochen. Die Kanten eines Nodes i liegen in
+ * targets[offsets[i]] bis targets[offsets[i + 1] - 1], die zugehörigen Kosten an derselben Stelle in weights.
+ * Die Kosten werden beim Bauen einmal über das {@link EdgeCostModel} berechnet.
+ * Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class RoadMapGraph {
+
+    public static final int NO_GROUP = -1;
+
+    private final long version;
+    private final EdgeCostModel costModel;
+    private final int[] databaseIds;
+    private final int[] sortedDatabaseIds;
+    private final int[] sortedIndices;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] groupIds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private volatile @Nullable SpatialIndex spatialIndex = null;
+    private final Map<Integer, GoalSet> groupGoals = new ConcurrentHashMap<>();
+
+    private RoadMapGraph(long version, EdgeCostModel costModel, int[] databaseIds, int[][] idIndex, double[] x, double[] y, double[] z,
+                         int[] groupIds, int[] offsets, int[] targets, double[] weights) {
+        this.version = version;
+        this.costModel = costModel;
+        this.databaseIds = databaseIds;
+        this.sortedDatabaseIds = idIndex[0];
+        this.sortedIndices = idIndex[1];
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.groupIds = groupIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    /**
+     * Sortierte Kopie der IDs, damit Datenbank-IDs ohne Boxing per Binärsuche auf Indizes abgebildet werden können.
+     *
+     * @return {sortierte IDs, zugehörige Indizes}
+     */
+    private static int[][] createIdIndex(int[] databaseIds) {
+        int n = databaseIds.length;
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) databaseIds[i] << 32) | (i & 0xffffffffL);
+        }
+        Arrays.sort(packed);
+        int[][] index = new int[2][n];
+        for (int i = 0; i < n; i++) {
+            index[0][i] = (int) (packed[i] >> 32);
+            index[1][i] = (int) packed[i];
+        }
+        return index;
+    }
+
+    private static int indexOf(int[][] idIndex, int databaseId) {
+        int i = Arrays.binarySearch(idIndex[0], databaseId);
+        return i < 0 ? -1 : idIndex[1][i];
+    }
+
+    public static Builder builder(long version) {
+        return new Builder(version, EdgeCostModel.EUCLIDEAN);
+    }
+
+    public static Builder builder(long version, EdgeCostModel costModel) {
+        return new Builder(version, costModel);
+    }
+
+    private static double cost(EdgeCostModel costModel, int a, int b, double[] x, double[] y, double[] z, int[] groupIds) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        double dz = z[a] - z[b];
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return costModel.getCost(length, x[a], y[a], z[a], groupIds[a], x[b], y[b], z[b], groupIds[b]);
+    }
+
+    /**
+     * @return Die Version der Straßenkarte, aus der dieser Graph kompiliert wurde.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public EdgeCostModel getCostModel() {
+        return costModel;
+    }
+
+    /**
+     * @return Der Faktor, mit dem die Luftlinie zu einer zulässigen Abschätzung der Restkosten wird.
+     */
+    public double getHeuristicFactor() {
+        return costModel.getHeuristicFactor();
+    }
+
+    public int size() {
+        return databaseIds.length;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    public int getDatabaseId(int index) {
+        return databaseIds[index];
+    }
+
+    /**
+     * @return Den Index des Nodes mit der angegebenen Datenbank-ID oder -1, falls es nicht im Graphen enthalten ist.
+     */
+    public int indexOf(int databaseId) {
+        int i = Arrays.binarySearch(sortedDatabaseIds, databaseId);
+        return i < 0 ? -1 : sortedIndices[i];
+    }
+
+    public double getX(int index) {
+        return x[index];
+    }
+
+    public double getY(int index) {
+        return y[index];
+    }
+
+    public double getZ(int index) {
+        return z[index];
+    }
+
+    public int getGroupId(int index) {
+        return groupIds[index];
+    }
+
+    /**
+     * @return Alle Nodes der Gruppe als Zielmenge. Sie wird beim ersten Aufruf pro Gruppe berechnet.
+     */
+    public GoalSet getGroupGoals(int groupId) {
+        return groupGoals.computeIfAbsent(groupId, id -> GoalSet.ofGroup(this, id));
+    }
+
+    public int edgeStart(int index) {
+        return offsets[index];
+    }
+
+    public int edgeEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return targets[edge];
+    }
+
+    public double edgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    public double distance(int index, double x, double y, double z) {
+        double dx = this.x[index] - x;
+        double dy = this.y[index] - y;
+        double dz = this.z[index] - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public double distance(int a, int b) {
+        return distance(a, x[b], y[b], z[b]);
+    }
+
+    /**
+     * Erzeugt einen neuen Graphen, in dem ein Node an eine neue Position verschoben ist. Die Struktur wird geteilt,
+     * neu berechnet werden nur die Kosten der Kanten, die an dem Node anliegen. Setzt ungerichtete Kanten voraus.
+     *
+     * @param version Die neue Version der Straßenkarte.
+     */
+    public RoadMapGraph withPosition(int index, double x, double y, double z, long version) {
+        double[] newX = Arrays.copyOf(this.x, this.x.length);
+        double[] newY = Arrays.copyOf(this.y, this.y.length);
+        double[] newZ = Arrays.copyOf(this.z, this.z.length);
+        newX[index] = x;
+        newY[index] = y;
+        newZ[index] = z;
+
+        double[] newWeights = Arrays.copyOf(weights, weights.length);
+        for (int edge = offsets[index]; edge < offsets[index + 1]; edge++) {
+            int neighbour = targets[edge];
+            newWeights[edge] = cost(costModel, index, neighbour, newX, newY, newZ, groupIds);
+            for (int back = offsets[neighbour]; back < offsets[neighbour + 1]; back++) {
+                if (targets[back] == index) {
+                    newWeights[back] = cost(costModel, neighbour, index, newX, newY, newZ, groupIds);
+                }
+            }
+        }
+        return new RoadMapGraph(version, costModel, databaseIds, new int[][]{sortedDatabaseIds, sortedIndices},
+                newX, newY, newZ, groupIds, offsets, targets, newWeights);
+    }
+
+    /**
+     * @return Das räumliche Gitter über Nodes und Kanten. Es wird beim ersten Aufruf gebaut.
+     */
+    public SpatialIndex getSpatialIndex() {
+        SpatialIndex index = spatialIndex;
+        if (index == null) {
+            //Gleichzeitige Aufrufe bauen schlimmstenfalls dasselbe Gitter doppelt
+            index = SpatialIndex.build(this);
+            spatialIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * @param mask Die Nodes, die berücksichtigt werden. null, wenn alle Nodes berücksichtigt werden.
+     * @return Den Index des Nodes mit der geringsten Entfernung zur angegebenen Position oder -1, wenn es keinen gibt.
+     */
+    public int getNearest(double x, double y, double z, @Nullable BitSet mask) {
+        return getSpatialIndex().getNearest(x, y, z, mask);
+    }
+
+    /**
+     * @return Die Kosten der Kante von a nach b oder unendlich, wenn es keine gibt.
+     */
+    public double edgeWeight(int a, int b) {
+        for (int edge = offsets[a]; edge < offsets[a + 1]; edge++) {
+            if (targets[edge] == b) {
+                return weights[edge];
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return Die Summe der Kantenkosten entlang des Pfades oder unendlich, wenn zwei Nodes nicht verbunden sind.
+     */
+    public double getPathCost(int[] path) {
+        double cost = 0;
+        for (int i = 1; i < path.length; i++) {
+            cost += edgeWeight(path[i - 1], path[i]);
+        }
+        return cost;
+    }
+
+    /**
+     * Sammelt Nodes und Kanten und kompiliert sie in einen {@link RoadMapGraph}.
+     * Kanten werden gerichtet eingetragen, Kanten zu unbekannten Nodes werden beim Bauen verworfen.
+     */
+    public static class Builder {
+
+        private final long version;
+        private final EdgeCostModel costModel;
+
+        private int nodeCount = 0;
+        private int[] databaseIds = new int[16];
+        private double[] x = new double[16];
+        private double[] y = new double[16];
+        private double[] z = new double[16];
+        private int[] groupIds = new int[16];
+
+        private int edgeCount = 0;
+        private int[] edgeSources = new int[16];
+        private int[] edgeTargets = new int[16];
+
+        private Builder(long version, EdgeCostModel costModel) {
+            this.version = version;
+            this.costModel = costModel;
+        }
+
+        public Builder addNode(int databaseId, double x, double y, double z, int groupId) {
+            if (nodeCount == databaseIds.length) {
+                int capacity = nodeCount * 2;
+                databaseIds = Arrays.copyOf(databaseIds, capacity);
+                this.x = Arrays.copyOf(this.x, capacity);
+                this.y = Arrays.copyOf(this.y, capacity);
+                this.z = Arrays.copyOf(this.z, capacity);
+                groupIds = Arrays.copyOf(groupIds, capacity);
+            }
+            databaseIds[nodeCount] = databaseId;
+            this.x[nodeCount] = x;
+            this.y[nodeCount] = y;
+            this.z[nodeCount] = z;
+            groupIds[nodeCount] = groupId;
+            nodeCount++;
+            return this;
+        }
+
+        /**
+         * Trägt eine gerichtete Kante ein. Für ungerichtete Verbindungen muss die Gegenrichtung ebenfalls eingetragen werden.
+         */
+        public Builder addEdge(int sourceDatabaseId, int targetDatabaseId) {
+            if (edgeCount == edgeSources.length) {
+                edgeSources = Arrays.copyOf(edgeSources, edgeCount * 2);
+                edgeTargets = Arrays.copyOf(edgeTargets, edgeCount * 2);
+            }
+            edgeSources[edgeCount] = sourceDatabaseId;
+            edgeTargets[edgeCount] = targetDatabaseId;
+            edgeCount++;
+            return this;
+        }
+
+        public RoadMapGraph build() {
+            int n = nodeCount;
+            int[] ids = Arrays.copyOf(databaseIds, n);
+            int[][] idIndex = createIdIndex(ids);
+
+            //Datenbank-IDs in Indizes übersetzen und ungültige Kanten verwerfen
+            int[] sources = new int[edgeCount];
+            int[] targets = new int[edgeCount];
+            int valid = 0;
+            int[] offsets = new int[n + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                int a = indexOf(idIndex, edgeSources[e]);
+                int b = indexOf(idIndex, edgeTargets[e]);
+                if (a < 0 || b < 0 || a == b) {
+                    continue;
+                }
+                sources[valid] = a;
+                targets[valid] = b;
+                offsets[a + 1]++;
+                valid++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            int[] fill = Arrays.copyOf(offsets, n);
+            int[] csrTargets = new int[valid];
+            double[] csrWeights = new double[valid];
+            for (int e = 0; e < valid; e++) {
+                int slot = fill[sources[e]]++;
+                csrTargets[slot] = targets[e];
+                csrWeights[slot] = cost(costModel, sources[e], targets[e], x, y, z, groupIds);
+            }
+            return new RoadMapGraph(version, costModel, ids, idIndex, Arrays.copyOf(x, n), Arrays.copyOf(y, n), Arrays.copyOf(z, n),
+                    Arrays.copyOf(groupIds, n), offsets, csrTargets, csrWeights);
+        }
+    }
+}
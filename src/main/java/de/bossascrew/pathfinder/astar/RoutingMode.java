@@ -0,0 +1,39 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Das Suchverfahren, mit dem die Pfade einer Straßenkarte berechnet werden.
+ */
+public enum RoutingMode {
+
+    /**
+     * Einfacher AStar mit Luftlinie als Heuristik.
+     */
+    ASTAR,
+    /**
+     * Bidirektionaler AStar, der gleichzeitig vom Start und vom Ziel sucht. Lohnt sich bei langen Wegen über die ganze Karte.
+     */
+    BIDIRECTIONAL,
+    /**
+     * AStar mit vorberechneten Landmarken als Heuristik, siehe {@link Landmarks}. Solange die Landmarken berechnet werden,
+     * wird die Luftlinie verwendet.
+     */
+    ALT,
+    /**
+     * Vorberechnete Contraction Hierarchy, siehe {@link ContractionHierarchy}. Für sehr große Straßenkarten.
+     * Solange die Hierarchie nach einer Änderung neu berechnet wird, wird ein einfacher AStar verwendet.
+     */
+    CONTRACTION_HIERARCHY,
+    /**
+     * Hierarchische Suche mit den FindableGroups als Cluster, siehe {@link ClusterHierarchy}. Für große Karten, die in
+     * Bezirke gegliedert sind und oft bearbeitet werden, da nach einer Änderung nur die betroffenen Cluster neu
+     * berechnet werden. Bis dahin wird ein einfacher AStar verwendet.
+     */
+    HIERARCHICAL,
+    /**
+     * Vorberechnete Routingtabelle mit dem nächsten Node zu jedem Ziel, siehe {@link NextHopTable}. Für kleine und
+     * mittlere Straßenkarten bis {@link NextHopTable#MAX_NODES} Nodes, ein Weg wird ohne Suche abgelesen.
+     * Für größere Karten, während der Neuberechnung und wenn der Weg über nicht sichtbare Nodes führt, wird ein
+     * einfacher AStar verwendet.
+     */
+    ROUTING_TABLE
+}
@@ -0,0 +1,90 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.function.Supplier;
+
+/**
+ * Obergrenze für eine einzelne Suche, damit eine pathologische Anfrage nicht den ganzen Graphen absucht und einen
+ * Thread der Pfadsuche blockiert. Das Budget gilt für alle Suchen, die innerhalb von {@link #run(Supplier)} im selben
+ * Thread laufen. Geprüft wird wie beim Abbrechen nur in Abständen, siehe {@link SearchContext#checkCancelled(int)}.
+ * Threadsafe, da nach dem Erzeugen nichts mehr verändert wird.
+ */
+public class SearchBudget {
+
+    public static final SearchBudget UNLIMITED = new SearchBudget(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private final int maxSettled;
+    private final long maxMillis;
+
+    /**
+     * @param maxSettled Die Anzahl an Nodes, die eine Suche höchstens abschließen darf.
+     * @param maxMillis  Die Zeit, die alle Suchen innerhalb von {@link #run(Supplier)} zusammen höchstens laufen dürfen.
+     */
+    public SearchBudget(int maxSettled, long maxMillis) {
+        if (maxSettled <= 0 || maxMillis <= 0) {
+            throw new IllegalArgumentException("Das Budget muss positiv sein.");
+        }
+        this.maxSettled = maxSettled;
+        this.maxMillis = maxMillis;
+    }
+
+    public int getMaxSettled() {
+        return maxSettled;
+    }
+
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Führt die Suchen mit diesem Budget aus. Ein Budget, das bereits im Thread gilt, wird danach wiederhergestellt.
+     *
+     * @throws SearchBudgetExceededException Wenn eine der Suchen das Budget überschreitet.
+     */
+    public <T> T run(Supplier<T> search) {
+        Scope previous = CURRENT.get();
+        long deadline = maxMillis > Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : System.nanoTime() + maxMillis * 1_000_000;
+        CURRENT.set(new Scope(maxSettled, deadline));
+        try {
+            return search.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @param settled Die Anzahl der bisher abgeschlossenen Nodes der laufenden Suche.
+     * @throws SearchBudgetExceededException Wenn im Thread ein Budget gilt und es überschritten wurde.
+     */
+    static void check(int settled) {
+        Scope scope = CURRENT.get();
+        if (scope != null && (settled > scope.maxSettled || scope.deadline != Long.MAX_VALUE && System.nanoTime() > scope.deadline)) {
+            throw new SearchBudgetExceededException();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (maxSettled == Integer.MAX_VALUE ? "unbegrenzt" : maxSettled) + " Nodes, "
+                + (maxMillis == Long.MAX_VALUE ? "unbegrenzt" : maxMillis + "ms");
+    }
+
+    /**
+     * Das im Thread geltende Budget mit dem Zeitpunkt in {@link System#nanoTime()}, an dem es abläuft.
+     */
+    private static class Scope {
+
+        private final int maxSettled;
+        private final long deadline;
+
+        Scope(int maxSettled, long deadline) {
+            this.maxSettled = maxSettled;
+            this.deadline = deadline;
+        }
+    }
+}
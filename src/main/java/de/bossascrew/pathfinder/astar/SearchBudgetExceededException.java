@@ -0,0 +1,12 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Wird von einer Suche geworfen, wenn sie mehr Nodes abgeschlossen hat oder länger gelaufen ist, als ihr
+ * {@link SearchBudget} erlaubt, z.B. bei einer fehlerhaften Straßenkarte oder einem sehr weit entfernten Ziel.
+ */
+public class SearchBudgetExceededException extends RuntimeException {
+
+    public SearchBudgetExceededException() {
+        super("Die Suche hat ihr Budget überschritten.");
+    }
+}
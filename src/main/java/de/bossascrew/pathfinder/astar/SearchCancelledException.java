@@ -0,0 +1,12 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Wird von einer Suche geworfen, wenn ihr Thread unterbrochen wurde, z.B. weil der Spieler inzwischen eine neuere
+ * Anfrage gestellt hat. Suchen prüfen das nur in Abständen, um die innere Schleife nicht zu verlangsamen.
+ */
+public class SearchCancelledException extends RuntimeException {
+
+    public SearchCancelledException() {
+        super("Die Suche wurde abgebrochen.");
+    }
+}
@@ -0,0 +1,98 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Arrays;
+
+/**
+ * Wiederverwendbarer Suchzustand eines Threads. Die Arrays wachsen mit dem größten durchsuchten Graphen.
+ * g_scores und parents sind nur gültig, wenn der Node in der aktuellen Generation gesehen wurde,
+ * dadurch muss zwischen zwei Suchen nichts geleert werden.
+ */
+class SearchContext {
+
+    /**
+     * Alle wie viele abgeschlossenen Nodes geprüft wird, ob die Suche abgebrochen wurde. Muss eine Zweierpotenz sein.
+     */
+    static final int CANCEL_CHECK_INTERVAL = 256;
+
+    double[] g_scores = new double[0];
+    int[] parents = new int[0];
+    int[] seen = new int[0];
+    int[] closed = new int[0];
+    int generation = 0;
+    final IndexedMinHeap queue = new IndexedMinHeap();
+
+    /**
+     * @param settled Die Anzahl der bisher abgeschlossenen Nodes.
+     * @throws SearchCancelledException      Wenn der Thread der Suche unterbrochen wurde.
+     * @throws SearchBudgetExceededException Wenn die Suche das {@link SearchBudget} des Threads überschritten hat.
+     */
+    static void checkCancelled(int settled) {
+        if ((settled & (CANCEL_CHECK_INTERVAL - 1)) != 0) {
+            return;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new SearchCancelledException();
+        }
+        SearchBudget.check(settled);
+    }
+
+    void prepare(int size) {
+        if (g_scores.length < size) {
+            g_scores = new double[size];
+            parents = new int[size];
+            seen = new int[size];
+            closed = new int[size];
+            generation = 0;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            generation = 1;
+        }
+        queue.reset(size);
+    }
+
+    boolean isSeen(int node) {
+        return seen[node] == generation;
+    }
+
+    boolean isClosed(int node) {
+        return closed[node] == generation;
+    }
+
+    /**
+     * Setzt die Kosten eines Nodes, falls sie geringer sind als die bisher bekannten, und legt ihn in die Warteschlange.
+     *
+     * @return true, wenn der Node aktualisiert wurde.
+     */
+    boolean relax(int node, double g, int parent, double key) {
+        if (isSeen(node) && g >= g_scores[node]) {
+            return false;
+        }
+        g_scores[node] = g;
+        parents[node] = parent;
+        seen[node] = generation;
+        closed[node] = 0;
+        queue.insertOrDecrease(node, key);
+        return true;
+    }
+
+    void close(int node) {
+        closed[node] = generation;
+    }
+
+    /**
+     * @return Die Nodes vom Start bis zum übergebenen Node, indem den parents gefolgt wird.
+     */
+    int[] buildPath(int target) {
+        int length = 0;
+        for (int node = target; node != -1; node = parents[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int node = target; node != -1; node = parents[node]) {
+            path[--length] = node;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,59 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Schlüssel für zwischengespeicherte Suchergebnisse. Die Maske wird kopiert und vollständig verglichen, damit Spieler
+ * mit unterschiedlich vielen gefundenen Nodes nie dasselbe Ergebnis verwenden.
+ */
+class SearchKey {
+
+    final int roadMapId;
+    final long graphVersion;
+    final int source;
+    final int target;
+    final int targetGroup;
+    private final @Nullable BitSet mask;
+    private final int hash;
+
+    /**
+     * @param source Der Startnode oder -1, wenn das Ergebnis für alle Starts gilt.
+     */
+    SearchKey(int roadMapId, long graphVersion, int source, int target, @Nullable BitSet mask) {
+        this(roadMapId, graphVersion, source, target, RoadMapGraph.NO_GROUP, mask);
+    }
+
+    /**
+     * @param target      Der Zielnode oder -1, wenn alle Nodes einer Gruppe das Ziel sind.
+     * @param targetGroup Die Gruppe, deren Nodes das Ziel sind, oder {@link RoadMapGraph#NO_GROUP}.
+     */
+    SearchKey(int roadMapId, long graphVersion, int source, int target, int targetGroup, @Nullable BitSet mask) {
+        this.roadMapId = roadMapId;
+        this.graphVersion = graphVersion;
+        this.source = source;
+        this.target = target;
+        this.targetGroup = targetGroup;
+        this.mask = mask == null ? null : (BitSet) mask.clone();
+        this.hash = Objects.hash(roadMapId, graphVersion, source, target, targetGroup, mask);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchKey)) {
+            return false;
+        }
+        SearchKey key = (SearchKey) o;
+        return roadMapId == key.roadMapId && graphVersion == key.graphVersion && source == key.source
+                && target == key.target && targetGroup == key.targetGroup && Objects.equals(mask, key.mask);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,122 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Umgekehrter Baum kürzester Wege zu einem Ziel. Jeder Node kennt seine Kosten zum Ziel und den nächsten Node
+ * auf dem Weg dorthin, ein Pfad von einem beliebigen Start kostet daher nur O(Pfadlänge).
+ * Setzt ungerichtete Kanten mit gleichen Kosten in beide Richtungen voraus und gilt nur für die Graphversion
+ * und Maske, mit der er berechnet wurde. Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class ShortestPathTree {
+
+    private final long graphVersion;
+    private final int target;
+    private final double[] distances;
+    private final int[] nextHops;
+
+    private ShortestPathTree(long graphVersion, int target, double[] distances, int[] nextHops) {
+        this.graphVersion = graphVersion;
+        this.target = target;
+        this.distances = distances;
+        this.nextHops = nextHops;
+    }
+
+    /**
+     * Dijkstra Suche vom Ziel aus über alle erlaubten Nodes.
+     *
+     * @param mask Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     */
+    public static ShortestPathTree compute(RoadMapGraph graph, int target, @Nullable BitSet mask) {
+        int n = graph.size();
+        double[] distances = new double[n];
+        int[] nextHops = new int[n];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(nextHops, -1);
+        if (mask != null && !mask.get(target)) {
+            return new ShortestPathTree(graph.getVersion(), target, distances, nextHops);
+        }
+
+        IndexedMinHeap queue = new IndexedMinHeap();
+        queue.reset(n);
+        distances[target] = 0;
+        queue.insertOrDecrease(target, 0);
+        int settled = 0;
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            SearchContext.checkCancelled(++settled);
+            for (int edge = graph.edgeStart(current); edge < graph.edgeEnd(current); edge++) {
+                int child = graph.edgeTarget(edge);
+                if (mask != null && !mask.get(child)) {
+                    continue;
+                }
+                double distance = distances[current] + graph.edgeWeight(edge);
+                if (distance < distances[child]) {
+                    distances[child] = distance;
+                    nextHops[child] = current;
+                    queue.insertOrDecrease(child, distance);
+                }
+            }
+        }
+        return new ShortestPathTree(graph.getVersion(), target, distances, nextHops);
+    }
+
+    public long getGraphVersion() {
+        return graphVersion;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * @return Die Kosten vom Node zum Ziel, {@link Double#POSITIVE_INFINITY} wenn es nicht erreichbar ist.
+     */
+    public double getDistance(int node) {
+        return distances[node];
+    }
+
+    /**
+     * @return Der ungefähre Speicherbedarf in Bytes.
+     */
+    public long getMemoryBytes() {
+        return (long) distances.length * (Double.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Wählt den Start mit den geringsten Gesamtkosten und folgt von dort den Verweisen bis zum Ziel.
+     *
+     * @return Die Indizes der Nodes vom Start bis zum Ziel oder null, wenn das Ziel von keinem Start erreichbar ist.
+     */
+    public @Nullable
+    int[] pathFrom(int[] sources, double[] sourceCosts) {
+        int best = -1;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] < 0) {
+                continue;
+            }
+            double cost = sourceCosts[i] + distances[sources[i]];
+            if (cost < bestCost) {
+                best = sources[i];
+                bestCost = cost;
+            }
+        }
+        if (best == -1) {
+            return null;
+        }
+        int length = 1;
+        for (int node = best; node != target; node = nextHops[node]) {
+            length++;
+        }
+        int[] path = new int[length];
+        int i = 0;
+        for (int node = best; node != target; node = nextHops[node]) {
+            path[i++] = node;
+        }
+        path[i] = target;
+        return path;
+    }
+}
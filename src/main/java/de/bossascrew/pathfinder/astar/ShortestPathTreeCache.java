@@ -0,0 +1,153 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * Teilt {@link ShortestPathTree}s zwischen Anfragen an dasselbe Ziel, z.B. wenn während eines Events viele Spieler
+ * denselben Ort suchen. Ein Baum wird erst gebaut, wenn ein Ziel innerhalb eines Zeitfensters oft genug angefragt wurde.
+ * Bäume werden nach Speicherbedarf per LRU verdrängt und verworfen, sobald sich die Version des Graphen ändert.
+ * Threadsafe.
+ */
+public class ShortestPathTreeCache {
+
+    private static final int MAX_TRACKED_REQUESTS = 4096;
+
+    private final int requestThreshold;
+    private final long windowMillis;
+    private final long maxBytes;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<SearchKey, ShortestPathTree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<SearchKey, long[]> requests = new HashMap<>();
+    private final Map<Integer, Long> latestVersions = new HashMap<>();
+    private long usedBytes = 0;
+
+    /**
+     * @param requestThreshold Die Anzahl an Anfragen an dasselbe Ziel, ab der ein Baum gebaut wird.
+     * @param windowMillis     Das Zeitfenster, in dem die Anfragen gezählt werden.
+     * @param maxBytes         Der Speicher, den alle Bäume zusammen belegen dürfen.
+     */
+    public ShortestPathTreeCache(int requestThreshold, long windowMillis, long maxBytes) {
+        this(requestThreshold, windowMillis, maxBytes, System::currentTimeMillis);
+    }
+
+    ShortestPathTreeCache(int requestThreshold, long windowMillis, long maxBytes, LongSupplier clock) {
+        this.requestThreshold = requestThreshold;
+        this.windowMillis = windowMillis;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Zählt die Anfrage und liefert den Baum zum Ziel, falls er vorhanden ist oder jetzt die Schwelle erreicht wurde.
+     * Das Bauen läuft im aufrufenden Thread und sollte daher asynchron aufgerufen werden.
+     *
+     * @param roadMapId Die ID der Straßenkarte des Graphen.
+     * @param mask      Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     * @return Den Baum oder null, wenn das Ziel noch nicht oft genug angefragt wurde.
+     */
+    public @Nullable
+    ShortestPathTree request(int roadMapId, RoadMapGraph graph, int target, @Nullable BitSet mask) {
+        SearchKey key = new SearchKey(roadMapId, graph.getVersion(), -1, target, mask);
+        synchronized (this) {
+            invalidateOlderVersions(roadMapId, graph.getVersion());
+            ShortestPathTree tree = trees.get(key);
+            if (tree != null) {
+                return tree;
+            }
+            if (!countRequest(key)) {
+                return null;
+            }
+        }
+        return build(key, graph, target, mask);
+    }
+
+    /**
+     * Liefert den Baum zum Ziel und baut ihn ohne Zählen der Anfragen, z.B. wenn viele Spieler gleichzeitig
+     * dasselbe Ziel anfragen. Das Bauen läuft im aufrufenden Thread und sollte daher asynchron aufgerufen werden.
+     *
+     * @param roadMapId Die ID der Straßenkarte des Graphen.
+     * @param mask      Die Nodes, die betreten werden dürfen. null, wenn alle Nodes erlaubt sind.
+     */
+    public ShortestPathTree get(int roadMapId, RoadMapGraph graph, int target, @Nullable BitSet mask) {
+        SearchKey key = new SearchKey(roadMapId, graph.getVersion(), -1, target, mask);
+        synchronized (this) {
+            invalidateOlderVersions(roadMapId, graph.getVersion());
+            ShortestPathTree tree = trees.get(key);
+            if (tree != null) {
+                return tree;
+            }
+        }
+        return build(key, graph, target, mask);
+    }
+
+    private ShortestPathTree build(SearchKey key, RoadMapGraph graph, int target, @Nullable BitSet mask) {
+        ShortestPathTree tree = ShortestPathTree.compute(graph, target, mask);
+        synchronized (this) {
+            if (graph.getVersion() >= latestVersions.get(key.roadMapId) && !trees.containsKey(key)) {
+                trees.put(key, tree);
+                usedBytes += tree.getMemoryBytes();
+                evict();
+            }
+        }
+        return tree;
+    }
+
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return true, wenn die Schwelle innerhalb des Zeitfensters erreicht wurde.
+     */
+    private boolean countRequest(SearchKey key) {
+        long now = clock.getAsLong();
+        if (requests.size() >= MAX_TRACKED_REQUESTS) {
+            requests.values().removeIf(counter -> now - counter[1] > windowMillis);
+            if (requests.size() >= MAX_TRACKED_REQUESTS) {
+                requests.clear();
+            }
+        }
+        long[] counter = requests.computeIfAbsent(key, k -> new long[]{0, now});
+        if (now - counter[1] > windowMillis) {
+            counter[0] = 0;
+            counter[1] = now;
+        }
+        if (++counter[0] < requestThreshold) {
+            return false;
+        }
+        requests.remove(key);
+        return true;
+    }
+
+    private void invalidateOlderVersions(int roadMapId, long version) {
+        Long latest = latestVersions.get(roadMapId);
+        if (latest != null && latest >= version) {
+            return;
+        }
+        latestVersions.put(roadMapId, version);
+        Iterator<Map.Entry<SearchKey, ShortestPathTree>> iterator = trees.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SearchKey, ShortestPathTree> entry = iterator.next();
+            if (entry.getKey().roadMapId == roadMapId && entry.getKey().graphVersion < version) {
+                usedBytes -= entry.getValue().getMemoryBytes();
+                iterator.remove();
+            }
+        }
+        requests.keySet().removeIf(key -> key.roadMapId == roadMapId && key.graphVersion < version);
+    }
+
+    private void evict() {
+        Iterator<ShortestPathTree> iterator = trees.values().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            usedBytes -= iterator.next().getMemoryBytes();
+            iterator.remove();
+        }
+    }
+}
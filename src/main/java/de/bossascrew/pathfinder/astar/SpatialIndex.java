@@ -0,0 +1,461 @@
+package de.bossascrew.pathfinder.astar;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * Gleichmäßiges 3D-Gitter über die Nodes und Kanten eines {@link RoadMapGraph}.
+ * Jede Zelle kennt die Nodes, die in ihr liegen, und die Kanten, deren Bounding Box sie schneidet. Abfragen suchen
+ * in Schalen um die Zelle der Position nach außen und hören auf, sobald keine ungeprüfte Zelle mehr näher sein kann.
+ * Die Zellgröße wird so gewählt, dass auf eine Zelle etwa ein Node kommt.
+ * Threadsafe, da nach dem Bauen nichts mehr verändert wird.
+ */
+public class SpatialIndex {
+
+    private final RoadMapGraph graph;
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double cellSize;
+    private final int cellsX;
+    private final int cellsY;
+    private final int cellsZ;
+
+    private int[] nodeOffsets;
+    private int[] cellNodes;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private int[] edgeOffsets;
+    private int[] cellEdges;
+
+    private SpatialIndex(RoadMapGraph graph, double minX, double minY, double minZ, double cellSize, int cellsX, int cellsY, int cellsZ) {
+        this.graph = graph;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.cellSize = cellSize;
+        this.cellsX = cellsX;
+        this.cellsY = cellsY;
+        this.cellsZ = cellsZ;
+    }
+
+    /**
+     * Baut das Gitter in O(Nodes + Kanten). Kanten, die in beide Richtungen existieren, werden nur einmal eingetragen.
+     */
+    public static SpatialIndex build(RoadMapGraph graph) {
+        int n = graph.size();
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, graph.getX(i));
+            minY = Math.min(minY, graph.getY(i));
+            minZ = Math.min(minZ, graph.getZ(i));
+            maxX = Math.max(maxX, graph.getX(i));
+            maxY = Math.max(maxY, graph.getY(i));
+            maxZ = Math.max(maxZ, graph.getZ(i));
+        }
+        if (n == 0) {
+            minX = minY = minZ = maxX = maxY = maxZ = 0;
+        }
+
+        //Ungerichtete Kanten sammeln
+        int[] from = new int[graph.getEdgeCount()];
+        int[] to = new int[graph.getEdgeCount()];
+        int edges = 0;
+        for (int a = 0; a < n; a++) {
+            for (int edge = graph.edgeStart(a); edge < graph.edgeEnd(a); edge++) {
+                int b = graph.edgeTarget(edge);
+                if (a < b || !hasEdge(graph, b, a)) {
+                    from[edges] = a;
+                    to[edges] = b;
+                    edges++;
+                }
+            }
+        }
+        from = Arrays.copyOf(from, edges);
+        to = Arrays.copyOf(to, edges);
+
+        //Zellgröße so wählen, dass es etwa so viele Zellen wie Nodes gibt
+        double extentX = Math.max(maxX - minX, 1);
+        double extentY = Math.max(maxY - minY, 1);
+        double extentZ = Math.max(maxZ - minZ, 1);
+        long target = Math.max(1, n);
+        double cellSize = Math.max(1, Math.cbrt(extentX * extentY * extentZ / target));
+        int cellsX, cellsY, cellsZ;
+        while (true) {
+            cellsX = (int) Math.min(Integer.MAX_VALUE, (long) Math.floor(extentX / cellSize) + 1);
+            cellsY = (int) Math.min(Integer.MAX_VALUE, (long) Math.floor(extentY / cellSize) + 1);
+            cellsZ = (int) Math.min(Integer.MAX_VALUE, (long) Math.floor(extentZ / cellSize) + 1);
+            if ((long) cellsX * cellsY * cellsZ <= 2 * target + 8) {
+                break;
+            }
+            cellSize *= 1.25;
+        }
+        int cells = cellsX * cellsY * cellsZ;
+
+        SpatialIndex index = new SpatialIndex(graph, minX, minY, minZ, cellSize, cellsX, cellsY, cellsZ);
+
+        //Nodes per Counting Sort in die Zellen verteilen
+        int[] nodeCells = new int[n];
+        int[] nodeOffsets = new int[cells + 1];
+        for (int i = 0; i < n; i++) {
+            nodeCells[i] = index.cellOf(graph.getX(i), graph.getY(i), graph.getZ(i));
+            nodeOffsets[nodeCells[i] + 1]++;
+        }
+        prefixSum(nodeOffsets);
+        int[] fill = Arrays.copyOf(nodeOffsets, cells);
+        int[] cellNodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            cellNodes[fill[nodeCells[i]]++] = i;
+        }
+
+        //Kanten in alle Zellen ihrer Bounding Box eintragen, in zwei Durchläufen zählen und füllen
+        int[] edgeOffsets = new int[cells + 1];
+        for (int e = 0; e < edges; e++) {
+            index.forEachCell(from[e], to[e], cell -> edgeOffsets[cell + 1]++);
+        }
+        prefixSum(edgeOffsets);
+        int[] edgeFill = Arrays.copyOf(edgeOffsets, cells);
+        int[] cellEdges = new int[edgeOffsets[cells]];
+        for (int e = 0; e < edges; e++) {
+            int edge = e;
+            index.forEachCell(from[e], to[e], cell -> cellEdges[edgeFill[cell]++] = edge);
+        }
+        index.nodeOffsets = nodeOffsets;
+        index.cellNodes = cellNodes;
+        index.edgeFrom = from;
+        index.edgeTo = to;
+        index.edgeOffsets = edgeOffsets;
+        index.cellEdges = cellEdges;
+        return index;
+    }
+
+    private static boolean hasEdge(RoadMapGraph graph, int a, int b) {
+        for (int edge = graph.edgeStart(a); edge < graph.edgeEnd(a); edge++) {
+            if (graph.edgeTarget(edge) == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void prefixSum(int[] offsets) {
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+    }
+
+    public int getCellCount() {
+        return cellsX * cellsY * cellsZ;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @param mask Die Nodes, die berücksichtigt werden. null, wenn alle Nodes berücksichtigt werden.
+     * @return Den Index des nächstgelegenen Nodes oder -1, wenn es keinen gibt.
+     */
+    public int getNearest(double x, double y, double z, @Nullable BitSet mask) {
+        int[] nearest = getNearest(x, y, z, 1, mask);
+        return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+    /**
+     * @param count Die Anzahl der gesuchten Nodes.
+     * @param mask  Die Nodes, die berücksichtigt werden. null, wenn alle Nodes berücksichtigt werden.
+     * @return Die Indizes der höchstens count nächstgelegenen Nodes, aufsteigend nach Entfernung sortiert.
+     */
+    public int[] getNearest(double x, double y, double z, int count, @Nullable BitSet mask) {
+        int[] best = new int[count];
+        double[] bestDistances = new double[count];
+        int found = 0;
+        if (count <= 0) {
+            return best;
+        }
+        int centerX = clamp((int) Math.floor((x - minX) / cellSize), cellsX);
+        int centerY = clamp((int) Math.floor((y - minY) / cellSize), cellsY);
+        int centerZ = clamp((int) Math.floor((z - minZ) / cellSize), cellsZ);
+        int[][] shell = {new int[64]};
+
+        for (int radius = 0; ; radius++) {
+            int shellSize = shell(centerX, centerY, centerZ, radius, shell);
+            for (int s = 0; s < shellSize; s++) {
+                int cell = shell[0][s];
+                for (int i = nodeOffsets[cell]; i < nodeOffsets[cell + 1]; i++) {
+                    int node = cellNodes[i];
+                    if (mask != null && !mask.get(node)) {
+                        continue;
+                    }
+                    double distance = graph.distance(node, x, y, z);
+                    if (found == count && distance >= bestDistances[count - 1]) {
+                        continue;
+                    }
+                    //Sortiert einfügen, count ist klein
+                    int slot = found == count ? count - 1 : found++;
+                    while (slot > 0 && bestDistances[slot - 1] > distance) {
+                        best[slot] = best[slot - 1];
+                        bestDistances[slot] = bestDistances[slot - 1];
+                        slot--;
+                    }
+                    best[slot] = node;
+                    bestDistances[slot] = distance;
+                }
+            }
+            double bound = unscannedDistance(x, y, z, centerX, centerY, centerZ, radius);
+            if (bound == Double.POSITIVE_INFINITY || (found == count && bestDistances[count - 1] <= bound)) {
+                return found == count ? best : Arrays.copyOf(best, found);
+            }
+        }
+    }
+
+    /**
+     * Bindet eine Position in den Graphen ein. Sie steigt am nächstgelegenen Punkt einer Kante ein und läuft von dort
+     * über zwei virtuelle Kanten zu einem der beiden Nodes. Liegt ein einzelner Node ohne Kanten näher, wird direkt
+     * dieser verwendet.
+     *
+     * @param mask Die Nodes, die berücksichtigt werden. null, wenn alle Nodes berücksichtigt werden.
+     * @return Die möglichen Startnodes mit ihren Kosten oder null, wenn kein Node erlaubt ist.
+     */
+    public @Nullable
+    Entry getEntry(double x, double y, double z, @Nullable BitSet mask) {
+        int nearest = getNearest(x, y, z, mask);
+        if (nearest < 0) {
+            return null;
+        }
+        EdgePoint point = getNearestEdgePoint(x, y, z, mask);
+        if (point == null || point.getDistance() >= graph.distance(nearest, x, y, z)) {
+            return new Entry(new int[]{nearest}, new double[]{0});
+        }
+        return new Entry(new int[]{point.getFrom(), point.getTo()}, new double[]{
+                point.getFraction() * graph.edgeWeight(point.getTo(), point.getFrom()),
+                (1 - point.getFraction()) * graph.edgeWeight(point.getFrom(), point.getTo())});
+    }
+
+    /**
+     * Sucht den nächstgelegenen Punkt auf einer Kante, damit ein Spieler auch zwischen zwei Nodes in den Graphen
+     * einsteigen kann. Kanten werden nur berücksichtigt, wenn beide Nodes erlaubt sind.
+     *
+     * @param mask Die Nodes, die berücksichtigt werden. null, wenn alle Nodes berücksichtigt werden.
+     * @return Den nächstgelegenen Punkt oder null, wenn es keine erlaubte Kante gibt.
+     */
+    public @Nullable
+    EdgePoint getNearestEdgePoint(double x, double y, double z, @Nullable BitSet mask) {
+        int bestEdge = -1;
+        double bestFraction = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int centerX = clamp((int) Math.floor((x - minX) / cellSize), cellsX);
+        int centerY = clamp((int) Math.floor((y - minY) / cellSize), cellsY);
+        int centerZ = clamp((int) Math.floor((z - minZ) / cellSize), cellsZ);
+        int[][] shell = {new int[64]};
+
+        for (int radius = 0; ; radius++) {
+            int shellSize = shell(centerX, centerY, centerZ, radius, shell);
+            for (int s = 0; s < shellSize; s++) {
+                int cell = shell[0][s];
+                for (int i = edgeOffsets[cell]; i < edgeOffsets[cell + 1]; i++) {
+                    int edge = cellEdges[i];
+                    int a = edgeFrom[edge];
+                    int b = edgeTo[edge];
+                    if (mask != null && (!mask.get(a) || !mask.get(b))) {
+                        continue;
+                    }
+                    double fraction = project(a, b, x, y, z);
+                    double distance = distanceAt(a, b, fraction, x, y, z);
+                    if (distance < bestDistance) {
+                        bestEdge = edge;
+                        bestFraction = fraction;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            double bound = unscannedDistance(x, y, z, centerX, centerY, centerZ, radius);
+            if (bound == Double.POSITIVE_INFINITY || bestDistance <= bound) {
+                break;
+            }
+        }
+        if (bestEdge < 0) {
+            return null;
+        }
+        return new EdgePoint(edgeFrom[bestEdge], edgeTo[bestEdge], bestFraction, bestDistance);
+    }
+
+    /**
+     * @return Die Position des Punktes zwischen a und b, der am nächsten an der Position liegt, als Anteil von 0 bis 1.
+     */
+    private double project(int a, int b, double x, double y, double z) {
+        double dx = graph.getX(b) - graph.getX(a);
+        double dy = graph.getY(b) - graph.getY(a);
+        double dz = graph.getZ(b) - graph.getZ(a);
+        double lengthSquared = dx * dx + dy * dy + dz * dz;
+        if (lengthSquared == 0) {
+            return 0;
+        }
+        double t = ((x - graph.getX(a)) * dx + (y - graph.getY(a)) * dy + (z - graph.getZ(a)) * dz) / lengthSquared;
+        return Math.max(0, Math.min(1, t));
+    }
+
+    private double distanceAt(int a, int b, double fraction, double x, double y, double z) {
+        double dx = graph.getX(a) + (graph.getX(b) - graph.getX(a)) * fraction - x;
+        double dy = graph.getY(a) + (graph.getY(b) - graph.getY(a)) * fraction - y;
+        double dz = graph.getZ(a) + (graph.getZ(b) - graph.getZ(a)) * fraction - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Untere Schranke für die Entfernung zu allen Punkten außerhalb der bereits durchsuchten Zellen.
+     * Für jede Seite, hinter der noch Zellen liegen, zählt nur der Abstand entlang ihrer Achse.
+     *
+     * @return Die Schranke oder unendlich, wenn bereits alle Zellen durchsucht wurden.
+     */
+    private double unscannedDistance(double x, double y, double z, int centerX, int centerY, int centerZ, int radius) {
+        double bound = Double.POSITIVE_INFINITY;
+        bound = Math.min(bound, sideDistance(x - minX, centerX, radius, cellsX));
+        bound = Math.min(bound, sideDistance(y - minY, centerY, radius, cellsY));
+        bound = Math.min(bound, sideDistance(z - minZ, centerZ, radius, cellsZ));
+        return bound;
+    }
+
+    private double sideDistance(double offset, int center, int radius, int cells) {
+        double bound = Double.POSITIVE_INFINITY;
+        if (center - radius > 0) {
+            bound = Math.max(0, offset - (center - radius) * cellSize);
+        }
+        if (center + radius < cells - 1) {
+            bound = Math.min(bound, Math.max(0, (center + radius + 1) * cellSize - offset));
+        }
+        return bound;
+    }
+
+    /**
+     * Sammelt die Zellen innerhalb des Gitters, die in jeder Richtung höchstens radius Zellen von der Mittelzelle
+     * entfernt sind und auf mindestens einer Achse genau radius.
+     *
+     * @param buffer Ein Array der Länge 1, dessen Inhalt bei Bedarf durch ein größeres ersetzt wird.
+     * @return Die Anzahl der gesammelten Zellen.
+     */
+    private int shell(int centerX, int centerY, int centerZ, int radius, int[][] buffer) {
+        int fromX = Math.max(0, centerX - radius);
+        int toX = Math.min(cellsX - 1, centerX + radius);
+        int fromY = Math.max(0, centerY - radius);
+        int toY = Math.min(cellsY - 1, centerY + radius);
+        int fromZ = Math.max(0, centerZ - radius);
+        int toZ = Math.min(cellsZ - 1, centerZ + radius);
+        int size = 0;
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                boolean onShell = cx == centerX - radius || cx == centerX + radius || cy == centerY - radius || cy == centerY + radius;
+                if (buffer[0].length < size + toZ - fromZ + 1) {
+                    buffer[0] = Arrays.copyOf(buffer[0], Math.max(buffer[0].length * 2, size + toZ - fromZ + 1));
+                }
+                int base = (cx * cellsY + cy) * cellsZ;
+                if (onShell) {
+                    for (int cz = fromZ; cz <= toZ; cz++) {
+                        buffer[0][size++] = base + cz;
+                    }
+                } else {
+                    //Innerhalb der Schale liegen nur die beiden Enden auf der z-Achse
+                    if (centerZ - radius >= 0) {
+                        buffer[0][size++] = base + centerZ - radius;
+                    }
+                    if (centerZ + radius < cellsZ) {
+                        buffer[0][size++] = base + centerZ + radius;
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    private int cellOf(double x, double y, double z) {
+        int cx = clamp((int) Math.floor((x - minX) / cellSize), cellsX);
+        int cy = clamp((int) Math.floor((y - minY) / cellSize), cellsY);
+        int cz = clamp((int) Math.floor((z - minZ) / cellSize), cellsZ);
+        return (cx * cellsY + cy) * cellsZ + cz;
+    }
+
+    private void forEachCell(int a, int b, IntConsumer consumer) {
+        int fromX = clamp((int) Math.floor((Math.min(graph.getX(a), graph.getX(b)) - minX) / cellSize), cellsX);
+        int fromY = clamp((int) Math.floor((Math.min(graph.getY(a), graph.getY(b)) - minY) / cellSize), cellsY);
+        int fromZ = clamp((int) Math.floor((Math.min(graph.getZ(a), graph.getZ(b)) - minZ) / cellSize), cellsZ);
+        int toX = clamp((int) Math.floor((Math.max(graph.getX(a), graph.getX(b)) - minX) / cellSize), cellsX);
+        int toY = clamp((int) Math.floor((Math.max(graph.getY(a), graph.getY(b)) - minY) / cellSize), cellsY);
+        int toZ = clamp((int) Math.floor((Math.max(graph.getZ(a), graph.getZ(b)) - minZ) / cellSize), cellsZ);
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                for (int cz = fromZ; cz <= toZ; cz++) {
+                    consumer.accept((cx * cellsY + cy) * cellsZ + cz);
+                }
+            }
+        }
+    }
+
+    private static int clamp(int cell, int cells) {
+        return Math.max(0, Math.min(cells - 1, cell));
+    }
+
+    /**
+     * Ein Punkt auf der Kante zwischen zwei Nodes.
+     */
+    public static class EdgePoint {
+
+        private final int from;
+        private final int to;
+        private final double fraction;
+        private final double distance;
+
+        EdgePoint(int from, int to, double fraction, double distance) {
+            this.from = from;
+            this.to = to;
+            this.fraction = fraction;
+            this.distance = distance;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        /**
+         * @return Die Position auf der Kante, 0 liegt auf from, 1 auf to.
+         */
+        public double getFraction() {
+            return fraction;
+        }
+
+        /**
+         * @return Die Entfernung von der abgefragten Position zum Punkt.
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * Die Startnodes einer Position im Graphen mit den Kosten, um sie von der Position aus zu erreichen.
+     */
+    public static class Entry {
+
+        private final int[] sources;
+        private final double[] sourceCosts;
+
+        Entry(int[] sources, double[] sourceCosts) {
+            this.sources = sources;
+            this.sourceCosts = sourceCosts;
+        }
+
+        public int[] getSources() {
+            return sources;
+        }
+
+        public double[] getSourceCosts() {
+            return sourceCosts;
+        }
+    }
+}
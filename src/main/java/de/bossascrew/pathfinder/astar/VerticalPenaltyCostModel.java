@@ -0,0 +1,31 @@
+package de.bossascrew.pathfinder.astar;
+
+/**
+ * Verteuert Höhenunterschiede, damit Treppen und Leitern nur genommen werden, wenn sie den Weg deutlich abkürzen.
+ */
+public class VerticalPenaltyCostModel implements EdgeCostModel {
+
+    private final EdgeCostModel base;
+    private final double penalty;
+
+    /**
+     * @param penalty Die zusätzlichen Kosten pro Block Höhenunterschied.
+     */
+    public VerticalPenaltyCostModel(EdgeCostModel base, double penalty) {
+        if (penalty < 0) {
+            throw new IllegalArgumentException("Der Höhenaufschlag darf nicht negativ sein.");
+        }
+        this.base = base;
+        this.penalty = penalty;
+    }
+
+    @Override
+    public double getCost(double length, double ax, double ay, double az, int aGroupId, double bx, double by, double bz, int bGroupId) {
+        return base.getCost(length, ax, ay, az, aGroupId, bx, by, bz, bGroupId) + Math.abs(by - ay) * penalty;
+    }
+
+    @Override
+    public double getHeuristicFactor() {
+        return base.getHeuristicFactor();
+    }
+}
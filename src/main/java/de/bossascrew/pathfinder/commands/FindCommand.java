@@ -15,12 +15,16 @@ import de.bossascrew.pathfinder.data.FindableGroup;
 import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
+import de.bossascrew.pathfinder.data.findable.Node;
+import de.bossascrew.pathfinder.data.findable.QuestFindable;
+import de.bossascrew.pathfinder.data.findable.TraderFindable;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
 import de.bossascrew.pathfinder.handler.VisualizerHandler;
 import de.bossascrew.pathfinder.util.AStarUtils;
 import de.bossascrew.pathfinder.util.CommandUtils;
+import de.bossascrew.pathfinder.util.NearestQuery;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -65,6 +69,9 @@ public class FindCommand extends BaseCommand {
                 menu.addSub(new ComponentMenu(ComponentUtils.getCommandComponent("/find shop <Shop>")));
             }
         }
+        if (player.hasPermission(PathPlugin.PERM_COMMAND_FIND_NEAREST)) {
+            menu.addSub(new ComponentMenu(ComponentUtils.getCommandComponent("/find nearest <Art>")));
+        }
         Menu menu1 = new Menu("Info über gefundene Orte mit: ");
         if (player.hasPermission(PathPlugin.PERM_COMMAND_FIND_INFO) &&
                 RoadMapHandler.getInstance().getRoadMaps().stream().anyMatch(RoadMap::isFindableNodes)) {
@@ -210,6 +217,7 @@ public class FindCommand extends BaseCommand {
                 PlayerUtils.sendMessage(player, ChatColor.RED + "Es gibt kein Ziel mit diesem Namen.");
                 return;
             }
+            //Ein beliebiges Mitglied genügt, gesucht wird der Weg zum nächstgelegenen Mitglied der Gruppe
             f = group.getFindables().stream().findAny().orElse(null);
         }
         if (f == null) {
@@ -218,4 +226,46 @@ public class FindCommand extends BaseCommand {
         }
         AStarUtils.startPath(player, f, true);
     }
+
+    @Subcommand("nearest")
+    @Syntax("shop|quest|unentdeckt")
+    @CommandPermission(PathPlugin.PERM_COMMAND_FIND_NEAREST)
+    @CommandCompletion("shop|quest|unentdeckt")
+    public void onFindNearest(Player player, String type) {
+        RoadMap roadMap = CommandUtils.getAnyRoadMap(player.getWorld());
+        if (roadMap == null) {
+            PlayerUtils.sendMessage(player, ChatColor.RED + "Keine Straßenkarte gefunden.");
+            return;
+        }
+        NearestQuery query;
+        switch (type.toLowerCase()) {
+            case "shop":
+                if (!PathPlugin.getInstance().isTraders() || !player.hasPermission(PathPlugin.PERM_COMMAND_FIND_TRADERS)) {
+                    PlayerUtils.sendMessage(player, ChatColor.RED + "Du kannst nicht nach Shops suchen.");
+                    return;
+                }
+                query = NearestQuery.ofScope(TraderFindable.SCOPE);
+                break;
+            case "quest":
+                if (!PathPlugin.getInstance().isQuests() || !player.hasPermission(PathPlugin.PERM_COMMAND_FIND_QUESTS)) {
+                    PlayerUtils.sendMessage(player, ChatColor.RED + "Du kannst nicht nach Quests suchen.");
+                    return;
+                }
+                query = NearestQuery.ofScope(QuestFindable.SCOPE);
+                break;
+            case "unentdeckt":
+                if (!roadMap.isFindableNodes()) {
+                    PlayerUtils.sendMessage(player, ChatColor.RED + "Auf dieser Straßenkarte gibt es nichts zu entdecken.");
+                    return;
+                }
+                //Orte, die der Spieler auch nach dem Finden nicht betreten dürfte, kommen nicht in Frage
+                query = new NearestQuery(Node.SCOPE, null, true,
+                        findable -> findable.getPermission() == null || player.hasPermission(findable.getPermission()));
+                break;
+            default:
+                PlayerUtils.sendMessage(player, ChatColor.RED + "Unbekannte Art: " + type);
+                return;
+        }
+        AStarUtils.startNearestPath(player, roadMap, query);
+    }
 }
@@ -5,10 +5,15 @@ import de.bossascrew.acf.annotation.CommandAlias;
 import de.bossascrew.acf.annotation.CommandPermission;
 import de.bossascrew.acf.annotation.Optional;
 import de.bossascrew.acf.annotation.Subcommand;
+import de.bossascrew.acf.annotation.Syntax;
 import de.bossascrew.core.bukkit.nbt.NBTEntity;
 import de.bossascrew.core.bukkit.player.PlayerUtils;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.SearchBudget;
+import de.bossascrew.pathfinder.handler.PathSearchHandler;
+import de.bossascrew.pathfinder.util.AStarUtils;
 import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.ArmorStand;
@@ -42,6 +47,44 @@ public class PathFinderCommand extends BaseCommand {
 		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Es wurden " + count + " ungültige Rüstungsständer gefunden und entfernt.");
 	}
 
+	@Subcommand("stats")
+	@CommandPermission("bcrew.command.pathfinder.stats")
+	public void onStats(CommandSender sender) {
+		PathSearchHandler handler = PathSearchHandler.getInstance();
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Pfadsuchen: " + handler.getActiveCount() + " laufend, "
+				+ handler.getQueueDepth() + " wartend, " + handler.getRejectedCount() + " abgelehnt, "
+				+ handler.getSupersededCount() + " ersetzt");
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Wartezeit: p50 " + String.format("%.1f", handler.getQueueWaitPercentile(50))
+				+ "ms, p95 " + String.format("%.1f", handler.getQueueWaitPercentile(95))
+				+ "ms, p99 " + String.format("%.1f", handler.getQueueWaitPercentile(99)) + "ms");
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Suchdauer: p50 " + String.format("%.1f", handler.getSearchTimePercentile(50))
+				+ "ms, p95 " + String.format("%.1f", handler.getSearchTimePercentile(95))
+				+ "ms, p99 " + String.format("%.1f", handler.getSearchTimePercentile(99)) + "ms");
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Budget: " + AStarUtils.getSearchBudget() + ", "
+				+ AStarUtils.getBoundedCount() + " gewichtet, " + AStarUtils.getExhaustedCount() + " erfolglos");
+	}
+
+	@Subcommand("set search-budget")
+	@Syntax("<Nodes> <Millisekunden>")
+	@CommandPermission("bcrew.command.pathfinder.set.search-budget")
+	public void onSetSearchBudget(CommandSender sender, int maxSettled, long maxMillis) {
+		if (maxSettled <= 0 || maxMillis <= 0) {
+			PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + ChatColor.RED + "Das Budget muss positiv sein.");
+			return;
+		}
+		AStarUtils.setSearchBudget(new SearchBudget(maxSettled, maxMillis));
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Budget gesetzt: " + AStarUtils.getSearchBudget());
+	}
+
+	@Subcommand("set refine-paths")
+	@Syntax("<Wert>")
+	@CommandPermission("bcrew.command.pathfinder.set.refine-paths")
+	public void onSetRefinePaths(CommandSender sender, boolean refine) {
+		AStarUtils.setRefineBoundedPaths(refine);
+		PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Gewichtete Pfade werden " + (refine ? "jetzt" : "nicht mehr")
+				+ " im Hintergrund verfeinert.");
+	}
+
 	public List<ArmorStand> getArmorStands(World world) {
 		return world.getEntities().stream()
 				.filter(e -> e.getType() == EntityType.ARMOR_STAND)
@@ -6,16 +6,23 @@ import de.bossascrew.core.BukkitMain;
 import de.bossascrew.core.base.ComponentMenu;
 import de.bossascrew.core.base.Menu;
 import de.bossascrew.core.bukkit.player.PlayerUtils;
-import de.bossascrew.core.util.ComponentUtils;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.ClusterHierarchy;
+import de.bossascrew.pathfinder.astar.ContractionHierarchy;
+import de.bossascrew.pathfinder.astar.Landmarks;
+import de.bossascrew.pathfinder.astar.NextHopTable;
+import de.bossascrew.pathfinder.astar.PathResultCache;
+import de.bossascrew.pathfinder.astar.RoutingMode;
 import de.bossascrew.pathfinder.data.DatabaseModel;
 import de.bossascrew.pathfinder.data.PathPlayer;
+import de.bossascrew.pathfinder.data.PortalLink;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
 import de.bossascrew.pathfinder.data.findable.PlayerFindable;
 import de.bossascrew.pathfinder.data.visualisation.EditModeVisualizer;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
+import de.bossascrew.pathfinder.handler.PortalHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
 import de.bossascrew.pathfinder.handler.VisualizerHandler;
 import de.bossascrew.pathfinder.util.AStarUtils;
@@ -24,7 +31,6 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
@@ -33,6 +39,7 @@ import org.bukkit.entity.Player;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @CommandAlias("roadmap")
@@ -76,6 +83,46 @@ public class RoadMapCommand extends BaseCommand {
 				Component.text("Default-Rundungsstärke: ").append(Component.text(roadMap.getDefaultBezierTangentLength(), PathPlugin.COLOR_LIGHT)),
 				Component.text("Klicke, um die Rundungsstärke zu setzen."),
 				"/roadmap set tangent-strength " + roadMap.getName() + " <Stärke>"));
+		menu.addSub(getSubMenu(
+				Component.text("Suchverfahren: ").append(Component.text(roadMap.getRoutingMode().name().toLowerCase(), PathPlugin.COLOR_LIGHT)),
+				Component.text("Klicke, um das Suchverfahren zu wechseln."),
+				"/roadmap set search-mode <Verfahren>"));
+		if (roadMap.getRoutingMode() == RoutingMode.ALT) {
+			Landmarks landmarks = roadMap.getCurrentLandmarks();
+			menu.addSub(new ComponentMenu(Component.text("Landmarken: ").append(landmarks == null ?
+					Component.text("werden berechnet...", NamedTextColor.GRAY) :
+					Component.text(landmarks.getCount() + " (" + String.format("%.1f", landmarks.getMemoryBytes() / 1024. / 1024.) + " MB)", PathPlugin.COLOR_LIGHT))));
+		}
+		if (roadMap.getRoutingMode() == RoutingMode.CONTRACTION_HIERARCHY) {
+			ContractionHierarchy hierarchy = roadMap.getCurrentContractionHierarchy();
+			menu.addSub(new ComponentMenu(Component.text("Contraction Hierarchy: ").append(hierarchy == null ?
+					Component.text("wird berechnet, bis dahin AStar...", NamedTextColor.GRAY) :
+					Component.text(hierarchy.getShortcutCount() + " Abkürzungen", PathPlugin.COLOR_LIGHT))));
+		}
+		if (roadMap.getRoutingMode() == RoutingMode.HIERARCHICAL) {
+			ClusterHierarchy clusters = roadMap.getCurrentClusterHierarchy();
+			menu.addSub(new ComponentMenu(Component.text("Cluster: ").append(clusters == null ?
+					Component.text("werden berechnet, bis dahin AStar...", NamedTextColor.GRAY) :
+					Component.text(clusters.getClusterCount() + " mit " + clusters.getBorderCount() + " Randnodes, zuletzt "
+							+ clusters.getRebuiltClusterCount() + " neu berechnet", PathPlugin.COLOR_LIGHT))));
+		}
+		if (roadMap.getRoutingMode() == RoutingMode.ROUTING_TABLE) {
+			NextHopTable table = roadMap.getCurrentNextHopTable();
+			menu.addSub(new ComponentMenu(Component.text("Routingtabelle: ").append(table == null ?
+					Component.text("wird berechnet, bis dahin AStar...", NamedTextColor.GRAY) : !table.hasTable() ?
+					Component.text("zu groß (über " + NextHopTable.MAX_NODES + " Nodes), AStar", NamedTextColor.GRAY) :
+					Component.text(String.format("%.1f", table.getMemoryBytes() / 1024. / 1024.) + " MB", PathPlugin.COLOR_LIGHT))));
+		}
+		//Mehr als eine Komponente bedeutet meist eine vergessene Kante, Ziele darin sind von außen nicht erreichbar
+		List<Integer> componentSizes = roadMap.getComponents().getComponentSizes();
+		menu.addSub(new ComponentMenu(Component.text("Zusammenhangskomponenten: ").append(Component.text(componentSizes.size()
+				+ (componentSizes.isEmpty() ? "" : " (größte: " + componentSizes.get(0) + " Nodes)"),
+				componentSizes.size() > 1 ? NamedTextColor.RED : PathPlugin.COLOR_LIGHT))
+				.hoverEvent(HoverEvent.showText(Component.text("Größen: " + componentSizes.stream().limit(10)
+						.map(String::valueOf).collect(Collectors.joining(", ")) + (componentSizes.size() > 10 ? ", ..." : ""))))));
+		PathResultCache pathCache = AStarUtils.getPathCache();
+		menu.addSub(new ComponentMenu(Component.text("Pfad-Cache: ").append(Component.text(pathCache.getHitCount() + " Treffer, "
+				+ pathCache.getMissCount() + " berechnet, " + pathCache.getCoalescedCount() + " zusammengelegt", PathPlugin.COLOR_LIGHT))));
 
 		PlayerUtils.sendComponents(sender, menu.toComponents());
 	}
@@ -383,6 +430,16 @@ public class RoadMapCommand extends BaseCommand {
 			roadMap.setFindableNodes(findbar);
 			PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Node-Findbarkeit umgestellt auf: " + PathPlugin.CHAT_COLOR_LIGHT + (findbar ? "an" : "aus"));
 		}
+
+		@Subcommand("search-mode")
+		@Syntax("<Suchverfahren>")
+		@CommandPermission("bcrew.command.roadmap.set.search-mode")
+		@CommandCompletion(PathPlugin.COMPLETE_ROUTING_MODES)
+		public void onSetSearchMode(CommandSender sender, RoutingMode routingMode) {
+			RoadMap roadMap = CommandUtils.getSelectedRoadMap(sender);
+			roadMap.setRoutingMode(routingMode);
+			PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Suchverfahren umgestellt auf: " + PathPlugin.CHAT_COLOR_LIGHT + routingMode.name().toLowerCase());
+		}
 	}
 
 	@Subcommand("style")
@@ -438,6 +495,61 @@ public class RoadMapCommand extends BaseCommand {
 		}
 	}
 
+	@Subcommand("portal")
+	@CommandPermission("bcrew.command.roadmap.portal")
+	public class RoadMapPortalCommand extends BaseCommand {
+
+		@Subcommand("create")
+		@Syntax("<Findable> <Straßenkarte> <Findable>")
+		@CommandCompletion(PathPlugin.COMPLETE_FINDABLES + " " + PathPlugin.COMPLETE_ROADMAPS + " " + BukkitMain.COMPLETE_NOTHING)
+		public void onCreate(CommandSender sender, Findable findable, RoadMap targetRoadMap, @Single String targetName) {
+			Findable target = targetRoadMap.getFindable(targetName);
+			if (target == null) {
+				PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + ChatColor.RED + "Diese Straßenkarte enthält kein Findable mit diesem Namen.");
+				return;
+			}
+			if (target.getRoadMap() == findable.getRoadMap()) {
+				PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + ChatColor.RED + "Ein Portal muss zwei verschiedene Straßenkarten verbinden.");
+				return;
+			}
+			PortalLink link = PortalHandler.getInstance().createPortal(findable, target);
+			if (link == null) {
+				PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + ChatColor.RED + "Das Portal konnte nicht gespeichert werden.");
+				return;
+			}
+			PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Portal erstellt: " + PathPlugin.CHAT_COLOR_LIGHT +
+					findable.getFriendlyName() + ChatColor.GRAY + " <-> " + PathPlugin.CHAT_COLOR_LIGHT + target.getFriendlyName());
+		}
+
+		@Subcommand("delete")
+		@Syntax("<Portal-ID>")
+		public void onDelete(CommandSender sender, int portalId) {
+			PortalLink link = PortalHandler.getInstance().getPortal(portalId);
+			if (link == null) {
+				PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + ChatColor.RED + "Es existiert kein Portal mit dieser ID.");
+				return;
+			}
+			PortalHandler.getInstance().deletePortal(link);
+			PlayerUtils.sendMessage(sender, PathPlugin.PREFIX + "Portal erfolgreich gelöscht.");
+		}
+
+		@Subcommand("list")
+		public void onList(CommandSender sender) {
+			Menu menu = new Menu("Alle Portale:");
+			for (PortalLink link : PortalHandler.getInstance().getPortals()) {
+				menu.addSub(new ComponentMenu(Component.empty()
+						.append(Component.text("#" + link.getDatabaseId() + " ", NamedTextColor.GRAY))
+						.append(Component.text(link.getA().getRoadMap().getName() + ": " + link.getA().getFriendlyName(), PathPlugin.COLOR_LIGHT))
+						.append(Component.text(" <-> ", NamedTextColor.GRAY))
+						.append(Component.text(link.getB().getRoadMap().getName() + ": " + link.getB().getFriendlyName(), PathPlugin.COLOR_LIGHT))
+						.append(Component.text(" [X]", NamedTextColor.RED)
+								.clickEvent(ClickEvent.runCommand("/roadmap portal delete " + link.getDatabaseId()))
+								.hoverEvent(HoverEvent.showText(Component.text("Klicke zum Löschen."))))));
+			}
+			PlayerUtils.sendComponents(sender, menu.toComponents());
+		}
+	}
+
 	@Subcommand("test")
 	@CommandPermission("bcrew.command.roadmap.test")
 	public class RoadMapTestCommand extends BaseCommand {
@@ -449,15 +561,8 @@ public class RoadMapCommand extends BaseCommand {
 			RoadMap roadMap = CommandUtils.getSelectedRoadMap(player);
 
 			PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
-			if (!AStarUtils.startPath(pPlayer, new PlayerFindable(player, roadMap), findable, true)) {
-				PlayerUtils.sendMessage(player, ChatColor.RED + "Es konnte kein kürzester Pfad ermittelt werden.");
-				return;
-			}
-
-			player.sendMessage(PathPlugin.PREFIX_COMP
-					.append(Component.text("Testpfad gestartet. (", NamedTextColor.GRAY).decoration(TextDecoration.BOLD, TextDecoration.State.FALSE))
-					.append(ComponentUtils.getCommandComponent("/cancelpath", ClickEvent.Action.RUN_COMMAND))
-					.append(Component.text(")", NamedTextColor.GRAY)));
+			AStarUtils.startPathAsync(pPlayer, new PlayerFindable(player, roadMap), findable, true, false,
+					found -> AStarUtils.sendPathResult(player, found, "Testpfad gestartet."));
 		}
 
 		@Subcommand("find")
@@ -467,15 +572,8 @@ public class RoadMapCommand extends BaseCommand {
 			RoadMap roadMap = CommandUtils.getSelectedRoadMap(player);
 
 			PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
-			if (!AStarUtils.startPath(pPlayer, new PlayerFindable(player, roadMap), findable, false)) {
-				PlayerUtils.sendMessage(player, ChatColor.RED + "Es konnte kein kürzester Pfad ermittelt werden.");
-				return;
-			}
-
-			player.sendMessage(PathPlugin.PREFIX_COMP
-					.append(Component.text("Testpfad gestartet. (", NamedTextColor.GRAY).decoration(TextDecoration.BOLD, TextDecoration.State.FALSE))
-					.append(ComponentUtils.getCommandComponent("/cancelpath", ClickEvent.Action.RUN_COMMAND))
-					.append(Component.text(")", NamedTextColor.GRAY)));
+			AStarUtils.startPathAsync(pPlayer, new PlayerFindable(player, roadMap), findable, false, false,
+					found -> AStarUtils.sendPathResult(player, found, "Testpfad gestartet."));
 		}
 
 		@Subcommand("visible")
@@ -62,7 +62,7 @@ public class WaypointCommand extends BaseCommand {
                         + node.getVector().getY() + " " + node.getVector().getZ()))));
 
         Menu edges = new Menu("Verbindungen: " + (node.getEdges().isEmpty() ? ChatColor.GRAY + "-" : ""));
-        for (int edge : node.getEdges()) {
+        for (int edge : node.getEdges().toArray()) {
             Findable target = roadMap.getFindable(edge);
             if (target == null) {
                 continue;
@@ -11,10 +11,15 @@ import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.Shop;
 import de.bossascrew.pathfinder.data.findable.Findable;
+import de.bossascrew.pathfinder.data.findable.PlayerFindable;
 import de.bossascrew.pathfinder.data.findable.QuestFindable;
 import de.bossascrew.pathfinder.data.findable.TraderFindable;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
+import de.bossascrew.pathfinder.util.AStarUtils;
 import de.bossascrew.pathfinder.util.CommandUtils;
+import de.bossascrew.pathfinder.util.NearestQuery;
+import de.bossascrew.pathfinder.util.PlayerDistances;
+import de.bossascrew.pathfinder.util.StringUtils;
 import de.bossascrew.pathfinder.util.hooks.ChestShopHook;
 import de.bossascrew.pathfinder.util.hooks.QuestsHook;
 import de.bossascrew.pathfinder.util.hooks.TradersHook;
@@ -27,6 +32,8 @@ import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @CommandAlias("finde|find")
@@ -42,29 +49,45 @@ public class FindItemCommand extends BaseCommand {
             PlayerUtils.sendMessage(player, ChatColor.RED + "Keine Straßenkarte gefunden.");
             return;
         }
+        PathPlayer pp = PathPlayerHandler.getInstance().getPlayer(player);
+        if (pp == null) {
+            return;
+        }
+        //Die Händler werden nach Weglänge sortiert, ein Klick auf einen Eintrag übernimmt den Weg aus denselben Weglängen
+        if (!roadMap.getWorld().equals(player.getWorld()) || TradersHook.getInstance() == null
+                || !AStarUtils.startDistancesAsync(pp, new PlayerFindable(player, roadMap),
+                distances -> sendItemMenu(player, pp, roadMap, material, distances))) {
+            sendItemMenu(player, pp, roadMap, material, null);
+        }
+    }
 
+    private void sendItemMenu(Player player, PathPlayer pp, RoadMap roadMap, Material material, @Nullable PlayerDistances distances) {
         ComponentMenu menu = new ComponentMenu(Component.text("Item ", NamedTextColor.GRAY)
                 .append(Component.translatable(material.getTranslationKey(), PathPlugin.COLOR_LIGHT))
                 .append(Component.text(" gefunden:", NamedTextColor.GRAY)));
 
         if(roadMap.getWorld().equals(player.getWorld())) {
             if (TradersHook.getInstance() != null) {
-                PathPlayer pp = PathPlayerHandler.getInstance().getPlayer(player);
-                if (pp == null) {
-                    return;
-                }
                 Menu traderMenu = new Menu("Händler (Klicke auf Namen, um zu navigieren):");
-                for (Findable f : roadMap.getFindables().stream().filter(findable -> findable instanceof TraderFindable).collect(Collectors.toList())) {
-                    TraderFindable trader = (TraderFindable) f;
-                    if (!pp.hasFound(trader)) {
-                        continue;
-                    }
+                List<TraderFindable> traders = roadMap.getFindables().stream()
+                        .filter(findable -> findable instanceof TraderFindable)
+                        .map(findable -> (TraderFindable) findable)
+                        .filter(pp::hasFound)
+                        .collect(Collectors.toList());
+                if (distances != null) {
+                    traders.sort(distances.comparator());
+                }
+                for (TraderFindable trader : traders) {
                     Shop.ShopItem buy = trader.getShop().getBuyItemMap().values().stream().filter(shopItem -> shopItem.getItemStack().getType() == material).findAny().orElse(null);
                     Shop.ShopItem sell = trader.getShop().getSellItemMap().values().stream().filter(shopItem -> shopItem.getItemStack().getType() == material).findAny().orElse(null);
                     if (buy == null && sell == null) {
                         continue;
                     }
                     Component c = getTargetComponent(Component.text(trader.getName(), NamedTextColor.BLUE), "/finde shop " + trader.getName());
+                    double length = distances == null ? Double.POSITIVE_INFINITY : distances.getWalkingLength(trader);
+                    if (length < Double.POSITIVE_INFINITY) {
+                        c = c.append(Component.text(" (" + StringUtils.formatWalkingDistance(length) + ")", NamedTextColor.GRAY));
+                    }
                     Key materialKey = Key.key(material.getKey().asString());
                     if (sell != null) {
                         c = c.append(Component
@@ -112,6 +135,29 @@ public class FindItemCommand extends BaseCommand {
         }
     }
 
+    @Subcommand("nearest item")
+    @Syntax("<Item>")
+    @CommandPermission(PathPlugin.PERM_COMMAND_FIND_NEAREST)
+    @CommandCompletion(BukkitMain.COMPLETE_MATERIALS_LOWERCASE)
+    public void onFindNearestItem(Player player, Material material) {
+        RoadMap roadMap = CommandUtils.getAnyRoadMap(player.getWorld());
+        if (roadMap == null) {
+            PlayerUtils.sendMessage(player, ChatColor.RED + "Keine Straßenkarte gefunden.");
+            return;
+        }
+        if (TradersHook.getInstance() == null) {
+            PlayerUtils.sendMessage(player, PathPlugin.PREFIX + "Keine Möglichkeit gefunden, dieses Item zu handeln.");
+            return;
+        }
+        AStarUtils.startNearestPath(player, roadMap, new NearestQuery(TraderFindable.SCOPE, null, false,
+                findable -> ((TraderFindable) findable).getShop() != null && tradesItem(((TraderFindable) findable).getShop(), material)));
+    }
+
+    private boolean tradesItem(Shop shop, Material material) {
+        return shop.getBuyItemMap().values().stream().anyMatch(shopItem -> shopItem.getItemStack().getType() == material)
+                || shop.getSellItemMap().values().stream().anyMatch(shopItem -> shopItem.getItemStack().getType() == material);
+    }
+
     private Component getTargetComponent(Component text, String command) {
         return text
                 .hoverEvent(HoverEvent.showText(Component.text("Klicke, um Navigation zu starten")))
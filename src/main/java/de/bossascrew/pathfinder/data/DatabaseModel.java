@@ -5,6 +5,7 @@ import de.bossascrew.core.sql.MySQL;
 import de.bossascrew.core.util.Pair;
 import de.bossascrew.core.util.SQLUtils;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.RoutingMode;
 import de.bossascrew.pathfinder.data.findable.*;
 import de.bossascrew.pathfinder.data.visualisation.EditModeVisualizer;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
@@ -49,6 +50,8 @@ public class DatabaseModel {
         createStyleTable();
         createPlayerVisualizerTable();
         createRoadMapStylesTable();
+        createRoadMapRoutingTable();
+        createPortalsTable();
     }
 
     public void createPathVisualizerTable() {
@@ -236,6 +239,34 @@ public class DatabaseModel {
         }
     }
 
+    public void createRoadMapRoutingTable() {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("CREATE TABLE IF NOT EXISTS `pathfinder_roadmap_routing` (" +
+                    "`roadmap_id` INT NOT NULL PRIMARY KEY , " +
+                    "`routing_mode` VARCHAR(24) NOT NULL , " +
+                    "FOREIGN KEY (roadmap_id) REFERENCES pathfinder_roadmaps(roadmap_id) ON DELETE CASCADE )")) {
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Erstellen der roadmap-routing Tabelle", e);
+        }
+    }
+
+    public void createPortalsTable() {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("CREATE TABLE IF NOT EXISTS `pathfinder_portals` (" +
+                    "`portal_id` INT NOT NULL AUTO_INCREMENT PRIMARY KEY , " +
+                    "`node_a_id` INT NOT NULL , " +
+                    "`node_b_id` INT NOT NULL , " +
+                    "FOREIGN KEY (node_a_id) REFERENCES pathfinder_nodes(node_id) ON DELETE CASCADE , " +
+                    "FOREIGN KEY (node_b_id) REFERENCES pathfinder_nodes(node_id) ON DELETE CASCADE )")) {
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Erstellen der Portal-Tabelle", e);
+        }
+    }
+
     public @Nullable
     RoadMap createRoadMap(String name, World world, boolean findableNodes) {
         return createRoadMap(name, world, findableNodes, VisualizerHandler.getInstance().getDefaultPathVisualizer().getDatabaseId(),
@@ -1153,4 +1184,97 @@ public class DatabaseModel {
             plugin.getLogger().log(Level.SEVERE, "Fehler beim Löschen der Styleverknüpfung mit ID: " + pathVisualizer, e);
         }
     }
+
+    /**
+     * @return Das gespeicherte Suchverfahren der Straßenkarte oder {@link RoutingMode#ASTAR}, wenn keines gespeichert ist.
+     */
+    public RoutingMode loadRoutingMode(RoadMap roadMap) {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM `pathfinder_roadmap_routing` WHERE `roadmap_id` = ?")) {
+                SQLUtils.setInt(stmt, 1, roadMap.getDatabaseId());
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        String mode = SQLUtils.getString(resultSet, "routing_mode");
+                        try {
+                            return RoutingMode.valueOf(mode);
+                        } catch (IllegalArgumentException e) {
+                            plugin.getLogger().log(Level.WARNING, "Unbekanntes Suchverfahren für Roadmap " + roadMap.getName() + ": " + mode);
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Laden des Suchverfahrens der Roadmap: " + roadMap.getName(), e);
+        }
+        return RoutingMode.ASTAR;
+    }
+
+    public void updateRoutingMode(RoadMap roadMap) {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO `pathfinder_roadmap_routing` " +
+                    "(roadmap_id, routing_mode) VALUES (?, ?) ON DUPLICATE KEY UPDATE `routing_mode` = VALUES(`routing_mode`)")) {
+                SQLUtils.setInt(stmt, 1, roadMap.getDatabaseId());
+                SQLUtils.setString(stmt, 2, roadMap.getRoutingMode().name());
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Speichern des Suchverfahrens der Roadmap: " + roadMap.getName(), e);
+        }
+    }
+
+    public @Nullable
+    PortalLink newPortalLink(Findable a, Findable b) {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO `pathfinder_portals` " +
+                    "(node_a_id, node_b_id) VALUES (?, ?)", PreparedStatement.RETURN_GENERATED_KEYS)) {
+                SQLUtils.setInt(stmt, 1, a.getDatabaseId());
+                SQLUtils.setInt(stmt, 2, b.getDatabaseId());
+                stmt.executeUpdate();
+                try (ResultSet resultSet = stmt.getGeneratedKeys()) {
+                    resultSet.next();
+                    return new PortalLink(resultSet.getInt(1), a, b);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Erstellen eines Portals in der Pathfinder Datenbank", e);
+        }
+        return null;
+    }
+
+    /**
+     * @param findables Alle Findables aller Straßenkarten nach Datenbank-ID. Links zu unbekannten Findables werden übersprungen.
+     */
+    public Map<Integer, PortalLink> loadPortalLinks(Map<Integer, Findable> findables) {
+        Map<Integer, PortalLink> result = new HashMap<>();
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM `pathfinder_portals`")) {
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        int id = SQLUtils.getInt(resultSet, "portal_id");
+                        Findable a = findables.get(SQLUtils.getInt(resultSet, "node_a_id"));
+                        Findable b = findables.get(SQLUtils.getInt(resultSet, "node_b_id"));
+                        if (a == null || b == null) {
+                            plugin.getLogger().log(Level.WARNING, "Portal " + id + " verweist auf ein unbekanntes Findable.");
+                            continue;
+                        }
+                        result.put(id, new PortalLink(id, a, b));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Laden der Portale", e);
+        }
+        return result;
+    }
+
+    public void deletePortalLink(int portalId) {
+        try (Connection connection = MySQL.getConnection()) {
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM `pathfinder_portals` WHERE `portal_id` = ?")) {
+                SQLUtils.setInt(stmt, 1, portalId);
+                stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.SEVERE, "Fehler beim Löschen des Portals mit ID: " + portalId, e);
+        }
+    }
 }
@@ -17,7 +17,6 @@ public class FindableGroup {
     private final RoadMap roadMap;
     @Setter
     private String name;
-    @Setter
     private boolean findable;
     private Collection<Findable> findables;
 
@@ -43,8 +42,13 @@ public class FindableGroup {
         }
     }
 
+    public void setFindable(boolean findable) {
+        setFindable(findable, false);
+    }
+
     public void setFindable(boolean findable, boolean update) {
         this.findable = findable;
+        roadMap.invalidateVisibility();
         if(update) {
             update();
         }
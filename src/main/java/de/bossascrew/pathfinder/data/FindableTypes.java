@@ -0,0 +1,49 @@
+package de.bossascrew.pathfinder.data;
+
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
+import de.bossascrew.pathfinder.data.findable.Findable;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Die Nodes eines kompilierten Graphen nach Art und Gruppe als Bitsets über die Indizes des Graphen, damit die Ziele
+ * einer Suche nach dem nächstgelegenen Findable nicht für jede Anfrage aus allen Findables gesammelt werden müssen.
+ * Unveränderlich, wird von der Straßenkarte neu erzeugt, sobald sich der Graph ändert.
+ */
+class FindableTypes {
+
+    final RoadMapGraph graph;
+    /**
+     * Key = Scope der Findables, z.B. {@link de.bossascrew.pathfinder.data.findable.Node#SCOPE}
+     */
+    final Map<String, BitSet> scopes;
+    /**
+     * Key = ID einer Gruppe
+     */
+    final Map<Integer, BitSet> groups;
+
+    private FindableTypes(RoadMapGraph graph, Map<String, BitSet> scopes, Map<Integer, BitSet> groups) {
+        this.graph = graph;
+        this.scopes = scopes;
+        this.groups = groups;
+    }
+
+    static FindableTypes compile(RoadMap roadMap, RoadMapGraph graph) {
+        int n = graph.size();
+        Map<String, BitSet> scopes = new HashMap<>();
+        Map<Integer, BitSet> groups = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            Findable findable = roadMap.getFindable(graph.getDatabaseId(i));
+            if (findable == null) {
+                continue;
+            }
+            scopes.computeIfAbsent(findable.getScope(), scope -> new BitSet(n)).set(i);
+            if (graph.getGroupId(i) != RoadMapGraph.NO_GROUP) {
+                groups.computeIfAbsent(graph.getGroupId(i), group -> new BitSet(n)).set(i);
+            }
+        }
+        return new FindableTypes(graph, scopes, groups);
+    }
+}
@@ -6,6 +6,7 @@ import de.bossascrew.core.bukkit.util.VectorUtils;
 import de.bossascrew.core.util.PluginUtils;
 import de.bossascrew.core.util.Tuple3;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.PolylineIndex;
 import de.bossascrew.pathfinder.data.findable.Findable;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
@@ -20,9 +21,11 @@ import xyz.xenondevs.particle.ParticleBuilder;
 import xyz.xenondevs.particle.ParticleEffect;
 import xyz.xenondevs.particle.task.TaskManager;
 
+import javax.annotation.Nullable;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -31,6 +34,25 @@ import java.util.stream.Collectors;
 @Getter
 public class ParticlePath extends ArrayList<Findable> {
 
+    /**
+     * Ab dieser Entfernung zur Route gilt ein Spieler als abgewichen, erst unter RETURN_ROUTE_DISTANCE wieder als
+     * zurückgekehrt, damit Spieler an der Grenze nicht ständig hin und her wechseln.
+     */
+    private static final double LEAVE_ROUTE_DISTANCE = 8;
+    private static final double RETURN_ROUTE_DISTANCE = 4;
+    /**
+     * So lange muss ein Spieler abseits der Route sein, bevor neu geplant wird.
+     */
+    private static final long OFF_ROUTE_MILLIS = 1500;
+    private static final long REROUTE_COOLDOWN_MILLIS = 5000;
+    /**
+     * Der Fortschritt rückt auf den nächstgelegenen Punkt vor, der höchstens so weit entfernt ist und unter den nächsten
+     * PROGRESS_WINDOW Punkten liegt. Ab TRIM_POINTS zurückgelegten Punkten wird der Anfang verworfen.
+     */
+    private static final double PROGRESS_DISTANCE = 3;
+    private static final int PROGRESS_WINDOW = 256;
+    private static final int TRIM_POINTS = 64;
+
     @RequiredArgsConstructor
     @Getter @Setter
     private static class SchedulerHandler {
@@ -38,9 +60,48 @@ public class ParticlePath extends ArrayList<Findable> {
         private final long id;
         private final List<Integer> schedulerIds;
         private boolean cancelled = false;
-
-        public SchedulerHandler(long id) {
+        /**
+         * Die Pakete, die von den laufenden Tasks gelesen werden. Der k-te angezeigte Punkt liegt in der Liste k % steps.
+         */
+        private final List<List<Object>> stepPackets = new ArrayList<>();
+        /**
+         * Der Index des ersten angezeigten Punktes in calculatedPoints, wird beim Verwerfen mitverschoben.
+         */
+        private int firstPoint;
+        /**
+         * Die Anzahl der angezeigten Punkte, deren Pakete bereits entfernt wurden.
+         */
+        private int hiddenPoints = 0;
+
+        public SchedulerHandler(long id, int firstPoint) {
             this(id, new ArrayList<>());
+            this.firstPoint = firstPoint;
+        }
+
+        /**
+         * Entfernt die Pakete aller Punkte vor dem neuen Anfang von calculatedPoints, ohne die Tasks neu zu starten.
+         *
+         * @param trimmed Die Anzahl der Punkte, die am Anfang von calculatedPoints verworfen wurden.
+         */
+        void trim(int trimmed) {
+            int steps = stepPackets.size();
+            int hidden = Math.max(hiddenPoints, trimmed - firstPoint);
+            for (int i = 0; i < steps; i++) {
+                List<Object> packets = stepPackets.get(i);
+                int remove = Math.min(packets.size(), countInStep(hidden, i, steps) - countInStep(hiddenPoints, i, steps));
+                if (remove > 0) {
+                    packets.subList(0, remove).clear();
+                }
+            }
+            hiddenPoints = hidden;
+            firstPoint -= trimmed;
+        }
+
+        /**
+         * @return Wie viele der ersten points angezeigten Punkte in der Liste des Schrittes step liegen.
+         */
+        private static int countInStep(int points, int step, int steps) {
+            return points <= step ? 0 : (points - 1 - step) / steps + 1;
         }
     }
 
@@ -50,11 +111,56 @@ public class ParticlePath extends ArrayList<Findable> {
     private boolean active;
     @Setter
     private PathVisualizer visualizer;
+    /**
+     * Ob der Pfad auch über noch nicht gefundene Nodes führen darf, z.B. bei Testpfaden. Wird beim Reparieren benötigt.
+     */
+    @Setter
+    private boolean ignoreUnfound = false;
+    /**
+     * Ob der Pfad zum nächstgelegenen Mitglied der Gruppe des Ziels führt. Wird beim Reparieren benötigt.
+     */
+    @Setter
+    private boolean findGroup = false;
+    /**
+     * Ob der Pfad nur ein Abschnitt eines Weges über Portale ist und an einem Portal endet, siehe
+     * {@link PathPlayer#setPortalRoute}.
+     */
+    @Setter
+    private boolean portalLeg = false;
 
     private final List<SchedulerHandler> schedulerHandlers;
 
     private double cachedDistance = -1;
-    private List<Vector> calculatedPoints;
+    /**
+     * Die berechneten Punkte pro Abschnitt zwischen zwei aufeinanderfolgenden Findables, damit nach einer Reparatur
+     * nur die geänderten Abschnitte neu berechnet werden müssen.
+     */
+    private List<List<Vector>> segmentPoints;
+    /**
+     * Der Index des ersten Punktes jedes Abschnitts in calculatedPoints, am Ende die Anzahl der Punkte der Route.
+     * Darüber wird beim Verwerfen bestimmt, welche Abschnitte zurückgelegt wurden.
+     */
+    private int[] segmentOffsets = new int[]{0};
+    /**
+     * Wird nur als Ganzes ersetzt, damit der Fortschritt asynchron darauf berechnet werden kann.
+     */
+    private volatile List<Vector> calculatedPoints;
+    /**
+     * Die Anzahl der Punkte in calculatedPoints, die zur Route gehören. Danach folgt der Kreis um das Ziel.
+     */
+    private volatile int routePointCount = 0;
+    /**
+     * Der Index des zuletzt erreichten Punktes in calculatedPoints.
+     */
+    private int progress = 0;
+    /**
+     * Die Anzahl der Abschnitte am Anfang, die vollständig zurückgelegt wurden und nicht mehr berechnet werden.
+     */
+    private int walkedSegments = 0;
+
+    private volatile @Nullable PolylineIndex routeIndex = null;
+    private long offRouteSince = -1;
+    private long lastReroute = 0;
 
     public ParticlePath(RoadMap roadMap, UUID playerUuid, PathVisualizer visualizer) {
         this.roadMap = roadMap;
@@ -62,49 +168,232 @@ public class ParticlePath extends ArrayList<Findable> {
         this.active = false;
         this.schedulerHandlers = new ArrayList<>();
         this.visualizer = visualizer;
+        this.segmentPoints = new ArrayList<>();
         this.calculatedPoints = new ArrayList<>();
     }
 
     public void calculate() {
-        calculatedPoints.clear();
-        if (roadMap.getDefaultBezierTangentLength() == 0) {
-            //Setzt man die Tangentlength auf 0, wird smoothing komplett deaktiviert
-            calculateLinear();
-        } else {
-            calculateSmooth();
+        //Setzt man die Tangentlength auf 0, wird smoothing komplett deaktiviert
+        List<Tuple3<Vector, Vector, Vector>> tangentPoints = isSmooth() ? getTangentPoints() : null;
+        segmentPoints = new ArrayList<>();
+        for (int i = 0; i < this.size() - 1; i++) {
+            segmentPoints.add(i < walkedSegments ? Collections.emptyList() : calculateSegment(tangentPoints, i));
         }
         cachedDistance = visualizer.getParticleDistance();
+        joinSegments();
+    }
+
+    /**
+     * Prüft bei jeder Bewegung mit Hysterese, ob der Spieler die Route verlassen hat. Threadsafe.
+     *
+     * @return true, wenn der Spieler lange genug abseits der Route ist und sein Pfad neu geplant werden soll.
+     */
+    public synchronized boolean checkOffRoute(Vector position, long now) {
+        PolylineIndex index = routeIndex;
+        if (index == null) {
+            return false;
+        }
+        double distance = offRouteSince < 0 ? LEAVE_ROUTE_DISTANCE : RETURN_ROUTE_DISTANCE;
+        if (index.getNearestSegment(position.getX(), position.getY(), position.getZ(), distance) >= 0) {
+            offRouteSince = -1;
+            return false;
+        }
+        if (offRouteSince < 0) {
+            offRouteSince = now;
+            return false;
+        }
+        if (now - offRouteSince < OFF_ROUTE_MILLIS || now - lastReroute < REROUTE_COOLDOWN_MILLIS) {
+            return false;
+        }
+        offRouteSince = -1;
+        lastReroute = now;
+        return true;
+    }
+
+    private void updateRouteIndex() {
+        double[] xs = new double[size()];
+        double[] ys = new double[size()];
+        double[] zs = new double[size()];
+        for (int i = 0; i < size(); i++) {
+            Vector vector = get(i).getVector();
+            xs[i] = vector.getX();
+            ys[i] = vector.getY();
+            zs[i] = vector.getZ();
+        }
+        routeIndex = new PolylineIndex(xs, ys, zs, LEAVE_ROUTE_DISTANCE);
+    }
+
+    /**
+     * @return Das letzte Findable des Pfades. Threadsafe, kann während {@link #replace} aufgerufen werden.
+     */
+    public synchronized Findable getTarget() {
+        return get(size() - 1);
+    }
+
+    /**
+     * Übernimmt einen reparierten Pfad, nachdem der Graph bearbeitet wurde. Neu berechnet werden nur die Abschnitte,
+     * die sich geändert haben oder deren Rundung von einem geänderten Findable abhängt. Nur im Mainthread aufrufen,
+     * asynchron darf der Pfad nur über synchronisierte Methoden wie {@link #getTarget()} gelesen werden.
+     *
+     * @param findables Der reparierte Pfad mit demselben Start.
+     * @param changed   Die IDs der Findables, die verschoben oder neu verbunden wurden.
+     */
+    public synchronized void replace(List<Findable> findables, Collection<Integer> changed) {
+        int oldSize = this.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < findables.size() && get(prefix) == findables.get(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < findables.size() - prefix
+                && get(oldSize - 1 - suffix) == findables.get(findables.size() - 1 - suffix)) {
+            suffix++;
+        }
+        int from = prefix;
+        int to = findables.size() - 1 - suffix;
+        for (int i = 0; i < findables.size(); i++) {
+            if (changed.contains(findables.get(i).getDatabaseId())) {
+                from = Math.min(from, i);
+                to = Math.max(to, i);
+            }
+        }
+        clear();
+        addAll(findables);
+        if (from > to) {
+            return;
+        }
+        //Ändert sich der zurückgelegte Teil, z.B. nach einer Neuplanung von der aktuellen Position, gilt er nicht mehr
+        if (from <= walkedSegments) {
+            walkedSegments = 0;
+        }
+
+        //Ein Abschnitt hängt über die Tangenten von bis zu zwei Findables davor und einem dahinter ab
+        int firstSegment = Math.max(0, from - 2);
+        int lastSegment = Math.min(size() - 2, to + 1);
+        int keptFrom = lastSegment + 1 + oldSize - size();
+        if (visualizer.getParticleDistance() != cachedDistance || segmentPoints.size() != oldSize - 1
+                || firstSegment > lastSegment || keptFrom < firstSegment || keptFrom > segmentPoints.size()) {
+            calculate();
+        } else {
+            List<Tuple3<Vector, Vector, Vector>> tangentPoints = isSmooth() ? getTangentPoints() : null;
+            List<List<Vector>> updated = new ArrayList<>(segmentPoints.subList(0, firstSegment));
+            for (int i = firstSegment; i <= lastSegment; i++) {
+                updated.add(i < walkedSegments ? Collections.emptyList() : calculateSegment(tangentPoints, i));
+            }
+            updated.addAll(segmentPoints.subList(keptFrom, segmentPoints.size()));
+            segmentPoints = updated;
+            joinSegments();
+        }
+        if (active) {
+            run();
+        }
+    }
 
+    private boolean isSmooth() {
+        return roadMap.getDefaultBezierTangentLength() != 0;
+    }
+
+    /**
+     * @param tangentPoints Die Tangenten aller Findables, null für gerade Abschnitte ohne Rundung.
+     * @return Die Punkte zwischen dem Findable an dieser Stelle und dem nächsten.
+     */
+    private List<Vector> calculateSegment(@Nullable List<Tuple3<Vector, Vector, Vector>> tangentPoints, int index) {
+        if (tangentPoints == null) {
+            return BezierUtils.getBezierCurveDistanced(visualizer.getParticleDistance(), get(index).getVector(), get(index + 1).getVector());
+        }
+        final Vector actualCenter = tangentPoints.get(index).getMiddle();
+        final Vector actualRight = tangentPoints.get(index).getRight();
+        final Vector nextLeft = tangentPoints.get(index + 1).getLeft();
+        final Vector nextCenter = tangentPoints.get(index + 1).getMiddle();
+        List<Vector> bezier = BezierUtils.getBezierCurveDistanced(visualizer.getParticleDistance(),
+                actualCenter, nextCenter, actualRight, nextLeft);
+
+        List<Vector> points = bezier.stream()
+                .filter(vector -> (index != tangentPoints.size() - 2) || vector.distance(nextCenter) > roadMap.getNodeFindDistance())
+                .collect(Collectors.toList());
+        //Gleichmäßig verteilt wird pro Abschnitt, damit beim Ersetzen die übrigen Abschnitte unverändert bleiben
+        return points.isEmpty() ? points : new ArrayList<>(BezierUtils.getEvenlySpacedPoints(points, visualizer.getParticleDistance()));
+    }
+
+    private synchronized void joinSegments() {
+        updateRouteIndex();
+        List<Vector> points = new ArrayList<>();
+        int[] offsets = new int[segmentPoints.size() + 1];
+        for (int i = 0; i < segmentPoints.size(); i++) {
+            offsets[i] = points.size();
+            points.addAll(segmentPoints.get(i));
+        }
+        offsets[segmentPoints.size()] = points.size();
+        int routePoints = points.size();
         Findable target = this.get(this.size() - 1);
-        calculatedPoints.addAll(VectorUtils.getCircle(target.getVector(), visualizer.getParticleDistance(), roadMap.getNodeFindDistance()));
+        points.addAll(VectorUtils.getCircle(target.getVector(), visualizer.getParticleDistance(), roadMap.getNodeFindDistance()));
+        calculatedPoints = points;
+        routePointCount = routePoints;
+        segmentOffsets = offsets;
+        progress = 0;
     }
 
-    private void calculateLinear() {
-        for (int i = 0; i < this.size(); i++) {
-            if (i == this.size() - 1) {
-                continue;
+    /**
+     * Rückt den Fortschritt auf den Punkt der Route vor, der der Position am nächsten ist. Der Fortschritt geht nur
+     * vorwärts, Punkte hinter dem Spieler werden nicht mehr betrachtet. Threadsafe, wird bei jeder Bewegung aufgerufen.
+     *
+     * @return true, wenn genug zurückgelegt wurde, um den Anfang mit {@link #trimWalked()} zu verwerfen.
+     */
+    public synchronized boolean advanceProgress(Vector position) {
+        List<Vector> points = calculatedPoints;
+        int end = Math.min(routePointCount, progress + PROGRESS_WINDOW);
+        int best = -1;
+        double bestDistance = PROGRESS_DISTANCE * PROGRESS_DISTANCE;
+        for (int i = progress; i < end; i++) {
+            double distance = points.get(i).distanceSquared(position);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
             }
-            calculatedPoints.addAll(BezierUtils.getBezierCurveDistanced(visualizer.getParticleDistance(), get(i).getVector(), get(i + 1).getVector()));
         }
+        if (best <= progress) {
+            return false;
+        }
+        progress = best;
+        return progress >= TRIM_POINTS;
     }
 
-    private void calculateSmooth() {
-        List<Tuple3<Vector, Vector, Vector>> tangentPoints = getTangentPoints();
-        for (int i = 0; i < tangentPoints.size() - 1; i++) {
-            final int finalIndex = i;
-            final Vector actualCenter = tangentPoints.get(i).getMiddle();
-            final Vector actualRight = tangentPoints.get(i).getRight();
-            final Vector nextLeft = tangentPoints.get(i + 1).getLeft();
-            final Vector nextCenter = tangentPoints.get(i + 1).getMiddle();
-            List<Vector> bezier = BezierUtils.getBezierCurveDistanced(visualizer.getParticleDistance(),
-                    actualCenter, nextCenter, actualRight, nextLeft);
-
-            calculatedPoints.addAll(bezier.stream()
-                    .filter(vector -> (finalIndex != tangentPoints.size() - 2) || vector.distance(nextCenter) > roadMap.getNodeFindDistance())
-                    .collect(Collectors.toList()));
-        }
-        List<Vector> evenSpacing = BezierUtils.getEvenlySpacedPoints(calculatedPoints, visualizer.getParticleDistance());
-        calculatedPoints = new ArrayList<>(evenSpacing);
+    private synchronized List<Vector> getPointsAhead() {
+        List<Vector> points = calculatedPoints;
+        return points.subList(Math.min(progress, points.size()), points.size());
+    }
+
+    /**
+     * Verwirft die zurückgelegten Punkte und gibt vollständig zurückgelegte Abschnitte frei. Angezeigt werden danach
+     * nur noch die Punkte vor dem Spieler, die laufenden Tasks werden dafür nicht neu gestartet. Nur im Mainthread aufrufen.
+     */
+    public synchronized void trimWalked() {
+        if (progress < TRIM_POINTS) {
+            return;
+        }
+        int trimmed = progress;
+        List<Vector> points = calculatedPoints;
+        calculatedPoints = new ArrayList<>(points.subList(trimmed, points.size()));
+        routePointCount -= trimmed;
+        progress = 0;
+
+        //Der Abschnitt des erreichten Punktes folgt aus dem Fortschritt, nicht aus der Geometrie. Sonst würde bei
+        //Serpentinen oder Treppen ein späterer Abschnitt gefunden, der nur nahe an der Position vorbeiführt
+        int[] offsets = segmentOffsets;
+        int segment = walkedSegments;
+        while (segment + 1 < offsets.length - 1 && offsets[segment + 1] <= trimmed) {
+            segment++;
+        }
+        for (int i = walkedSegments; i < segment && i < segmentPoints.size(); i++) {
+            segmentPoints.set(i, Collections.emptyList());
+        }
+        walkedSegments = Math.max(walkedSegments, segment);
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Math.max(0, offsets[i] - trimmed);
+        }
+        for (SchedulerHandler handler : schedulerHandlers) {
+            handler.trim(trimmed);
+        }
     }
 
     /**
@@ -202,6 +491,11 @@ public class ParticlePath extends ArrayList<Findable> {
             if (pathPlayer == null) {
                 return;
             }
+            //Pfade in anderen Welten werden erst angezeigt, wenn der Spieler die Welt betritt, siehe PathPlayer#changeWorld
+            Player bukkitPlayer = Bukkit.getPlayer(uuid);
+            if (bukkitPlayer == null || !bukkitPlayer.getWorld().equals(roadMap.getWorld())) {
+                return;
+            }
             this.visualizer = pathPlayer.getVisualizer(roadMap);
 
             this.active = true;
@@ -215,20 +509,29 @@ public class ParticlePath extends ArrayList<Findable> {
                 calculate();
             }
 
-            final SchedulerHandler schedulerHandler = new SchedulerHandler(new Date().getTime());
+            //Nur die Punkte vor dem Spieler werden angezeigt
+            final List<Vector> ahead;
+            final SchedulerHandler schedulerHandler;
+            synchronized (this) {
+                ahead = getPointsAhead();
+                schedulerHandler = new SchedulerHandler(new Date().getTime(), calculatedPoints.size() - ahead.size());
+            }
             schedulerHandlers.add(schedulerHandler);
             for (int i = 0; i < steps; i++) {
-				final List<Object> packets = new ArrayList<>();
+				final List<Object> stepPackets = new ArrayList<>();
 				ParticleBuilder particle = new ParticleBuilder(effect)
 						.setColor(Color.RED);
 
 				int moduloCount = 0;
-				for (Vector vector : calculatedPoints) {
+				for (Vector vector : ahead) {
 					if (moduloCount % steps == i) {
-						packets.add(particle.setLocation(vector.toLocation(world)).toPacket());
+						stepPackets.add(particle.setLocation(vector.toLocation(world)).toPacket());
 					}
 					moduloCount++;
 				}
+				//Wird beim Verwerfen zurückgelegter Punkte verkürzt, während die Tasks sie lesen
+				final List<Object> packets = new CopyOnWriteArrayList<>(stepPackets);
+				schedulerHandler.getStepPackets().add(packets);
 				Bukkit.getScheduler().runTaskLater(PathPlugin.getInstance(), () -> {
 					if (schedulerHandler.isCancelled()) {
                         return;
@@ -1,7 +1,6 @@
 package de.bossascrew.pathfinder.data;
 
 import de.bossascrew.core.player.PlayerHandler;
-import de.bossascrew.core.util.PluginUtils;
 import de.bossascrew.pathfinder.data.findable.Findable;
 import de.bossascrew.pathfinder.data.findable.Node;
 import de.bossascrew.pathfinder.data.findable.PlayerFindable;
@@ -13,12 +12,14 @@ import de.bossascrew.pathfinder.listener.PlayerListener;
 import de.bossascrew.pathfinder.util.AStarUtils;
 import lombok.Getter;
 import org.bukkit.Bukkit;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -37,8 +38,17 @@ public class PathPlayer {
     private final Map<Integer, FoundInfo> foundGroups;
 
     private final Map<Integer, ParticlePath> activePaths;
+    /**
+     * Die noch folgenden Abschnitte eines Weges über Portale. Sie werden nacheinander zum aktiven Pfad ihrer Straßenkarte.
+     */
+    private final Deque<ParticlePath> portalLegs = new ConcurrentLinkedDeque<>();
     private final Map<Integer, FindableGroup> lastSetGroups;
     private final Map<Integer, Findable> lastSetFindables;
+    /**
+     * Key = RoadMapID
+     * Value = Die Nodes, die der Spieler in der Straßenkarte bei der Suche betreten darf
+     */
+    private final Map<Integer, PlayerVisibility> visibilities;
 
     @Getter
     @Nullable
@@ -57,6 +67,7 @@ public class PathPlayer {
         this.activePaths = new HashMap<>();
         this.lastSetGroups = new ConcurrentHashMap<>();
         this.lastSetFindables = new ConcurrentHashMap<>();
+        this.visibilities = new ConcurrentHashMap<>();
 
         foundFindables = DatabaseModel.getInstance().loadFoundNodes(globalPlayerId, false);
         foundGroups = DatabaseModel.getInstance().loadFoundNodes(globalPlayerId, true);
@@ -82,6 +93,9 @@ public class PathPlayer {
         } else {
             foundFindables.put(id, info);
         }
+        for (PlayerVisibility visibility : visibilities.values()) {
+            visibility.setFound(id, group, true);
+        }
     }
 
     public void unfind(Findable findable, boolean group) {
@@ -103,6 +117,9 @@ public class PathPlayer {
         } else {
             foundFindables.remove(id);
         }
+        for (PlayerVisibility visibility : visibilities.values()) {
+            visibility.setFound(id, group, false);
+        }
         DatabaseModel.getInstance().deleteFoundNode(globalPlayerId, id, group);
     }
 
@@ -125,6 +142,22 @@ public class PathPlayer {
         return foundFindables.containsKey(findable.getDatabaseId());
     }
 
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     * Das Bitset wird pro Straßenkarte zwischengespeichert und nur bei Änderungen neu zusammengesetzt.
+     *
+     * @return Die Indizes der Nodes im kompilierten Graphen, die der Spieler bei der Suche betreten darf.
+     * Das Bitset wird geteilt und darf nicht verändert werden. Leer, wenn der Spieler nicht online ist.
+     */
+    public BitSet getVisibilityMask(RoadMap roadMap) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player == null) {
+            return new BitSet();
+        }
+        return visibilities.computeIfAbsent(roadMap.getDatabaseId(), id -> new PlayerVisibility())
+                .getMask(roadMap.getVisibilityRules(), player, this);
+    }
+
     /**
      * Wie viele FoundInfo Objekte der Spieler zu einer Roadmap hat
      */
@@ -162,29 +195,99 @@ public class PathPlayer {
             return;
         }
         final PlayerFindable playerFindable = new PlayerFindable(player, target.getRoadMap());
-        PluginUtils.getInstance().runAsync(() -> AStarUtils.startPath(pathPlayer, playerFindable, target, false));
+        AStarUtils.startPathAsync(pathPlayer, playerFindable, target, false, false, null);
     }
 
     public void setPath(@NotNull ParticlePath path) {
         ParticlePath active = activePaths.get(path.getRoadMap().getDatabaseId());
         if (active != null) {
             active.cancel();
+            active.getRoadMap().unregisterActivePath(uuid, active);
         }
         path.run(uuid);
         activePaths.put(path.getRoadMap().getDatabaseId(), path);
+        path.getRoadMap().registerActivePath(uuid, path);
 
         Map<Integer, AtomicBoolean> lock = PlayerListener.getHasFoundTarget().getOrDefault(uuid, new ConcurrentHashMap<>());
         lock.put(path.getRoadMap().getDatabaseId(), new AtomicBoolean(false));
         PlayerListener.getHasFoundTarget().put(uuid, lock);
     }
 
+    /**
+     * Startet einen Weg über Portale. Er ersetzt alle bisherigen Pfade, aktiv ist immer nur der Abschnitt, auf dem
+     * sich der Spieler gerade befindet.
+     *
+     * @param legs Die Abschnitte pro durchquerter Straßenkarte. Alle außer dem letzten enden an einem Portal.
+     */
+    public void setPortalRoute(List<ParticlePath> legs) {
+        cancelPaths();
+        portalLegs.addAll(legs.subList(1, legs.size()));
+        setPath(legs.get(0));
+    }
+
+    /**
+     * Beendet den Abschnitt in der Straßenkarte, nachdem der Spieler das Portal an seinem Ende erreicht hat, und
+     * startet den nächsten Abschnitt.
+     *
+     * @return false, wenn kein weiterer Abschnitt folgt.
+     */
+    public boolean continuePortalRoute(RoadMap roadMap) {
+        ParticlePath current = activePaths.remove(roadMap.getDatabaseId());
+        if (current != null) {
+            current.cancel();
+            roadMap.unregisterActivePath(uuid, current);
+        }
+        ParticlePath next = portalLegs.poll();
+        if (next == null) {
+            return false;
+        }
+        setPath(next);
+        return true;
+    }
+
+    /**
+     * Startet nach einem Wechsel der Welt die Pfade, die dort angezeigt werden. Führt ein Weg über Portale in diese
+     * Welt, wird sein nächster Abschnitt dort gestartet, auch wenn der Spieler das Portal am Ende des vorherigen
+     * Abschnitts nicht erreicht hat. Nur im Mainthread aufrufen.
+     */
+    public void changeWorld(World world) {
+        if (portalLegs.stream().anyMatch(leg -> leg.getRoadMap().getWorld().equals(world))) {
+            for (ParticlePath path : new ArrayList<>(activePaths.values())) {
+                if (path.isPortalLeg()) {
+                    path.cancel();
+                    activePaths.remove(path.getRoadMap().getDatabaseId());
+                    path.getRoadMap().unregisterActivePath(uuid, path);
+                }
+            }
+            while (!portalLegs.isEmpty() && !portalLegs.peek().getRoadMap().getWorld().equals(world)) {
+                portalLegs.poll();
+            }
+            ParticlePath next = portalLegs.poll();
+            if (next != null) {
+                setPath(next);
+            }
+        }
+        for (ParticlePath path : activePaths.values()) {
+            if (path.getRoadMap().getWorld().equals(world) && !path.isActive()) {
+                path.run(uuid);
+            }
+        }
+    }
+
     public Collection<ParticlePath> getActivePaths() {
         return activePaths.values();
     }
 
+    public @Nullable
+    ParticlePath getActivePath(RoadMap roadMap) {
+        return activePaths.get(roadMap.getDatabaseId());
+    }
+
     public void cancelPaths() {
+        portalLegs.clear();
         for (ParticlePath path : activePaths.values()) {
             path.cancel();
+            path.getRoadMap().unregisterActivePath(uuid, path);
         }
         activePaths.clear();
     }
@@ -195,8 +298,12 @@ public class PathPlayer {
             return;
         }
 
+        if (toBeCancelled.isPortalLeg()) {
+            portalLegs.clear();
+        }
         toBeCancelled.cancel();
         activePaths.remove(roadMap.getDatabaseId());
+        roadMap.unregisterActivePath(uuid, toBeCancelled);
     }
 
     public void pauseActivePath(RoadMap roadMap) {
@@ -0,0 +1,98 @@
+package de.bossascrew.pathfinder.data;
+
+import org.bukkit.entity.Player;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Die Nodes einer Straßenkarte, die ein Spieler bei der Suche betreten darf, als Bitset über die Indizes des Graphen.
+ * Gefundene Nodes und Gruppen werden einzeln nachgetragen. Permissions werden bei jeder Abfrage nur einmal pro
+ * unterschiedlicher Permission geprüft, das Bitset wird nur neu zusammengesetzt, wenn sich etwas geändert hat.
+ * Threadsafe.
+ */
+class PlayerVisibility {
+
+    private @Nullable VisibilityRules rules = null;
+    private BitSet found = new BitSet();
+    private boolean[] granted = new boolean[0];
+    private @Nullable BitSet mask = null;
+
+    /**
+     * @return Das Bitset der sichtbaren Nodes. Es wird geteilt und darf nicht verändert werden.
+     */
+    synchronized BitSet getMask(VisibilityRules current, Player player, PathPlayer pathPlayer) {
+        if (rules != current) {
+            rules = current;
+            found = collectFound(current, pathPlayer);
+            granted = new boolean[current.permissions.length];
+            mask = null;
+            for (int i = 0; i < granted.length; i++) {
+                granted[i] = player.hasPermission(current.permissions[i]);
+            }
+        } else {
+            for (int i = 0; i < granted.length; i++) {
+                boolean permitted = player.hasPermission(current.permissions[i]);
+                if (permitted != granted[i]) {
+                    granted[i] = permitted;
+                    mask = null;
+                }
+            }
+        }
+        if (mask == null) {
+            BitSet visible = (BitSet) current.alwaysVisible.clone();
+            visible.or(found);
+            for (int i = 0; i < granted.length; i++) {
+                if (!granted[i]) {
+                    visible.andNot(current.permissionNodes[i]);
+                }
+            }
+            mask = visible;
+        }
+        return mask;
+    }
+
+    /**
+     * Trägt einen gefundenen oder nicht mehr gefundenen Node bzw. eine Gruppe nach.
+     * IDs, die nicht zu dieser Straßenkarte gehören, werden ignoriert.
+     */
+    synchronized void setFound(int id, boolean group, boolean value) {
+        if (rules == null) {
+            return;
+        }
+        if (group) {
+            BitSet nodes = rules.groupNodes.get(id);
+            if (nodes == null) {
+                return;
+            }
+            if (value) {
+                found.or(nodes);
+            } else {
+                found.andNot(nodes);
+            }
+        } else {
+            int index = rules.graph.indexOf(id);
+            if (index < 0 || !rules.ungrouped.get(index)) {
+                return;
+            }
+            found.set(index, value);
+        }
+        mask = null;
+    }
+
+    private static BitSet collectFound(VisibilityRules rules, PathPlayer pathPlayer) {
+        BitSet found = new BitSet(rules.graph.size());
+        for (int i = rules.ungrouped.nextSetBit(0); i >= 0; i = rules.ungrouped.nextSetBit(i + 1)) {
+            if (pathPlayer.hasFound(rules.graph.getDatabaseId(i), false)) {
+                found.set(i);
+            }
+        }
+        for (Map.Entry<Integer, BitSet> entry : rules.groupNodes.entrySet()) {
+            if (pathPlayer.hasFound(entry.getKey(), true)) {
+                found.or(entry.getValue());
+            }
+        }
+        return found;
+    }
+}
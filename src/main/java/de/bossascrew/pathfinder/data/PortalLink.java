@@ -0,0 +1,25 @@
+package de.bossascrew.pathfinder.data;
+
+import de.bossascrew.pathfinder.data.findable.Findable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Verbindet ein Findable mit einem Findable einer anderen Straßenkarte, auch in einer anderen Welt, z.B. an beiden
+ * Enden eines Netherportals oder eines Teleporters. Pfade können in beide Richtungen über den Link führen.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PortalLink {
+
+    private final int databaseId;
+    private final Findable a;
+    private final Findable b;
+
+    /**
+     * @return Das Findable am anderen Ende des Links oder null, wenn das Findable nicht zum Link gehört.
+     */
+    public Findable getOther(Findable findable) {
+        return findable.equals(a) ? b : findable.equals(b) ? a : null;
+    }
+}
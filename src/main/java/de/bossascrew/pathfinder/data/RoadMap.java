@@ -1,6 +1,5 @@
 package de.bossascrew.pathfinder.data;
 
-import com.google.common.collect.Maps;
 import de.bossascrew.core.bukkit.inventory.menu.HotbarMenu;
 import de.bossascrew.core.bukkit.nbt.NBTEntity;
 import de.bossascrew.core.bukkit.player.PlayerUtils;
@@ -9,11 +8,13 @@ import de.bossascrew.core.bukkit.util.HeadDBUtils;
 import de.bossascrew.core.util.Pair;
 import de.bossascrew.core.util.PluginUtils;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.*;
 import de.bossascrew.pathfinder.data.findable.*;
 import de.bossascrew.pathfinder.data.visualisation.EditModeVisualizer;
 import de.bossascrew.pathfinder.data.visualisation.PathVisualizer;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
+import de.bossascrew.pathfinder.util.AStarUtils;
 import de.bossascrew.pathfinder.util.EditModeMenu;
 import de.bossascrew.pathfinder.util.EntityHider;
 import lombok.Getter;
@@ -47,8 +48,15 @@ public class RoadMap {
 	private World world;
 	private boolean findableNodes;
 
-	private final Map<Integer, Findable> findables = Maps.newHashMap();
-	private final Collection<Pair<Findable, Findable>> edges;
+	/**
+	 * Wird asynchron gelesen, z.B. beim Kompilieren des Graphen. Nur unter dem Monitor der Straßenkarte verändern,
+	 * damit das Kompilieren in {@link #getGraph()} keinen halb veränderten Stand sieht.
+	 */
+	private final Map<Integer, Findable> findables = new ConcurrentHashMap<>();
+	/**
+	 * Die Kanten zwischen den Findables, nur über {@link #connectNodes} und {@link #disconnectNodes} bearbeiten.
+	 */
+	private final Adjacency adjacency = new Adjacency();
 	private final Map<Integer, FindableGroup> groups;
 	private final Map<UUID, HotbarMenu> editingPlayers;
 	private EntityHider entityHider;
@@ -64,6 +72,27 @@ public class RoadMap {
 
 	private BukkitTask armorStandDistanceTask = null;
 
+	private long graphVersion = 0;
+	private @Nullable RoadMapGraph graph = null;
+	private EdgeCostModel edgeCostModel = EdgeCostModel.EUCLIDEAN;
+	private RoutingMode routingMode;
+	private @Nullable Landmarks landmarks = null;
+	private @Nullable ContractionHierarchy contractionHierarchy = null;
+	private @Nullable ClusterHierarchy clusterHierarchy = null;
+	private @Nullable NextHopTable nextHopTable = null;
+	private boolean preprocessing = false;
+	private @Nullable VisibilityRules visibilityRules = null;
+	private @Nullable FindableTypes findableTypes = null;
+	private @Nullable ConnectedComponents components = null;
+
+	/**
+	 * Key = ID eines Findables
+	 * Value = Spieler, deren aktiver Pfad über dieses Findable führt.
+	 */
+	private final Map<Integer, Set<UUID>> activePathPlayers = new ConcurrentHashMap<>();
+	private final Set<Integer> changedFindables = new HashSet<>();
+	private boolean pathRepairScheduled = false;
+
 	public RoadMap(int databaseId, String name, World world, boolean findableNodes, PathVisualizer pathVisualizer,
 				   EditModeVisualizer editModeVisualizer, double nodeFindDistance, double defaultBezierTangentLength) {
 
@@ -80,7 +109,9 @@ public class RoadMap {
 
 		this.groups = DatabaseModel.getInstance().loadFindableGroups(this);
 		this.findables.putAll(DatabaseModel.getInstance().loadFindables(this));
-		this.edges = loadEdgesFromIds(Objects.requireNonNull(DatabaseModel.getInstance().loadEdges(this)));
+		loadEdgesFromIds(Objects.requireNonNull(DatabaseModel.getInstance().loadEdges(this)));
+		this.routingMode = DatabaseModel.getInstance().loadRoutingMode(this);
+		updatePreprocessing();
 
 		setPathVisualizer(pathVisualizer);
 		setEditModeVisualizer(editModeVisualizer);
@@ -109,7 +140,7 @@ public class RoadMap {
 	}
 
 	public void deleteFindable(Findable findable) {
-		for (int edge : new ArrayList<>(findable.getEdges())) {
+		for (int edge : findable.getEdges().toArray()) {
 			Findable target = getFindable(edge);
 			if (target == null) {
 				continue;
@@ -117,7 +148,12 @@ public class RoadMap {
 			disconnectNodes(findable, target);
 		}
 		DatabaseModel.getInstance().deleteFindable(findable.getDatabaseId());
-		findables.remove(findable.getDatabaseId());
+		synchronized (this) {
+			findables.remove(findable.getDatabaseId());
+			invalidateGraph();
+		}
+		invalidateComponents();
+		markChanged(findable);
 
 		if (isEdited()) {
 			updateEditModeParticles();
@@ -154,17 +190,22 @@ public class RoadMap {
 		return node;
 	}
 
-	public void addFindable(Findable findable) {
+	public synchronized void addFindable(Findable findable) {
 		findables.put(findable.getDatabaseId(), findable);
+		invalidateGraph();
 	}
 
-	public void setFindables(Map<Integer, Findable> findables) {
+	public synchronized void setFindables(Map<Integer, Findable> findables) {
 		this.findables.clear();
 		this.findables.putAll(findables);
+		invalidateGraph();
+		invalidateComponents();
 	}
 
-	public void addFindables(Map<Integer, Findable> findables) {
+	public synchronized void addFindables(Map<Integer, Findable> findables) {
 		this.findables.putAll(findables);
+		invalidateGraph();
+		invalidateComponents();
 	}
 
 	public @Nullable
@@ -174,7 +215,7 @@ public class RoadMap {
 
 	public @Nullable
 	Findable getFindable(int findableId) {
-		return findables.values().stream().filter(f -> f.getDatabaseId() == findableId).findAny().orElse(null);
+		return findables.get(findableId);
 	}
 
 	public @Nullable
@@ -192,7 +233,7 @@ public class RoadMap {
 		if (groupId == null) {
 			return null;
 		}
-		return groups.values().stream().filter(group -> group.getDatabaseId() == groupId).findAny().orElse(null);
+		return groups.get(groupId);
 	}
 
 	public void deleteFindableGroup(FindableGroup findableGroup) {
@@ -234,13 +275,18 @@ public class RoadMap {
 			return;
 		}
 		DatabaseModel.getInstance().newEdge(a, b);
-		a.getEdges().add(b.getDatabaseId());
-		b.getEdges().add(a.getDatabaseId());
-		Pair<Findable, Findable> edge = new Pair<>(a, b);
-		edges.add(edge);
+		adjacency.connect(a.getDatabaseId(), b.getDatabaseId());
+		invalidateGraph();
+		synchronized (this) {
+			if (components != null) {
+				components.union(a.getDatabaseId(), b.getDatabaseId());
+			}
+		}
+		markChanged(a, b);
 
 		if (isEdited()) {
 			updateEditModeParticles();
+			Pair<Findable, Findable> edge = new Pair<>(a, b);
 			this.editModeEdgeArmorStands.put(edge, getEdgeArmorStand(edge));
 		}
 	}
@@ -253,7 +299,7 @@ public class RoadMap {
 	}
 
 	public void disconnectNode(Findable f) {
-		for(int edge : new HashSet<>(f.getEdges())) {
+		for(int edge : f.getEdges().toArray()) {
 			disconnectNodes(f, getFindable(edge));
 		}
 	}
@@ -263,20 +309,17 @@ public class RoadMap {
 			return;
 		}
 		DatabaseModel.getInstance().deleteEdge(a, b);
-		a.getEdges().remove((Integer) b.getDatabaseId());
-		b.getEdges().remove((Integer) a.getDatabaseId());
-
-		Pair<Findable, Findable> edge = edges.stream()
-				.filter(pair -> (pair.first.equals(a) && pair.second.equals(b)) || pair.second.equals(a) && pair.first.equals(b))
-				.findAny().orElse(null);
-
-		if (edge == null) {
+		if (!adjacency.disconnect(a.getDatabaseId(), b.getDatabaseId())) {
 			return;
 		}
-		edges.remove(edge);
+		invalidateGraph();
+		invalidateComponents();
+		markChanged(a, b);
+
 		if (isEdited()) {
 			updateEditModeParticles();
-			ArmorStand edgeArmorStand = editModeEdgeArmorStands.get(edge);
+			Pair<Findable, Findable> edge = getEdge(a.getDatabaseId(), b.getDatabaseId());
+			ArmorStand edgeArmorStand = edge == null ? null : editModeEdgeArmorStands.get(edge);
 			if (edgeArmorStand != null) {
 				edgeArmorStand.remove();
 				editModeEdgeArmorStands.remove(edge);
@@ -284,21 +327,13 @@ public class RoadMap {
 		}
 	}
 
-	private Collection<Pair<Findable, Findable>> loadEdgesFromIds(Collection<Pair<Integer, Integer>> edgesById) {
-		Collection<Pair<Findable, Findable>> result = new ArrayList<>();
+	private void loadEdgesFromIds(Collection<Pair<Integer, Integer>> edgesById) {
 		for (Pair<Integer, Integer> pair : edgesById) {
-			Findable a = getFindable(pair.first);
-			Findable b = getFindable(pair.second);
-
-			if (a == null || b == null) {
+			if (getFindable(pair.first) == null || getFindable(pair.second) == null) {
 				continue;
 			}
-			a.getEdges().add(b.getDatabaseId());
-			b.getEdges().add(a.getDatabaseId());
-
-			result.add(new Pair<>(a, b));
+			adjacency.connect(pair.first, pair.second);
 		}
-		return result;
 	}
 
 	public void delete() {
@@ -415,14 +450,10 @@ public class RoadMap {
 			ArmorStand nodeArmorStand = getNodeArmorStand(findable);
 			editModeNodeArmorStands.put(findable, nodeArmorStand);
 		}
-		List<Pair<Findable, Findable>> processedFindables = new ArrayList<>();
-		for (Pair<Findable, Findable> edge : edges) {
-			if (processedFindables.contains(edge)) {
-				continue;
-			}
+		//Jede Kante kommt in der Liste nur einmal vor
+		for (Pair<Findable, Findable> edge : getEdgePairs()) {
 			ArmorStand edgeArmorStand = getEdgeArmorStand(edge);
 			editModeEdgeArmorStands.put(edge, edgeArmorStand);
-			processedFindables.add(edge);
 		}
 		updateEditModeParticles();
 
@@ -505,7 +536,7 @@ public class RoadMap {
 		if (!considerEdges) {
 			return;
 		}
-		for (int edge : findable.getEdges()) {
+		for (int edge : findable.getEdges().toArray()) {
 			Pair<Findable, Findable> edgePair = getEdge(findable.getDatabaseId(), edge);
 			if (edgePair == null) {
 				continue;
@@ -530,18 +561,13 @@ public class RoadMap {
 			ParticleBuilder particle = new ParticleBuilder(ParticleEffect.valueOf(editModeVisualizer.getParticle().toString()))
 					.setColor(java.awt.Color.RED);
 
-			//Alle linearen Verbindungen der Waypoints errechnen und als Packet sammeln. Berücksichtigen, welche Node schon behandelt wurde, um doppelte Geraden zu vermeiden
-			List<Pair<Findable, Findable>> processedFindables = new ArrayList<>();
-			for (Pair<Findable, Findable> edge : edges) {
-				if (processedFindables.contains(edge)) {
-					continue;
-				}
+			//Alle linearen Verbindungen der Waypoints errechnen und als Packet sammeln. Jede Kante kommt nur einmal vor.
+			for (Pair<Findable, Findable> edge : getEdgePairs()) {
 				List<Vector> points = BezierUtils.getBezierCurveDistanced(editModeVisualizer.getParticleDistance(), edge.first.getVector(), edge.second.getVector());
 				packets.addAll(points.stream()
 						.map(vector -> vector.toLocation(world))
 						.map(location -> particle.setLocation(location).toPacket())
 						.collect(Collectors.toSet()));
-				processedFindables.add(edge);
 			}
 			if (packets.size() > editModeVisualizer.getParticleLimit()) {
 				packets = packets.subList(0, editModeVisualizer.getParticleLimit());
@@ -592,6 +618,7 @@ public class RoadMap {
 
 	public void setFindableNodes(boolean findableNodes) {
 		this.findableNodes = findableNodes;
+		invalidateVisibility();
 		updateData();
 	}
 
@@ -703,9 +730,25 @@ public class RoadMap {
 		return null;
 	}
 
+	/**
+	 * @return Alle Kanten einmal als Paar von Findables. Die Paare werden nur für den Editmode erzeugt.
+	 */
+	private List<Pair<Findable, Findable>> getEdgePairs() {
+		int[] edgeList = adjacency.getEdgeList();
+		List<Pair<Findable, Findable>> pairs = new ArrayList<>(edgeList.length / 2);
+		for (int i = 0; i < edgeList.length; i += 2) {
+			Findable a = getFindable(edgeList[i]);
+			Findable b = getFindable(edgeList[i + 1]);
+			if (a != null && b != null) {
+				pairs.add(new Pair<>(a, b));
+			}
+		}
+		return pairs;
+	}
+
 	private Collection<Pair<Findable, Findable>> getEdges(Findable findable) {
 		Collection<Pair<Findable, Findable>> ret = new ArrayList<>();
-		for (Pair<Findable, Findable> edge : edges) {
+		for (Pair<Findable, Findable> edge : editModeEdgeArmorStands.keySet()) {
 			if (edge.first != null && edge.second != null) {
 				if (edge.first.equals(findable) || edge.second.equals(findable)) {
 					ret.add(edge);
@@ -715,6 +758,340 @@ public class RoadMap {
 		return ret;
 	}
 
+	/**
+	 * Markiert den kompilierten Graphen als veraltet, weil sich Nodes oder Kanten geändert haben.
+	 * Er wird bei der nächsten Suche neu kompiliert.
+	 */
+	public synchronized void invalidateGraph() {
+		graphVersion++;
+		graph = null;
+		updatePreprocessing();
+	}
+
+	/**
+	 * Übernimmt die neue Position eines Nodes in den kompilierten Graphen. Dabei werden nur die Kosten der anliegenden
+	 * Kanten neu berechnet, anstatt den ganzen Graphen neu zu kompilieren.
+	 */
+	public synchronized void updateGraphPosition(Findable findable) {
+		graphVersion++;
+		//Auch ohne kompilierten Graphen, z.B. direkt nach dem Verbinden, müssen die aktiven Pfade repariert werden
+		if (graph != null) {
+			int index = graph.indexOf(findable.getDatabaseId());
+			if (index < 0) {
+				graph = null;
+			} else {
+				Vector vector = findable.getVector();
+				graph = graph.withPosition(index, vector.getX(), vector.getY(), vector.getZ(), graphVersion);
+			}
+		}
+		updatePreprocessing();
+		markChanged(findable);
+	}
+
+	/**
+	 * Trägt einen aktiven Pfad ein, damit er nach Änderungen an seinen Findables repariert werden kann.
+	 */
+	public void registerActivePath(UUID playerId, List<Findable> path) {
+		for (Findable findable : path) {
+			if (findable.getDatabaseId() < 0) {
+				continue;
+			}
+			activePathPlayers.compute(findable.getDatabaseId(), (id, players) -> {
+				if (players == null) {
+					players = ConcurrentHashMap.newKeySet();
+				}
+				players.add(playerId);
+				return players;
+			});
+		}
+	}
+
+	public void unregisterActivePath(UUID playerId, List<Findable> path) {
+		for (Findable findable : path) {
+			activePathPlayers.computeIfPresent(findable.getDatabaseId(), (id, players) -> {
+				players.remove(playerId);
+				return players.isEmpty() ? null : players;
+			});
+		}
+	}
+
+	/**
+	 * Merkt bearbeitete Findables vor und repariert im nächsten Tick alle aktiven Pfade, die über sie führen.
+	 * Mehrere Änderungen in einem Tick, z.B. beim Löschen eines Nodes mit vielen Kanten, werden zusammengefasst.
+	 */
+	private synchronized void markChanged(Findable... changed) {
+		if (activePathPlayers.isEmpty()) {
+			return;
+		}
+		for (Findable findable : changed) {
+			changedFindables.add(findable.getDatabaseId());
+		}
+		if (!pathRepairScheduled) {
+			pathRepairScheduled = true;
+			Bukkit.getScheduler().runTaskLater(PathPlugin.getInstance(), this::repairActivePaths, 1L);
+		}
+	}
+
+	/**
+	 * Repariert nur die Pfade, die über ein bearbeitetes Findable führen. Die Kosten hängen damit von der Bearbeitung
+	 * ab und nicht von der Anzahl navigierender Spieler.
+	 */
+	private void repairActivePaths() {
+		Set<Integer> changed;
+		synchronized (this) {
+			changed = new HashSet<>(changedFindables);
+			changedFindables.clear();
+			pathRepairScheduled = false;
+		}
+		Set<UUID> players = new HashSet<>();
+		for (int id : changed) {
+			Set<UUID> passing = activePathPlayers.get(id);
+			if (passing != null) {
+				players.addAll(passing);
+			}
+		}
+		for (UUID playerId : players) {
+			PathPlayer pathPlayer = PathPlayerHandler.getInstance().getPlayer(playerId);
+			if (pathPlayer != null) {
+				AStarUtils.repairPath(pathPlayer, this, changed);
+			}
+		}
+	}
+
+	/**
+	 * Setzt das Kostenmodell, mit dem die Kantenkosten dieser Straßenkarte berechnet werden.
+	 */
+	public synchronized void setEdgeCostModel(EdgeCostModel edgeCostModel) {
+		this.edgeCostModel = edgeCostModel;
+		invalidateGraph();
+		invalidateComponents();
+	}
+
+	/**
+	 * Threadsafe, kann asynchron ausgeführt werden.
+	 *
+	 * @return Den kompilierten Graphen dieser Straßenkarte. Er wird nur neu erzeugt, wenn sich seit dem letzten Aufruf Nodes oder Kanten geändert haben.
+	 */
+	public synchronized RoadMapGraph getGraph() {
+		if (graph == null) {
+			graph = compileGraph();
+		}
+		return graph;
+	}
+
+	/**
+	 * Threadsafe, kann asynchron ausgeführt werden.
+	 *
+	 * @return Die Zusammenhangskomponenten dieser Straßenkarte. Neue Kanten werden direkt übernommen, erst nach dem
+	 * Trennen von Kanten oder Löschen von Nodes werden sie beim nächsten Aufruf neu berechnet.
+	 */
+	public synchronized ConnectedComponents getComponents() {
+		if (components == null) {
+			components = ConnectedComponents.compute(getGraph());
+		}
+		return components;
+	}
+
+	private synchronized void invalidateComponents() {
+		components = null;
+	}
+
+	/**
+	 * Markiert die Sichtbarkeitsregeln als veraltet, weil sich die Findbarkeit von Gruppen oder die Permissions von Nodes
+	 * geändert haben. Die Bitsets der Spieler werden bei der nächsten Suche neu aufgebaut.
+	 */
+	public synchronized void invalidateVisibility() {
+		visibilityRules = null;
+	}
+
+	/**
+	 * Threadsafe, kann asynchron ausgeführt werden.
+	 *
+	 * @return Die Sichtbarkeitsregeln für den aktuellen kompilierten Graphen.
+	 */
+	synchronized VisibilityRules getVisibilityRules() {
+		RoadMapGraph graph = getGraph();
+		if (visibilityRules == null || visibilityRules.graph != graph) {
+			visibilityRules = VisibilityRules.compile(this, graph);
+		}
+		return visibilityRules;
+	}
+
+	/**
+	 * @return Die Art und Gruppe der Nodes für den übergebenen Graphen. Zwischengespeichert wird nur der zuletzt angefragte Graph.
+	 */
+	private synchronized FindableTypes getFindableTypes(RoadMapGraph graph) {
+		if (findableTypes == null || findableTypes.graph != graph) {
+			findableTypes = FindableTypes.compile(this, graph);
+		}
+		return findableTypes;
+	}
+
+	/**
+	 * Threadsafe, kann asynchron ausgeführt werden.
+	 *
+	 * @param graph Der Graph, auf den sich die Indizes beziehen.
+	 * @return Die Indizes aller Findables mit diesem Scope, z.B. {@link TraderFindable#SCOPE}. Das Bitset wird geteilt
+	 * und darf nicht verändert werden.
+	 */
+	public BitSet getScopeMask(RoadMapGraph graph, String scope) {
+		return getFindableTypes(graph).scopes.getOrDefault(scope, new BitSet());
+	}
+
+	/**
+	 * Threadsafe, kann asynchron ausgeführt werden.
+	 *
+	 * @param graph Der Graph, auf den sich die Indizes beziehen.
+	 * @return Die Indizes aller Mitglieder der Gruppe. Das Bitset wird geteilt und darf nicht verändert werden.
+	 */
+	public BitSet getGroupMask(RoadMapGraph graph, int groupId) {
+		return getFindableTypes(graph).groups.getOrDefault(groupId, new BitSet());
+	}
+
+	/**
+	 * Setzt das Suchverfahren, mit dem die Pfade dieser Straßenkarte berechnet werden, und speichert es.
+	 */
+	public synchronized void setRoutingMode(RoutingMode routingMode) {
+		this.routingMode = routingMode;
+		PluginUtils.getInstance().runAsync(() -> DatabaseModel.getInstance().updateRoutingMode(this));
+		updatePreprocessing();
+	}
+
+	/**
+	 * @param graph Der Graph, auf dem gesucht wird.
+	 * @return Eine neue Suche mit dem eingestellten Suchverfahren. Eine Suche darf nur von einem Thread verwendet werden.
+	 */
+	public synchronized PathSearch createPathSearch(RoadMapGraph graph) {
+		//Veraltete Vorberechnungen passen nicht mehr zum Graphen, bis zur Neuberechnung wird ein einfacher AStar verwendet
+		switch (routingMode) {
+			case BIDIRECTIONAL:
+				return new BidirectionalAStar();
+			case ALT:
+				if (landmarks != null && landmarks.getGraphVersion() == graph.getVersion()) {
+					return new AStar(landmarks);
+				}
+				return new AStar();
+			case CONTRACTION_HIERARCHY:
+				if (contractionHierarchy != null && contractionHierarchy.getGraphVersion() == graph.getVersion()) {
+					return new ContractionHierarchySearch(contractionHierarchy);
+				}
+				return new AStar();
+			case HIERARCHICAL:
+				if (clusterHierarchy != null && clusterHierarchy.getGraphVersion() == graph.getVersion()) {
+					return new ClusterHierarchySearch(clusterHierarchy);
+				}
+				return new AStar();
+			case ROUTING_TABLE:
+				if (nextHopTable != null && nextHopTable.getGraphVersion() == graph.getVersion() && nextHopTable.hasTable()) {
+					return new NextHopSearch(nextHopTable);
+				}
+				return new AStar();
+			default:
+				return new AStar();
+		}
+	}
+
+	/**
+	 * @return Die Landmarken, falls sie zum aktuellen Graphen passen, sonst null.
+	 */
+	public synchronized @Nullable Landmarks getCurrentLandmarks() {
+		return landmarks != null && landmarks.getGraphVersion() == graphVersion ? landmarks : null;
+	}
+
+	/**
+	 * @return Die Contraction Hierarchy, falls sie zum aktuellen Graphen passt, sonst null.
+	 */
+	public synchronized @Nullable ContractionHierarchy getCurrentContractionHierarchy() {
+		return contractionHierarchy != null && contractionHierarchy.getGraphVersion() == graphVersion ? contractionHierarchy : null;
+	}
+
+	/**
+	 * @return Die Cluster-Hierarchie, falls sie zum aktuellen Graphen passt, sonst null.
+	 */
+	public synchronized @Nullable ClusterHierarchy getCurrentClusterHierarchy() {
+		return clusterHierarchy != null && clusterHierarchy.getGraphVersion() == graphVersion ? clusterHierarchy : null;
+	}
+
+	/**
+	 * @return Die Routingtabelle, falls sie zum aktuellen Graphen passt, sonst null. Bei zu großen Graphen enthält sie
+	 * keine Tabelle, siehe {@link NextHopTable#hasTable()}.
+	 */
+	public synchronized @Nullable NextHopTable getCurrentNextHopTable() {
+		return nextHopTable != null && nextHopTable.getGraphVersion() == graphVersion ? nextHopTable : null;
+	}
+
+	private boolean isPreprocessed() {
+		switch (routingMode) {
+			case ALT:
+				return getCurrentLandmarks() != null;
+			case CONTRACTION_HIERARCHY:
+				return getCurrentContractionHierarchy() != null;
+			case HIERARCHICAL:
+				return getCurrentClusterHierarchy() != null;
+			case ROUTING_TABLE:
+				return getCurrentNextHopTable() != null;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Berechnet die Vorberechnung des eingestellten Suchverfahrens asynchron neu, falls sie nicht zum aktuellen Graphen passt.
+	 * Es läuft höchstens eine Berechnung gleichzeitig, Änderungen während der Berechnung lösen danach eine weitere aus.
+	 */
+	private synchronized void updatePreprocessing() {
+		if (routingMode != RoutingMode.ALT) {
+			landmarks = null;
+		}
+		if (routingMode != RoutingMode.CONTRACTION_HIERARCHY) {
+			contractionHierarchy = null;
+		}
+		if (routingMode != RoutingMode.HIERARCHICAL) {
+			clusterHierarchy = null;
+		}
+		if (routingMode != RoutingMode.ROUTING_TABLE) {
+			nextHopTable = null;
+		}
+		if (preprocessing || isPreprocessed()) {
+			return;
+		}
+		preprocessing = true;
+		RoutingMode mode = routingMode;
+		//Die veraltete Cluster-Hierarchie bleibt erhalten, damit unveränderte Cluster übernommen werden können
+		ClusterHierarchy previousClusters = clusterHierarchy;
+		PluginUtils.getInstance().runAsync(() -> {
+			RoadMapGraph graph = getGraph();
+			Landmarks computedLandmarks = mode == RoutingMode.ALT ? Landmarks.compute(graph, Landmarks.DEFAULT_COUNT) : null;
+			ContractionHierarchy computedHierarchy = mode == RoutingMode.CONTRACTION_HIERARCHY ? ContractionHierarchy.compute(graph) : null;
+			ClusterHierarchy computedClusters = mode == RoutingMode.HIERARCHICAL ? ClusterHierarchy.compute(graph, previousClusters) : null;
+			NextHopTable computedTable = mode == RoutingMode.ROUTING_TABLE ? NextHopTable.compute(graph) : null;
+			synchronized (this) {
+				if (mode == routingMode) {
+					landmarks = computedLandmarks;
+					contractionHierarchy = computedHierarchy;
+					clusterHierarchy = computedClusters;
+					nextHopTable = computedTable;
+				}
+				preprocessing = false;
+				updatePreprocessing();
+			}
+		});
+	}
+
+	private RoadMapGraph compileGraph() {
+		RoadMapGraph.Builder builder = RoadMapGraph.builder(graphVersion, edgeCostModel);
+		for (Findable findable : findables.values()) {
+			Vector vector = findable.getVector();
+			FindableGroup group = findable.getGroup();
+			builder.addNode(findable.getDatabaseId(), vector.getX(), vector.getY(), vector.getZ(),
+					group == null ? RoadMapGraph.NO_GROUP : group.getDatabaseId());
+			for (int edge : adjacency.getNeighborArray(findable.getDatabaseId())) {
+				builder.addEdge(findable.getDatabaseId(), edge);
+			}
+		}
+		return builder.build();
+	}
+
 	public int getFindablesSize() {
 		return getFindables().size();
 	}
@@ -739,7 +1116,8 @@ public class RoadMap {
 
 	public @Nullable
 	Pair<Findable, Findable> getEdge(int aId, int bId) {
-		return edges.stream()
+		//Die Paare existieren nur für die Rüstungsständer des Editmodes
+		return editModeEdgeArmorStands.keySet().stream()
 				.filter(pair -> pair.first != null && pair.second != null)
 				.filter(pair -> (pair.first.getDatabaseId() == aId && pair.second.getDatabaseId() == bId) ||
 						(pair.second.getDatabaseId() == aId && pair.first.getDatabaseId() == bId))
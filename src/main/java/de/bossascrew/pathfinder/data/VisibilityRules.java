@@ -0,0 +1,77 @@
+package de.bossascrew.pathfinder.data;
+
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
+import de.bossascrew.pathfinder.data.findable.Findable;
+
+import java.util.*;
+
+/**
+ * Für einen kompilierten Graphen vorbereitete Regeln, welche Nodes ein Spieler bei der Suche betreten darf.
+ * Alle Mengen sind Bitsets über die Indizes des Graphen. Unveränderlich, wird von der Straßenkarte neu erzeugt,
+ * sobald sich der Graph, die Findbarkeit von Gruppen oder die Permissions von Nodes ändern.
+ */
+class VisibilityRules {
+
+    final RoadMapGraph graph;
+    /**
+     * Nodes, die unabhängig vom Fortschritt des Spielers sichtbar sind, z.B. in nicht findbaren Gruppen.
+     */
+    final BitSet alwaysVisible;
+    /**
+     * Nodes ohne Gruppe, die sichtbar werden, wenn der Spieler sie selbst gefunden hat.
+     */
+    final BitSet ungrouped;
+    /**
+     * Key = ID einer findbaren Gruppe
+     * Value = Nodes der Gruppe, die sichtbar werden, wenn der Spieler die Gruppe gefunden hat.
+     */
+    final Map<Integer, BitSet> groupNodes;
+    /**
+     * Unterschiedliche Permissions der Nodes, an derselben Stelle in permissionNodes die Nodes, die sie voraussetzen.
+     */
+    final String[] permissions;
+    final BitSet[] permissionNodes;
+
+    private VisibilityRules(RoadMapGraph graph, BitSet alwaysVisible, BitSet ungrouped, Map<Integer, BitSet> groupNodes,
+                            String[] permissions, BitSet[] permissionNodes) {
+        this.graph = graph;
+        this.alwaysVisible = alwaysVisible;
+        this.ungrouped = ungrouped;
+        this.groupNodes = groupNodes;
+        this.permissions = permissions;
+        this.permissionNodes = permissionNodes;
+    }
+
+    static VisibilityRules compile(RoadMap roadMap, RoadMapGraph graph) {
+        int n = graph.size();
+        BitSet alwaysVisible = new BitSet(n);
+        BitSet ungrouped = new BitSet(n);
+        Map<Integer, BitSet> groupNodes = new HashMap<>();
+        Map<String, BitSet> permissionNodes = new LinkedHashMap<>();
+
+        if (!roadMap.isFindableNodes()) {
+            //Ohne findbare Nodes sind alle Nodes ohne Permissionabfrage sichtbar
+            alwaysVisible.set(0, n);
+            return new VisibilityRules(graph, alwaysVisible, ungrouped, groupNodes, new String[0], new BitSet[0]);
+        }
+        for (int i = 0; i < n; i++) {
+            Findable findable = roadMap.getFindable(graph.getDatabaseId(i));
+            if (findable == null) {
+                continue;
+            }
+            FindableGroup group = findable.getGroup();
+            if (group == null) {
+                ungrouped.set(i);
+            } else if (group.isFindable()) {
+                groupNodes.computeIfAbsent(group.getDatabaseId(), id -> new BitSet(n)).set(i);
+            } else {
+                alwaysVisible.set(i);
+            }
+            if (findable.getPermission() != null) {
+                permissionNodes.computeIfAbsent(findable.getPermission(), permission -> new BitSet(n)).set(i);
+            }
+        }
+        return new VisibilityRules(graph, alwaysVisible, ungrouped, groupNodes,
+                permissionNodes.keySet().toArray(new String[0]), permissionNodes.values().toArray(new BitSet[0]));
+    }
+}
@@ -1,5 +1,6 @@
 package de.bossascrew.pathfinder.data.findable;
 
+import de.bossascrew.pathfinder.astar.IntSet;
 import de.bossascrew.pathfinder.data.FindableGroup;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.util.StringUtils;
@@ -8,8 +9,6 @@ import org.bukkit.Location;
 import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.List;
 
 @Getter
 public abstract class Findable {
@@ -18,7 +17,6 @@ public abstract class Findable {
     protected String name;
     protected final int roadMapId;
     protected final RoadMap roadMap;
-    protected final List<Integer> edges;
     protected @Nullable Integer nodeGroupId = null;
 
     protected @Nullable Double bezierTangentLength = null;
@@ -29,8 +27,14 @@ public abstract class Findable {
         this.roadMap = roadMap;
         this.roadMapId = roadMap.getDatabaseId();
         this.name = name;
+    }
 
-        edges = new ArrayList<>();
+    /**
+     * @return Die IDs der verbundenen Findables als Ansicht auf die Kanten der Straßenkarte. Bearbeitet werden die
+     * Kanten über {@link RoadMap#connectNodes} und {@link RoadMap#disconnectNodes}. Nur im Mainthread verwenden.
+     */
+    public IntSet getEdges() {
+        return roadMap.getAdjacency().getNeighbors(databaseId);
     }
 
     public void setGroup(Integer groupId, boolean update) {
@@ -45,6 +49,7 @@ public abstract class Findable {
                 g.getFindables().add(this);
             }
         }
+        roadMap.invalidateGraph();
         if(updateArmorStands) {
             roadMap.updateArmorStandDisplay(this, false);
         }
@@ -95,6 +100,7 @@ public abstract class Findable {
 
     public void setPermission(@Nullable String permission, boolean update) {
         this.permission = permission;
+        roadMap.invalidateVisibility();
         if(update) {
             updateData();
         }
@@ -102,6 +108,7 @@ public abstract class Findable {
 
     public void setPermission(@Nullable String permission) {
         this.permission = permission;
+        roadMap.invalidateVisibility();
         updateData();
     }
 
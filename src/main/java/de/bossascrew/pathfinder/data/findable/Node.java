@@ -21,6 +21,7 @@ public class Node extends Findable {
 
     public void setVector(Vector vector) {
         this.vector = vector;
+        roadMap.updateGraphPosition(this);
         roadMap.updateArmorStandPosition(this);
         roadMap.updateEditModeParticles();
         updateData();
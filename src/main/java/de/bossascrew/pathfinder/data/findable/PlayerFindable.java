@@ -1,5 +1,6 @@
 package de.bossascrew.pathfinder.data.findable;
 
+import de.bossascrew.pathfinder.astar.IntSet;
 import de.bossascrew.pathfinder.data.FindableGroup;
 import de.bossascrew.pathfinder.data.RoadMap;
 import lombok.Getter;
@@ -8,7 +9,6 @@ import org.bukkit.entity.Player;
 import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
-import java.util.List;
 
 @Getter
 public class PlayerFindable extends Findable {
@@ -24,6 +24,16 @@ public class PlayerFindable extends Findable {
         this.roadMap = roadMap;
     }
 
+    /**
+     * Derselbe Spieler an derselben Position als Start in einer anderen Straßenkarte, z.B. für Wege über Portale.
+     */
+    public PlayerFindable(PlayerFindable player, RoadMap roadMap) {
+        super(-1, roadMap, player.getName());
+        this.name = player.getName();
+        this.location = player.getLocation();
+        this.roadMap = roadMap;
+    }
+
     public int getDatabaseId() {
         return -1;
     }
@@ -37,7 +47,7 @@ public class PlayerFindable extends Findable {
         return "PLAYER";
     }
 
-    public List<Integer> getEdges() {
+    public IntSet getEdges() {
         return null;
     }
 
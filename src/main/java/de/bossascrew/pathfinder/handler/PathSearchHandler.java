@@ -0,0 +1,294 @@
+package de.bossascrew.pathfinder.handler;
+
+import de.bossascrew.core.util.PluginUtils;
+import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.SearchCancelledException;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Eigener Thread-Pool für Pfadsuchen, damit sie nicht mit Datenbankzugriffen um den allgemeinen Async-Pool konkurrieren.
+ * Pro Spieler gilt nur die neueste Anfrage, eine noch laufende ältere wird über einen Interrupt abgebrochen.
+ * Die Warteschlange ist begrenzt, volle Anfragen werden abgelehnt statt unbegrenzt zu warten.
+ */
+public class PathSearchHandler {
+
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int LATENCY_SAMPLES = 1024;
+    /**
+     * So lange dürfen Ergebnisse einer Sammelanfrage pro Tick im Hauptthread übergeben werden, der Rest folgt im nächsten Tick.
+     */
+    private static final long DELIVERY_NANOS_PER_TICK = 2_000_000;
+
+    @Getter
+    private static PathSearchHandler instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<UUID, Request> latestRequests = new ConcurrentHashMap<>();
+
+    private final Samples queueWaits = new Samples();
+    private final Samples searchTimes = new Samples();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+
+    public PathSearchHandler() {
+        instance = this;
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "PathFinder-Search-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Führt eine Suche im Thread-Pool aus und übergibt ihr Ergebnis im Hauptthread. Eine noch laufende oder wartende
+     * Suche desselben Spielers wird abgebrochen, ihr Ergebnis wird nicht mehr übergeben.
+     *
+     * @param playerId Der Spieler, für den gesucht wird.
+     * @param search   Die Suche. Sie darf eine {@link SearchCancelledException} werfen, wenn sie unterbrochen wird.
+     * @param onResult Wird im Hauptthread mit dem Ergebnis aufgerufen, falls die Anfrage dann noch die neueste ist.
+     * @return false, wenn die Warteschlange voll ist und die Anfrage abgelehnt wurde.
+     */
+    public <T> boolean submit(UUID playerId, Supplier<T> search, Consumer<T> onResult) {
+        Request request = new Request(System.nanoTime(), 1);
+        Request previous = latestRequests.put(playerId, request);
+        try {
+            request.future = executor.submit(() -> run(playerId, request, search, onResult));
+        } catch (RejectedExecutionException e) {
+            //Die vorherige Anfrage bleibt bestehen
+            restore(playerId, request, previous);
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        if (previous != null) {
+            previous.cancel();
+            supersededCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Führt eine gemeinsame Suche für viele Spieler aus, z.B. wenn ein Event alle Teilnehmer zur selben Arena schickt.
+     * Die Ergebnisse werden über mehrere Ticks verteilt übergeben, damit der Hauptthread keine Lastspitze bekommt.
+     * Für jeden Spieler ersetzt die Sammelanfrage seine vorherige Anfrage. Sie selbst wird erst abgebrochen, wenn
+     * alle ihre Spieler eine neuere Anfrage gestellt oder den Server verlassen haben.
+     *
+     * @param playerIds Die Spieler, für die gesucht wird.
+     * @param search    Die Suche mit dem Ergebnis pro Spieler.
+     * @param onResult  Wird im Hauptthread pro Spieler mit seinem Ergebnis oder null aufgerufen, falls die Sammelanfrage
+     *                  dann noch seine neueste Anfrage ist.
+     * @return false, wenn die Warteschlange voll ist und die Anfrage abgelehnt wurde.
+     */
+    public <T> boolean submitBatch(Collection<UUID> playerIds, Supplier<Map<UUID, T>> search, BiConsumer<UUID, T> onResult) {
+        List<UUID> players = new ArrayList<>(new LinkedHashSet<>(playerIds));
+        Request request = new Request(System.nanoTime(), players.size());
+        Map<UUID, Request> previous = new HashMap<>();
+        for (UUID playerId : players) {
+            Request replaced = latestRequests.put(playerId, request);
+            if (replaced != null) {
+                previous.put(playerId, replaced);
+            }
+        }
+        try {
+            request.future = executor.submit(() -> runBatch(players, request, search, onResult));
+        } catch (RejectedExecutionException e) {
+            players.forEach(playerId -> restore(playerId, request, previous.get(playerId)));
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        for (Request replaced : previous.values()) {
+            replaced.cancel();
+            supersededCount.incrementAndGet();
+        }
+        return true;
+    }
+
+    private void restore(UUID playerId, Request request, @Nullable Request previous) {
+        if (previous == null) {
+            latestRequests.remove(playerId, request);
+        } else {
+            latestRequests.replace(playerId, request, previous);
+        }
+    }
+
+    private <T> void run(UUID playerId, Request request, Supplier<T> search, Consumer<T> onResult) {
+        long started = System.nanoTime();
+        queueWaits.record(started - request.submitted);
+        boolean completed = false;
+        try {
+            T result = search.get();
+            searchTimes.record(System.nanoTime() - started);
+            PluginUtils.getInstance().runSync(() -> {
+                //Während die Suche lief, kann bereits eine neuere Anfrage gestellt worden sein
+                if (latestRequests.remove(playerId, request)) {
+                    onResult.accept(result);
+                }
+            });
+            completed = true;
+        } catch (SearchCancelledException ignored) {
+        } catch (RuntimeException e) {
+            PathPlugin.getInstance().getLogger().log(Level.SEVERE, "Fehler bei einer Pfadsuche", e);
+        } finally {
+            //Auch bei einem Error, sonst gilt der Spieler für immer als wartend
+            if (!completed) {
+                latestRequests.remove(playerId, request);
+            }
+        }
+    }
+
+    private <T> void runBatch(List<UUID> players, Request request, Supplier<Map<UUID, T>> search, BiConsumer<UUID, T> onResult) {
+        long started = System.nanoTime();
+        queueWaits.record(started - request.submitted);
+        boolean completed = false;
+        try {
+            Map<UUID, T> results = search.get();
+            searchTimes.record(System.nanoTime() - started);
+            Iterator<UUID> iterator = players.iterator();
+            Bukkit.getScheduler().runTaskTimer(PathPlugin.getInstance(), task -> {
+                long deadline = System.nanoTime() + DELIVERY_NANOS_PER_TICK;
+                do {
+                    if (!iterator.hasNext()) {
+                        task.cancel();
+                        return;
+                    }
+                    UUID playerId = iterator.next();
+                    if (latestRequests.remove(playerId, request)) {
+                        onResult.accept(playerId, results.get(playerId));
+                    }
+                } while (System.nanoTime() < deadline);
+            }, 0, 1);
+            completed = true;
+        } catch (SearchCancelledException ignored) {
+        } catch (RuntimeException e) {
+            PathPlugin.getInstance().getLogger().log(Level.SEVERE, "Fehler bei einer gemeinsamen Pfadsuche", e);
+        } finally {
+            if (!completed) {
+                players.forEach(playerId -> latestRequests.remove(playerId, request));
+            }
+        }
+    }
+
+    /**
+     * Bricht die laufende Suche eines Spielers ab, z.B. wenn er den Server verlässt.
+     */
+    public void cancel(UUID playerId) {
+        Request request = latestRequests.remove(playerId);
+        if (request != null) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * @return true, wenn für den Spieler gerade eine Suche läuft oder auf ihr Ergebnis gewartet wird.
+     */
+    public boolean isPending(UUID playerId) {
+        return latestRequests.containsKey(playerId);
+    }
+
+    /**
+     * @return Die Anzahl der Anfragen, die wegen voller Warteschlange abgelehnt wurden.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return Die Anzahl der Anfragen, die durch eine neuere Anfrage desselben Spielers abgebrochen wurden.
+     */
+    public long getSupersededCount() {
+        return supersededCount.get();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @param percentile Das Perzentil zwischen 0 und 100.
+     * @return Die Wartezeit von der Anfrage bis zum Start der Suche in Millisekunden über die letzten Anfragen,
+     * oder 0, wenn noch keine Suche gestartet wurde.
+     */
+    public double getQueueWaitPercentile(double percentile) {
+        return queueWaits.percentile(percentile);
+    }
+
+    /**
+     * @param percentile Das Perzentil zwischen 0 und 100.
+     * @return Die Dauer der Suche selbst ohne Wartezeit in Millisekunden über die letzten Suchen,
+     * oder 0, wenn noch keine Suche abgeschlossen wurde.
+     */
+    public double getSearchTimePercentile(double percentile) {
+        return searchTimes.percentile(percentile);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Die letzten {@link #LATENCY_SAMPLES} Messungen einer Dauer in Nanosekunden.
+     */
+    private static class Samples {
+
+        private final long[] nanos = new long[LATENCY_SAMPLES];
+        private int count = 0;
+        private int index = 0;
+
+        synchronized void record(long value) {
+            nanos[index] = value;
+            index = (index + 1) % LATENCY_SAMPLES;
+            count = Math.min(count + 1, LATENCY_SAMPLES);
+        }
+
+        double percentile(double percentile) {
+            long[] samples;
+            synchronized (this) {
+                samples = Arrays.copyOf(nanos, count);
+            }
+            if (samples.length == 0) {
+                return 0;
+            }
+            Arrays.sort(samples);
+            int i = (int) Math.ceil(percentile / 100 * samples.length) - 1;
+            return samples[Math.max(0, Math.min(samples.length - 1, i))] / 1e6;
+        }
+    }
+
+    private static class Request {
+
+        private final long submitted;
+        /**
+         * Die Spieler, für die diese Anfrage noch die neueste ist. Erst wenn keiner mehr übrig ist, wird abgebrochen.
+         */
+        private final AtomicInteger holders;
+        private volatile Future<?> future;
+
+        Request(long submitted, int holders) {
+            this.submitted = submitted;
+            this.holders = new AtomicInteger(holders);
+        }
+
+        void cancel() {
+            Future<?> future = this.future;
+            if (holders.decrementAndGet() <= 0 && future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package de.bossascrew.pathfinder.handler;
+
+import de.bossascrew.core.util.PluginUtils;
+import de.bossascrew.pathfinder.astar.PortalOverlay;
+import de.bossascrew.pathfinder.astar.PortalTable;
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
+import de.bossascrew.pathfinder.data.DatabaseModel;
+import de.bossascrew.pathfinder.data.PortalLink;
+import de.bossascrew.pathfinder.data.RoadMap;
+import de.bossascrew.pathfinder.data.findable.Findable;
+import lombok.Getter;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Verwaltet die Portal-Links zwischen Straßenkarten und die daraus vorberechneten Kosten, siehe {@link PortalTable}
+ * und {@link PortalOverlay}. Die Tabellen werden erst bei der nächsten Suche über Portale neu berechnet, nachdem sich
+ * der Graph einer Straßenkarte oder ihre Portale geändert haben.
+ */
+public class PortalHandler {
+
+    @Getter
+    private static PortalHandler instance;
+
+    private final Map<Integer, PortalLink> links;
+    /**
+     * Key = RoadMapID
+     */
+    private final Map<Integer, PortalTable> tables = new HashMap<>();
+    private @Nullable PortalOverlay overlay = null;
+
+    public PortalHandler() {
+        instance = this;
+        Map<Integer, Findable> findables = new HashMap<>();
+        for (RoadMap roadMap : RoadMapHandler.getInstance().getRoadMaps()) {
+            roadMap.getFindables().forEach(findable -> findables.put(findable.getDatabaseId(), findable));
+        }
+        this.links = new ConcurrentHashMap<>(DatabaseModel.getInstance().loadPortalLinks(findables));
+    }
+
+    public @Nullable
+    PortalLink createPortal(Findable a, Findable b) {
+        PortalLink link = DatabaseModel.getInstance().newPortalLink(a, b);
+        if (link == null) {
+            return null;
+        }
+        links.put(link.getDatabaseId(), link);
+        invalidate();
+        return link;
+    }
+
+    public void deletePortal(PortalLink link) {
+        links.remove(link.getDatabaseId());
+        invalidate();
+        PluginUtils.getInstance().runAsync(() -> DatabaseModel.getInstance().deletePortalLink(link.getDatabaseId()));
+    }
+
+    public @Nullable
+    PortalLink getPortal(int databaseId) {
+        return links.get(databaseId);
+    }
+
+    /**
+     * @return Alle Links, deren Findables noch existieren.
+     */
+    public Collection<PortalLink> getPortals() {
+        return links.values().stream().filter(this::isIntact).collect(Collectors.toList());
+    }
+
+    public Collection<PortalLink> getPortals(RoadMap roadMap) {
+        return getPortals().stream()
+                .filter(link -> link.getA().getRoadMap() == roadMap || link.getB().getRoadMap() == roadMap)
+                .collect(Collectors.toList());
+    }
+
+    public boolean hasPortals(RoadMap roadMap) {
+        return !getPortals(roadMap).isEmpty();
+    }
+
+    private boolean isIntact(PortalLink link) {
+        return isIntact(link.getA()) && isIntact(link.getB());
+    }
+
+    private boolean isIntact(Findable findable) {
+        return RoadMapHandler.getInstance().getRoadMap(findable.getRoadMapId()) == findable.getRoadMap()
+                && findable.getRoadMap().getFindable(findable.getDatabaseId()) == findable;
+    }
+
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     *
+     * @return Die Kosten zwischen den Portalen der Straßenkarte. Wird nur neu berechnet, wenn sich der Graph oder die
+     * Portale der Straßenkarte seit der letzten Berechnung geändert haben.
+     */
+    public synchronized PortalTable getTable(RoadMap roadMap) {
+        RoadMapGraph graph = roadMap.getGraph();
+        int[] portalIds = getPortals(roadMap).stream()
+                .flatMap(link -> Arrays.stream(new Findable[]{link.getA(), link.getB()}))
+                .filter(findable -> findable.getRoadMap() == roadMap)
+                .mapToInt(Findable::getDatabaseId)
+                .distinct()
+                .sorted()
+                .toArray();
+        PortalTable table = tables.get(roadMap.getDatabaseId());
+        if (table == null || !table.isValid(graph, portalIds)) {
+            table = PortalTable.compute(graph, portalIds);
+            tables.put(roadMap.getDatabaseId(), table);
+            overlay = null;
+        }
+        return table;
+    }
+
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     *
+     * @return Den Graphen über die Portale aller Straßenkarten mit den aktuellen Kosten zwischen ihnen.
+     */
+    public synchronized PortalOverlay getOverlay() {
+        Set<RoadMap> roadMaps = new HashSet<>();
+        Collection<PortalLink> portals = getPortals();
+        for (PortalLink link : portals) {
+            roadMaps.add(link.getA().getRoadMap());
+            roadMaps.add(link.getB().getRoadMap());
+        }
+        //Veraltete Tabellen setzen das Overlay zurück
+        roadMaps.forEach(this::getTable);
+        tables.keySet().removeIf(roadMapId -> roadMaps.stream().noneMatch(roadMap -> roadMap.getDatabaseId() == roadMapId));
+        if (overlay == null) {
+            PortalOverlay.Builder builder = PortalOverlay.builder();
+            tables.forEach(builder::addRoadMap);
+            for (PortalLink link : portals) {
+                builder.addLink(link.getA().getRoadMapId(), link.getA().getDatabaseId(), link.getB().getRoadMapId(), link.getB().getDatabaseId(), 0);
+            }
+            overlay = builder.build();
+        }
+        return overlay;
+    }
+
+    private synchronized void invalidate() {
+        overlay = null;
+    }
+}
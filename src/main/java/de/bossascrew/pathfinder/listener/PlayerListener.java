@@ -9,10 +9,13 @@ import de.bossascrew.pathfinder.data.ParticlePath;
 import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
+import de.bossascrew.pathfinder.data.findable.PlayerFindable;
 import de.bossascrew.pathfinder.events.NodeFindEvent;
 import de.bossascrew.pathfinder.events.NodeGroupFindEvent;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
+import de.bossascrew.pathfinder.handler.PathSearchHandler;
 import de.bossascrew.pathfinder.handler.RoadMapHandler;
+import de.bossascrew.pathfinder.util.AStarUtils;
 import lombok.Getter;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
@@ -24,9 +27,11 @@ import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
 import javax.annotation.Syntax;
@@ -50,6 +55,8 @@ public class PlayerListener implements Listener {
     @EventHandler
     public void onQuit(PlayerQuitEvent event) {
 
+        PathSearchHandler.getInstance().cancel(event.getPlayer().getUniqueId());
+        AStarUtils.forgetDistances(event.getPlayer().getUniqueId());
         PathPlayer player = PathPlayerHandler.getInstance().getPlayer(event.getPlayer().getUniqueId());
         if (player == null) {
             return;
@@ -59,6 +66,14 @@ public class PlayerListener implements Listener {
         }
     }
 
+    @EventHandler
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        PathPlayer player = PathPlayerHandler.getInstance().getPlayer(event.getPlayer().getUniqueId());
+        if (player != null) {
+            player.changeWorld(event.getPlayer().getWorld());
+        }
+    }
+
     @Getter
     private static final Map<UUID, Map<Integer, AtomicBoolean>> hasFoundTarget = new ConcurrentHashMap<>();
 
@@ -72,6 +87,7 @@ public class PlayerListener implements Listener {
             PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
             if (pPlayer != null) {
                 findPathTarget(event, player, pPlayer);
+                updateProgress(event, player, pPlayer);
             }
 
             discoverFindables(event, world, player);
@@ -84,10 +100,16 @@ public class PlayerListener implements Listener {
                 continue;
             }
             RoadMap rm = path.getRoadMap();
-            Findable findable = path.get(path.size() - 1);
+            Findable findable = path.getTarget();
             AtomicBoolean foundGuard = hasFoundTarget.getOrDefault(player.getUniqueId(), new HashMap<>())
                     .getOrDefault(rm.getDatabaseId(), new AtomicBoolean(true));
             if (event.getTo().toVector().distance(findable.getVector()) < rm.getNodeFindDistance() && !foundGuard.getAndSet(true)) {
+                if (path.isPortalLeg()) {
+                    PluginUtils.getInstance().runSync(() -> pPlayer.continuePortalRoute(rm));
+                    player.sendActionBar(Component.text("Portal erreicht: ", NamedTextColor.GRAY)
+                            .append(Component.text(findable.getFriendlyName(), NamedTextColor.WHITE)));
+                    continue;
+                }
                 pPlayer.cancelPath(rm);
                 player.sendMessage(PathPlugin.PREFIX_COMP.append(Component.text("Ziel erreicht: ", NamedTextColor.GRAY))
                         .append(Component.text(findable.getGroup() != null ? findable.getGroup().getFriendlyName() : findable.getFriendlyName(), NamedTextColor.WHITE)));
@@ -97,6 +119,26 @@ public class PlayerListener implements Listener {
         }
     }
 
+    /**
+     * Rückt den Fortschritt auf den aktiven Pfaden vor und plant neu, wenn der Spieler die Route verlassen hat,
+     * siehe {@link ParticlePath#advanceProgress} und {@link ParticlePath#checkOffRoute}.
+     */
+    private void updateProgress(PlayerMoveEvent event, Player player, PathPlayer pPlayer) {
+        long now = System.currentTimeMillis();
+        Vector position = event.getTo().toVector();
+        for (ParticlePath path : new ArrayList<>(pPlayer.getActivePaths())) {
+            if (!player.getWorld().equals(path.getRoadMap().getWorld())) {
+                continue;
+            }
+            if (path.advanceProgress(position)) {
+                PluginUtils.getInstance().runSync(path::trimWalked);
+            }
+            if (path.checkOffRoute(position, now)) {
+                PluginUtils.getInstance().runSync(() -> AStarUtils.reroute(pPlayer, new PlayerFindable(player, path.getRoadMap()), path));
+            }
+        }
+    }
+
     private void discoverFindables(PlayerMoveEvent event, World world, Player player) {
         GlobalPlayer globalPlayer = PlayerHandler.getInstance().getGlobalPlayer(player.getUniqueId());
         if (globalPlayer == null) {
@@ -2,47 +2,442 @@ package de.bossascrew.pathfinder.util;
 
 import de.bossascrew.core.bukkit.player.PlayerUtils;
 import de.bossascrew.core.util.ComponentUtils;
-import de.bossascrew.core.util.Pair;
 import de.bossascrew.pathfinder.PathPlugin;
 import de.bossascrew.pathfinder.astar.AStar;
-import de.bossascrew.pathfinder.astar.AStarEdge;
-import de.bossascrew.pathfinder.astar.AStarNode;
+import de.bossascrew.pathfinder.astar.ConnectedComponents;
+import de.bossascrew.pathfinder.astar.Dijkstra;
+import de.bossascrew.pathfinder.astar.DistanceTree;
+import de.bossascrew.pathfinder.astar.GoalSet;
+import de.bossascrew.pathfinder.astar.Heuristic;
+import de.bossascrew.pathfinder.astar.PathRepair;
+import de.bossascrew.pathfinder.astar.PathResultCache;
+import de.bossascrew.pathfinder.astar.PortalOverlay;
+import de.bossascrew.pathfinder.astar.PortalTable;
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
+import de.bossascrew.pathfinder.astar.SearchBudget;
+import de.bossascrew.pathfinder.astar.SearchBudgetExceededException;
+import de.bossascrew.pathfinder.astar.ShortestPathTree;
+import de.bossascrew.pathfinder.astar.ShortestPathTreeCache;
+import de.bossascrew.pathfinder.astar.SpatialIndex;
 import de.bossascrew.pathfinder.data.ParticlePath;
 import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
 import de.bossascrew.pathfinder.data.findable.Findable;
 import de.bossascrew.pathfinder.data.findable.PlayerFindable;
 import de.bossascrew.pathfinder.handler.PathPlayerHandler;
+import de.bossascrew.pathfinder.handler.PathSearchHandler;
+import de.bossascrew.pathfinder.handler.PortalHandler;
+import de.bossascrew.pathfinder.handler.RoadMapHandler;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
 
 import javax.annotation.Nullable;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 public class AStarUtils {
 
+    /**
+     * Ab 3 Anfragen an dasselbe Ziel innerhalb einer Minute wird ein Baum kürzester Wege geteilt, höchstens 64 MB insgesamt.
+     */
+    private static final ShortestPathTreeCache TREE_CACHE = new ShortestPathTreeCache(3, 60_000, 64L * 1024 * 1024);
+    /**
+     * Fertige Pfade pro Start, Ziel und Sichtbarkeit, damit Spielergruppen mit demselben Ziel nur eine Suche auslösen.
+     */
+    @Getter
+    private static final PathResultCache pathCache = new PathResultCache(1024);
+    /**
+     * Überschreitet eine Suche ihr Budget, wird mit diesem Gewicht ein Weg gesucht, der höchstens doppelt so teuer ist
+     * wie der kürzeste.
+     */
+    private static final double ANYTIME_WEIGHT = 2;
+    /**
+     * So oft wird ein Weg über Portale mit einem neuen Overlay versucht, wenn eine Straßenkarte währenddessen bearbeitet wurde.
+     */
+    private static final int PORTAL_OVERLAY_ATTEMPTS = 3;
+    /**
+     * Das Budget einer einzelnen Suche, damit eine fehlerhafte Straßenkarte oder ein sehr weit entferntes Ziel nicht
+     * einen Thread der Pfadsuche blockiert.
+     */
+    @Getter
+    @Setter
+    private static SearchBudget searchBudget = new SearchBudget(200_000, 50);
+    /**
+     * Ob Wege, die nach überschrittenem Budget gewichtet gesucht wurden, im Hintergrund durch den kürzesten Weg
+     * ersetzt werden.
+     */
+    @Getter
+    @Setter
+    private static boolean refineBoundedPaths = true;
+    private static final AtomicLong boundedCount = new AtomicLong();
+    private static final AtomicLong exhaustedCount = new AtomicLong();
+    /**
+     * So lange werden die Weglängen eines Spielers für Menüs und den anschließenden Klick auf einen Eintrag
+     * weiterverwendet, solange er sich höchstens {@link #DISTANCES_MAX_MOVED} Blöcke bewegt hat.
+     */
+    private static final long DISTANCES_MAX_AGE = 30_000;
+    private static final double DISTANCES_MAX_MOVED = 4;
+    private static final Map<UUID, PlayerDistances> distances = new ConcurrentHashMap<>();
+
     public static void startPath(Player player, Findable target) {
         startPath(player, target, false);
     }
 
     public static void startPath(Player player, Findable target, boolean findGroup) {
         PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
-        if (!AStarUtils.startPath(pPlayer, new PlayerFindable(player, target.getRoadMap()), target, false, findGroup)) {
-            PlayerUtils.sendMessage(player, ChatColor.RED + "Es konnte kein kürzester Pfad ermittelt werden.");
+        startPathAsync(pPlayer, new PlayerFindable(player, target.getRoadMap()), target, false, findGroup,
+                found -> sendPathResult(player, found, "Navigation gestartet."));
+    }
+
+    public static void startNearestPath(Player player, RoadMap roadMap, NearestQuery query) {
+        PathPlayer pPlayer = PathPlayerHandler.getInstance().getPlayer(player.getUniqueId());
+        startNearestPathAsync(pPlayer, new PlayerFindable(player, roadMap), query, target -> {
+            if (target == null) {
+                PlayerUtils.sendMessage(player, ChatColor.RED + "Es konnte kein passendes Ziel in deiner Nähe gefunden werden.");
+                return;
+            }
+            sendPathResult(player, true, "Navigation zu " + target.getFriendlyName() + " gestartet.");
+        });
+    }
+
+    /**
+     * Berechnet den Pfad im Thread-Pool der Pfadsuche und startet die Pfaddarstellung anschließend im Hauptthread.
+     * Eine neue Anfrage desselben Spielers bricht eine noch laufende ab. Ist die Warteschlange voll, wird der Spieler
+     * benachrichtigt.
+     *
+     * @param callback Wird im Hauptthread mit true aufgerufen, wenn der Pfad gestartet wurde, sonst mit false.
+     *                 Wird nicht aufgerufen, wenn die Anfrage durch eine neuere ersetzt oder abgelehnt wurde.
+     * @return false, wenn die Anfrage abgelehnt wurde, weil gerade zu viele Pfade berechnet werden.
+     */
+    public static boolean startPathAsync(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup,
+                                         @Nullable Consumer<Boolean> callback) {
+        boolean accepted = PathSearchHandler.getInstance().submit(player.getUuid(),
+                () -> findAnyRoute(player, start, target, ignoreUnfound, findGroup, searchBudget),
+                route -> {
+                    if (route != null && !route.getPortalLegs().isEmpty()) {
+                        applyPortalRoute(player, route, ignoreUnfound, findGroup);
+                    } else {
+                        applyPath(player, start, route == null ? null : route.getFindables(), ignoreUnfound, findGroup);
+                    }
+                    if (callback != null) {
+                        callback.accept(route != null);
+                    }
+                    if (route != null && route.isBounded() && refineBoundedPaths) {
+                        refinePath(player, target, ignoreUnfound, findGroup);
+                    }
+                });
+        if (!accepted) {
+            Player bukkitPlayer = Bukkit.getPlayer(player.getUuid());
+            if (bukkitPlayer != null) {
+                PlayerUtils.sendMessage(bukkitPlayer, ChatColor.RED + "Es werden gerade zu viele Pfade berechnet. Bitte versuche es gleich erneut.");
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Berechnet die Pfade vieler Spieler gemeinsam im Thread-Pool der Pfadsuche, siehe {@link #findPaths(Collection)}.
+     * Die Pfaddarstellungen werden über mehrere Ticks verteilt gestartet. Stellt ein Spieler währenddessen eine eigene
+     * Anfrage, wird sein Ergebnis der gemeinsamen Suche verworfen.
+     *
+     * @param callback Wird im Hauptthread pro Anfrage mit true aufgerufen, wenn der Pfad gestartet wurde, sonst mit false.
+     * @return false, wenn die Anfrage abgelehnt wurde, weil gerade zu viele Pfade berechnet werden.
+     */
+    public static boolean startPathsAsync(Collection<PathRequest> requests, @Nullable BiConsumer<PathRequest, Boolean> callback) {
+        //Pro Spieler gilt nur seine letzte Anfrage
+        Map<UUID, PathRequest> byPlayer = new LinkedHashMap<>();
+        for (PathRequest request : requests) {
+            byPlayer.put(request.getPlayer().getUuid(), request);
+        }
+        return PathSearchHandler.getInstance().submitBatch(byPlayer.keySet(), () -> {
+            Map<UUID, List<Findable>> paths = new HashMap<>();
+            findPaths(byPlayer.values()).forEach((request, path) -> paths.put(request.getPlayer().getUuid(), path));
+            return paths;
+        }, (playerId, pathVar) -> {
+            PathRequest request = byPlayer.get(playerId);
+            applyPath(request.getPlayer(), request.getStart(), pathVar, request.isIgnoreUnfound(), false);
+            if (callback != null) {
+                callback.accept(request, pathVar != null);
+            }
+        });
+    }
+
+    /**
+     * Berechnet im Thread-Pool der Pfadsuche den Pfad zum nächstgelegenen passenden Findable und startet die
+     * Pfaddarstellung anschließend im Hauptthread, siehe {@link #findNearestPath}.
+     *
+     * @param callback Wird im Hauptthread mit dem gefundenen Ziel aufgerufen, oder mit null, wenn kein passendes Ziel
+     *                 erreichbar ist. Wird nicht aufgerufen, wenn die Anfrage durch eine neuere ersetzt oder abgelehnt wurde.
+     * @return false, wenn die Anfrage abgelehnt wurde, weil gerade zu viele Pfade berechnet werden.
+     */
+    public static boolean startNearestPathAsync(PathPlayer player, PlayerFindable start, NearestQuery query,
+                                                @Nullable Consumer<Findable> callback) {
+        boolean accepted = PathSearchHandler.getInstance().submit(player.getUuid(),
+                () -> findNearestPath(player, start, query, searchBudget),
+                pathVar -> {
+                    applyPath(player, start, pathVar, query.isUndiscovered(), false);
+                    if (callback != null) {
+                        callback.accept(pathVar == null ? null : pathVar.get(pathVar.size() - 1));
+                    }
+                });
+        if (!accepted) {
+            Player bukkitPlayer = Bukkit.getPlayer(player.getUuid());
+            if (bukkitPlayer != null) {
+                PlayerUtils.sendMessage(bukkitPlayer, ChatColor.RED + "Es werden gerade zu viele Pfade berechnet. Bitte versuche es gleich erneut.");
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Berechnet die Weglängen des Spielers im Thread-Pool der Pfadsuche, siehe {@link #getDistances}, und übergibt
+     * sie anschließend im Hauptthread, z.B. um ein Menü nach Entfernung sortiert anzuzeigen.
+     *
+     * @param callback Wird im Hauptthread mit den Weglängen aufgerufen, oder mit null, wenn der Spieler sich nicht in der
+     *                 Nähe der Straßenkarte befindet.
+     * @return false, wenn die Anfrage abgelehnt wurde, weil gerade zu viele Pfade berechnet werden.
+     */
+    public static boolean startDistancesAsync(PathPlayer player, PlayerFindable start, Consumer<PlayerDistances> callback) {
+        return PathSearchHandler.getInstance().submit(player.getUuid(), () -> getDistances(player, start), callback);
+    }
+
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     * Berechnet mit einer einzigen Dijkstra Suche die Weglängen vom Spieler zu allen Findables der Straßenkarte.
+     * Das Ergebnis wird pro Spieler kurz zwischengespeichert. Klickt der Spieler danach auf einen Eintrag des Menüs,
+     * wird der Weg aus demselben Baum übernommen, anstatt neu zu suchen.
+     *
+     * @return Die Weglängen oder null, wenn der Spieler sich nicht in der Nähe der Straßenkarte befindet.
+     */
+    public static @Nullable
+    PlayerDistances getDistances(PathPlayer player, PlayerFindable start) {
+        RoadMap roadMap = start.getRoadMap();
+        RoadMapGraph graph = roadMap.getGraph();
+        BitSet mask = player.getVisibilityMask(roadMap);
+        Vector position = start.getVector();
+        PlayerDistances cached = getCachedDistances(player, roadMap, graph, mask, position);
+        if (cached != null) {
+            return cached;
+        }
+        SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position.getX(), position.getY(), position.getZ(), mask);
+        if (entry == null) {
+            return null;
+        }
+        PlayerDistances result = new PlayerDistances(roadMap, graph, mask, position, System.currentTimeMillis(),
+                DistanceTree.compute(graph, entry.getSources(), entry.getSourceCosts(), mask));
+        distances.values().removeIf(d -> d.isExpired(DISTANCES_MAX_AGE));
+        distances.put(player.getUuid(), result);
+        return result;
+    }
+
+    private static @Nullable
+    PlayerDistances getCachedDistances(PathPlayer player, RoadMap roadMap, RoadMapGraph graph, @Nullable BitSet mask, Vector position) {
+        PlayerDistances cached = distances.get(player.getUuid());
+        if (cached == null || cached.getRoadMap() != roadMap || !cached.isValid(graph, mask, position, DISTANCES_MAX_AGE, DISTANCES_MAX_MOVED)) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Vergisst die zwischengespeicherten Weglängen eines Spielers, z.B. wenn er den Server verlässt.
+     */
+    public static void forgetDistances(UUID playerId) {
+        distances.remove(playerId);
+    }
+
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     * Sucht mit einer Dijkstra Suche von der Position des Spielers aus das nächstgelegene Findable der Straßenkarte,
+     * das zur Anfrage passt. Die Suche endet am ersten passenden Findable, statt für jeden Kandidaten einen Weg zu suchen.
+     *
+     * @return Den Weg vom Spieler bis zum gefundenen Ziel, oder null, wenn kein passendes Ziel erreichbar ist.
+     */
+    static @Nullable
+    List<Findable> findNearestPath(PathPlayer player, PlayerFindable start, NearestQuery query, SearchBudget budget) {
+        RoadMap roadMap = start.getRoadMap();
+        RoadMapGraph graph = roadMap.getGraph();
+        BitSet visible = player.getVisibilityMask(roadMap);
+        BitSet mask = query.isUndiscovered() ? null : visible;
+
+        BitSet targets = new BitSet(graph.size());
+        if (query.getScope() != null) {
+            targets.or(roadMap.getScopeMask(graph, query.getScope()));
+        } else {
+            targets.set(0, graph.size());
+        }
+        if (query.getGroupId() != null) {
+            targets.and(roadMap.getGroupMask(graph, query.getGroupId()));
+        }
+        if (query.isUndiscovered()) {
+            targets.andNot(visible);
+        }
+        if (query.getFilter() != null) {
+            for (int i = targets.nextSetBit(0); i >= 0; i = targets.nextSetBit(i + 1)) {
+                Findable findable = roadMap.getFindable(graph.getDatabaseId(i));
+                if (findable == null || !query.getFilter().test(findable)) {
+                    targets.clear(i);
+                }
+            }
+        }
+
+        Vector position = start.getVector();
+        SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position.getX(), position.getY(), position.getZ(), mask);
+        if (entry == null) {
+            return null;
+        }
+        int[] pathNodes;
+        try {
+            pathNodes = budget.run(() -> Dijkstra.nearest(graph, entry.getSources(), entry.getSourceCosts(), targets, mask));
+        } catch (SearchBudgetExceededException e) {
+            exhaustedCount.incrementAndGet();
+            return null;
+        }
+        return pathNodes == null ? null : toFindables(roadMap, graph, start, pathNodes);
+    }
+
+    /**
+     * Sucht nach einem gewichteten Weg ohne Budget den kürzesten Weg von der aktuellen Position des Spielers und
+     * ersetzt damit den aktiven Pfad, während der Spieler ihm bereits folgt. Eine neue Anfrage des Spielers bricht die
+     * Verfeinerung ab. Nur im Mainthread aufrufen.
+     */
+    private static void refinePath(PathPlayer player, Findable target, boolean ignoreUnfound, boolean findGroup) {
+        RoadMap roadMap = target.getRoadMap();
+        ParticlePath path = player.getActivePath(roadMap);
+        Player bukkitPlayer = Bukkit.getPlayer(player.getUuid());
+        if (path == null || bukkitPlayer == null) {
+            return;
+        }
+        PlayerFindable start = new PlayerFindable(bukkitPlayer, roadMap);
+        PathSearchHandler.getInstance().submit(player.getUuid(),
+                () -> findRoute(player, start, target, ignoreUnfound, findGroup, SearchBudget.UNLIMITED),
+                route -> {
+                    if (route != null && player.getActivePath(roadMap) == path) {
+                        replacePath(player, path, route.getFindables(), Collections.emptySet());
+                    }
+                });
+    }
+
+    private static void applyPath(PathPlayer player, PlayerFindable start, @Nullable List<Findable> pathVar, boolean ignoreUnfound,
+                                  boolean findGroup) {
+        if (pathVar == null) {
+            return;
+        }
+        ParticlePath path = new ParticlePath(start.getRoadMap(), player.getUuid(), player.getVisualizer(start.getRoadMap()));
+        path.setIgnoreUnfound(ignoreUnfound);
+        path.setFindGroup(findGroup);
+        path.addAll(pathVar);
+        player.setPath(path);
+    }
+
+    private static void applyPortalRoute(PathPlayer player, Route route, boolean ignoreUnfound, boolean findGroup) {
+        List<List<Findable>> legs = new ArrayList<>();
+        legs.add(route.getFindables());
+        legs.addAll(route.getPortalLegs());
+        List<ParticlePath> paths = new ArrayList<>();
+        for (int i = 0; i < legs.size(); i++) {
+            List<Findable> leg = legs.get(i);
+            RoadMap roadMap = leg.get(leg.size() - 1).getRoadMap();
+            ParticlePath path = new ParticlePath(roadMap, player.getUuid(), player.getVisualizer(roadMap));
+            path.setIgnoreUnfound(ignoreUnfound);
+            path.setFindGroup(findGroup);
+        path.setFindGroup(findGroup);
+            path.setPortalLeg(i < legs.size() - 1);
+            path.addAll(leg);
+            paths.add(path);
+        }
+        player.setPortalRoute(paths);
+    }
+
+    /**
+     * Repariert den aktiven Pfad eines Spielers, nachdem Findables der Straßenkarte bearbeitet wurden. Neu geplant
+     * werden nur die betroffenen Abschnitte, neu berechnet werden nur deren Partikel. Ist das Ziel von dort nicht mehr
+     * erreichbar, wird von der aktuellen Position des Spielers neu gesucht.
+     * Nur im Mainthread aufrufen, gesucht wird im Thread-Pool der Pfadsuche.
+     *
+     * @param changed Die IDs der verschobenen, gelöschten oder neu verbundenen Findables.
+     */
+    public static void repairPath(PathPlayer player, RoadMap roadMap, Set<Integer> changed) {
+        ParticlePath path = player.getActivePath(roadMap);
+        if (path == null || path.size() < 2) {
+            return;
+        }
+        //Eine eigene Anfrage des Spielers ersetzt den Pfad ohnehin und würde sonst von der Reparatur abgebrochen
+        if (PathSearchHandler.getInstance().isPending(player.getUuid())) {
             return;
         }
+        List<Findable> findables = new ArrayList<>(path);
+        PathSearchHandler.getInstance().submit(player.getUuid(), () -> {
+            RoadMapGraph graph = roadMap.getGraph();
+            BitSet mask = path.isIgnoreUnfound() ? null : player.getVisibilityMask(roadMap);
+            //Das erste Findable ist der Spieler selbst und gehört nicht zum Graphen
+            int[] nodes = new int[findables.size() - 1];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = graph.indexOf(findables.get(i + 1).getDatabaseId());
+            }
+            BitSet changedNodes = new BitSet(graph.size());
+            for (int id : changed) {
+                int index = graph.indexOf(id);
+                if (index >= 0) {
+                    changedNodes.set(index);
+                }
+            }
+            int[] repaired;
+            try {
+                repaired = searchBudget.run(() -> PathRepair.repair(graph, nodes, changedNodes, mask, roadMap.createPathSearch(graph)));
+            } catch (SearchBudgetExceededException e) {
+                //Die neue Suche von der Position des Spielers kann auf einen gewichteten Weg ausweichen
+                return null;
+            }
+            return repaired == null ? null : repaired == nodes ? findables : toFindables(roadMap, graph, findables.get(0), repaired);
+        }, repairedPath -> {
+            //Der Spieler kann inzwischen einen anderen Pfad gestartet oder sein Ziel erreicht haben
+            if (player.getActivePath(roadMap) != path) {
+                return;
+            }
+            if (repairedPath != null) {
+                replacePath(player, path, repairedPath, changed);
+                return;
+            }
+            Player bukkitPlayer = Bukkit.getPlayer(player.getUuid());
+            Findable target = roadMap.getFindable(findables.get(findables.size() - 1).getDatabaseId());
+            if (bukkitPlayer == null || target == null) {
+                player.cancelPath(roadMap);
+                if (bukkitPlayer != null) {
+                    PlayerUtils.sendMessage(bukkitPlayer, ChatColor.RED + "Das Ziel deines Pfades wurde entfernt.");
+                }
+                return;
+            }
+            startPathAsync(player, new PlayerFindable(bukkitPlayer, roadMap), target, path.isIgnoreUnfound(), path.isFindGroup(), null);
+        });
+    }
 
+    /**
+     * Benachrichtigt den Spieler, ob der angefragte Pfad gestartet werden konnte.
+     *
+     * @param started Die Nachricht, wenn der Pfad gestartet wurde, z.B. "Navigation gestartet."
+     */
+    public static void sendPathResult(Player player, boolean found, String started) {
+        if (!found) {
+            PlayerUtils.sendMessage(player, ChatColor.RED + "Es konnte kein kürzester Pfad ermittelt werden.");
+            return;
+        }
         player.sendMessage(PathPlugin.PREFIX_COMP
-                .append(Component.text("Navigation gestartet. (", NamedTextColor.GRAY).decoration(TextDecoration.BOLD, TextDecoration.State.FALSE))
+                .append(Component.text(started + " (", NamedTextColor.GRAY).decoration(TextDecoration.BOLD, TextDecoration.State.FALSE))
                 .append(ComponentUtils.getCommandComponent("/cancelpath", ClickEvent.Action.RUN_COMMAND))
                 .append(Component.text(")", NamedTextColor.GRAY)));
     }
@@ -61,96 +456,477 @@ public class AStarUtils {
     }
 
     public static boolean startPath(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup) {
-        Pair<AStarNode, AStarNode> pair = createAStarRelations(target.getRoadMap(), player, start, start.getLocation(), target, ignoreUnfound, findGroup);
-        if (pair == null || pair.first == null || pair.second == null) {
+        List<Findable> pathVar = findPath(player, start, target, ignoreUnfound, findGroup);
+        if (pathVar == null) {
             return false;
         }
 
-        AStar aStar = new AStar();
-        aStar.aStarSearch(pair.first, pair.second);
-
-        List<AStarNode> pathNodes = aStar.printPath(pair.second, findGroup);
-        List<Findable> pathVar = pathNodes.stream()
-                .map(aStarNode -> aStarNode.findable == null ? start : aStarNode.findable)
-                .collect(Collectors.toList());
+        applyPath(player, start, pathVar, ignoreUnfound, findGroup);
+        return true;
+    }
 
-        Findable foundLast = pathVar.get(0);
-        if (foundLast == null) {
-            return false;
-        }
-        if (foundLast.getDatabaseId() != start.getDatabaseId()) {
-            //Es konnte kein Pfad ermittelt werden, wenn das letzte Node des Abbruchpfades nicht der Startpunkt ist
-            return false;
+    /**
+     * Sucht den kürzesten Weg von einem oder mehreren Startnodes zum Ziel, z.B. von beiden Enden der Kante, auf der der
+     * Spieler steht. Ergebnisse werden pro Startnode zwischengespeichert, beliebte Ziele teilen sich einen Baum
+     * kürzester Wege.
+     *
+     * @param sourceCosts Die Kosten von der Position bis zum jeweiligen Startnode.
+     * @param goals  Alle Nodes der Zielgruppe oder null, wenn nur der Zielnode gesucht wird.
+     * @param weight Das Gewicht der Abschätzung, 1 für den kürzesten Weg. Gewichtete Wege werden nicht zwischengespeichert.
+     * @return Die Indizes der Nodes vom Start bis zum Ziel. Das Array wird geteilt und darf nicht verändert werden.
+     * @throws SearchBudgetExceededException Wenn die Suche das Budget überschreitet.
+     */
+    private static @Nullable
+    int[] searchFrom(RoadMap roadMap, RoadMapGraph graph, int[] sources, double[] sourceCosts, int goal, @Nullable GoalSet goals,
+                     @Nullable BitSet mask, SearchBudget budget, double weight) {
+        if (weight > 1) {
+            AStar search = new AStar(Heuristic.EUCLIDEAN, weight);
+            return budget.run(() -> goals != null ?
+                    search.aStarSearch(graph, sources, sourceCosts, goals, mask) :
+                    search.aStarSearch(graph, sources, sourceCosts, goal, mask));
         }
-
-        ParticlePath path = new ParticlePath(start.getRoadMap(), player.getUuid(), player.getVisualizer(start.getRoadMap()));
-        path.addAll(pathVar);
-        player.setPath(path);
-        return true;
+        //Gesucht und gespeichert wird pro Startnode, damit sich Spieler auf derselben Kante die Suchen teilen
+        IntFunction<int[]> search = goals != null ?
+                source -> budget.run(() -> new AStar().aStarSearch(graph, new int[]{source}, new double[]{0}, goals, mask)) :
+                source -> {
+                    ShortestPathTree tree = TREE_CACHE.request(roadMap.getDatabaseId(), graph, goal, mask);
+                    return tree != null ?
+                            tree.pathFrom(new int[]{source}, new double[]{0}) :
+                            budget.run(() -> roadMap.createPathSearch(graph).search(graph, new int[]{source}, new double[]{0}, goal, mask));
+                };
+        return goals != null ?
+                pathCache.get(roadMap.getDatabaseId(), graph, sources, sourceCosts, goals, mask, search) :
+                pathCache.get(roadMap.getDatabaseId(), graph, sources, sourceCosts, goal, mask, search);
     }
 
     /**
      * Threadsafe, kann asynchron ausgeführt werden.
+     * Berechnet den kürzesten Pfad über den kompilierten Graphen der Straßenkarte.
      *
-     * @param roadMap Die Straßenkarte, aus der der AStar erzeugt wird.
-     * @param start   Die Startposition für den Algorithmus. Aus ihr wird die Startnode erzeugt.
-     * @param player  Der PathPlayer, für den die Straßenkarte angepasst wird. Für ihn laufen die Permissionabfragen und "Gefunden"-Abfragen
-     * @return Die aus der Spielerinformation erzeugte StartNode und Zielnode des AStar Algorithmus. Sie wird benötigt, um den Algorithmus zu starten. Der Return-Wert nimmt null an, wenn keine passenden Nodes gefunden wurden.
+     * @param player    Der PathPlayer, für den die Permissionabfragen und "Gefunden"-Abfragen laufen.
+     * @param start     Der Spieler als Findable. Er wird über den nächstgelegenen Punkt einer Kante in den Graphen eingebunden.
+     * @param findGroup Ob der Pfad zum nächstgelegenen Mitglied der Gruppe des Ziels führen soll.
+     * @return Die Findables vom Spieler bis zum Ziel oder null, wenn das Ziel nicht erreicht werden kann.
      */
     public @Nullable
-    static Pair<AStarNode, AStarNode> createAStarRelations(RoadMap roadMap, PathPlayer player, PlayerFindable playerFindable, Location start, Findable target, boolean ignoreUnfound, boolean findGrouped) {
+    static List<Findable> findPath(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup) {
+        Route route = findRoute(player, start, target, ignoreUnfound, findGroup, searchBudget);
+        return route == null ? null : route.getFindables();
+    }
 
-        //TODO nicht nur nearest dist, sondern nearest edge center und endpunkte berücksichtigen
+    /**
+     * Sucht in der Straßenkarte des Ziels, solange der Spieler in ihrer Welt ist. Ist er in einer anderen Welt oder ist
+     * das Ziel dort nicht erreichbar, wird ein Weg über Portale gesucht, siehe {@link #findPortalRoute}.
+     */
+    private static @Nullable
+    Route findAnyRoute(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup,
+                       SearchBudget budget) {
+        boolean sameWorld = target.getRoadMap().getWorld().equals(start.getLocation().getWorld());
+        Route route = sameWorld ? findRoute(player, start, target, ignoreUnfound, findGroup, budget) : null;
+        if (route == null && PortalHandler.getInstance().hasPortals(target.getRoadMap())) {
+            route = findPortalRoute(player, start, target, ignoreUnfound, findGroup, budget);
+        }
+        return route;
+    }
 
-        Collection<Findable> findables = ignoreUnfound ? roadMap.getFindables() : roadMap.getFindables(player);
-        Map<Integer, AStarNode> aStarNodes = new HashMap<>();
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     * Sucht einen Weg aus den Straßenkarten der Welt des Spielers über Portale bis zum Ziel, z.B. von der Spawnwelt in
+     * eine Stadtwelt. Die Kosten zu den Portalen werden mit je einer Suche am Start und am Ziel bestimmt, dazwischen wird
+     * nur über die vorberechneten Kosten zwischen den Portalen gesucht, siehe {@link PortalOverlay}. Erst für den
+     * gefundenen Weg werden die Abschnitte in den einzelnen Straßenkarten gesucht. Liegt das Ziel in der Welt des
+     * Spielers, aber nur über eine Schleife durch andere Straßenkarten erreichbar, starten Portale auch in seiner
+     * Straßenkarte.
+     *
+     * @param findGroup Ob der Weg zum nächstgelegenen Mitglied der Gruppe des Ziels führen soll.
+     * @return Den Weg mit einem Abschnitt pro durchquerter Straßenkarte oder null, wenn kein Weg über Portale existiert.
+     */
+    private static @Nullable
+    Route findPortalRoute(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup,
+                          SearchBudget budget) {
+        RoadMap targetMap = target.getRoadMap();
+        Collection<RoadMap> startMaps = RoadMapHandler.getInstance().getRoadMaps(start.getLocation().getWorld());
+        List<RoadMap> roadMaps = new ArrayList<>(startMaps);
+        if (!startMaps.contains(targetMap)) {
+            roadMaps.add(targetMap);
+        }
 
-        AStarNode playerNode = new AStarNode(playerFindable, 0);
-        AStarNode targetNode = null;
+        //Start und Ziel werden über die Tabellen angebunden, aus denen das Overlay gebaut wurde. Passt eine davon nicht
+        //mehr zum Graphen, wurde die Straßenkarte währenddessen bearbeitet und es wird mit einem neuen Overlay wiederholt
+        PortalOverlay overlay = null;
+        Map<RoadMap, RoadMapGraph> graphs = new HashMap<>();
+        for (int attempt = 0; overlay == null && attempt < PORTAL_OVERLAY_ATTEMPTS; attempt++) {
+            overlay = PortalHandler.getInstance().getOverlay();
+            graphs.clear();
+            for (RoadMap roadMap : roadMaps) {
+                RoadMapGraph graph = roadMap.getGraph();
+                PortalTable table = overlay.getTable(roadMap.getDatabaseId());
+                if (table != null && table.getGraphVersion() != graph.getVersion()) {
+                    overlay = null;
+                    break;
+                }
+                graphs.put(roadMap, graph);
+            }
+        }
+        if (overlay == null) {
+            return null;
+        }
+        RoadMapGraph targetGraph = graphs.get(targetMap);
+        PortalTable targetTable = overlay.getTable(targetMap.getDatabaseId());
+        int goal = targetGraph.indexOf(target.getDatabaseId());
+        if (goal < 0 || targetTable == null) {
+            return null;
+        }
+        //Bei Gruppen führt der letzte Abschnitt zum nächstgelegenen Mitglied, die Kosten zu den Portalen gelten ab allen
+        GoalSet targetGoals = findGroup && targetGraph.getGroupId(goal) != RoadMapGraph.NO_GROUP ?
+                targetGraph.getGroupGoals(targetGraph.getGroupId(goal)) : null;
+        int[] targetNodes = {goal};
+        if (targetGoals != null) {
+            targetNodes = IntStream.range(0, targetGraph.size()).filter(targetGoals::contains).toArray();
+        }
+
+        List<Integer> sources = new ArrayList<>();
+        List<Double> sourceCosts = new ArrayList<>();
+        Vector position = start.getVector();
+        for (RoadMap roadMap : startMaps) {
+            PortalTable table = overlay.getTable(roadMap.getDatabaseId());
+            if (table == null) {
+                continue;
+            }
+            RoadMapGraph graph = graphs.get(roadMap);
+            BitSet mask = ignoreUnfound ? null : player.getVisibilityMask(roadMap);
+            SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position.getX(), position.getY(), position.getZ(), mask);
+            if (entry == null) {
+                continue;
+            }
+            double[] costs = table.costsFrom(graph, entry.getSources(), entry.getSourceCosts(), mask);
+            collectPortals(overlay, roadMap, table, costs, sources, sourceCosts);
+        }
+        BitSet targetMask = ignoreUnfound ? null : player.getVisibilityMask(targetMap);
+        double[] costs = targetTable.costsFrom(targetGraph, targetNodes, new double[targetNodes.length], targetMask);
+        List<Integer> goals = new ArrayList<>();
+        List<Double> goalCosts = new ArrayList<>();
+        collectPortals(overlay, targetMap, targetTable, costs, goals, goalCosts);
 
-        Double nearestDist = null;
-        AStarNode nearest = null;
+        int[] hops = overlay.search(sources.stream().mapToInt(Integer::intValue).toArray(),
+                sourceCosts.stream().mapToDouble(Double::doubleValue).toArray(),
+                goals.stream().mapToInt(Integer::intValue).toArray(),
+                goalCosts.stream().mapToDouble(Double::doubleValue).toArray());
+        if (hops == null) {
+            return null;
+        }
 
-        for (Findable findable : findables) {
-            double dist = start.distance(findable.getLocation());
-            AStarNode aStarNode = new AStarNode(findable, dist);
-            aStarNode.groupId = findable.getGroup() != null ? findable.getGroup().getDatabaseId() : null;
-            aStarNodes.put(findable.getDatabaseId(), aStarNode);
-            if (nearestDist == null || dist < nearestDist) {
-                nearest = aStarNode;
-                nearestDist = dist;
+        //Aufeinanderfolgende Portale derselben Straßenkarte bilden einen Abschnitt, der am ersten beginnt und am letzten endet
+        List<List<Findable>> legs = new ArrayList<>();
+        try {
+            int first = 0;
+            while (first < hops.length) {
+                int last = first;
+                while (last + 1 < hops.length && overlay.getRoadMapId(hops[last + 1]) == overlay.getRoadMapId(hops[first])) {
+                    last++;
+                }
+                RoadMap roadMap = RoadMapHandler.getInstance().getRoadMap(overlay.getRoadMapId(hops[first]));
+                if (roadMap == null) {
+                    return null;
+                }
+                //Der Index des Ziels stammt aus dem Graphen, auf dem auch die Kosten berechnet wurden
+                RoadMapGraph graph = graphs.containsKey(roadMap) ? graphs.get(roadMap) : roadMap.getGraph();
+                BitSet mask = ignoreUnfound ? null : player.getVisibilityMask(roadMap);
+                boolean isLast = last == hops.length - 1;
+                int legGoal = isLast ? goal : graph.indexOf(overlay.getPortalId(hops[last]));
+                List<Findable> leg;
+                if (first == 0) {
+                    int[] nodes = searchFromPosition(roadMap, graph, position, legGoal, isLast ? targetGoals : null, mask, null, budget, 1);
+                    leg = nodes == null ? null : toFindables(roadMap, graph, new PlayerFindable(start, roadMap), nodes);
+                } else {
+                    int legStart = graph.indexOf(overlay.getPortalId(hops[first]));
+                    int[] nodes = legStart < 0 || legGoal < 0 ? null : searchFrom(roadMap, graph, new int[]{legStart}, new double[]{0}, legGoal, isLast ? targetGoals : null, mask, budget, 1);
+                    Findable entry = roadMap.getFindable(overlay.getPortalId(hops[first]));
+                    leg = nodes == null || entry == null ? null : toFindables(roadMap, graph, entry, Arrays.copyOfRange(nodes, 1, nodes.length));
+                }
+                //Die Kosten zwischen den Portalen kennen keine Sichtbarkeit, ein Abschnitt kann daher trotzdem unpassierbar sein
+                if (leg == null) {
+                    return null;
+                }
+                legs.add(leg);
+                first = last + 1;
             }
-            if (findable.getDatabaseId() == target.getDatabaseId()) {
-                targetNode = aStarNode;
+        } catch (SearchBudgetExceededException e) {
+            exhaustedCount.incrementAndGet();
+            return null;
+        }
+        return new Route(legs.get(0), false, legs.subList(1, legs.size()));
+    }
+
+    /**
+     * Überträgt die erreichbaren Portale einer Straßenkarte mit ihren Kosten in die Listen für {@link PortalOverlay#search}.
+     */
+    private static void collectPortals(PortalOverlay overlay, RoadMap roadMap, PortalTable table, double[] costs,
+                                       List<Integer> nodes, List<Double> nodeCosts) {
+        for (int i = 0; i < costs.length; i++) {
+            int node = overlay.indexOf(roadMap.getDatabaseId(), table.getPortalId(i));
+            if (node >= 0 && costs[i] < Double.POSITIVE_INFINITY) {
+                nodes.add(node);
+                nodeCosts.add(costs[i]);
             }
         }
+    }
+
+    /**
+     * Wie {@link #findPath(PathPlayer, PlayerFindable, Findable, boolean, boolean)}, aber mit der Angabe, ob der Weg
+     * nach überschrittenem Budget nur gewichtet gesucht wurde.
+     */
+    private static @Nullable
+    Route findRoute(PathPlayer player, PlayerFindable start, Findable target, boolean ignoreUnfound, boolean findGroup,
+                    SearchBudget budget) {
+        RoadMap roadMap = target.getRoadMap();
+        RoadMapGraph graph = roadMap.getGraph();
+        BitSet mask = ignoreUnfound ? null : player.getVisibilityMask(roadMap);
 
-        if (nearest == null) {
+        int goal = graph.indexOf(target.getDatabaseId());
+        if (goal < 0) {
             return null;
         }
-        playerNode.adjacencies = new AStarEdge[]{new AStarEdge(nearest, nearestDist)};
-        nearest.adjacencies = new AStarEdge[]{new AStarEdge(playerNode, nearestDist)};
+        //Bei Gruppen ist jedes Mitglied ein Ziel, gefunden wird das tatsächlich nächstgelegene
+        GoalSet goals = findGroup && graph.getGroupId(goal) != RoadMapGraph.NO_GROUP ? graph.getGroupGoals(graph.getGroupId(goal)) : null;
+        //Wurden die Weglängen gerade für ein Menü berechnet, ist der Weg zum angeklickten Eintrag bereits bekannt
+        PlayerDistances cached = goals == null ? getCachedDistances(player, roadMap, graph, mask, start.getVector()) : null;
+        int[] cachedPath = cached == null ? null : cached.pathTo(goal);
+        if (cachedPath != null) {
+            List<Findable> findables = toFindables(roadMap, graph, start, cachedPath);
+            if (findables != null) {
+                return new Route(findables, false);
+            }
+        }
+        return searchAnytime(roadMap, graph, start, goal, goals, mask, null, budget);
+    }
 
-        for (Findable findable : findables) {
-            AStarEdge[] adjacencies = new AStarEdge[(int) findable.getEdges().stream()
-                    .filter(integer -> findables.stream().anyMatch(f -> f.getDatabaseId() == integer))
-                    .count()];
-            AStarNode aStarNode = aStarNodes.get(findable.getDatabaseId());
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     * Berechnet die Pfade vieler Spieler auf einmal. Anfragen an dasselbe Ziel mit derselben Sichtbarkeit teilen sich
+     * einen Baum kürzester Wege, jeder weitere Spieler kostet danach nur noch den Einstieg in den Graphen und die
+     * Länge seines Pfades.
+     *
+     * @return Die Findables vom Spieler bis zum Ziel pro Anfrage. Anfragen, deren Ziel nicht erreicht werden kann, fehlen.
+     */
+    public static Map<PathRequest, List<Findable>> findPaths(Collection<PathRequest> requests) {
+        Map<Findable, Map<BitSet, List<PathRequest>>> groups = new LinkedHashMap<>();
+        for (PathRequest request : requests) {
+            BitSet mask = request.isIgnoreUnfound() ? null : request.getPlayer().getVisibilityMask(request.getTarget().getRoadMap());
+            groups.computeIfAbsent(request.getTarget(), target -> new HashMap<>())
+                    .computeIfAbsent(mask, m -> new ArrayList<>())
+                    .add(request);
+        }
 
-            int i = 0;
-            for (Integer edgeId : findable.getEdges()) {
-                if (findables.stream().noneMatch(f -> f.getDatabaseId() == edgeId)) {
-                    continue;
+        Map<PathRequest, List<Findable>> paths = new HashMap<>();
+        for (Map.Entry<Findable, Map<BitSet, List<PathRequest>>> entry : groups.entrySet()) {
+            RoadMap roadMap = entry.getKey().getRoadMap();
+            RoadMapGraph graph = roadMap.getGraph();
+            int goal = graph.indexOf(entry.getKey().getDatabaseId());
+            if (goal < 0) {
+                continue;
+            }
+            for (Map.Entry<BitSet, List<PathRequest>> group : entry.getValue().entrySet()) {
+                ShortestPathTree tree = group.getValue().size() > 1 ?
+                        TREE_CACHE.get(roadMap.getDatabaseId(), graph, goal, group.getKey()) : null;
+                for (PathRequest request : group.getValue()) {
+                    Route route = searchAnytime(roadMap, graph, request.getStart(), goal, null, group.getKey(), tree, searchBudget);
+                    if (route != null) {
+                        paths.put(request, route.getFindables());
+                    }
                 }
-                AStarEdge edgeTarget = new AStarEdge(aStarNodes.get(edgeId), start.distance(findable.getLocation()));
-                adjacencies[i] = edgeTarget;
-                i++;
             }
-            aStarNode.adjacencies = adjacencies;
         }
-        if (targetNode == null) {
+        return paths;
+    }
+
+    /**
+     * Sucht zuerst mit dem Budget den kürzesten Weg. Überschreitet die Suche das Budget, wird mit gewichtetem AStar
+     * ein Weg gesucht, der höchstens {@link #ANYTIME_WEIGHT}-mal so teuer ist wie der kürzeste und dafür deutlich
+     * schneller gefunden wird.
+     *
+     * @return Den Weg vom Spieler bis zum Ziel oder null, wenn das Ziel nicht oder auch gewichtet nicht innerhalb des
+     * Budgets erreicht werden kann.
+     */
+    private static @Nullable
+    Route searchAnytime(RoadMap roadMap, RoadMapGraph graph, PlayerFindable start, int goal, @Nullable GoalSet goals,
+                        @Nullable BitSet mask, @Nullable ShortestPathTree tree, SearchBudget budget) {
+        int[] pathNodes;
+        boolean bounded = false;
+        try {
+            pathNodes = searchFromPosition(roadMap, graph, start.getVector(), goal, goals, mask, tree, budget, 1);
+        } catch (SearchBudgetExceededException e) {
+            boundedCount.incrementAndGet();
+            bounded = true;
+            try {
+                pathNodes = searchFromPosition(roadMap, graph, start.getVector(), goal, goals, mask, null, budget, ANYTIME_WEIGHT);
+            } catch (SearchBudgetExceededException exhausted) {
+                exhaustedCount.incrementAndGet();
+                return null;
+            }
+        }
+        List<Findable> findables = pathNodes == null ? null : toFindables(roadMap, graph, start, pathNodes);
+        return findables == null ? null : new Route(findables, bounded);
+    }
+
+    /**
+     * @return Die Anzahl der Suchen, die ihr Budget überschritten haben und auf einen gewichteten Weg ausgewichen sind.
+     */
+    public static long getBoundedCount() {
+        return boundedCount.get();
+    }
+
+    /**
+     * @return Die Anzahl der Suchen, die auch gewichtet kein Ergebnis innerhalb des Budgets gefunden haben.
+     */
+    public static long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    /**
+     * Bindet die Position über {@link SpatialIndex#getEntry} in den Graphen ein und sucht in einer Suche von allen
+     * möglichen Startnodes aus. Gewählt wird der Weg mit den geringsten Kosten inklusive des Einstiegs.
+     *
+     * @param tree Ein Baum kürzester Wege zum Ziel, der statt einer Suche verwendet wird, oder null.
+     * @return Die Indizes der Nodes vom Einstieg bis zum Ziel.
+     * @throws SearchBudgetExceededException Wenn die Suche das Budget überschreitet.
+     */
+    private static @Nullable
+    int[] searchFromPosition(RoadMap roadMap, RoadMapGraph graph, Vector position, int goal, @Nullable GoalSet goals,
+                             @Nullable BitSet mask, @Nullable ShortestPathTree tree, SearchBudget budget, double weight) {
+        SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position.getX(), position.getY(), position.getZ(), mask);
+        if (entry == null) {
+            return null;
+        }
+        //Ohne Verbindung zum Ziel müsste sonst die ganze Komponente des Einstiegs abgesucht werden
+        if (goals == null && !isConnected(roadMap, graph, entry.getSources(), goal)) {
             return null;
         }
-        return new Pair<>(playerNode, targetNode);
+        if (tree != null) {
+            return tree.pathFrom(entry.getSources(), entry.getSourceCosts());
+        }
+        return searchFrom(roadMap, graph, entry.getSources(), entry.getSourceCosts(), goal, goals, mask, budget, weight);
+    }
+
+    /**
+     * Prüft über die Zusammenhangskomponenten der Straßenkarte, ob das Ziel von einem der Startnodes aus überhaupt
+     * erreichbar sein kann. Die Sichtbarkeit wird dabei nicht berücksichtigt.
+     */
+    private static boolean isConnected(RoadMap roadMap, RoadMapGraph graph, int[] sources, int goal) {
+        ConnectedComponents components = roadMap.getComponents();
+        int goalId = graph.getDatabaseId(goal);
+        for (int source : sources) {
+            if (components.isConnected(graph.getDatabaseId(source), goalId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plant den Pfad eines Spielers neu, der die Route verlassen hat. Statt einer neuen Suche zum Ziel wird nur der Weg
+     * zurück auf den noch gültigen Rest der Route gesucht. Dabei zählen die Kosten, die ab dem jeweiligen Node der Route
+     * noch anfallen, damit der Spieler nicht auf ein bereits zurückgelegtes Stück geführt wird.
+     * Nur im Mainthread aufrufen, gesucht wird im Thread-Pool der Pfadsuche.
+     */
+    public static void reroute(PathPlayer player, PlayerFindable start, ParticlePath path) {
+        //Eine eigene Anfrage des Spielers ersetzt den Pfad ohnehin
+        if (PathSearchHandler.getInstance().isPending(player.getUuid())) {
+            return;
+        }
+        RoadMap roadMap = path.getRoadMap();
+        List<Findable> route = new ArrayList<>(path);
+        PathSearchHandler.getInstance().submit(player.getUuid(), () -> findReroute(player, start, route, path.isIgnoreUnfound()), rerouted -> {
+            if (rerouted != null && player.getActivePath(roadMap) == path) {
+                replacePath(player, path, rerouted, Collections.emptySet());
+            }
+        });
+    }
+
+    /**
+     * Threadsafe, kann asynchron ausgeführt werden.
+     *
+     * @param route Die bisherige Route, das erste Findable ist der ursprüngliche Start des Spielers.
+     * @return Die Findables von der aktuellen Position über den Rest der Route bis zum Ziel oder null, wenn die Route
+     * nicht mehr erreichbar ist.
+     */
+    public static @Nullable
+    List<Findable> findReroute(PathPlayer player, PlayerFindable start, List<Findable> route, boolean ignoreUnfound) {
+        RoadMap roadMap = start.getRoadMap();
+        RoadMapGraph graph = roadMap.getGraph();
+        BitSet mask = ignoreUnfound ? null : player.getVisibilityMask(roadMap);
+        int[] nodes = new int[route.size() - 1];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.indexOf(route.get(i + 1).getDatabaseId());
+        }
+        if (nodes.length == 0 || nodes[nodes.length - 1] < 0) {
+            return null;
+        }
+        double[] remainingCosts = new double[nodes.length];
+        for (int i = nodes.length - 2; i >= 0; i--) {
+            remainingCosts[i] = nodes[i] < 0 ? Double.POSITIVE_INFINITY : remainingCosts[i + 1] + graph.edgeWeight(nodes[i], nodes[i + 1]);
+        }
+
+        Vector position = start.getVector();
+        SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(position.getX(), position.getY(), position.getZ(), mask);
+        if (entry == null) {
+            return null;
+        }
+        int[] joined = new AStar().aStarSearch(graph, entry.getSources(), entry.getSourceCosts(), GoalSet.ofPath(graph, nodes, remainingCosts), mask);
+        if (joined == null) {
+            return null;
+        }
+        int rejoin = nodes.length - 1;
+        while (nodes[rejoin] != joined[joined.length - 1]) {
+            rejoin--;
+        }
+        int[] pathNodes = Arrays.copyOf(joined, joined.length + nodes.length - 1 - rejoin);
+        System.arraycopy(nodes, rejoin + 1, pathNodes, joined.length, nodes.length - 1 - rejoin);
+        return toFindables(roadMap, graph, start, pathNodes);
+    }
+
+    /**
+     * Ersetzt die Findables eines aktiven Pfades und berechnet nur die geänderten Abschnitte neu. Nur im Mainthread aufrufen.
+     */
+    private static void replacePath(PathPlayer player, ParticlePath path, List<Findable> findables, Set<Integer> changed) {
+        RoadMap roadMap = path.getRoadMap();
+        roadMap.unregisterActivePath(player.getUuid(), path);
+        path.replace(findables, changed);
+        roadMap.registerActivePath(player.getUuid(), path);
+    }
+
+    /**
+     * Ein gefundener Weg mit der Angabe, ob er nach überschrittenem Budget nur gewichtet gesucht wurde und daher nicht
+     * der kürzeste sein muss.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    private static class Route {
+
+        private final List<Findable> findables;
+        private final boolean bounded;
+        /**
+         * Die weiteren Abschnitte in anderen Straßenkarten, wenn der Weg über Portale führt, sonst leer.
+         */
+        private final List<List<Findable>> portalLegs;
+
+        Route(List<Findable> findables, boolean bounded) {
+            this(findables, bounded, Collections.emptyList());
+        }
+    }
+
+    private static @Nullable
+    List<Findable> toFindables(RoadMap roadMap, RoadMapGraph graph, Findable start, int[] pathNodes) {
+        List<Findable> pathVar = new ArrayList<>(pathNodes.length + 1);
+        pathVar.add(start);
+        for (int node : pathNodes) {
+            Findable findable = roadMap.getFindable(graph.getDatabaseId(node));
+            if (findable == null) {
+                //Der Graph ist veraltet, die Node wurde zwischenzeitlich gelöscht
+                return null;
+            }
+            pathVar.add(findable);
+        }
+        return pathVar;
     }
 }
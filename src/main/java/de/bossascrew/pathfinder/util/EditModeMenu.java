@@ -6,6 +6,7 @@ import de.bossascrew.core.bukkit.util.ItemStackUtils;
 import de.bossascrew.core.util.CommandUtils;
 import de.bossascrew.core.util.Pair;
 import de.bossascrew.pathfinder.PathPlugin;
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
 import de.bossascrew.pathfinder.data.FindableGroup;
 import de.bossascrew.pathfinder.data.PathPlayer;
 import de.bossascrew.pathfinder.data.RoadMap;
@@ -151,15 +152,10 @@ public class EditModeMenu {
 
         menu.setItem(7, EditmodeUtils.TP_TOOL);
         menu.setClickHandler(7, new HotbarAction[]{HotbarAction.RIGHT_CLICK_ENTITY, HotbarAction.RIGHT_CLICK_BLOCK, HotbarAction.RIGHT_CLICK_AIR}, context -> {
-            double dist = -1;
-            Findable nearest = null;
-            for (Findable findable : roadMap.getFindables()) {
-                double _dist = findable.getVector().distance(player.getLocation().toVector());
-                if (dist == -1 || _dist < dist) {
-                    nearest = findable;
-                    dist = _dist;
-                }
-            }
+            RoadMapGraph graph = roadMap.getGraph();
+            Location location = player.getLocation();
+            int index = graph.getNearest(location.getX(), location.getY(), location.getZ(), null);
+            Findable nearest = index < 0 ? null : roadMap.getFindable(graph.getDatabaseId(index));
             if (nearest == null) {
                 return;
             }
@@ -0,0 +1,40 @@
+package de.bossascrew.pathfinder.util;
+
+import de.bossascrew.pathfinder.data.findable.Findable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.annotation.Nullable;
+import java.util.function.Predicate;
+
+/**
+ * Welche Findables als Ziel einer Suche nach dem nächstgelegenen Findable in Frage kommen, siehe
+ * {@link AStarUtils#startNearestPathAsync}. Scope und Gruppe werden über vorberechnete Bitsets der Straßenkarte
+ * geprüft, der Filter nur noch für die verbleibenden Findables.
+ */
+@RequiredArgsConstructor
+@Getter
+public class NearestQuery {
+
+    /**
+     * Der Scope der Ziele, z.B. {@link de.bossascrew.pathfinder.data.findable.TraderFindable#SCOPE}, oder null für alle.
+     */
+    private final @Nullable String scope;
+    /**
+     * Die Gruppe der Ziele oder null für alle.
+     */
+    private final @Nullable Integer groupId;
+    /**
+     * Ob nur Nodes in Frage kommen, die der Spieler noch nicht gefunden hat. Der Weg dorthin darf dann auch über noch
+     * nicht gefundene Nodes führen.
+     */
+    private final boolean undiscovered;
+    /**
+     * Wird asynchron ausgewertet, z.B. ob ein Händler ein bestimmtes Item handelt. null, wenn nicht weiter gefiltert wird.
+     */
+    private final @Nullable Predicate<Findable> filter;
+
+    public static NearestQuery ofScope(String scope) {
+        return new NearestQuery(scope, null, false, null);
+    }
+}
@@ -0,0 +1,20 @@
+package de.bossascrew.pathfinder.util;
+
+import de.bossascrew.pathfinder.data.PathPlayer;
+import de.bossascrew.pathfinder.data.findable.Findable;
+import de.bossascrew.pathfinder.data.findable.PlayerFindable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Eine einzelne Anfrage innerhalb einer gemeinsamen Pfadsuche, siehe {@link AStarUtils#findPaths(java.util.Collection)}.
+ */
+@RequiredArgsConstructor
+@Getter
+public class PathRequest {
+
+    private final PathPlayer player;
+    private final PlayerFindable start;
+    private final Findable target;
+    private final boolean ignoreUnfound;
+}
@@ -0,0 +1,90 @@
+package de.bossascrew.pathfinder.util;
+
+import de.bossascrew.pathfinder.astar.DistanceTree;
+import de.bossascrew.pathfinder.astar.RoadMapGraph;
+import de.bossascrew.pathfinder.data.RoadMap;
+import de.bossascrew.pathfinder.data.findable.Findable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.util.Vector;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Die Weglängen von der Position eines Spielers zu allen Findables einer Straßenkarte, berechnet mit einem einzigen
+ * {@link DistanceTree}. Damit werden Menüs nach der tatsächlichen Weglänge sortiert, und der Klick auf einen Eintrag
+ * kann den Weg aus demselben Baum übernehmen, siehe {@link AStarUtils#getDistances}.
+ */
+@RequiredArgsConstructor
+public class PlayerDistances {
+
+    @Getter
+    private final RoadMap roadMap;
+    private final RoadMapGraph graph;
+    private final @Nullable BitSet mask;
+    private final Vector position;
+    private final long createdAt;
+    private final DistanceTree tree;
+
+    /**
+     * @return Die Weglänge vom Spieler zum Findable, {@link Double#POSITIVE_INFINITY} wenn es nicht erreichbar ist.
+     */
+    public double getDistance(Findable findable) {
+        if (findable.getRoadMap() != roadMap) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int node = graph.indexOf(findable.getDatabaseId());
+        return node < 0 ? Double.POSITIVE_INFINITY : tree.getDistance(node);
+    }
+
+    /**
+     * Die Kosten aus {@link #getDistance} hängen vom Kostenmodell der Straßenkarte ab und sind daher keine Meter.
+     * Zur Anzeige werden stattdessen die tatsächlichen Längen der Kanten entlang des Weges aufsummiert.
+     *
+     * @return Die Länge des kürzesten Weges in Blöcken, {@link Double#POSITIVE_INFINITY} wenn es nicht erreichbar ist.
+     */
+    public double getWalkingLength(Findable findable) {
+        if (findable.getRoadMap() != roadMap) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int node = graph.indexOf(findable.getDatabaseId());
+        int[] path = node < 0 ? null : tree.pathTo(node);
+        if (path == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double length = graph.distance(path[0], position.getX(), position.getY(), position.getZ());
+        for (int i = 1; i < path.length; i++) {
+            length += graph.distance(path[i - 1], path[i]);
+        }
+        return length;
+    }
+
+    /**
+     * Sortiert nach Weglänge, nicht erreichbare Findables zuletzt.
+     */
+    public Comparator<Findable> comparator() {
+        return Comparator.comparingDouble(this::getDistance);
+    }
+
+    /**
+     * @return Die Indizes der Nodes vom Einstieg in den Graphen bis zum Ziel oder null, wenn es nicht erreichbar ist.
+     */
+    @Nullable
+    int[] pathTo(int node) {
+        return tree.pathTo(node);
+    }
+
+    /**
+     * @return true, wenn die Weglängen noch für diesen Graphen, diese Sichtbarkeit und diese Position gelten.
+     */
+    boolean isValid(RoadMapGraph graph, @Nullable BitSet mask, Vector position, long maxAge, double maxMoved) {
+        return this.graph == graph && this.mask == mask && !isExpired(maxAge)
+                && this.position.distanceSquared(position) <= maxMoved * maxMoved;
+    }
+
+    boolean isExpired(long maxAge) {
+        return System.currentTimeMillis() - createdAt > maxAge;
+    }
+}
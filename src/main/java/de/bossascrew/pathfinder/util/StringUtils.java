@@ -5,6 +5,11 @@ import lombok.experimental.UtilityClass;
 @UtilityClass
 public class StringUtils {
 
+	/**
+	 * Die Geschwindigkeit eines gehenden Spielers in Blöcken pro Sekunde.
+	 */
+	private final double WALKING_SPEED = 4.317;
+
 	public String replaceBlanks(String string) {
 		return string.replaceAll("_", " ");
 	}
@@ -12,4 +17,14 @@ public class StringUtils {
 	public String replaceSpaces(String string) {
 		return string.replaceAll(" ", "_");
 	}
+
+	/**
+	 * @param blocks Die geometrische Länge des Weges, nicht seine Kosten, siehe {@link PlayerDistances#getWalkingLength}.
+	 * @return Die Weglänge in Blöcken mit der ungefähren Gehzeit, z.B. "120m, ca. 28 Sek.".
+	 */
+	public String formatWalkingDistance(double blocks) {
+		long seconds = Math.round(blocks / WALKING_SPEED);
+		String eta = seconds < 60 ? seconds + " Sek." : Math.round(seconds / 60.0) + " Min.";
+		return Math.round(blocks) + "m, ca. " + eta;
+	}
 }
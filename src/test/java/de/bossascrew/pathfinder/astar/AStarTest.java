@@ -0,0 +1,687 @@
+package de.bossascrew.pathfinder.astar;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class AStarTest extends TestCase {
+
+    /**
+     * 1 - 2 - 3
+     * |       |
+     * 4 ----- 5
+     * Kante 1-2-3 ist kürzer als der Umweg über 4 und 5.
+     */
+    private RoadMapGraph createGraph() {
+        return RoadMapGraph.builder(0)
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(2, 5, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(3, 10, 0, 0, 7)
+                .addNode(4, 0, 0, 10, RoadMapGraph.NO_GROUP)
+                .addNode(5, 10, 0, 10, 7)
+                .addEdge(1, 2).addEdge(2, 1)
+                .addEdge(2, 3).addEdge(3, 2)
+                .addEdge(1, 4).addEdge(4, 1)
+                .addEdge(4, 5).addEdge(5, 4)
+                .addEdge(5, 3).addEdge(3, 5)
+                .addEdge(1, 99)
+                .build();
+    }
+
+    private int[] toDatabaseIds(RoadMapGraph graph, int[] path) {
+        return Arrays.stream(path).map(graph::getDatabaseId).toArray();
+    }
+
+    public void testCompile() {
+        RoadMapGraph graph = createGraph();
+        assertEquals(5, graph.size());
+        assertEquals(10, graph.getEdgeCount());
+        assertEquals(-1, graph.indexOf(99));
+        int node = graph.indexOf(2);
+        assertEquals(2, graph.edgeEnd(node) - graph.edgeStart(node));
+        assertEquals(5, graph.edgeWeight(graph.edgeStart(node)), 1e-9);
+    }
+
+    public void testMovedNode() {
+        RoadMapGraph graph = createGraph();
+        int node = graph.indexOf(2);
+        RoadMapGraph moved = graph.withPosition(node, 5, 0, 20, 1);
+        assertEquals(1, moved.getVersion());
+        assertEquals(5, graph.edgeWeight(graph.edgeStart(node)), 1e-9);
+        assertEquals(Math.sqrt(425), moved.edgeWeight(moved.edgeStart(node)), 1e-9);
+
+        int[] path = new AStar().aStarSearch(moved, moved.indexOf(1), 0, moved.indexOf(3), null);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(moved, path)));
+    }
+
+    public void testVerticalPenalty() {
+        RoadMapGraph graph = RoadMapGraph.builder(0, new VerticalPenaltyCostModel(EdgeCostModel.EUCLIDEAN, 2))
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(2, 0, 3, 4, RoadMapGraph.NO_GROUP)
+                .addEdge(1, 2)
+                .build();
+        assertEquals(5 + 3 * 2, graph.edgeWeight(0), 1e-9);
+    }
+
+    public void testShortestPath() {
+        RoadMapGraph graph = createGraph();
+        int[] path = new AStar().aStarSearch(graph, graph.indexOf(1), 0, graph.indexOf(3), null);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 2, 3}, toDatabaseIds(graph, path)));
+    }
+
+    public void testMask() {
+        RoadMapGraph graph = createGraph();
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        mask.clear(graph.indexOf(2));
+        int[] path = new AStar().aStarSearch(graph, graph.indexOf(1), 0, graph.indexOf(3), mask);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(graph, path)));
+
+        mask.clear(graph.indexOf(4));
+        assertNull(new AStar().aStarSearch(graph, graph.indexOf(1), 0, graph.indexOf(3), mask));
+    }
+
+    public void testGroupedPath() {
+        RoadMapGraph graph = createGraph();
+        int[] path = new AStar().aStarSearch(graph, new int[]{graph.indexOf(4)}, new double[]{0}, graph.getGroupGoals(7), null);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{4, 5}, toDatabaseIds(graph, path)));
+    }
+
+    public void testCancelled() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(2_500, 2, 3);
+        Thread.currentThread().interrupt();
+        try {
+            new AStar().aStarSearch(graph, 0, 0, graph.size() - 1, null);
+            fail("Die unterbrochene Suche wurde nicht abgebrochen.");
+        } catch (SearchCancelledException expected) {
+        } finally {
+            Thread.interrupted();
+        }
+        assertNotNull(new AStar().aStarSearch(graph, 0, 0, graph.size() - 1, null));
+    }
+
+    public void testBudget() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(2_500, 2, 3);
+        SearchBudget budget = new SearchBudget(500, 10_000);
+        try {
+            budget.run(() -> new AStar().aStarSearch(graph, 0, 0, graph.size() - 1, null));
+            fail("Die Suche hat ihr Budget nicht eingehalten.");
+        } catch (SearchBudgetExceededException expected) {
+        }
+        //Außerhalb des Budgets wird wieder vollständig gesucht
+        int[] shortest = new AStar().aStarSearch(graph, 0, 0, graph.size() - 1, null);
+        assertNotNull(shortest);
+
+        AStar weighted = new AStar(Heuristic.EUCLIDEAN, 2);
+        int[] bounded = weighted.aStarSearch(graph, 0, 0, graph.size() - 1, null);
+        assertNotNull(bounded);
+        assertTrue(graph.getPathCost(bounded) <= 2 * graph.getPathCost(shortest) + 1e-9);
+        assertTrue(weighted.getSettledCount() < 500);
+    }
+
+    public void testGroupGoals() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(2_000, 300, 20, 11);
+        Random random = new Random(12);
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(0);
+        //Verstreute Nodes einer Gruppe als Ziel, verglichen mit dem Minimum über Dijkstra von jedem Mitglied
+        BitSet members = new BitSet();
+        for (int i = 0; i < graph.size(); i++) {
+            boolean member = random.nextInt(100) == 0;
+            members.set(i, member);
+            builder.addNode(graph.getDatabaseId(i), graph.getX(i), graph.getY(i), graph.getZ(i), member ? 3 : RoadMapGraph.NO_GROUP);
+            for (int edge = graph.edgeStart(i); edge < graph.edgeEnd(i); edge++) {
+                builder.addEdge(graph.getDatabaseId(i), graph.getDatabaseId(graph.edgeTarget(edge)));
+            }
+        }
+        RoadMapGraph grouped = builder.build();
+        GoalSet goals = grouped.getGroupGoals(3);
+        assertEquals(members.cardinality(), goals.size());
+
+        double[][] distances = new double[grouped.size()][];
+        for (int member = members.nextSetBit(0); member >= 0; member = members.nextSetBit(member + 1)) {
+            distances[member] = Dijkstra.distances(grouped, grouped.indexOf(graph.getDatabaseId(member)));
+        }
+        for (int q = 0; q < 50; q++) {
+            int source = random.nextInt(grouped.size());
+            double best = Double.POSITIVE_INFINITY;
+            for (double[] fromMember : distances) {
+                if (fromMember != null) {
+                    best = Math.min(best, fromMember[source]);
+                }
+            }
+            int[] path = new AStar().aStarSearch(grouped, new int[]{source}, new double[]{0}, goals, null);
+            if (best == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertTrue(goals.contains(path[path.length - 1]));
+            assertEquals(best, grouped.getPathCost(path), 1e-6);
+        }
+    }
+
+    public void testPathRepair() {
+        RoadMapGraph graph = createGraph();
+        int[] path = new AStar().aStarSearch(graph, graph.indexOf(1), 0, graph.indexOf(3), null);
+        assertSame(path, PathRepair.repair(graph, path, new BitSet(), null, new AStar()));
+
+        //Kante 1-2 getrennt, neu geplant wird nur bis zum nächsten intakten Node
+        RoadMapGraph disconnected = RoadMapGraph.builder(1)
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(2, 5, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(3, 10, 0, 0, 7)
+                .addNode(4, 0, 0, 10, RoadMapGraph.NO_GROUP)
+                .addNode(5, 10, 0, 10, 7)
+                .addEdge(2, 3).addEdge(3, 2)
+                .addEdge(1, 4).addEdge(4, 1)
+                .addEdge(4, 5).addEdge(5, 4)
+                .addEdge(5, 3).addEdge(3, 5)
+                .build();
+        int[] mapped = Arrays.stream(toDatabaseIds(graph, path)).map(disconnected::indexOf).toArray();
+        BitSet changed = new BitSet();
+        changed.set(disconnected.indexOf(1));
+        changed.set(disconnected.indexOf(2));
+        int[] repaired = PathRepair.repair(disconnected, mapped, changed, null, new AStar());
+        assertNotNull(repaired);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(disconnected, repaired)));
+
+        //Neue Kante zwischen zwei Nodes des Pfades wird als Abkürzung übernommen
+        RoadMapGraph connected = RoadMapGraph.builder(2)
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(3, 10, 0, 0, 7)
+                .addNode(4, 0, 0, 10, RoadMapGraph.NO_GROUP)
+                .addNode(5, 10, 0, 10, 7)
+                .addEdge(1, 4).addEdge(4, 1)
+                .addEdge(4, 5).addEdge(5, 4)
+                .addEdge(5, 3).addEdge(3, 5)
+                .addEdge(1, 5).addEdge(5, 1)
+                .build();
+        mapped = Arrays.stream(toDatabaseIds(disconnected, repaired)).map(connected::indexOf).toArray();
+        changed = new BitSet();
+        changed.set(connected.indexOf(1));
+        changed.set(connected.indexOf(5));
+        repaired = PathRepair.repair(connected, mapped, changed, null, new AStar());
+        assertNotNull(repaired);
+        assertTrue(Arrays.equals(new int[]{1, 5, 3}, toDatabaseIds(connected, repaired)));
+
+        //Gelöschtes Ziel kann nicht repariert werden
+        mapped[mapped.length - 1] = -1;
+        assertNull(PathRepair.repair(connected, mapped, changed, null, new AStar()));
+    }
+
+    public void testRouteGoals() {
+        RoadMapGraph graph = createGraph();
+        int[] route = {graph.indexOf(1), graph.indexOf(4), graph.indexOf(5), graph.indexOf(3)};
+        double[] remainingCosts = {30, 20, 10, 0};
+        //Von 2 aus sind 1 und 3 gleich weit entfernt, zurück auf die Route geht es aber dort, wo weniger übrig bleibt
+        int[] path = new AStar().aStarSearch(graph, new int[]{graph.indexOf(2)}, new double[]{0},
+                GoalSet.ofPath(graph, route, remainingCosts), null);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{2, 3}, toDatabaseIds(graph, path)));
+
+        //Gelöschte Nodes und Nodes hinter einer getrennten Kante sind keine Ziele
+        GoalSet unusable = GoalSet.ofPath(graph, new int[]{graph.indexOf(1), -1}, new double[]{Double.POSITIVE_INFINITY, 0});
+        assertTrue(unusable.isEmpty());
+    }
+
+    public void testPolylineIndex() {
+        Random random = new Random(5);
+        int points = 200;
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        double[] zs = new double[points];
+        for (int i = 1; i < points; i++) {
+            xs[i] = xs[i - 1] + random.nextGaussian() * 15;
+            ys[i] = ys[i - 1] + random.nextGaussian() * 2;
+            zs[i] = zs[i - 1] + random.nextGaussian() * 15;
+        }
+        PolylineIndex index = new PolylineIndex(xs, ys, zs, 8);
+        for (int query = 0; query < 2_000; query++) {
+            int around = random.nextInt(points);
+            double x = xs[around] + random.nextGaussian() * 10;
+            double y = ys[around] + random.nextGaussian() * 3;
+            double z = zs[around] + random.nextGaussian() * 10;
+            double expected = Double.POSITIVE_INFINITY;
+            for (int segment = 0; segment < index.getSegmentCount(); segment++) {
+                expected = Math.min(expected, index.getDistance(segment, x, y, z));
+            }
+            int nearest = index.getNearestSegment(x, y, z, 8);
+            if (expected < 8) {
+                assertTrue(nearest >= 0);
+                assertEquals(expected, index.getDistance(nearest, x, y, z), 1e-9);
+            } else {
+                assertEquals(-1, nearest);
+            }
+        }
+    }
+
+    public void testConnectedComponents() {
+        RoadMapGraph graph = RoadMapGraph.builder(0)
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(2, 5, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(3, 10, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(4, 0, 0, 10, RoadMapGraph.NO_GROUP)
+                .addNode(5, 10, 0, 10, RoadMapGraph.NO_GROUP)
+                .addEdge(1, 2).addEdge(2, 1)
+                .addEdge(2, 3).addEdge(3, 2)
+                .addEdge(4, 5)
+                .build();
+        ConnectedComponents components = ConnectedComponents.compute(graph);
+        assertEquals(2, components.getComponentCount());
+        assertTrue(Arrays.asList(3, 2).equals(components.getComponentSizes()));
+        assertTrue(components.isConnected(1, 3));
+        //Einseitige Kanten verbinden ebenfalls
+        assertTrue(components.isConnected(5, 4));
+        assertFalse(components.isConnected(1, 5));
+        assertFalse(components.isConnected(1, 99));
+
+        //Neue Kanten und Nodes werden ohne Neuberechnen übernommen
+        components.union(3, 4);
+        components.add(6);
+        assertEquals(2, components.getComponentCount());
+        assertEquals(5, components.getComponentSize(1));
+        assertTrue(components.isConnected(1, 5));
+        assertFalse(components.isConnected(1, 6));
+
+        //Auch über die anfängliche Kapazität hinaus, mit negativen IDs
+        for (int id = 7; id < 1_000; id++) {
+            components.union(id - 1, -id);
+            components.union(-id, id);
+        }
+        assertEquals(2, components.getComponentCount());
+        assertTrue(components.isConnected(6, -999));
+        assertEquals(1_000 - 6 + 993, components.getComponentSize(6));
+        assertFalse(components.isConnected(1, 999));
+    }
+
+    public void testAdjacency() {
+        Adjacency adjacency = new Adjacency();
+        assertTrue(adjacency.connect(1, 2));
+        assertFalse(adjacency.connect(2, 1));
+        assertFalse(adjacency.connect(3, 3));
+        assertTrue(adjacency.connect(2, 3));
+        assertEquals(2, adjacency.getEdgeCount());
+        assertTrue(adjacency.getNeighbors(2).contains(1));
+        assertTrue(adjacency.getNeighbors(1).contains(2));
+        assertTrue(Arrays.equals(new int[]{1, 2, 2, 3}, adjacency.getEdgeList()));
+
+        assertTrue(adjacency.disconnect(1, 2));
+        assertFalse(adjacency.disconnect(1, 2));
+        assertSame(IntSet.EMPTY, adjacency.getNeighbors(1));
+        assertEquals(1, adjacency.getEdgeCount());
+
+        //Viele Kollisionen und Entfernen mitten aus Sondierungsketten
+        Random random = new Random(9);
+        IntSet set = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(64) * 1024;
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(value), set.add(value));
+            } else {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int value = 0; value < 64 * 1024; value += 1024) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    public void testHeapOrder() {
+        IndexedMinHeap heap = new IndexedMinHeap();
+        heap.reset(10);
+        heap.insertOrDecrease(3, 5);
+        heap.insertOrDecrease(7, 2);
+        heap.insertOrDecrease(1, 9);
+        assertTrue(heap.insertOrDecrease(1, 1));
+        assertFalse(heap.insertOrDecrease(3, 6));
+        assertEquals(1, heap.poll());
+        assertEquals(7, heap.poll());
+        assertEquals(3, heap.poll());
+        assertTrue(heap.isEmpty());
+
+        heap.reset(10);
+        assertFalse(heap.contains(3));
+    }
+
+    public void testBidirectionalRandomPairs() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(2_000, 500, 25, 4);
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            int[] expected = new AStar().aStarSearch(graph, source, 0, goal, null);
+            int[] path = new BidirectionalAStar().search(graph, new int[]{source}, new double[]{0}, goal, null);
+            if (expected == null) {
+                assertNull(path);
+            } else {
+                assertNotNull(path);
+                assertEquals(graph.getPathCost(expected), graph.getPathCost(path), 1e-6);
+            }
+        }
+    }
+
+    public void testLandmarks() {
+        RoadMapGraph graph = SyntheticRoadMaps.corridor(2_000, 4, 6);
+        Landmarks landmarks = Landmarks.compute(graph, 8);
+        assertEquals(8, landmarks.getCount());
+        assertEquals((long) 8 * graph.size() * Float.BYTES, landmarks.getMemoryBytes());
+
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            double[] distances = Dijkstra.distances(graph, source);
+            assertTrue(landmarks.estimate(graph, source, goal) <= distances[goal] + 1e-6);
+
+            int[] path = new AStar(landmarks).aStarSearch(graph, source, 0, goal, null);
+            if (distances[goal] == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+            } else {
+                assertNotNull(path);
+                assertEquals(distances[goal], graph.getPathCost(path), 1e-6);
+            }
+        }
+    }
+
+    public void testContractionHierarchy() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(2_000, 500, 25, 8);
+        ContractionHierarchy hierarchy = ContractionHierarchy.compute(graph);
+
+        Random random = new Random(9);
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            double[] distances = Dijkstra.distances(graph, source);
+
+            int[] path = new ContractionHierarchySearch(hierarchy).search(graph, new int[]{source}, new double[]{0}, goal, null);
+            if (distances[goal] == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(source, path[0]);
+            assertEquals(goal, path[path.length - 1]);
+            assertEquals(distances[goal], graph.getPathCost(path), 1e-6);
+        }
+    }
+
+    public void testContractionHierarchyMask() {
+        RoadMapGraph graph = createGraph();
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        mask.clear(graph.indexOf(2));
+        int[] path = new ContractionHierarchySearch(ContractionHierarchy.compute(graph))
+                .search(graph, new int[]{graph.indexOf(1)}, new double[]{0}, graph.indexOf(3), mask);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(graph, path)));
+    }
+
+    public void testClusterHierarchy() {
+        RoadMapGraph graph = SyntheticRoadMaps.districts(SyntheticRoadMaps.randomGeometric(2_000, 500, 25, 8), 100);
+        ClusterHierarchy hierarchy = ClusterHierarchy.compute(graph);
+        assertEquals(hierarchy.getClusterCount(), hierarchy.getRebuiltClusterCount());
+        assertClusterPaths(graph, hierarchy, new Random(11));
+
+        //Nach dem Verschieben eines Nodes wird nur sein Cluster neu berechnet
+        int node = graph.indexOf(1);
+        RoadMapGraph moved = graph.withPosition(node, graph.getX(node) + 10, 0, graph.getZ(node), 1);
+        ClusterHierarchy updated = ClusterHierarchy.compute(moved, hierarchy);
+        assertEquals(1, updated.getRebuiltClusterCount());
+        assertClusterPaths(moved, updated, new Random(12));
+    }
+
+    private void assertClusterPaths(RoadMapGraph graph, ClusterHierarchy hierarchy, Random random) {
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            double[] distances = Dijkstra.distances(graph, source);
+
+            int[] path = new ClusterHierarchySearch(hierarchy).search(graph, new int[]{source}, new double[]{0}, goal, null);
+            if (distances[goal] == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(source, path[0]);
+            assertEquals(goal, path[path.length - 1]);
+            assertEquals(distances[goal], graph.getPathCost(path), 1e-6);
+        }
+    }
+
+    public void testClusterHierarchyMask() {
+        RoadMapGraph graph = createGraph();
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        mask.clear(graph.indexOf(2));
+        int[] path = new ClusterHierarchySearch(ClusterHierarchy.compute(graph))
+                .search(graph, new int[]{graph.indexOf(1)}, new double[]{0}, graph.indexOf(3), mask);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(graph, path)));
+    }
+
+    public void testNextHopTable() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(1_000, 500, 25, 8);
+        NextHopTable table = NextHopTable.compute(graph);
+        assertTrue(table.hasTable());
+
+        Random random = new Random(9);
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.size());
+            int goal = random.nextInt(graph.size());
+            double[] distances = Dijkstra.distances(graph, source);
+
+            int[] path = new NextHopSearch(table).search(graph, new int[]{source}, new double[]{0}, goal, null);
+            if (distances[goal] == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(source, path[0]);
+            assertEquals(goal, path[path.length - 1]);
+            assertEquals(distances[goal], graph.getPathCost(path), 1e-6);
+        }
+    }
+
+    public void testNextHopTableMask() {
+        RoadMapGraph graph = createGraph();
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        mask.clear(graph.indexOf(2));
+        int[] path = new NextHopSearch(NextHopTable.compute(graph))
+                .search(graph, new int[]{graph.indexOf(1)}, new double[]{0}, graph.indexOf(3), mask);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5, 3}, toDatabaseIds(graph, path)));
+    }
+
+    public void testNearest() {
+        RoadMapGraph graph = createGraph();
+        BitSet targets = new BitSet();
+        targets.set(graph.indexOf(3));
+        targets.set(graph.indexOf(5));
+        int[] sources = {graph.indexOf(1)};
+        double[] sourceCosts = {0};
+        int[] path = Dijkstra.nearest(graph, sources, sourceCosts, targets, null);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 2, 3}, toDatabaseIds(graph, path)));
+
+        //Ohne Node 2 ist Node 5 näher als Node 3
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        mask.clear(graph.indexOf(2));
+        path = Dijkstra.nearest(graph, sources, sourceCosts, targets, mask);
+        assertNotNull(path);
+        assertTrue(Arrays.equals(new int[]{1, 4, 5}, toDatabaseIds(graph, path)));
+
+        assertNull(Dijkstra.nearest(graph, sources, sourceCosts, new BitSet(), null));
+    }
+
+    public void testDistanceTree() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(2_000, 500, 20, 11);
+        int source = 0;
+        DistanceTree tree = DistanceTree.compute(graph, new int[]{source}, new double[]{0}, null);
+        double[] expected = Dijkstra.distances(graph, source);
+        for (int i = 0; i < graph.size(); i++) {
+            int[] path = tree.pathTo(i);
+            if (expected[i] == Double.POSITIVE_INFINITY) {
+                assertEquals(Double.POSITIVE_INFINITY, tree.getDistance(i));
+                assertNull(path);
+            } else {
+                assertEquals(expected[i], tree.getDistance(i), 1e-9);
+                assertEquals(source, path[0]);
+                assertEquals(i, path[path.length - 1]);
+                assertEquals(expected[i], graph.getPathCost(path), 1e-6);
+            }
+        }
+    }
+
+    public void testPortalOverlay() {
+        RoadMapGraph first = createGraph();
+        RoadMapGraph second = createGraph();
+        PortalTable firstTable = PortalTable.compute(first, new int[]{3, 4});
+        PortalTable secondTable = PortalTable.compute(second, new int[]{1, 5});
+        assertEquals(20, firstTable.getCost(0, 1), 1e-9);
+        assertTrue(firstTable.isValid(first, new int[]{3, 4}));
+        assertFalse(firstTable.isValid(first, new int[]{3}));
+        PortalOverlay overlay = PortalOverlay.builder()
+                .addRoadMap(10, firstTable)
+                .addRoadMap(20, secondTable)
+                .addLink(10, 3, 20, 1, 0)
+                .addLink(10, 4, 20, 5, 0)
+                .build();
+        assertEquals(-1, overlay.indexOf(10, 1));
+        assertSame(firstTable, overlay.getTable(10));
+        assertNull(overlay.getTable(30));
+
+        //Von Node 1 der ersten Karte zu Node 2 der zweiten ist Portal 3 -> 1 kürzer als 4 -> 5
+        int[] goal = {second.indexOf(2)};
+        double[] goalCosts = secondTable.costsFrom(second, goal, new double[]{0}, null);
+        int[] path = searchOverlay(overlay, 10, firstTable, firstTable.costsFrom(first, new int[]{first.indexOf(1)}, new double[]{0}, null),
+                20, secondTable, goalCosts);
+        assertNotNull(path);
+        assertEquals(2, path.length);
+        assertEquals(3, overlay.getPortalId(path[0]));
+        assertEquals(10, overlay.getRoadMapId(path[0]));
+        assertEquals(1, overlay.getPortalId(path[1]));
+        assertEquals(20, overlay.getRoadMapId(path[1]));
+
+        //Ohne Node 3 bleibt nur das andere Portal
+        BitSet mask = new BitSet();
+        mask.set(0, first.size());
+        mask.clear(first.indexOf(3));
+        path = searchOverlay(overlay, 10, firstTable, firstTable.costsFrom(first, new int[]{first.indexOf(1)}, new double[]{0}, mask),
+                20, secondTable, goalCosts);
+        assertNotNull(path);
+        assertEquals(4, overlay.getPortalId(path[0]));
+        assertEquals(5, overlay.getPortalId(path[1]));
+    }
+
+    public void testPortalOverlayLoop() {
+        //Die erste Karte zerfällt in zwei Teile, die nur über eine Schleife durch die zweite Karte verbunden sind
+        RoadMapGraph split = RoadMapGraph.builder(0)
+                .addNode(1, 0, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(2, 5, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(3, 50, 0, 0, RoadMapGraph.NO_GROUP)
+                .addNode(4, 55, 0, 0, RoadMapGraph.NO_GROUP)
+                .addEdge(1, 2).addEdge(2, 1)
+                .addEdge(3, 4).addEdge(4, 3)
+                .build();
+        RoadMapGraph second = createGraph();
+        PortalTable splitTable = PortalTable.compute(split, new int[]{2, 3});
+        PortalTable secondTable = PortalTable.compute(second, new int[]{1, 5});
+        assertEquals(Double.POSITIVE_INFINITY, splitTable.getCost(0, 1));
+        PortalOverlay overlay = PortalOverlay.builder()
+                .addRoadMap(10, splitTable)
+                .addRoadMap(20, secondTable)
+                .addLink(10, 2, 20, 1, 0)
+                .addLink(10, 3, 20, 5, 0)
+                .build();
+
+        //Start und Ziel liegen in derselben Karte, beide werden über ihre Portale angebunden
+        int[] path = searchOverlay(overlay, 10, splitTable,
+                splitTable.costsFrom(split, new int[]{split.indexOf(1)}, new double[]{0}, null),
+                10, splitTable, splitTable.costsFrom(split, new int[]{split.indexOf(4)}, new double[]{0}, null));
+        assertNotNull(path);
+        assertEquals(4, path.length);
+        assertEquals(2, overlay.getPortalId(path[0]));
+        assertEquals(10, overlay.getRoadMapId(path[0]));
+        assertEquals(20, overlay.getRoadMapId(path[1]));
+        assertEquals(20, overlay.getRoadMapId(path[2]));
+        assertEquals(3, overlay.getPortalId(path[3]));
+        assertEquals(10, overlay.getRoadMapId(path[3]));
+    }
+
+    private int[] searchOverlay(PortalOverlay overlay, int startRoadMap, PortalTable startTable, double[] startCosts,
+                                int goalRoadMap, PortalTable goalTable, double[] goalCosts) {
+        int[] sources = new int[startCosts.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = overlay.indexOf(startRoadMap, startTable.getPortalId(i));
+        }
+        int[] goals = new int[goalCosts.length];
+        for (int i = 0; i < goals.length; i++) {
+            goals[i] = overlay.indexOf(goalRoadMap, goalTable.getPortalId(i));
+        }
+        return overlay.search(sources, startCosts, goals, goalCosts);
+    }
+
+    public void testSpatialIndex() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(2_000, 500, 20, 9);
+        SpatialIndex index = graph.getSpatialIndex();
+        BitSet mask = new BitSet();
+        Random random = new Random(10);
+        for (int i = 0; i < graph.size(); i++) {
+            mask.set(i, random.nextInt(4) != 0);
+        }
+
+        for (int q = 0; q < 200; q++) {
+            //Auch Positionen außerhalb der Karte abfragen
+            double x = random.nextDouble() * 700 - 100;
+            double y = random.nextDouble() * 40 - 20;
+            double z = random.nextDouble() * 700 - 100;
+            BitSet queryMask = q % 2 == 0 ? null : mask;
+
+            double[] distances = new double[graph.size()];
+            for (int i = 0; i < graph.size(); i++) {
+                distances[i] = queryMask != null && !queryMask.get(i) ? Double.POSITIVE_INFINITY : graph.distance(i, x, y, z);
+            }
+            double[] sorted = distances.clone();
+            Arrays.sort(sorted);
+            int[] nearest = index.getNearest(x, y, z, 5, queryMask);
+            assertEquals(5, nearest.length);
+            for (int k = 0; k < 5; k++) {
+                assertEquals(sorted[k], distances[nearest[k]], 1e-9);
+            }
+
+            double bestEdge = Double.POSITIVE_INFINITY;
+            for (int a = 0; a < graph.size(); a++) {
+                for (int edge = graph.edgeStart(a); edge < graph.edgeEnd(a); edge++) {
+                    int b = graph.edgeTarget(edge);
+                    if (queryMask != null && (!queryMask.get(a) || !queryMask.get(b))) {
+                        continue;
+                    }
+                    bestEdge = Math.min(bestEdge, segmentDistance(graph, a, b, x, y, z));
+                }
+            }
+            SpatialIndex.EdgePoint point = index.getNearestEdgePoint(x, y, z, queryMask);
+            assertNotNull(point);
+            assertEquals(bestEdge, point.getDistance(), 1e-9);
+        }
+    }
+
+    private static double segmentDistance(RoadMapGraph graph, int a, int b, double x, double y, double z) {
+        double dx = graph.getX(b) - graph.getX(a);
+        double dy = graph.getY(b) - graph.getY(a);
+        double dz = graph.getZ(b) - graph.getZ(a);
+        double t = ((x - graph.getX(a)) * dx + (y - graph.getY(a)) * dy + (z - graph.getZ(a)) * dz) / (dx * dx + dy * dy + dz * dz);
+        t = Math.max(0, Math.min(1, t));
+        double px = graph.getX(a) + dx * t - x;
+        double py = graph.getY(a) + dy * t - y;
+        double pz = graph.getZ(a) + dz * t - z;
+        return Math.sqrt(px * px + py * py + pz * pz);
+    }
+}
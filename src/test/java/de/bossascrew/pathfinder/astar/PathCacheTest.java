@@ -0,0 +1,230 @@
+package de.bossascrew.pathfinder.astar;
+
+import junit.framework.TestCase;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+public class PathCacheTest extends TestCase {
+
+    private long now = 0;
+
+    public void testShortestPathTree() {
+        RoadMapGraph graph = SyntheticRoadMaps.randomGeometric(1_000, 300, 25, 3);
+        int target = 17;
+        ShortestPathTree tree = ShortestPathTree.compute(graph, target, null);
+        double[] distances = Dijkstra.distances(graph, target);
+
+        Random random = new Random(4);
+        for (int i = 0; i < 100; i++) {
+            int source = random.nextInt(graph.size());
+            int[] path = tree.pathFrom(new int[]{source}, new double[]{0});
+            if (distances[source] == Double.POSITIVE_INFINITY) {
+                assertNull(path);
+                continue;
+            }
+            assertNotNull(path);
+            assertEquals(source, path[0]);
+            assertEquals(target, path[path.length - 1]);
+            assertEquals(distances[source], graph.getPathCost(path), 1e-6);
+        }
+    }
+
+    public void testTreeThreshold() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(3, 1_000, Long.MAX_VALUE, () -> now);
+        assertNull(cache.request(1, graph, 5, null));
+        assertNull(cache.request(1, graph, 5, null));
+        now += 2_000;
+        //Das Zeitfenster ist abgelaufen, es wird neu gezählt
+        assertNull(cache.request(1, graph, 5, null));
+        assertNull(cache.request(1, graph, 5, null));
+        ShortestPathTree tree = cache.request(1, graph, 5, null);
+        assertNotNull(tree);
+        assertSame(tree, cache.request(1, graph, 5, null));
+
+        //Andere Sichtbarkeit oder anderes Ziel teilen sich den Baum nicht
+        BitSet mask = new BitSet();
+        mask.set(0, graph.size());
+        assertNull(cache.request(1, graph, 5, mask));
+        assertNull(cache.request(1, graph, 6, null));
+    }
+
+    public void testTreeBatch() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(3, 1_000, Long.MAX_VALUE, () -> now);
+        //Gemeinsame Anfragen bauen den Baum sofort, spätere einzelne Anfragen verwenden ihn mit
+        ShortestPathTree tree = cache.get(1, graph, 5, null);
+        assertSame(tree, cache.request(1, graph, 5, null));
+        assertSame(tree, cache.get(1, graph, 5, null));
+        assertEquals(1, cache.size());
+    }
+
+    public void testTreeEviction() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        long treeBytes = ShortestPathTree.compute(graph, 0, null).getMemoryBytes();
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(1, 1_000, treeBytes * 2, () -> now);
+        ShortestPathTree first = cache.request(1, graph, 1, null);
+        cache.request(1, graph, 2, null);
+        assertSame(first, cache.request(1, graph, 1, null));
+        cache.request(1, graph, 3, null);
+        assertEquals(2, cache.size());
+        assertEquals(treeBytes * 2, cache.getUsedBytes());
+        //Ziel 2 wurde am längsten nicht verwendet und ist verdrängt worden
+        assertSame(first, cache.request(1, graph, 1, null));
+
+        RoadMapGraph moved = graph.withPosition(0, 1, 1, 1, graph.getVersion() + 1);
+        assertNotSame(first, cache.request(1, moved, 1, null));
+        assertEquals(1, cache.size());
+    }
+
+    public void testResultCache() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        PathResultCache cache = new PathResultCache(2);
+        int[] searches = {0};
+        Supplier<int[]> search = () -> {
+            searches[0]++;
+            return new AStar().aStarSearch(graph, 0, 0, 99, null);
+        };
+        int[] first = cache.get(1, graph, 0, 99, null, search);
+        assertSame(first, cache.get(1, graph, 0, 99, null, search));
+        assertEquals(1, searches[0]);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        //Andere Sichtbarkeit ergibt einen eigenen Eintrag, auch wenn kein Weg existiert
+        BitSet mask = new BitSet();
+        mask.set(0, 50);
+        assertNull(cache.get(1, graph, 0, 99, mask, () -> null));
+        assertNull(cache.get(1, graph, 0, 99, mask, search));
+        assertEquals(1, searches[0]);
+
+        //Der dritte Eintrag verdrängt den am längsten ungenutzten
+        cache.get(1, graph, 1, 99, null, search);
+        assertEquals(2, cache.size());
+        cache.get(1, graph, 0, 99, null, search);
+        assertEquals(3, searches[0]);
+
+        //Eine neuere Graphversion verwirft alle alten Ergebnisse
+        RoadMapGraph moved = graph.withPosition(50, 0, 0, 0, graph.getVersion() + 1);
+        cache.get(1, moved, 0, 99, null, search);
+        assertEquals(1, cache.size());
+    }
+
+    public void testResultCacheSharedEntryEdge() {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        PathResultCache cache = new PathResultCache(16);
+        int from = 0;
+        int to = graph.edgeTarget(graph.edgeStart(from));
+        int[] searches = {0};
+        IntFunction<int[]> search = source -> {
+            searches[0]++;
+            return new AStar().aStarSearch(graph, source, 0, 99, null);
+        };
+
+        //Zwei Spieler an verschiedenen Stellen derselben Kante
+        for (double fraction : new double[]{0.3, 0.7}) {
+            SpatialIndex.Entry entry = graph.getSpatialIndex().getEntry(
+                    graph.getX(from) + fraction * (graph.getX(to) - graph.getX(from)),
+                    graph.getY(from) + fraction * (graph.getY(to) - graph.getY(from)),
+                    graph.getZ(from) + fraction * (graph.getZ(to) - graph.getZ(from)), null);
+            assertEquals(2, entry.getSources().length);
+            int[] path = cache.get(1, graph, entry.getSources(), entry.getSourceCosts(), 99, null, search);
+            int[] expected = new AStar().aStarSearch(graph, entry.getSources(), entry.getSourceCosts(), 99, null);
+            assertEquals(cost(graph, entry, expected), cost(graph, entry, path), 1e-9);
+        }
+        //Jeder Endpunkt der Kante wird höchstens einmal gesucht, der zweite Spieler sucht nicht neu
+        assertTrue(searches[0] <= 2);
+        assertEquals(searches[0], cache.getMissCount());
+        assertTrue(cache.getHitCount() >= 1);
+    }
+
+    private static double cost(RoadMapGraph graph, SpatialIndex.Entry entry, int[] path) {
+        int[] sources = entry.getSources();
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] == path[0]) {
+                return entry.getSourceCosts()[i] + graph.getPathCost(path);
+            }
+        }
+        throw new AssertionError("Der Weg beginnt nicht an der Kante");
+    }
+
+    public void testResultCacheCoalescing() throws Exception {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        PathResultCache cache = new PathResultCache(16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int[] expected = {0, 1, 2};
+        Supplier<int[]> search = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return expected;
+        };
+
+        int[][] results = new int[2][];
+        Thread leader = new Thread(() -> results[0] = cache.get(1, graph, 0, 2, null, search));
+        leader.start();
+        started.await();
+        Thread follower = new Thread(() -> results[1] = cache.get(1, graph, 0, 2, null, () -> {
+            throw new AssertionError("Die Suche darf nur einmal laufen");
+        }));
+        follower.start();
+        while (cache.getCoalescedCount() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        leader.join();
+        follower.join();
+
+        assertSame(expected, results[0]);
+        assertSame(expected, results[1]);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getCoalescedCount());
+    }
+
+    public void testResultCacheInterruptedWaiter() throws Exception {
+        RoadMapGraph graph = SyntheticRoadMaps.grid(100, 8, 1);
+        PathResultCache cache = new PathResultCache(16);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread leader = new Thread(() -> cache.get(1, graph, 0, 2, null, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new int[]{0, 1, 2};
+        }));
+        leader.start();
+        started.await();
+
+        //Ein abgebrochener Wartender gibt auf, ohne die laufende Suche zu beeinflussen
+        Throwable[] thrown = new Throwable[1];
+        Thread follower = new Thread(() -> {
+            try {
+                cache.get(1, graph, 0, 2, null, () -> null);
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        });
+        follower.start();
+        while (cache.getCoalescedCount() == 0) {
+            Thread.sleep(1);
+        }
+        follower.interrupt();
+        follower.join();
+        assertTrue(thrown[0] instanceof SearchCancelledException);
+
+        release.countDown();
+        leader.join();
+        assertNotNull(cache.get(1, graph, 0, 2, null, () -> null));
+    }
+}
@@ -0,0 +1,142 @@
+package de.bossascrew.pathfinder.astar;
+
+import java.util.Random;
+
+/**
+ * Erzeugt künstliche Straßenkarten für Tests und Benchmarks, ohne dass ein Server benötigt wird.
+ */
+public class SyntheticRoadMaps {
+
+    /**
+     * Ein Stadtraster mit leicht verschobenen Kreuzungen. Ein Teil der Straßen fehlt, damit Umwege entstehen.
+     *
+     * @param nodes   Die ungefähre Anzahl der Nodes. Es wird das nächstkleinere Quadrat verwendet.
+     * @param spacing Der Abstand zweier Kreuzungen.
+     */
+    public static RoadMapGraph grid(int nodes, double spacing, long seed) {
+        Random random = new Random(seed);
+        int width = (int) Math.sqrt(nodes);
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(0);
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                builder.addNode(row * width + column,
+                        column * spacing + random.nextDouble() * spacing * 0.3,
+                        random.nextDouble() * 2,
+                        row * spacing + random.nextDouble() * spacing * 0.3,
+                        RoadMapGraph.NO_GROUP);
+            }
+        }
+        for (int row = 0; row < width; row++) {
+            for (int column = 0; column < width; column++) {
+                int id = row * width + column;
+                if (column + 1 < width && (row % 7 == 0 || random.nextDouble() > 0.15)) {
+                    connect(builder, id, id + 1);
+                }
+                if (row + 1 < width && (column % 7 == 0 || random.nextDouble() > 0.15)) {
+                    connect(builder, id, id + width);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Ein zufälliger geometrischer Graph. Jeder Node wird mit allen Nodes in einem Radius verbunden.
+     */
+    public static RoadMapGraph randomGeometric(int nodes, double size, double radius, long seed) {
+        Random random = new Random(seed);
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(0);
+        double[] x = new double[nodes];
+        double[] z = new double[nodes];
+        int cells = Math.max(1, (int) (size / radius));
+        int[][] buckets = new int[cells * cells][];
+        int[] bucketSizes = new int[cells * cells];
+        for (int i = 0; i < nodes; i++) {
+            x[i] = random.nextDouble() * size;
+            z[i] = random.nextDouble() * size;
+            builder.addNode(i, x[i], 0, z[i], RoadMapGraph.NO_GROUP);
+            int cell = cell(x[i], cells, radius) * cells + cell(z[i], cells, radius);
+            if (buckets[cell] == null) {
+                buckets[cell] = new int[4];
+            } else if (bucketSizes[cell] == buckets[cell].length) {
+                buckets[cell] = java.util.Arrays.copyOf(buckets[cell], bucketSizes[cell] * 2);
+            }
+            buckets[cell][bucketSizes[cell]++] = i;
+        }
+        for (int i = 0; i < nodes; i++) {
+            int cx = cell(x[i], cells, radius);
+            int cz = cell(z[i], cells, radius);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dz = -1; dz <= 1; dz++) {
+                    if (cx + dx < 0 || cz + dz < 0 || cx + dx >= cells || cz + dz >= cells) {
+                        continue;
+                    }
+                    int cell = (cx + dx) * cells + cz + dz;
+                    for (int k = 0; k < bucketSizes[cell]; k++) {
+                        int j = buckets[cell][k];
+                        double distX = x[i] - x[j];
+                        double distZ = z[i] - z[j];
+                        if (j != i && distX * distX + distZ * distZ <= radius * radius) {
+                            builder.addEdge(i, j);
+                        }
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Ein langer, schmaler Korridor aus drei parallelen Straßen mit gelegentlichen Querverbindungen.
+     */
+    public static RoadMapGraph corridor(int nodes, double spacing, long seed) {
+        Random random = new Random(seed);
+        int length = Math.max(1, nodes / 3);
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(0);
+        for (int i = 0; i < length; i++) {
+            for (int lane = 0; lane < 3; lane++) {
+                builder.addNode(i * 3 + lane, i * spacing, 0, lane * spacing + random.nextDouble(), RoadMapGraph.NO_GROUP);
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            for (int lane = 0; lane < 3; lane++) {
+                int id = i * 3 + lane;
+                if (i + 1 < length) {
+                    connect(builder, id, id + 3);
+                }
+                if (lane < 2 && random.nextDouble() < 0.1) {
+                    connect(builder, id, id + 1);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Kopiert einen Graphen und teilt seine Nodes in quadratische Bezirke ein, die wie FindableGroups als Gruppe
+     * gespeichert werden. Jeder zehnte Node bleibt ohne Gruppe.
+     */
+    public static RoadMapGraph districts(RoadMapGraph graph, double districtSize) {
+        RoadMapGraph.Builder builder = RoadMapGraph.builder(graph.getVersion(), graph.getCostModel());
+        for (int node = 0; node < graph.size(); node++) {
+            int group = node % 10 == 0 ? RoadMapGraph.NO_GROUP
+                    : (int) (graph.getX(node) / districtSize) * 1000 + (int) (graph.getZ(node) / districtSize);
+            builder.addNode(graph.getDatabaseId(node), graph.getX(node), graph.getY(node), graph.getZ(node), group);
+        }
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.edgeStart(node); edge < graph.edgeEnd(node); edge++) {
+                builder.addEdge(graph.getDatabaseId(node), graph.getDatabaseId(graph.edgeTarget(edge)));
+            }
+        }
+        return builder.build();
+    }
+
+    private static int cell(double coordinate, int cells, double radius) {
+        return Math.min(cells - 1, (int) (coordinate / radius));
+    }
+
+    private static void connect(RoadMapGraph.Builder builder, int a, int b) {
+        builder.addEdge(a, b);
+        builder.addEdge(b, a);
+    }
+}